@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Recorded test data for benchmarks.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public final class BenchmarkData
+{
+    /**
+     * Mixed GGA/RMC/VTG/MWV/XDR/HDG/DPT and AIVDM log.
+     */
+    public static final String MIXED = "/mixed.nmea";
+    
+    public static byte[] load(String resource)
+    {
+        try (InputStream is = BenchmarkData.class.getResourceAsStream(resource))
+        {
+            if (is == null)
+            {
+                throw new IllegalArgumentException(resource+" not found");
+            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int rc = is.read(buf);
+            while (rc != -1)
+            {
+                baos.write(buf, 0, rc);
+                rc = is.read(buf);
+            }
+            return baos.toByteArray();
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ScatteringByteChannel;
+
+/**
+ * Readable channel over byte array. Returns at most chunk bytes per read to
+ * simulate network/serial reads. Reusable with rewind.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class ByteArrayChannel implements ScatteringByteChannel
+{
+    private final byte[] data;
+    private final int chunk;
+    private int position;
+
+    public ByteArrayChannel(byte[] data, int chunk)
+    {
+        this.data = data;
+        this.chunk = chunk;
+    }
+    
+    public void rewind()
+    {
+        position = 0;
+    }
+    
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException
+    {
+        if (position >= data.length)
+        {
+            return -1;
+        }
+        long count = 0;
+        for (int ii=0;ii<length;ii++)
+        {
+            int rc = read(dsts[offset+ii]);
+            if (rc == -1)
+            {
+                break;
+            }
+            count += rc;
+        }
+        return count;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException
+    {
+        return read(dsts, 0, dsts.length);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException
+    {
+        if (position >= data.length)
+        {
+            return -1;
+        }
+        int count = Math.min(Math.min(chunk, dst.remaining()), data.length-position);
+        dst.put(data, position, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+    }
+    
+}
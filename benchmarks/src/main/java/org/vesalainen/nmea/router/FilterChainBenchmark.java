@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vesalainen.nmea.benchmark.BenchmarkData;
+import org.vesalainen.nmea.router.filter.FilterChain;
+import org.vesalainen.nmea.router.filter.MessageFilter;
+import org.vesalainen.nmea.router.filter.YXXDRFilter;
+
+/**
+ * Routes mixed log to 100 filtered TCP clients having same filter 
+ * configuration. Without shared chain every client runs its own filters. With
+ * shared chain verdict is evaluated once per sentence and cached in 
+ * SharedSentence.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterChainBenchmark
+{
+    private static final int CLIENTS = 100;
+    @Param({"false", "true"})
+    public boolean shared;
+    
+    private String[] sentences;
+    private FilterChain chain;
+    private MessageFilter[][] clientFilters;
+    
+    @Setup
+    public void setup()
+    {
+        String log = new String(BenchmarkData.load(BenchmarkData.MIXED), StandardCharsets.US_ASCII);
+        List<String> list = new ArrayList<>();
+        for (String line : log.split("\r\n"))
+        {
+            if (!line.isEmpty())
+            {
+                list.add(line+"\r\n");
+            }
+        }
+        sentences = list.toArray(new String[list.size()]);
+        clientFilters = new MessageFilter[CLIENTS][];
+        for (int ii=0;ii<CLIENTS;ii++)
+        {
+            List<MessageFilter> filters = new ArrayList<>();
+            filters.add(new YXXDRFilter());
+            chain = FilterChain.canonicalize(filters);
+            clientFilters[ii] = filters.toArray(new MessageFilter[filters.size()]);
+        }
+    }
+    
+    @Benchmark
+    public int route()
+    {
+        int count = 0;
+        for (String seq : sentences)
+        {
+            SharedSentence sentence = SharedSentence.copyOf(seq);
+            try
+            {
+                for (int ii=0;ii<CLIENTS;ii++)
+                {
+                    if (shared ? sentence.accept(chain) : accept(clientFilters[ii], sentence))
+                    {
+                        count++;
+                    }
+                }
+            }
+            finally
+            {
+                sentence.release();
+            }
+        }
+        return count;
+    }
+    
+    private static boolean accept(MessageFilter[] filters, CharSequence seq)
+    {
+        for (MessageFilter filter : filters)
+        {
+            if (!filter.accept(seq))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.Checksum;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.vesalainen.nio.RingByteBuffer;
+import org.vesalainen.nmea.benchmark.BenchmarkData;
+import org.vesalainen.nmea.benchmark.ByteArrayChannel;
+import org.vesalainen.parsers.nmea.NMEAChecksum;
+import org.vesalainen.regex.WildcardMatcher;
+import org.vesalainen.util.Matcher.Status;
+
+/**
+ * Routes mixed log with NMEAMatcher. match feeds bytes directly to matcher,
+ * scan uses matcher bulk scan, read uses NMEAReader with ring buffer as 
+ * endpoints do. wildcard is the baseline: earlier per byte matcher with
+ * WildcardMatcher prefix and NMEAChecksum. Read size 16 is about what serial
+ * read returns at 4800 baud and 128 at 38400 baud.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NMEAReaderBenchmark
+{
+    private static final String[] PREFIXES = new String[] {
+        "$??GGA", "$??RMC", "$??VTG", "$??MWV", "$??XDR", "$??HDG", "$??DPT", "!AIVDM", "!AIVDO"
+    };
+    @Param({"16", "128", "1024"})
+    public int readSize;
+    @Param({"false", "true"})
+    public boolean bulk;
+    
+    private byte[] log;
+    private ByteBuffer logBuffer;
+    private NMEAMatcher<String> matcher;
+    private WildcardNMEAMatcher<String> wildcardMatcher;
+    private ByteArrayChannel channel;
+    private NMEAReader reader;
+    private Blackhole blackhole;
+    
+    @Setup
+    public void setup(Blackhole bh)
+    {
+        this.blackhole = bh;
+        log = BenchmarkData.load(BenchmarkData.MIXED);
+        logBuffer = ByteBuffer.wrap(log);
+        matcher = new NMEAMatcher<>();
+        for (String prefix : PREFIXES)
+        {
+            matcher.addExpression(prefix, prefix);
+        }
+        matcher.compile();
+        wildcardMatcher = new WildcardNMEAMatcher<>();
+        for (String prefix : PREFIXES)
+        {
+            wildcardMatcher.addExpression(prefix, prefix);
+        }
+        wildcardMatcher.compile();
+        channel = new ByteArrayChannel(log, readSize);
+        reader = new NMEAReader("benchmark", matcher, channel, 1024, this::onOk, this::onError);
+        reader.setBulk(bulk);
+    }
+    
+    @Benchmark
+    public void match(Blackhole bh)
+    {
+        matcher.clear();
+        for (byte b : log)
+        {
+            if (matcher.match(b) == Status.Match)
+            {
+                bh.consume(matcher.getMatched());
+            }
+        }
+    }
+    
+    @Benchmark
+    public void wildcard(Blackhole bh)
+    {
+        wildcardMatcher.clear();
+        for (byte b : log)
+        {
+            if (wildcardMatcher.match(b) == Status.Match)
+            {
+                bh.consume(wildcardMatcher.getMatched());
+            }
+        }
+    }
+    
+    @Benchmark
+    public void scan(Blackhole bh)
+    {
+        matcher.clear();
+        int end = log.length;
+        int off = 0;
+        while (off < end)
+        {
+            off = matcher.scan(logBuffer, off, end);
+            if (matcher.getScanStatus() == Status.Match)
+            {
+                bh.consume(matcher.getMatched());
+            }
+        }
+    }
+    
+    @Benchmark
+    public void read() throws IOException
+    {
+        matcher.clear();
+        channel.rewind();
+        try
+        {
+            reader.read();
+        }
+        catch (EOFException ex)
+        {
+        }
+    }
+    
+    private void onOk(RingByteBuffer ring, long timestamp)
+    {
+        blackhole.consume(matcher.getMatched());
+        blackhole.consume(ring.length());
+    }
+    
+    private void onError(Supplier<byte[]> err)
+    {
+        blackhole.consume(err);
+    }
+    /**
+     * Per byte matcher as it was before transition table.
+     * @param <T> 
+     */
+    private static class WildcardNMEAMatcher<T> extends WildcardMatcher<T>
+    {
+        private static final int PREFIX = 0;
+        private static final int DATA = 1;
+        private static final int CHECKSUM1 = 2;
+        private static final int CHECKSUM2 = 3;
+        private static final int CR = 4;
+        private static final int LF = 5;
+        private final Checksum checksum = new NMEAChecksum();
+        private int state;
+        private int cs;
+        private T matched;
+
+        @Override
+        public Status match(int cc)
+        {
+            checksum.update(cc);
+            switch (state)
+            {
+                case PREFIX:
+                    Status status = super.match(cc);
+                    switch (status)
+                    {
+                        case Match:
+                            matched = super.getMatched();
+                            state = DATA;
+                            return Status.WillMatch;
+                        case Error:
+                            return error();
+                    }
+                    return status;
+                case DATA:
+                    switch (cc)
+                    {
+                        case '*':
+                            cs = (int) checksum.getValue();
+                            state = CHECKSUM1;
+                            return Status.WillMatch;
+                        case '\r':
+                        case '\n':
+                            return error();
+                        default:
+                            if (cc < ' ' || cc > '~')
+                            {
+                                return error();
+                            }
+                            return Status.WillMatch;
+                    }
+                case CHECKSUM1:
+                    if ((cs>>4) != Character.digit(cc, 16))
+                    {
+                        return error();
+                    }
+                    state = CHECKSUM2;
+                    return Status.WillMatch;
+                case CHECKSUM2:
+                    if ((cs&0xf) != Character.digit(cc, 16))
+                    {
+                        return error();
+                    }
+                    state = CR;
+                    return Status.WillMatch;
+                case CR:
+                    if (cc != '\r')
+                    {
+                        return error();
+                    }
+                    state = LF;
+                    return Status.WillMatch;
+                case LF:
+                    if (cc != '\n')
+                    {
+                        return error();
+                    }
+                    clear();
+                    return Status.Match;
+                default:
+                    throw new AssertionError(state);
+            }
+        }
+
+        @Override
+        public T getMatched()
+        {
+            return matched;
+        }
+
+        private Status error()
+        {
+            clear();
+            return Status.Error;
+        }
+
+        @Override
+        public void clear()
+        {
+            super.clear();
+            state = PREFIX;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vesalainen.util.concurrent.CachedScheduledThreadPool;
+
+/**
+ * Compares PLATFORM and VIRTUAL thread modes. Each iteration starts given 
+ * number of blocking read loops, like endpoints reading serial ports or 
+ * sockets, and waits until all are blocked. Score is startup time. 
+ * Resident set size growth while loops are blocked is printed after each
+ * iteration (Linux only).
+ * <p>
+ * VIRTUAL needs Java 21. Only PLATFORM has been measured so far; no 
+ * results for VIRTUAL are claimed.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.router.VirtualThreads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ThreadModeBenchmark
+{
+    private static final Path STATUS = Paths.get("/proc/self/status");
+    @Param({"PLATFORM", "VIRTUAL"})
+    public String mode;
+    @Param({"40", "400"})
+    public int loops;
+    
+    private ExecutorService executor;
+    private Pipe[] pipes;
+    private CountDownLatch blocked;
+    private CountDownLatch stopped;
+    private long rssKiB;
+    
+    @Setup(Level.Iteration)
+    public void setup() throws IOException
+    {
+        if ("VIRTUAL".equals(mode))
+        {
+            executor = VirtualThreads.newExecutor();
+        }
+        else
+        {
+            executor = new CachedScheduledThreadPool(RouterManager.MAX_POOL_SIZE);
+        }
+        pipes = new Pipe[loops];
+        for (int ii=0;ii<loops;ii++)
+        {
+            pipes[ii] = Pipe.open();
+        }
+        blocked = new CountDownLatch(loops);
+        stopped = new CountDownLatch(loops);
+        System.gc();
+    }
+    
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException, InterruptedException
+    {
+        System.out.printf(" %s loops=%d rss +%d KiB", mode, loops, rssKiB);
+        for (Pipe pipe : pipes)
+        {
+            pipe.sink().close();
+        }
+        stopped.await();
+        for (Pipe pipe : pipes)
+        {
+            pipe.source().close();
+        }
+        executor.shutdownNow();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+    
+    @Benchmark
+    public void start() throws InterruptedException, IOException
+    {
+        long rss = getRss();
+        for (Pipe pipe : pipes)
+        {
+            executor.submit(()->readLoop(pipe.source()));
+        }
+        blocked.await();
+        rssKiB = getRss() - rss;
+    }
+    
+    private void readLoop(Pipe.SourceChannel source)
+    {
+        ByteBuffer bb = ByteBuffer.allocate(128);
+        blocked.countDown();
+        try
+        {
+            while (source.read(bb) != -1)
+            {
+                bb.clear();
+            }
+        }
+        catch (IOException ex)
+        {
+        }
+        finally
+        {
+            stopped.countDown();
+        }
+    }
+    
+    private static long getRss() throws IOException
+    {
+        if (Files.exists(STATUS))
+        {
+            for (String line : Files.readAllLines(STATUS))
+            {
+                if (line.startsWith("VmRSS:"))
+                {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.server;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXBException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vesalainen.util.concurrent.CachedScheduledThreadPool;
+
+/**
+ * Dispatches typical property updates through PropertyServer.set.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyServerBenchmark
+{
+    private Path dir;
+    private CachedScheduledThreadPool executor;
+    private PropertyServer server;
+    private double latitude = 60.15;
+    private float value;
+    
+    @Setup
+    public void setup() throws IOException, JAXBException
+    {
+        dir = Files.createTempDirectory("nmea-benchmark");
+        executor = new CachedScheduledThreadPool();
+        Config config = new Config(dir.resolve("nmea-server.xml"));
+        server = new PropertyServer(Clock.systemUTC(), config, executor);
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        executor.shutdownNow();
+        Files.deleteIfExists(dir.resolve("nmea-server.xml"));
+        Files.deleteIfExists(dir);
+    }
+    
+    @Benchmark
+    public void set()
+    {
+        latitude += 1e-6;
+        value += 0.01F;
+        server.set("latitude", latitude);
+        server.set("longitude", 24.9+latitude);
+        server.set("speedOverGround", value);
+        server.set("trueHeading", value);
+        server.set("relativeWindAngle", value);
+        server.set("relativeWindSpeed", value);
+        server.set("depthOfWater", value);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.parsers.nmea;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vesalainen.nmea.benchmark.BenchmarkData;
+import org.vesalainen.parsers.nmea.ais.AbstractAISObserver;
+
+/**
+ * Parses mixed GGA/RMC/VTG/MWV/XDR/AIVDM log with NMEAParser. One operation
+ * is whole log.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NMEAParserBenchmark
+{
+    @Param({"false", "true"})
+    public boolean aisSynchronous;
+    @Param({"false", "true"})
+    public boolean aisPackedDecoding;
+    
+    private NMEAParser parser;
+    private byte[] log;
+    private NMEAObserver data;
+    private AbstractAISObserver aisData;
+    
+    @Setup
+    public void setup()
+    {
+        log = BenchmarkData.load(BenchmarkData.MIXED);
+        parser = NMEAParser.newInstance();
+        parser.setAISSynchronous(aisSynchronous);
+        parser.setAISPackedDecoding(aisPackedDecoding);
+        data = new AbstractNMEAObserver();
+        aisData = new AbstractAISObserver();
+    }
+    
+    @Benchmark
+    public void parse() throws IOException
+    {
+        parser.parse(new ByteArrayInputStream(log), data, aisData);
+    }
+    
+    @Benchmark
+    public void parseWithoutAIS() throws IOException
+    {
+        parser.parse(new ByteArrayInputStream(log), data, null);
+    }
+}
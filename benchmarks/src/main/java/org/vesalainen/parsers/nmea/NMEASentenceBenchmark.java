@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.parsers.nmea;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import static org.vesalainen.math.UnitType.*;
+
+/**
+ * Renders supplier based NMEASentences.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NMEASentenceBenchmark
+{
+    private NMEASentence rmc;
+    private NMEASentence mwv;
+    private NMEASentence dpt;
+    private NMEASentence hdt;
+    private WritableByteChannel sink;
+    private double value;
+    
+    @Setup
+    public void setup()
+    {
+        Clock clock = Clock.systemUTC();
+        rmc = NMEASentence.rmc(()->clock, ()->60.15+value, ()->24.9, ()->6.2, ()->188.0, ()->7.1);
+        mwv = NMEASentence.mwv(()->282+value, ()->11.6, KNOT, false);
+        dpt = NMEASentence.dpt(()->7.2+value, ()->0.3, METER);
+        hdt = NMEASentence.hdt(()->171+value);
+        sink = new WritableByteChannel()
+        {
+            @Override
+            public int write(ByteBuffer src) throws IOException
+            {
+                int count = src.remaining();
+                src.position(src.limit());
+                return count;
+            }
+
+            @Override
+            public boolean isOpen()
+            {
+                return true;
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+            }
+        };
+    }
+    
+    @Benchmark
+    public void render(Blackhole bh)
+    {
+        value += 0.001;
+        bh.consume(rmc.toString());
+        bh.consume(mwv.toString());
+        bh.consume(dpt.toString());
+        bh.consume(hdt.toString());
+    }
+    
+    @Benchmark
+    public void writeTo() throws IOException
+    {
+        value += 0.001;
+        rmc.writeTo(sink);
+        mwv.writeTo(sink);
+        dpt.writeTo(sink);
+        hdt.writeTo(sink);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.parsers.nmea.ais;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vesalainen.parsers.nmea.ais.AISBridge.AbstractHandler;
+
+/**
+ * Parses single AIS message with AISParser message type parse methods and 
+ * with AISBitDecoder.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AISParserBenchmark
+{
+    @Param({"1", "4", "5", "9", "11", "18", "19", "21", "24"})
+    public int type;
+    
+    private String[] payloads;
+    private int[] paddings;
+    private AbstractHandler grammar;
+    private AbstractHandler packed;
+    
+    @Setup
+    public void setup() throws IOException
+    {
+        switch (type)
+        {
+            case 1:
+                set("13HOI:0P0000VOHLCnHQKwvL05Ip", 0);
+                break;
+            case 4:
+                set("4020ssAuho;N?PeNwjOAp<70089A", 0);
+                break;
+            case 5:
+                set("53nFBv01SJ<thHp6220H4heHTf2222222222221?50:454o<`9QSlUDp", 0, "888888888888880", 2);
+                break;
+            case 9:
+                set("91b55vRAirOn<94M097lV@@20<6=", 0);
+                break;
+            case 11:
+                set(";5E8IL1uho;NQ1d4sJEW<Ci00000", 0);
+                break;
+            case 18:
+                set("B6:fOUh0=R1oRQSC=jo9Gwb61P06", 0);
+                break;
+            case 19:
+                set("C6:Vo:00@R;51>TORgH2owc6@b30jb2M111111111110S0hS440P", 0);
+                break;
+            case 21:
+                set("E04<o5AaWdPnaGaP00000000000DPmHl:aCUp00000Qh20", 4);
+                break;
+            case 24:
+                set("H>DQ@04N6DeihhlPPPPPPP000000", 0);
+                break;
+            default:
+                throw new IllegalArgumentException(type+" not supported");
+        }
+        AISBridge bridge = new AISBridge(new AbstractAISObserver());
+        bridge.setSynchronous(true);
+        grammar = bridge.new SynchronousHandler();
+        packed = bridge.new PackedHandler();
+    }
+    private void set(Object... args)
+    {
+        int len = args.length/2;
+        payloads = new String[len];
+        paddings = new int[len];
+        for (int ii=0;ii<len;ii++)
+        {
+            payloads[ii] = (String) args[2*ii];
+            paddings[ii] = (int) args[2*ii+1];
+        }
+    }
+    @Benchmark
+    public void grammar() throws IOException
+    {
+        run(grammar);
+    }
+    @Benchmark
+    public void packed() throws IOException
+    {
+        run(packed);
+    }
+    private void run(AbstractHandler handler) throws IOException
+    {
+        handler.start(false, 'A');
+        for (int ii=0;ii<payloads.length;ii++)
+        {
+            handler.add(payloads[ii], paddings[ii]);
+        }
+        handler.commit();
+    }
+}
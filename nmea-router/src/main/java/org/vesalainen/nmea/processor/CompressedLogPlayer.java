@@ -19,35 +19,44 @@ package org.vesalainen.nmea.processor;
 import java.io.IOException;
 import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
-import java.time.Clock;
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.vesalainen.io.CompressedInput;
 import org.vesalainen.nio.channels.UnconnectedDatagramChannel;
 import org.vesalainen.parsers.nmea.NMEASender0;
-import org.vesalainen.time.SimpleClock;
 import org.vesalainen.util.concurrent.CachedScheduledThreadPool;
 
 /**
- *
+ * CompressedLogPlayer replays compressed logs as NMEA sentences. Replay is 
+ * paced by ReplayScheduler against VirtualClock. Sentences are rendered once
+ * in a second of virtual time. 
+ * 
+ * <p>Speed, pause and seek can be controlled from other thread while play 
+ * runs.
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.processor.ReplayScheduler
  */
 public class CompressedLogPlayer implements AutoCloseable
 {
+    public static final long EMIT_INTERVAL = 1000;
     private WritableByteChannel channel;
     private final NMEASender0 sender;
-    private long millis = -1;
+    private final List<Path> paths;
+    private final VirtualClock clock;
+    private final ReplayScheduler scheduler;
 
-    private CompressedLogPlayer(String address, int port, Stream<Path> paths, CachedScheduledThreadPool executor) throws IOException
+    private CompressedLogPlayer(String address, int port, Stream<Path> paths, CachedScheduledThreadPool executor, double speed) throws IOException
     {
+        this.paths = paths.collect(Collectors.toList());
         this.channel = UnconnectedDatagramChannel.open(address, port, 100, true, false);
         this.sender = new NMEASender0(channel, executor);
-        Clock clock = new SimpleClock(()->millis);
+        this.clock = new VirtualClock(speed);
+        this.scheduler = new ReplayScheduler(clock, EMIT_INTERVAL, sender);
         sender.start("");
         sender.set("clock", clock);
         sender.commit("");
-        sender.start();
-        CompressedInput.readTransactional(paths ,sender, new Waiter());
     }
     
     public static CompressedLogPlayer open(String address, int port, Stream<Path> paths) throws IOException
@@ -56,17 +65,98 @@ public class CompressedLogPlayer implements AutoCloseable
     }
     public static CompressedLogPlayer open(String address, int port, Stream<Path> paths, CachedScheduledThreadPool executor) throws IOException
     {
-        return new CompressedLogPlayer(address, port, paths, executor);
+        return open(address, port, paths, executor, 1);
+    }
+    /**
+     * Creates player and plays logs.
+     * @param address
+     * @param port
+     * @param paths
+     * @param executor
+     * @param speed 1 - 1000 or 0 for as fast as possible.
+     * @return
+     * @throws IOException 
+     */
+    public static CompressedLogPlayer open(String address, int port, Stream<Path> paths, CachedScheduledThreadPool executor, double speed) throws IOException
+    {
+        CompressedLogPlayer player = create(address, port, paths, executor, speed);
+        player.play();
+        return player;
+    }
+    /**
+     * Creates player without playing.
+     * @param address
+     * @param port
+     * @param paths
+     * @param executor
+     * @param speed 1 - 1000 or 0 for as fast as possible.
+     * @return
+     * @throws IOException 
+     * @see #play() 
+     */
+    public static CompressedLogPlayer create(String address, int port, Stream<Path> paths, CachedScheduledThreadPool executor, double speed) throws IOException
+    {
+        return new CompressedLogPlayer(address, port, paths, executor, speed);
+    }
+    /**
+     * Plays logs. Returns when all records are played.
+     * @throws IOException 
+     */
+    public void play() throws IOException
+    {
+        while (true)
+        {
+            try
+            {
+                CompressedInput.readTransactional(paths.stream(), sender, new Waiter());
+                return;
+            }
+            catch (Rewind ex)
+            {
+                scheduler.reset();
+            }
+        }
+    }
+    /**
+     * Sets replay speed.
+     * @param speed 1 - 1000 or 0 for as fast as possible.
+     */
+    public void setSpeed(double speed)
+    {
+        clock.setSpeed(speed);
+    }
+    
+    public void pause()
+    {
+        clock.pause();
     }
+    
+    public void resume()
+    {
+        clock.resume();
+    }
+    /**
+     * Continues replay from time. Backward seek restarts reading logs.
+     * @param millis 
+     */
+    public void seek(long millis)
+    {
+        scheduler.seek(millis);
+    }
+    /**
+     * Returns virtual clock of replay.
+     * @return 
+     */
+    public VirtualClock getClock()
+    {
+        return clock;
+    }
+    
     @Override
     public void close()
     {
         try
         {
-            if (sender != null)
-            {
-                sender.stop();
-            }
             channel.close();
         }
         catch (IOException ex)
@@ -81,23 +171,21 @@ public class CompressedLogPlayer implements AutoCloseable
         public void accept(CompressedInput t)
         {
             long time = t.getLong("time");
-            if (millis != -1)
+            try
             {
-                try
-                {
-                    long s = time-millis;
-                    if (s > 0)
-                    {
-                        Thread.sleep(s);
-                    }
-                }
-                catch (InterruptedException ex)
+                if (!scheduler.advance(time))
                 {
-                    throw new IllegalArgumentException(ex);
+                    throw new Rewind();
                 }
             }
-            millis = time;
+            catch (InterruptedException ex)
+            {
+                throw new IllegalArgumentException(ex);
+            }
         }
         
     }
+    private static class Rewind extends RuntimeException
+    {
+    }
 }
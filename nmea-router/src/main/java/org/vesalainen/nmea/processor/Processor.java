@@ -26,6 +26,7 @@ import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ScatteringByteChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import org.vesalainen.net.ObjectServer;
@@ -55,12 +56,23 @@ public class Processor<T extends ByteChannel & ScatteringByteChannel & Gathering
     private List<Stoppable> processes = new ArrayList<>();
     private ObjectServer dataServer;
     private final BoatDataType boatType;
+    private ExecutorService loopExecutor;
 
     public Processor(BoatDataType boatType, ProcessorType processorType, T channel, CachedScheduledThreadPool executor) throws IOException
     {
         super(channel, executor);
         this.boatType = boatType;
         this.processorType = processorType;
+        this.loopExecutor = executor;
+    }
+    /**
+     * Sets executor for sample consumer loops. Default is the executor given
+     * in constructor.
+     * @param loopExecutor 
+     */
+    public void setLoopExecutor(ExecutorService loopExecutor)
+    {
+        this.loopExecutor = loopExecutor;
     }
 
     @Override
@@ -178,7 +190,7 @@ public class Processor<T extends ByteChannel & ScatteringByteChannel & Gathering
                 {
                     throw new UnsupportedOperationException(ob+" not supported");
                 }
-                process.start(this);
+                process.start(this, loopExecutor);
                 processes.add(process);
             }
         }
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.processor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ReplayScheduler paces replay of time stamped records against VirtualClock.
+ * Advance is called with record time before record is applied. It returns 
+ * when record is due. All records sharing a time stamp are released together.
+ * 
+ * <p>Emitter is run at every emit interval of virtual time with the state of
+ * records before that time. Output rate follows virtual time and not wall 
+ * time.
+ * 
+ * <p>Forward seek applies records before seek time without waiting or 
+ * emitting. Backward seek makes advance return false. Then caller restarts
+ * from the beginning and calls reset.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.processor.CompressedLogPlayer
+ */
+public class ReplayScheduler
+{
+    private static final long NONE = Long.MIN_VALUE;
+    private static final long PARK_LIMIT = TimeUnit.MILLISECONDS.toNanos(1);
+    private final VirtualClock clock;
+    private final long emitInterval;
+    private final Runnable emitter;
+    private long batchTime = NONE;
+    private long nextEmit = NONE;
+    private long seekTime = NONE;
+    /**
+     * Creates ReplayScheduler
+     * @param clock
+     * @param emitInterval Millis
+     * @param emitter 
+     */
+    public ReplayScheduler(VirtualClock clock, long emitInterval, Runnable emitter)
+    {
+        if (emitInterval <= 0)
+        {
+            throw new IllegalArgumentException("emitInterval="+emitInterval);
+        }
+        this.clock = clock;
+        this.emitInterval = emitInterval;
+        this.emitter = emitter;
+    }
+    /**
+     * Waits until record is due.
+     * @param time Record time millis
+     * @return false if replay has to be restarted because of backward seek.
+     * @throws InterruptedException 
+     */
+    public boolean advance(long time) throws InterruptedException
+    {
+        while (true)
+        {
+            long seek = getSeekTime();
+            if (seek != NONE)
+            {
+                if (batchTime != NONE && seek < batchTime)
+                {
+                    return false;
+                }
+                if (time < seek)
+                {
+                    batchTime = time;
+                    return true;
+                }
+                clearSeek(seek);
+                clock.set(seek);
+                nextEmit = align(seek);
+                batchTime = seek;
+            }
+            if (batchTime == NONE)
+            {
+                clock.set(time);
+                nextEmit = align(time);
+                batchTime = time;
+                return true;
+            }
+            if (time == batchTime)
+            {
+                return true;
+            }
+            while (nextEmit <= time)
+            {
+                if (!await(nextEmit))
+                {
+                    break;
+                }
+                emitter.run();
+                nextEmit += emitInterval;
+            }
+            if (await(time))
+            {
+                batchTime = time;
+                return true;
+            }
+        }
+    }
+    /**
+     * Requests seek. Waiting advance returns to handle it.
+     * @param millis 
+     */
+    public void seek(long millis)
+    {
+        synchronized (clock)
+        {
+            seekTime = millis;
+            clock.notifyAll();
+        }
+    }
+    /**
+     * Resets state for restart. Pending seek is kept.
+     */
+    public void reset()
+    {
+        batchTime = NONE;
+        nextEmit = NONE;
+    }
+    /**
+     * Waits until virtual time reaches millis
+     * @param millis
+     * @return false if seek was requested while waiting.
+     * @throws InterruptedException 
+     */
+    private boolean await(long millis) throws InterruptedException
+    {
+        synchronized (clock)
+        {
+            while (seekTime == NONE)
+            {
+                long nanos = clock.nanosUntil(millis);
+                if (nanos <= 0)
+                {
+                    clock.reach(millis);
+                    return true;
+                }
+                if (nanos > PARK_LIMIT)
+                {
+                    TimeUnit.NANOSECONDS.timedWait(clock, nanos - PARK_LIMIT);
+                }
+                else
+                {
+                    // monitor wait has millisecond resolution
+                    LockSupport.parkNanos(nanos);
+                }
+            }
+            return false;
+        }
+    }
+    private long getSeekTime()
+    {
+        synchronized (clock)
+        {
+            return seekTime;
+        }
+    }
+    private void clearSeek(long seek)
+    {
+        synchronized (clock)
+        {
+            if (seekTime == seek)
+            {
+                seekTime = NONE;
+            }
+        }
+    }
+    private long align(long millis)
+    {
+        return millis - Math.floorMod(millis, emitInterval) + emitInterval;
+    }
+}
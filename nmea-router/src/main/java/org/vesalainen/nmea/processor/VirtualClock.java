@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.processor;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * VirtualClock runs from set time with speed factor. Speed 0 means as fast as
+ * possible. Then clock doesn't run by itself but is stepped by reach.
+ * 
+ * <p>Virtual time is calculated from origin which is set when time, speed or
+ * pause state changes. Because deadlines are calculated from the same origin, 
+ * waiting for them doesn't accumulate drift.
+ * 
+ * <p>Threads waiting for virtual time wait on clock monitor. Changes notify
+ * them.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.processor.ReplayScheduler
+ */
+public class VirtualClock extends Clock
+{
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+    public static final double MAX_SPEED = 1000;
+    private final ZoneId zone;
+    private double speed;
+    private long virtualOrigin;
+    private long wallOrigin;
+    private boolean paused;
+
+    public VirtualClock(double speed)
+    {
+        this(ZoneOffset.UTC, speed);
+    }
+
+    public VirtualClock(ZoneId zone, double speed)
+    {
+        checkSpeed(speed);
+        this.zone = zone;
+        this.speed = speed;
+        this.wallOrigin = System.nanoTime();
+    }
+    
+    private VirtualClock(ZoneId zone, VirtualClock clock)
+    {
+        this.zone = zone;
+        synchronized (clock)
+        {
+            this.speed = clock.speed;
+            this.virtualOrigin = clock.virtualOrigin;
+            this.wallOrigin = clock.wallOrigin;
+            this.paused = clock.paused;
+        }
+    }
+    /**
+     * Sets virtual time.
+     * @param millis 
+     */
+    public synchronized void set(long millis)
+    {
+        virtualOrigin = millis;
+        wallOrigin = System.nanoTime();
+        notifyAll();
+    }
+    /**
+     * Steps time to millis if clock runs as fast as possible or is paused. 
+     * Otherwise does nothing.
+     * @param millis 
+     */
+    public synchronized void reach(long millis)
+    {
+        if (isStepped() && millis > virtualOrigin)
+        {
+            set(millis);
+        }
+    }
+    /**
+     * Sets speed factor. Current virtual time is not changed.
+     * @param speed 0 or 1 - 1000
+     */
+    public synchronized void setSpeed(double speed)
+    {
+        checkSpeed(speed);
+        virtualOrigin = millis();
+        wallOrigin = System.nanoTime();
+        this.speed = speed;
+        notifyAll();
+    }
+
+    public synchronized double getSpeed()
+    {
+        return speed;
+    }
+    
+    public synchronized void pause()
+    {
+        if (!paused)
+        {
+            virtualOrigin = millis();
+            paused = true;
+            notifyAll();
+        }
+    }
+    
+    public synchronized void resume()
+    {
+        if (paused)
+        {
+            wallOrigin = System.nanoTime();
+            paused = false;
+            notifyAll();
+        }
+    }
+
+    public synchronized boolean isPaused()
+    {
+        return paused;
+    }
+    /**
+     * Returns wall nanos until virtual time reaches millis. Returns 0 if
+     * clock is stepped and not paused. Returns Long.MAX_VALUE if paused and
+     * millis is not reached.
+     * @param millis
+     * @return 
+     */
+    public synchronized long nanosUntil(long millis)
+    {
+        if (paused)
+        {
+            return millis > virtualOrigin ? Long.MAX_VALUE : 0;
+        }
+        if (speed == AS_FAST_AS_POSSIBLE)
+        {
+            return 0;
+        }
+        long deadline = wallOrigin + (long) Math.ceil((millis - virtualOrigin)*1000000/speed);
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    @Override
+    public synchronized long millis()
+    {
+        if (isStepped())
+        {
+            return virtualOrigin;
+        }
+        return virtualOrigin + (long) ((System.nanoTime() - wallOrigin)*speed/1000000);
+    }
+
+    @Override
+    public ZoneId getZone()
+    {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone)
+    {
+        return new VirtualClock(zone, this);
+    }
+
+    @Override
+    public Instant instant()
+    {
+        return Instant.ofEpochMilli(millis());
+    }
+
+    private boolean isStepped()
+    {
+        return paused || speed == AS_FAST_AS_POSSIBLE;
+    }
+    private static void checkSpeed(double speed)
+    {
+        if (speed != AS_FAST_AS_POSSIBLE && (speed < 1 || speed > MAX_SPEED))
+        {
+            throw new IllegalArgumentException("speed="+speed);
+        }
+    }
+}
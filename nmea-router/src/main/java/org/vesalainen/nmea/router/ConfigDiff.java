@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.vesalainen.nmea.jaxb.router.EndpointType;
+import org.vesalainen.nmea.jaxb.router.NmeaType;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * ConfigDiff compares two router configurations endpoint by endpoint.
+ * 
+ * <p>Endpoints are matched by name and compared as marshalled DOM elements. 
+ * If only route, filter or decimate elements or dedupWindow attribute differ,
+ * running endpoint can be reconfigured. Any other difference needs restarting
+ * the endpoint. Disabled endpoints are treated as missing.
+ * 
+ * <p>Changes outside endpoints, like boat data, cannot be applied to running
+ * router.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.router.endpoint.Endpoint#reconfigure(org.vesalainen.nmea.jaxb.router.EndpointType) 
+ */
+public class ConfigDiff
+{
+    private static final Set<String> ROUTING_ELEMENTS = new HashSet<>(Arrays.asList("route", "filter", "decimate"));
+    private static final Set<String> ROUTING_ATTRIBUTES = new HashSet<>(Arrays.asList("dedupWindow"));
+    private static final Set<String> ENDPOINT_ELEMENTS = new HashSet<>(Arrays.asList("endPoints"));
+    private static final Set<String> MANAGED_ATTRIBUTES = new HashSet<>(Arrays.asList("allDevices"));
+    private final Marshaller marshaller;
+    private final DocumentBuilder builder;
+    private final boolean globalChanged;
+    private final List<EndpointType> added = new ArrayList<>();
+    private final List<EndpointType> removed = new ArrayList<>();
+    private final List<EndpointType> restarted = new ArrayList<>();
+    private final List<EndpointType> rerouted = new ArrayList<>();
+
+    public ConfigDiff(NmeaType oldConfig, NmeaType newConfig) throws JAXBException
+    {
+        try
+        {
+            this.marshaller = RouterConfig.getContext().createMarshaller();
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            this.builder = factory.newDocumentBuilder();
+        }
+        catch (ParserConfigurationException ex)
+        {
+            throw new JAXBException(ex);
+        }
+        globalChanged = !equals(
+                strip(toElement(oldConfig), ENDPOINT_ELEMENTS, MANAGED_ATTRIBUTES),
+                strip(toElement(newConfig), ENDPOINT_ELEMENTS, MANAGED_ATTRIBUTES));
+        Map<String,EndpointType> oldMap = map(oldConfig);
+        Map<String,EndpointType> newMap = map(newConfig);
+        for (EndpointType oldType : oldMap.values())
+        {
+            EndpointType newType = newMap.get(oldType.getName());
+            if (newType == null)
+            {
+                removed.add(oldType);
+            }
+            else
+            {
+                Element oldElement = toElement(oldType);
+                Element newElement = toElement(newType);
+                if (!equals(oldElement, newElement))
+                {
+                    if (equals(
+                            strip(oldElement, ROUTING_ELEMENTS, ROUTING_ATTRIBUTES), 
+                            strip(newElement, ROUTING_ELEMENTS, ROUTING_ATTRIBUTES)))
+                    {
+                        rerouted.add(newType);
+                    }
+                    else
+                    {
+                        restarted.add(newType);
+                    }
+                }
+            }
+        }
+        for (EndpointType newType : newMap.values())
+        {
+            if (!oldMap.containsKey(newType.getName()))
+            {
+                added.add(newType);
+            }
+        }
+    }
+    /**
+     * Returns true if configuration outside endpoints has changed.
+     * @return 
+     */
+    public boolean isGlobalChanged()
+    {
+        return globalChanged;
+    }
+    /**
+     * Returns true if nothing has changed.
+     * @return 
+     */
+    public boolean isEmpty()
+    {
+        return !globalChanged && added.isEmpty() && removed.isEmpty() && restarted.isEmpty() && rerouted.isEmpty();
+    }
+    /**
+     * Returns new endpoints.
+     * @return 
+     */
+    public List<EndpointType> getAdded()
+    {
+        return added;
+    }
+    /**
+     * Returns old endpoints missing from new configuration.
+     * @return 
+     */
+    public List<EndpointType> getRemoved()
+    {
+        return removed;
+    }
+    /**
+     * Returns new endpoints which need restart.
+     * @return 
+     */
+    public List<EndpointType> getRestarted()
+    {
+        return restarted;
+    }
+    /**
+     * Returns new endpoints where only routing has changed.
+     * @return 
+     */
+    public List<EndpointType> getRerouted()
+    {
+        return rerouted;
+    }
+    private Map<String,EndpointType> map(NmeaType nmeaType)
+    {
+        Map<String,EndpointType> map = new LinkedHashMap<>();
+        if (nmeaType.getEndPoints() != null)
+        {
+            for (EndpointType endpointType : nmeaType.getEndPoints().getN2KGatewayOrConsumerEndpointOrLogEndpoint())
+            {
+                if (endpointType.isEnable())
+                {
+                    map.put(endpointType.getName(), endpointType);
+                }
+            }
+        }
+        return map;
+    }
+    private Element toElement(Object type) throws JAXBException
+    {
+        Document document = builder.newDocument();
+        Class<Object> cls = (Class<Object>) type.getClass();
+        marshaller.marshal(new JAXBElement<>(new QName(cls.getSimpleName()), cls, type), document);
+        return document.getDocumentElement();
+    }
+    private static Element strip(Element element, Collection<String> elements, Collection<String> attributes)
+    {
+        Element copy = (Element) element.cloneNode(true);
+        for (String attribute : attributes)
+        {
+            copy.removeAttribute(attribute);
+        }
+        NodeList children = copy.getChildNodes();
+        for (int ii=children.getLength()-1;ii>=0;ii--)
+        {
+            Node child = children.item(ii);
+            if (elements.contains(child.getLocalName()))
+            {
+                copy.removeChild(child);
+            }
+        }
+        return copy;
+    }
+    private static boolean equals(Element e1, Element e2)
+    {
+        return e1.isEqualNode(e2);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ConfigDiff{" + "globalChanged=" + globalChanged + ", added=" + names(added) + ", removed=" + names(removed) + ", restarted=" + names(restarted) + ", rerouted=" + names(rerouted) + '}';
+    }
+    private static List<String> names(List<EndpointType> list)
+    {
+        List<String> names = new ArrayList<>();
+        list.forEach((e)->names.add(e.getName()));
+        return names;
+    }
+}
@@ -16,7 +16,10 @@
  */
 package org.vesalainen.nmea.router;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -39,4 +42,120 @@ public interface DataSourceMXBean
         return 100*getErrorBytes()/getReadBytes();
     }
     String getChannel();
+    /**
+     * Returns number of messages waiting in outbound queue.
+     * @return 
+     */
+    default int getQueueDepth()
+    {
+        return 0;
+    }
+    /**
+     * Returns number of messages dropped because outbound queue was full.
+     * @return 
+     */
+    default long getDropCount()
+    {
+        return 0;
+    }
+    /**
+     * Returns average outbound queue channel write latency in milliseconds.
+     * @return 
+     */
+    default float getAverageWriteLatency()
+    {
+        return 0;
+    }
+    /**
+     * Returns max outbound queue channel write latency in milliseconds.
+     * @return 
+     */
+    default float getMaxWriteLatency()
+    {
+        return 0;
+    }
+    /**
+     * Returns number of datagrams saved by packing several sentences in one 
+     * datagram.
+     * @return 
+     */
+    default long getPacketsSaved()
+    {
+        return 0;
+    }
+    /**
+     * Returns number of notifications dropped because publisher was behind.
+     * @return 
+     */
+    default long getNotificationDropCount()
+    {
+        return 0;
+    }
+    /**
+     * Returns number of sentences passed by decimation for each prefix.
+     * @return 
+     */
+    default Map<String,Long> getDecimationPassCounts()
+    {
+        return Collections.EMPTY_MAP;
+    }
+    /**
+     * Returns number of sentences dropped by decimation for each prefix.
+     * @return 
+     */
+    default Map<String,Long> getDecimationDropCounts()
+    {
+        return Collections.EMPTY_MAP;
+    }
+    /**
+     * Returns read sentences per second as one minute moving average.
+     * @return 
+     */
+    default float getReadRate()
+    {
+        return 0;
+    }
+    /**
+     * Returns written sentences per second as one minute moving average.
+     * @return 
+     */
+    default float getWriteRate()
+    {
+        return 0;
+    }
+    /**
+     * Returns latencies from source read to completed write in milliseconds
+     * at 50, 90, 99 and 99.9 percentiles.
+     * @return 
+     */
+    default List<Float> getLatencyPercentiles()
+    {
+        return Collections.EMPTY_LIST;
+    }
+    /**
+     * Returns max latency from source read to completed write in 
+     * milliseconds.
+     * @return 
+     */
+    default float getLatencyMax()
+    {
+        return 0;
+    }
+    /**
+     * Returns number of recorded latencies.
+     * @return 
+     */
+    default long getLatencyCount()
+    {
+        return 0;
+    }
+    /**
+     * Returns routed sentences per second for each route prefix as one 
+     * minute moving average.
+     * @return 
+     */
+    default Map<String,Float> getRouteRates()
+    {
+        return Collections.EMPTY_MAP;
+    }
 }
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.util.Arrays;
+
+/**
+ * DuplicateSuppressor detects identical sentences received from different 
+ * sources within time window.
+ * 
+ * <p>Sentences are stored as 64-bit hashes in open-addressing hash set with 
+ * fixed capacity. Lookup probes at most MAX_PROBE slots. Expired slots are
+ * reused and if none is free the oldest slot in probe range is evicted. So 
+ * memory use is fixed and duplicates can be missed only when set is full.
+ * 
+ * <p>Complete sentence is hashed. For AIS VDM/VDO sentences talker, 
+ * sequential message id, channel and checksum are left out because they 
+ * differ between receivers.
+ * 
+ * <p>Fragments of multi-sentence AIS messages are never suppressed. Receivers
+ * lose fragments independently, so suppressing fragments one by one could 
+ * pass fragment 1 from one receiver and fragment 2 from another with 
+ * different sequential message ids, which never reassemble.
+ * 
+ * <p>Same sentence from same source is not a duplicate but a repeat, e.g. 
+ * heading which hasn't changed.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public final class DuplicateSuppressor implements DuplicateSuppressorMXBean
+{
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final int MAX_PROBE = 8;
+    private static final DuplicateSuppressor SUPPRESSOR = new DuplicateSuppressor(DEFAULT_CAPACITY);
+    private final long[] hashes;
+    private final long[] times;
+    private final int[] sources;
+    private final int mask;
+    private long lookups;
+    private long hits;
+
+    DuplicateSuppressor(int capacity)
+    {
+        if (Integer.bitCount(capacity) != 1 || capacity < MAX_PROBE)
+        {
+            throw new IllegalArgumentException("capacity="+capacity);
+        }
+        this.hashes = new long[capacity];
+        this.times = new long[capacity];
+        this.sources = new int[capacity];
+        this.mask = capacity - 1;
+    }
+    /**
+     * Returns suppressor used by routes.
+     * @return 
+     */
+    public static DuplicateSuppressor getInstance()
+    {
+        return SUPPRESSOR;
+    }
+    /**
+     * Returns true if same sentence was received from another source within
+     * window. Otherwise sentence is stored.
+     * @param seq Sentence
+     * @param source Source id
+     * @param window Time window in millis
+     * @param now 
+     * @return 
+     */
+    public boolean isDuplicate(CharSequence seq, int source, long window, long now)
+    {
+        if (isFragment(seq))
+        {
+            return false;
+        }
+        long hash = hash(seq);
+        int start = (int) (hash ^ (hash>>>32)) & mask;
+        synchronized(this)
+        {
+            lookups++;
+            int free = -1;
+            int oldest = start;
+            for (int ii=0;ii<MAX_PROBE;ii++)
+            {
+                int index = (start + ii) & mask;
+                long time = times[index];
+                boolean live = hashes[index] != 0 && now - time < window;
+                if (live && hashes[index] == hash)
+                {
+                    if (sources[index] != source)
+                    {
+                        hits++;
+                        return true;
+                    }
+                    times[index] = now;
+                    return false;
+                }
+                if (!live && free == -1)
+                {
+                    free = index;
+                }
+                if (time < times[oldest])
+                {
+                    oldest = index;
+                }
+            }
+            int index = free != -1 ? free : oldest;
+            hashes[index] = hash;
+            times[index] = now;
+            sources[index] = source;
+            return false;
+        }
+    }
+    /**
+     * Clears set and statistics.
+     */
+    public synchronized void clear()
+    {
+        Arrays.fill(hashes, 0);
+        Arrays.fill(times, 0);
+        lookups = 0;
+        hits = 0;
+    }
+
+    @Override
+    public synchronized long getLookups()
+    {
+        return lookups;
+    }
+
+    @Override
+    public synchronized long getDuplicates()
+    {
+        return hits;
+    }
+
+    @Override
+    public synchronized float getHitRatio()
+    {
+        return lookups > 0 ? (float)hits/(float)lookups : 0;
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return hashes.length;
+    }
+
+    @Override
+    public synchronized int getSize()
+    {
+        int size = 0;
+        for (long h : hashes)
+        {
+            if (h != 0)
+            {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public long getMemoryUse()
+    {
+        return (long)hashes.length*(8+8+4);
+    }
+    
+    static long hash(CharSequence seq)
+    {
+        int length = seq.length();
+        int skip1 = -1;
+        int skip2 = -1;
+        int start = 0;
+        boolean ais = isAIS(seq);
+        if (ais)
+        {
+            // !AIVDM,count,number,seq,channel,payload,fill*cs
+            start = 3;
+            int field = 0;
+            for (int ii=0;ii<length;ii++)
+            {
+                if (seq.charAt(ii) == ',')
+                {
+                    field++;
+                    if (field == 3)
+                    {
+                        skip1 = ii+1;
+                    }
+                    if (field == 5)
+                    {
+                        skip2 = ii;
+                        break;
+                    }
+                }
+            }
+            if (skip2 == -1)
+            {
+                skip1 = -1;
+            }
+        }
+        long h = 0xcbf29ce484222325L;
+        for (int ii=start;ii<length;ii++)
+        {
+            if (ii == skip1)
+            {
+                ii = skip2;
+            }
+            char cc = seq.charAt(ii);
+            if (cc == '*' && ais)
+            {
+                break;
+            }
+            h ^= cc;
+            h *= 0x100000001b3L;
+        }
+        h ^= h>>>33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h>>>33;
+        return h != 0 ? h : 1;
+    }
+    /**
+     * Returns true if seq is AIS sentence of message having more than one
+     * fragment.
+     * @param seq
+     * @return 
+     */
+    static boolean isFragment(CharSequence seq)
+    {
+        return 
+                isAIS(seq) &&
+                seq.length() > 8 &&
+                (seq.charAt(7) != '1' || seq.charAt(8) != ',');
+    }
+    private static boolean isAIS(CharSequence seq)
+    {
+        return 
+                seq.length() > 6 &&
+                seq.charAt(0) == '!' &&
+                seq.charAt(3) == 'V' &&
+                seq.charAt(4) == 'D' &&
+                (seq.charAt(5) == 'M' || seq.charAt(5) == 'O');
+    }
+}
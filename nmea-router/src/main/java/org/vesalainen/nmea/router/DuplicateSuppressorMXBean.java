@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public interface DuplicateSuppressorMXBean
+{
+    /**
+     * Returns number of checked sentences.
+     * @return 
+     */
+    long getLookups();
+    /**
+     * Returns number of dropped duplicates.
+     * @return 
+     */
+    long getDuplicates();
+    /**
+     * Returns duplicates / lookups.
+     * @return 
+     */
+    float getHitRatio();
+    /**
+     * Returns number of slots in hash set.
+     * @return 
+     */
+    int getCapacity();
+    /**
+     * Returns number of used slots in hash set. Includes expired.
+     * @return 
+     */
+    int getSize();
+    /**
+     * Returns memory used by hash set in bytes.
+     * @return 
+     */
+    long getMemoryUse();
+}
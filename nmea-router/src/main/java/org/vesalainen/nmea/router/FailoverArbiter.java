@@ -0,0 +1,481 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * FailoverArbiter selects one active source for each sentence prefix and
+ * target set which has backup routes.
+ * 
+ * <p>Arbitration is keyed by prefix and group. Group is interned set of route
+ * targets so that backup routes of e.g. navigation targets don't affect routes
+ * of same prefix to unrelated targets like logger. Routes take part in same 
+ * arbitration only when their target sets are equal.
+ * 
+ * <p>Source is an input endpoint. Each source keeps last seen times, 
+ * continuous presence start times and average intervals in arrays indexed 
+ * by arbitration id. Source can have several routing threads, like
+ * loops of TCP selector endpoint. Last seen time only moves forward with 
+ * compare-and-set and the thread which moved it updates interval. Active 
+ * source of prefix is changed with compare-and-set so that routing a sentence
+ * never locks.
+ * 
+ * <p>Lower rank is preferred. Active source is replaced at once when it has 
+ * not been seen in expire time. Otherwise source must have been present for 
+ * hold time, previous switch must be at least hold time ago and health score 
+ * must differ by margin. Health score is 0 - 1 and is computed from checksum 
+ * error ratio and message rate relative to other source.
+ * 
+ * <p>Prefixes and groups without backup routes are not arbitrated.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.router.NMEAMatcher#getErrorPrecent() 
+ */
+public final class FailoverArbiter implements FailoverArbiterMXBean
+{
+    /**
+     * Score difference needed to switch between sources without rank 
+     * advantage.
+     */
+    public static final float MARGIN = 0.1F;
+    private static final FailoverArbiter ARBITER = new FailoverArbiter();
+    private final Object lock = new Object();
+    private volatile Source[] sources = new Source[0];
+    private volatile Arbitration[][] table = new Arbitration[0][];
+    private volatile Arbitration[] arbitrations = new Arbitration[0];
+    private final Map<Set<String>,Integer> groups = new HashMap<>();
+    private final List<String> groupNames = new ArrayList<>();
+    private final LongAdder switchCount = new LongAdder();
+
+    FailoverArbiter()
+    {
+    }
+    /**
+     * Returns arbiter used by routes.
+     * @return 
+     */
+    public static FailoverArbiter getInstance()
+    {
+        return ARBITER;
+    }
+    /**
+     * Returns source for endpoint. Sources are identified by endpoint name so
+     * that restarted endpoint continues as same source.
+     * @param name Endpoint name
+     * @param errorPercent Checksum error percent of endpoint
+     * @return 
+     */
+    public Source getSource(String name, DoubleSupplier errorPercent)
+    {
+        synchronized(lock)
+        {
+            for (Source source : sources)
+            {
+                if (source.name.equals(name))
+                {
+                    source.errorPercent = errorPercent;
+                    return source;
+                }
+            }
+            Source[] arr = Arrays.copyOf(sources, sources.length+1);
+            Source source = new Source(arr.length-1, name, errorPercent);
+            arr[arr.length-1] = source;
+            sources = arr;
+            return source;
+        }
+    }
+    /**
+     * Returns group id of route targets. Equal target sets have same group.
+     * @param targets
+     * @return 
+     */
+    public int getGroup(Collection<String> targets)
+    {
+        Set<String> set = new TreeSet<>(targets);
+        synchronized(lock)
+        {
+            Integer group = groups.get(set);
+            if (group == null)
+            {
+                group = groupNames.size();
+                groups.put(set, group);
+                groupNames.add(set.toString());
+            }
+            return group;
+        }
+    }
+    /**
+     * Returns true if sentence from source is to be written.
+     * @param source
+     * @param prefixId Prefix id from RoutingTable
+     * @param group Group of route targets
+     * @param rank Route rank or -1 if route is not backed up.
+     * @param expire Time in millis after which missing source is replaced.
+     * @param hold Minimum time in millis between switches.
+     * @param now
+     * @return 
+     * @see org.vesalainen.nmea.router.RoutingTable#getPrefixId(java.lang.CharSequence) 
+     */
+    public boolean accept(Source source, int prefixId, int group, int rank, long expire, long hold, long now)
+    {
+        if (prefixId == 0)
+        {
+            return true;
+        }
+        Arbitration arb = getArbitration(prefixId, group, rank >= 0);
+        if (arb == null)
+        {
+            return true;
+        }
+        int id = arb.id;
+        source.seen(id, Math.max(rank, 0), expire, now);
+        int active = arb.active;
+        if (active == source.id)
+        {
+            return true;
+        }
+        if (active < 0)
+        {
+            return arb.switchTo(active, source.id, now);
+        }
+        Source current = sources[active];
+        if (current.getLastSeen(id)+expire < now)
+        {
+            return arb.switchTo(active, source.id, now);
+        }
+        if (now - arb.switched < hold || now - source.getSince(id) < hold)
+        {
+            return false;
+        }
+        float ref = Math.min(source.getInterval(id), current.getInterval(id));
+        float candidateScore = source.score(id, ref, expire, now);
+        float currentScore = current.score(id, ref, expire, now);
+        boolean better;
+        if (source.getRank(id) < current.getRank(id))
+        {
+            better = candidateScore + MARGIN >= currentScore;
+        }
+        else
+        {
+            better = candidateScore > currentScore + MARGIN;
+        }
+        return better && arb.switchTo(active, source.id, now);
+    }
+
+    @Override
+    public Map<String, String> getActiveSources()
+    {
+        Map<String,String> map = new LinkedHashMap<>();
+        Source[] srcs = sources;
+        for (Arbitration arb : arbitrations)
+        {
+            int active = arb.active;
+            map.put(arb.name, active >= 0 ? srcs[active].name : "");
+        }
+        return map;
+    }
+
+    @Override
+    public List<String> getSourceStatus()
+    {
+        List<String> list = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        Source[] srcs = sources;
+        for (Arbitration arb : arbitrations)
+        {
+            for (Source source : srcs)
+            {
+                long last = source.getLastSeen(arb.id);
+                if (last != 0)
+                {
+                    list.add(String.format("%s %s rank=%d interval=%.0fms seen=%dms ago%s", 
+                            arb.name, 
+                            source.name, 
+                            source.getRank(arb.id),
+                            source.getInterval(arb.id),
+                            now - last,
+                            arb.active == source.id ? " active" : ""
+                    ));
+                }
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public long getSwitchCount()
+    {
+        return switchCount.sum();
+    }
+    
+    private Arbitration getArbitration(int prefixId, int group, boolean create)
+    {
+        Arbitration[][] tbl = table;
+        Arbitration[] row = group < tbl.length ? tbl[group] : null;
+        Arbitration arb = row != null && prefixId < row.length ? row[prefixId] : null;
+        if (arb != null || !create)
+        {
+            return arb;
+        }
+        synchronized(lock)
+        {
+            tbl = table;
+            if (group >= tbl.length)
+            {
+                tbl = Arrays.copyOf(tbl, group+1);
+            }
+            else
+            {
+                tbl = Arrays.copyOf(tbl, tbl.length);
+            }
+            row = tbl[group];
+            if (row == null)
+            {
+                row = new Arbitration[Math.max(prefixId+1, 64)];
+            }
+            else
+            {
+                if (prefixId >= row.length)
+                {
+                    row = Arrays.copyOf(row, Math.max(prefixId+1, 2*row.length));
+                }
+                else
+                {
+                    row = Arrays.copyOf(row, row.length);
+                }
+            }
+            arb = row[prefixId];
+            if (arb == null)
+            {
+                Arbitration[] arr = arbitrations;
+                arb = new Arbitration(arr.length, prefixId, groupNames.get(group));
+                row[prefixId] = arb;
+                tbl[group] = row;
+                arr = Arrays.copyOf(arr, arr.length+1);
+                arr[arr.length-1] = arb;
+                arbitrations = arr;
+                table = tbl;
+            }
+            return arb;
+        }
+    }
+    
+    private final class Arbitration
+    {
+        private final int id;
+        private final String name;
+        volatile int active = -1;   // package private for updater
+        private volatile long switched;
+
+        public Arbitration(int id, int prefixId, String targets)
+        {
+            this.id = id;
+            this.name = RoutingTable.getPrefix(prefixId)+"->"+targets;
+        }
+        
+        private boolean switchTo(int expect, int source, long now)
+        {
+            if (ACTIVE.compareAndSet(this, expect, source))
+            {
+                switched = now;
+                switchCount.increment();
+                return true;
+            }
+            return active == source;
+        }
+    }
+    private static final AtomicIntegerFieldUpdater<Arbitration> ACTIVE = AtomicIntegerFieldUpdater.newUpdater(Arbitration.class, "active");
+    /**
+     * Input endpoint as source of sentences.
+     */
+    public static final class Source
+    {
+        private final int id;
+        private final String name;
+        private volatile DoubleSupplier errorPercent;
+        private volatile Slots slots = new Slots(64);
+
+        private Source(int id, String name, DoubleSupplier errorPercent)
+        {
+            this.id = id;
+            this.name = name;
+            this.errorPercent = errorPercent;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public int getId()
+        {
+            return id;
+        }
+        
+        /**
+         * Updates times of arbitration. If slots were replaced by grow while 
+         * updating, update is repeated on new slots. Update is applied 
+         * only if it was not copied.
+         * @param arbId
+         * @param rank
+         * @param expire
+         * @param now 
+         */
+        private void seen(int arbId, int rank, long expire, long now)
+        {
+            Slots s = slots;
+            if (arbId >= s.ranks.length())
+            {
+                s = grow(arbId);
+            }
+            while (true)
+            {
+                update(s, arbId, rank, expire, now);
+                Slots n = slots;
+                if (n == s)
+                {
+                    return;
+                }
+                s = n;
+            }
+        }
+        private void update(Slots s, int arbId, int rank, long expire, long now)
+        {
+            s.ranks.set(arbId, rank);
+            int index = 2*arbId;
+            long last = s.times.get(index);
+            while (now > last)
+            {
+                if (s.times.compareAndSet(index, last, now))
+                {
+                    long dt = now - last;
+                    if (last == 0 || dt > expire)
+                    {
+                        s.times.set(index+1, now);
+                    }
+                    else
+                    {
+                        int bits = s.intervals.get(arbId);
+                        float interval = Float.intBitsToFloat(bits);
+                        float next = interval == 0 ? dt : interval + (dt - interval) / 8;
+                        while (!s.intervals.compareAndSet(arbId, bits, Float.floatToRawIntBits(next)))
+                        {
+                            bits = s.intervals.get(arbId);
+                            interval = Float.intBitsToFloat(bits);
+                            next = interval == 0 ? dt : interval + (dt - interval) / 8;
+                        }
+                    }
+                    return;
+                }
+                last = s.times.get(index);
+            }
+        }
+        private synchronized Slots grow(int arbId)
+        {
+            Slots s = slots;
+            int len = s.ranks.length();
+            if (arbId >= len)
+            {
+                Slots n = new Slots(Math.max(arbId+1, 2*len));
+                for (int ii=0;ii<len;ii++)
+                {
+                    n.times.set(2*ii, s.times.get(2*ii));
+                    n.times.set(2*ii+1, s.times.get(2*ii+1));
+                    n.intervals.set(ii, s.intervals.get(ii));
+                    n.ranks.set(ii, s.ranks.get(ii));
+                }
+                slots = n;
+                s = n;
+            }
+            return s;
+        }
+        private long getLastSeen(int arbId)
+        {
+            Slots s = slots;
+            return arbId < s.ranks.length() ? s.times.get(2*arbId) : 0;
+        }
+        private long getSince(int arbId)
+        {
+            Slots s = slots;
+            return arbId < s.ranks.length() ? s.times.get(2*arbId+1) : 0;
+        }
+        private float getInterval(int arbId)
+        {
+            Slots s = slots;
+            return arbId < s.ranks.length() ? Float.intBitsToFloat(s.intervals.get(arbId)) : 0;
+        }
+        private int getRank(int arbId)
+        {
+            Slots s = slots;
+            return arbId < s.ranks.length() ? s.ranks.get(arbId) : 0;
+        }
+        /**
+         * Returns 0 - 1. 0 if source is missing.
+         * @param arbId
+         * @param ref Reference interval
+         * @param expire
+         * @param now
+         * @return 
+         */
+        private float score(int arbId, float ref, long expire, long now)
+        {
+            long last = getLastSeen(arbId);
+            if (last == 0 || last+expire < now)
+            {
+                return 0;
+            }
+            float err = (float) errorPercent.getAsDouble();
+            float score = 1 - err/(100+err);
+            float interval = getInterval(arbId);
+            if (interval > ref && ref > 0)
+            {
+                score *= ref/interval;
+            }
+            return score;
+        }
+    }
+    /**
+     * Times has last seen and since pairs. Intervals are float bits.
+     */
+    private static final class Slots
+    {
+        private final AtomicLongArray times;
+        private final AtomicIntegerArray intervals;
+        private final AtomicIntegerArray ranks;
+
+        private Slots(int size)
+        {
+            this.times = new AtomicLongArray(2*size);
+            this.intervals = new AtomicIntegerArray(size);
+            this.ranks = new AtomicIntegerArray(size);
+        }
+        
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public interface FailoverArbiterMXBean
+{
+    /**
+     * Returns active source name for each arbitrated prefix and target set.
+     * Key is prefix->[targets].
+     * @return 
+     */
+    Map<String,String> getActiveSources();
+    /**
+     * Returns status lines of sources of arbitrated prefixes and target sets.
+     * @return 
+     */
+    List<String> getSourceStatus();
+    /**
+     * Returns number of active source switches.
+     * @return 
+     */
+    long getSwitchCount();
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram records microsecond latencies into fixed number of 
+ * log-linear buckets. Each power of two is divided into 16 buckets, so the 
+ * relative error of recorded value is less than 1/16. Memory use is fixed and
+ * recording doesn't allocate or lock.
+ * 
+ * <p>Values less than 16 are recorded exactly. Values greater than MAX_VALUE
+ * are recorded as MAX_VALUE.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public final class LatencyHistogram
+{
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1<<SUB_BITS;
+    private static final int MAX_BITS = 36;
+    /**
+     * Max recordable value about 19 hours in microseconds.
+     */
+    public static final long MAX_VALUE = (1L<<MAX_BITS)-1;
+    private static final int SIZE = index(MAX_VALUE)+1;
+    private final AtomicLongArray counts = new AtomicLongArray(SIZE);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+    /**
+     * Records latency from readNanos to now. Zero readNanos is ignored.
+     * @param readNanos System.nanoTime() of read.
+     */
+    public void recordSince(long readNanos)
+    {
+        if (readNanos != 0)
+        {
+            record((System.nanoTime() - readNanos)/1000);
+        }
+    }
+    /**
+     * Records value
+     * @param micros 
+     */
+    public void record(long micros)
+    {
+        long v = Math.min(Math.max(micros, 0), MAX_VALUE);
+        counts.incrementAndGet(index(v));
+        sum.add(v);
+        max.accumulate(v);
+    }
+    /**
+     * Returns number of recorded values.
+     * @return 
+     */
+    public long getCount()
+    {
+        long count = 0;
+        for (int ii=0;ii<SIZE;ii++)
+        {
+            count += counts.get(ii);
+        }
+        return count;
+    }
+    /**
+     * Returns mean of recorded values in microseconds or 0 if empty.
+     * @return 
+     */
+    public double getMean()
+    {
+        long count = getCount();
+        return count > 0 ? (double)sum.sum()/count : 0;
+    }
+    /**
+     * Returns max recorded value in microseconds.
+     * @return 
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+    /**
+     * Returns value at percentile. Returned value is the highest value of the
+     * bucket, but not more than max.
+     * @param percentile 0 - 100
+     * @return Microseconds or 0 if empty.
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        if (percentile < 0 || percentile > 100)
+        {
+            throw new IllegalArgumentException("percentile="+percentile);
+        }
+        long[] snapshot = new long[SIZE];
+        long count = 0;
+        for (int ii=0;ii<SIZE;ii++)
+        {
+            snapshot[ii] = counts.get(ii);
+            count += snapshot[ii];
+        }
+        if (count == 0)
+        {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile*count/100));
+        long acc = 0;
+        for (int ii=0;ii<SIZE;ii++)
+        {
+            acc += snapshot[ii];
+            if (acc >= target)
+            {
+                return Math.min(highest(ii), getMax());
+            }
+        }
+        return getMax();
+    }
+    /**
+     * Clears recorded values. Values recorded concurrently can be lost.
+     */
+    public void reset()
+    {
+        for (int ii=0;ii<SIZE;ii++)
+        {
+            counts.set(ii, 0);
+        }
+        sum.reset();
+        max.reset();
+    }
+    static int index(long value)
+    {
+        if (value < SUB_COUNT)
+        {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return ((shift+1)<<SUB_BITS) + (int)((value>>>shift) & (SUB_COUNT-1));
+    }
+    static long lowest(int index)
+    {
+        if (index < SUB_COUNT)
+        {
+            return index;
+        }
+        int shift = (index>>SUB_BITS)-1;
+        return ((long)(SUB_COUNT + (index & (SUB_COUNT-1))))<<shift;
+    }
+    static long highest(int index)
+    {
+        if (index < SUB_COUNT)
+        {
+            return index;
+        }
+        int shift = (index>>SUB_BITS)-1;
+        return lowest(index) + (1L<<shift) - 1;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.vesalainen.util.logging.JavaLogging;
+
+/**
+ * MetricsServer serves router metrics as plain text from loopback address. 
+ * Each line is metric name, labels and value as in Prometheus text format.
+ * <pre>
+ * nmea_router_read_rate{endpoint="gps"} 10.0
+ * nmea_router_latency_ms{endpoint="nmea",quantile="0.99"} 0.412
+ * </pre>
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.router.DataSourceMXBean
+ */
+public class MetricsServer extends JavaLogging
+{
+    public static final String PATH = "/metrics";
+    private static final String PREFIX = "nmea_router_";
+    private static final double[] QUANTILES = new double[] {0.5, 0.9, 0.99, 0.999};
+    private final int port;
+    private HttpServer server;
+
+    public MetricsServer(int port)
+    {
+        super(MetricsServer.class);
+        this.port = port;
+    }
+
+    public void start() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(PATH, this::handle);
+        server.start();
+        config("metrics at http://%s%s", server.getAddress(), PATH);
+    }
+
+    /**
+     * Returns bound address or null if not started.
+     * @return 
+     */
+    public InetSocketAddress getAddress()
+    {
+        return server != null ? server.getAddress() : null;
+    }
+
+    public void stop()
+    {
+        if (server != null)
+        {
+            server.stop(0);
+            server = null;
+            config("metrics stopped");
+        }
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            if (!"GET".equals(exchange.getRequestMethod()))
+            {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = getMetrics().getBytes(UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody())
+            {
+                os.write(body);
+            }
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+    /**
+     * Returns metrics of running endpoints.
+     * @return 
+     */
+    public static String getMetrics()
+    {
+        StringBuilder sb = new StringBuilder();
+        append(sb, new ArrayList<>(RoutingTable.getEndpoints()));
+        return sb.toString();
+    }
+    static void append(StringBuilder sb, Collection<? extends DataSourceMXBean> sources)
+    {
+        for (DataSourceMXBean ds : sources)
+        {
+            String lbl = "endpoint=\""+escape(ds.getName())+"\"";
+            metric(sb, "read_total", lbl, ds.getReadCount());
+            metric(sb, "read_bytes_total", lbl, ds.getReadBytes());
+            metric(sb, "read_rate", lbl, ds.getReadRate());
+            metric(sb, "error_bytes_total", lbl, ds.getErrorBytes());
+            metric(sb, "write_total", lbl, ds.getWriteCount());
+            metric(sb, "write_bytes_total", lbl, ds.getWriteBytes());
+            metric(sb, "write_rate", lbl, ds.getWriteRate());
+            metric(sb, "queue_depth", lbl, ds.getQueueDepth());
+            metric(sb, "drop_total", lbl, ds.getDropCount());
+            List<Float> percentiles = ds.getLatencyPercentiles();
+            for (int ii=0;ii<QUANTILES.length && ii<percentiles.size();ii++)
+            {
+                metric(sb, "latency_ms", lbl+",quantile=\""+QUANTILES[ii]+"\"", percentiles.get(ii));
+            }
+            metric(sb, "latency_ms_max", lbl, ds.getLatencyMax());
+            metric(sb, "latency_count", lbl, ds.getLatencyCount());
+            for (Map.Entry<String, Float> e : ds.getRouteRates().entrySet())
+            {
+                metric(sb, "route_rate", lbl+",route=\""+escape(e.getKey())+"\"", e.getValue());
+            }
+        }
+    }
+    /**
+     * Returns latency percentiles which are returned by 
+     * DataSourceMXBean.getLatencyPercentiles.
+     * @return 
+     */
+    public static double[] getQuantiles()
+    {
+        return QUANTILES.clone();
+    }
+    private static void metric(StringBuilder sb, String name, String labels, long value)
+    {
+        sb.append(PREFIX).append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+    private static void metric(StringBuilder sb, String name, String labels, float value)
+    {
+        sb.append(PREFIX).append(name).append('{').append(labels).append("} ").append(String.format(Locale.US, "%.3f", value)).append('\n');
+    }
+    private static String escape(String label)
+    {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
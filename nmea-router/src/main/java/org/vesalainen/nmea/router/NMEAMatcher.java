@@ -16,42 +16,85 @@
  */
 package org.vesalainen.nmea.router;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.zip.Checksum;
-import org.vesalainen.parsers.nmea.NMEAChecksum;
-import org.vesalainen.regex.Regex;
-import org.vesalainen.regex.WildcardMatcher;
+import java.util.Map;
+import org.vesalainen.util.Matcher;
 
 /**
- *
+ * NMEAMatcher matches NMEA sentences starting with one of prefix expressions.
+ * Prefixes and framing states (Data, Checksum1, Checksum2, Cr, Lf) are 
+ * compiled into single transition table with 256 entries per state. Prefix 
+ * expressions can contain '?' which matches any character.
+ * 
+ * <p>Checksum is xor of characters between start character and '*'.
+ * 
+ * <p>Bulk mode scan method skips data part of sentence 8 bytes at a time 
+ * searching '*' and control characters and accumulating checksum with 
+ * word xor.
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @param <T>
  */
-public class NMEAMatcher<T> extends WildcardMatcher<T>
+public class NMEAMatcher<T> implements Matcher<T>
 {
-    enum State {Prefix, Data, Checksum1, Checksum2, Cr, Lf};
-    private State state = State.Prefix;
-    private final Checksum checksum;
+    private static final int ERROR = -1;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long SPACES = 0x2020202020202020L;
+    private static final long STARS = 0x2a2a2a2a2a2a2a2aL;
+    private static final byte[] HEX = new byte[256];
+    private final List<String> expressions = new ArrayList<>();
+    private final List<T> routes = new ArrayList<>();
+    private int[] table;
+    private int dataState;
+    private int checksum1State;
+    private int checksum2State;
+    private int crState;
+    private int lfState;
+    private int state;
     private int cs;
     private float matches;
     private boolean parsing;
     private float errors;
     private T matched;
-    private final List<T> routes = new ArrayList<>();
+    private Status scanStatus;
 
+    static
+    {
+        for (int ii=0;ii<256;ii++)
+        {
+            HEX[ii] = (byte) Character.digit(ii, 16);
+        }
+    }
     public NMEAMatcher()
     {
-        this.checksum = new NMEAChecksum();
     }
 
-    @Override
-    public NMEAMatcher<T> addExpression(String expr, T attach, Regex.Option... options)
+    /**
+     * Adds prefix expression.
+     * @param expr Prefix. '?' matches any character.
+     * @param attach Returned by getMatched when sentence matches.
+     * @return 
+     */
+    public NMEAMatcher<T> addExpression(String expr, T attach)
     {
-        super.addExpression(expr, attach, options);
+        expressions.add(expr);
         routes.add(attach);
+        table = null;
         return this;
     }
 
+    /**
+     * Builds transition table. If not called table is built at first match.
+     */
+    public void compile()
+    {
+        build();
+    }
+
     public List<T> getRoutes()
     {
         return routes;
@@ -74,76 +117,159 @@ public class NMEAMatcher<T> extends WildcardMatcher<T>
         }
         return 100*errors/matches;
     }
+    /**
+     * Matches one byte.
+     * @param cc
+     * @return 
+     */
     @Override
     public Status match(int cc)
     {
-        checksum.update(cc);
-        switch (state)
+        if (table == null)
         {
-            case Prefix:
-                Status status = super.match(cc);
-                switch (status)
-                {
-                    case Match:
-                        matched = super.getMatched();
-                        state = State.Data;
-                        parsing = true;
-                        return Status.WillMatch;
-                    case Error:
-                        return error();
-                }
-                return status;
-            case Data:
-                switch (cc)
-                {
-                    case '*':
-                        cs = (int) checksum.getValue();
-                        state = State.Checksum1;
-                        return Status.WillMatch;
-                    case '\r':
-                    case '\n':
-                    return error();
-                    default:
-                        if (cc < ' ' || cc > '~')
-                        {
-                            return error();
-                        }
-                        return Status.WillMatch;
-                }
-            case Checksum1:
-                if ((cs>>4) != Character.digit(cc, 16))
+            build();
+        }
+        int b = cc & 0xff;
+        int st = state;
+        int next = table[(st<<8)|b];
+        if (next == ERROR)
+        {
+            return error();
+        }
+        if (st < dataState)
+        {
+            if (st == 0)
+            {
+                cs = 0;
+            }
+            else
+            {
+                cs ^= b;
+            }
+            if (next < 0)
+            {
+                matched = routes.get(-next-2);
+                state = dataState;
+                parsing = true;
+                return Status.WillMatch;
+            }
+            state = next;
+            return Status.Ok;
+        }
+        if (st == dataState)
+        {
+            if (next == dataState)
+            {
+                cs ^= b;
+            }
+        }
+        else
+        {
+            if (st == checksum1State)
+            {
+                if ((cs>>4) != HEX[b])
                 {
                     return error();
                 }
-                state = State.Checksum2;
-                return Status.WillMatch;
-            case Checksum2:
-                if ((cs&0xf) != Character.digit(cc, 16))
+            }
+            else
+            {
+                if (st == checksum2State)
                 {
-                    return error();
+                    if ((cs&0xf) != HEX[b])
+                    {
+                        return error();
+                    }
                 }
-                state = State.Cr;
-                return Status.WillMatch;
-            case Cr:
-                if (cc != '\r')
+                else
                 {
-                    return error();
+                    if (st == lfState)
+                    {
+                        clear();
+                        matches++;
+                        return Status.Match;
+                    }
                 }
-                state = State.Lf;
-                return Status.WillMatch;
-            case Lf:
-                if (cc != '\n')
+            }
+        }
+        state = next;
+        return Status.WillMatch;
+    }
+    /**
+     * Scans bytes from off to end and stops after first byte which results
+     * Error or Match. Returned status is available from getScanStatus. If no
+     * such byte is found end is returned and scan status is Ok.
+     * @param bb
+     * @param off
+     * @param end
+     * @return Index after the last scanned byte.
+     */
+    public int scan(ByteBuffer bb, int off, int end)
+    {
+        int ii = off;
+        while (ii < end)
+        {
+            if (state == dataState && table != null)
+            {
+                ii = scanData(bb, ii, end);
+                if (ii == end)
                 {
-                    return error();
+                    break;
                 }
-                clear();
-                matches++;
-                return Status.Match;
-            default:
-                throw new IllegalArgumentException(state+" unknown");
+            }
+            Status status = match(bb.get(ii++));
+            if (status == Status.Error || status == Status.Match)
+            {
+                scanStatus = status;
+                return ii;
+            }
         }
+        scanStatus = Status.Ok;
+        return end;
     }
-
+    /**
+     * Returns status of last scan.
+     * @return Error, Match or Ok
+     */
+    public Status getScanStatus()
+    {
+        return scanStatus;
+    }
+    
+    private int scanData(ByteBuffer bb, int ii, int end)
+    {
+        long x = 0;
+        while (ii + 8 <= end)
+        {
+            long w = bb.getLong(ii);
+            long less = (w - SPACES) & ~w & HIGHS;
+            long more = ((w + ONES) | w) & HIGHS;
+            long s = w ^ STARS;
+            long star = (s - ONES) & ~s & HIGHS;
+            if ((less | more | star) != 0)
+            {
+                break;
+            }
+            x ^= w;
+            ii += 8;
+        }
+        x ^= x>>>32;
+        x ^= x>>>16;
+        x ^= x>>>8;
+        cs ^= (int) x & 0xff;
+        while (ii < end)
+        {
+            int b = bb.get(ii) & 0xff;
+            if (b == '*' || b < ' ' || b > '~')
+            {
+                break;
+            }
+            cs ^= b;
+            ii++;
+        }
+        return ii;
+    }
+    
     @Override
     public T getMatched()
     {
@@ -163,9 +289,115 @@ public class NMEAMatcher<T> extends WildcardMatcher<T>
     @Override
     public void clear()
     {
-        super.clear();
-        state = State.Prefix;
+        state = 0;
         parsing = false;
     }
-    
+    /**
+     * Builds transition table. Prefix states are subsets of (expression, 
+     * position) pairs. Negative entry -2-index means that expression index
+     * matched.
+     */
+    private void build()
+    {
+        int count = expressions.size();
+        byte[][] exprs = new byte[count][];
+        for (int ii=0;ii<count;ii++)
+        {
+            exprs[ii] = expressions.get(ii).getBytes();
+            if (exprs[ii].length == 0)
+            {
+                throw new IllegalArgumentException("empty expression");
+            }
+        }
+        List<int[]> states = new ArrayList<>();
+        Map<String,Integer> stateMap = new HashMap<>();
+        List<int[]> rows = new ArrayList<>();
+        int[] start = new int[count];   // position of each expression, -1 = dead
+        states.add(start);
+        stateMap.put(Arrays.toString(start), 0);
+        for (int si=0;si<states.size();si++)
+        {
+            int[] positions = states.get(si);
+            int[] row = new int[256];
+            for (int b=0;b<256;b++)
+            {
+                int[] next = new int[count];
+                int matchedIndex = -1;
+                boolean alive = false;
+                for (int ei=0;ei<count;ei++)
+                {
+                    int pos = positions[ei];
+                    byte[] expr = exprs[ei];
+                    if (pos >= 0 && (expr[pos] == '?' || (expr[pos]&0xff) == b))
+                    {
+                        if (pos+1 == expr.length)
+                        {
+                            if (matchedIndex == -1)
+                            {
+                                matchedIndex = ei;
+                            }
+                        }
+                        next[ei] = pos+1;
+                        alive = true;
+                    }
+                    else
+                    {
+                        next[ei] = -1;
+                    }
+                }
+                if (matchedIndex != -1)
+                {
+                    row[b] = -2-matchedIndex;
+                }
+                else
+                {
+                    if (alive)
+                    {
+                        String key = Arrays.toString(next);
+                        Integer ns = stateMap.get(key);
+                        if (ns == null)
+                        {
+                            ns = states.size();
+                            states.add(next);
+                            stateMap.put(key, ns);
+                        }
+                        row[b] = ns;
+                    }
+                    else
+                    {
+                        row[b] = ERROR;
+                    }
+                }
+            }
+            rows.add(row);
+        }
+        dataState = rows.size();
+        checksum1State = dataState+1;
+        checksum2State = dataState+2;
+        crState = dataState+3;
+        lfState = dataState+4;
+        int[] tbl = new int[(lfState+1)<<8];
+        for (int ii=0;ii<rows.size();ii++)
+        {
+            System.arraycopy(rows.get(ii), 0, tbl, ii<<8, 256);
+        }
+        Arrays.fill(tbl, dataState<<8, (lfState+1)<<8, ERROR);
+        for (int b=' ';b<='~';b++)
+        {
+            tbl[(dataState<<8)|b] = dataState;
+        }
+        tbl[(dataState<<8)|'*'] = checksum1State;
+        for (int b=0;b<256;b++)
+        {
+            if (HEX[b] != -1)
+            {
+                tbl[(checksum1State<<8)|b] = checksum2State;
+                tbl[(checksum2State<<8)|b] = crState;
+            }
+        }
+        tbl[(crState<<8)|'\r'] = lfState;
+        tbl[(lfState<<8)|'\n'] = 0;
+        table = tbl;
+        clear();
+    }
 }
@@ -20,9 +20,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ScatteringByteChannel;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import org.vesalainen.nio.RingByteBuffer;
 import org.vesalainen.util.Matcher;
@@ -30,17 +32,26 @@ import org.vesalainen.util.function.IOConsumer;
 import org.vesalainen.util.logging.JavaLogging;
 
 /**
- *
+ * NMEAReader reads channel into ring buffer and calls onOk for each matched
+ * sentence and onError for rejected input.
+ * 
+ * <p>In bulk mode input is first read into array which is scanned with 
+ * NMEAMatcher.scan and then transferred to ring. Results are the same as in
+ * byte mode.
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.router.NMEAMatcher#scan(java.nio.ByteBuffer, int, int) 
  */
 public class NMEAReader extends JavaLogging
 {
     private String name;
     private NMEAMatcher matcher;
+    private final AtomicReference<NMEAMatcher> nextMatcher = new AtomicReference<>();
     private ScatteringByteChannel channel;
     private int bufferSize;
     private OkConsumer onOk;
     private IOConsumer<Supplier<byte[]>> onError;
+    private boolean bulk;
+    private long readNanos;
 
     public NMEAReader(String name, NMEAMatcher matcher, ScatteringByteChannel channel, int bufSize, OkConsumer onOk, IOConsumer<Supplier<byte[]>> onError)
     {
@@ -57,8 +68,54 @@ public class NMEAReader extends JavaLogging
         this.onError = onError;
     }
     
+    /**
+     * Sets bulk mode.
+     * @param bulk 
+     */
+    public void setBulk(boolean bulk)
+    {
+        this.bulk = bulk;
+    }
+
+    public boolean isBulk()
+    {
+        return bulk;
+    }
+    /**
+     * Replaces matcher. New matcher is taken into use at the next sentence
+     * boundary so that sentence being read is matched with the old one.
+     * @param matcher 
+     */
+    public void setMatcher(NMEAMatcher matcher)
+    {
+        Objects.requireNonNull(matcher, "matcher");
+        nextMatcher.set(matcher);
+    }
+    /**
+     * Returns matcher which matched the sentence passed to onOk.
+     * @return 
+     */
+    public NMEAMatcher getMatcher()
+    {
+        return matcher;
+    }
+    /**
+     * Returns System.nanoTime() of last channel read. Sentences passed to
+     * onOk were received in that read.
+     * @return 
+     */
+    public long getReadNanos()
+    {
+        return readNanos;
+    }
+    
     public void read() throws IOException
     {
+        if (bulk)
+        {
+            readBulk();
+            return;
+        }
         boolean mark = true;
         RingByteBuffer ring = new RingByteBuffer(bufferSize, true);
         ByteArrayOutputStream errInput = new ByteArrayOutputStream();
@@ -71,6 +128,7 @@ public class NMEAReader extends JavaLogging
             }
             int count = ring.fill(channel);
             long timestamp = System.currentTimeMillis();
+            readNanos = System.nanoTime();
             finest("handle %s read %d bytes", name, count);
             if (count == 0)
             {
@@ -111,12 +169,154 @@ public class NMEAReader extends JavaLogging
                         onOk.apply(ring, timestamp);
                         mark = true;
                         ring.discard();
+                        swapMatcher();
                         break;
                 }
             }
         }
     }
 
+    private void readBulk() throws IOException
+    {
+        boolean mark = true;
+        RingByteBuffer ring = new RingByteBuffer(bufferSize, true);
+        ByteArrayOutputStream errInput = new ByteArrayOutputStream();
+        ByteBuffer scratch = ByteBuffer.allocate(bufferSize);
+        scratch.flip();
+        ArrayChannel scratchChannel = new ArrayChannel(scratch);
+        long timestamp = 0;
+        while (true)
+        {
+            if (!scratch.hasRemaining())
+            {
+                scratch.clear();
+                int count = channel.read(scratch);
+                timestamp = System.currentTimeMillis();
+                readNanos = System.nanoTime();
+                scratch.flip();
+                finest("handle %s read %d bytes", name, count);
+                if (count == 0)
+                {
+                    throw new IOException(name+" return 0 in read");
+                }
+                if (count == -1)
+                {
+                    throw new EOFException(name+" "+channel);
+                }
+            }
+            if (ring.isFull())
+            {
+                severe("%s buffer is too small %d", name, bufferSize);
+                throw new BufferUnderflowException();
+            }
+            int start = scratch.position();
+            ring.fill(scratchChannel);
+            int end = scratch.position();
+            while (start < end)
+            {
+                int next = matcher.scan(scratch, start, end);
+                Matcher.Status match = matcher.getScanStatus();
+                int okEnd = match == Matcher.Status.Ok ? next : next - 1;
+                if (okEnd > start)
+                {
+                    ring.get(mark);
+                    if (mark && errInput.size()> 0)
+                    {
+                        onError.apply(errInput::toByteArray);
+                        errInput.reset();
+                    }
+                    mark = false;
+                    for (int ii=start+1;ii<okEnd;ii++)
+                    {
+                        ring.get(false);
+                    }
+                }
+                switch (match)
+                {
+                    case Error:
+                        byte b = ring.get(mark);
+                        if (ring.length() > 1)
+                        {
+                            ring.chars().forEach(errInput::write);
+                        }
+                        else
+                        {
+                            errInput.write(b);
+                        }
+                        mark = true;
+                        break;
+                    case Match:
+                        ring.get(mark);
+                        onOk.apply(ring, timestamp);
+                        mark = true;
+                        ring.discard();
+                        swapMatcher();
+                        break;
+                }
+                start = next;
+            }
+        }
+    }
+    private void swapMatcher()
+    {
+        if (nextMatcher.get() != null)
+        {
+            matcher = nextMatcher.getAndSet(null);
+            config("%s matcher replaced", name);
+        }
+    }
+    /**
+     * Reads from array in bulk mode
+     */
+    private static class ArrayChannel implements ScatteringByteChannel
+    {
+        private final ByteBuffer array;
+
+        public ArrayChannel(ByteBuffer array)
+        {
+            this.array = array;
+        }
+        
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException
+        {
+            long count = 0;
+            for (int ii=0;ii<length;ii++)
+            {
+                count += read(dsts[offset+ii]);
+            }
+            return count;
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts) throws IOException
+        {
+            return read(dsts, 0, dsts.length);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException
+        {
+            int count = Math.min(dst.remaining(), array.remaining());
+            int limit = array.limit();
+            array.limit(array.position()+count);
+            dst.put(array);
+            array.limit(limit);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+        }
+        
+    }
     @FunctionalInterface
     public interface OkConsumer
     {
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RateMeter counts events and calculates one minute exponentially weighted 
+ * average rate. Marking is lock free. Rate is updated lazily when it is read
+ * and at most once in a second, so no timer is needed. If rate is not read
+ * for a long time the next read returns close to the average of that period.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public final class RateMeter
+{
+    private static final long INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    private static final double WINDOW = TimeUnit.MINUTES.toNanos(1);
+    private final LongAdder count = new LongAdder();
+    private long lastTime;
+    private long lastCount;
+    private double rate;
+    private boolean initialized;
+
+    public RateMeter()
+    {
+        this(System.nanoTime());
+    }
+
+    RateMeter(long now)
+    {
+        this.lastTime = now;
+    }
+    /**
+     * Counts one event
+     */
+    public void mark()
+    {
+        count.increment();
+    }
+    /**
+     * Returns total number of events.
+     * @return 
+     */
+    public long getCount()
+    {
+        return count.sum();
+    }
+    /**
+     * Returns events per second.
+     * @return 
+     */
+    public float getRate()
+    {
+        return getRate(System.nanoTime());
+    }
+
+    synchronized float getRate(long now)
+    {
+        long elapsed = now - lastTime;
+        if (elapsed >= INTERVAL)
+        {
+            long cnt = count.sum();
+            double instant = (cnt - lastCount)*1e9/elapsed;
+            if (initialized)
+            {
+                double alpha = 1 - Math.exp(-elapsed/WINDOW);
+                rate += alpha*(instant - rate);
+            }
+            else
+            {
+                rate = instant;
+                initialized = true;
+            }
+            lastCount = cnt;
+            lastTime = now;
+        }
+        return (float) rate;
+    }
+}
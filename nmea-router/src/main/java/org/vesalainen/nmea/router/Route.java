@@ -24,8 +24,6 @@ import java.util.stream.Collectors;
 import org.vesalainen.nio.RingByteBuffer;
 import org.vesalainen.nmea.jaxb.router.RouteType;
 import org.vesalainen.nmea.router.endpoint.Endpoint;
-import org.vesalainen.util.LongMap;
-import org.vesalainen.util.LongReference;
 import org.vesalainen.util.logging.JavaLogging;
 
 /**
@@ -34,39 +32,74 @@ import org.vesalainen.util.logging.JavaLogging;
  */
 public final class Route extends JavaLogging
 {
-    private static final LongMap<String> PREFIX_MAP = new LongMap<>();
     private final List<String> targetList;
-    private boolean backup;
-    private long lastWrote;
-    private List<Route> backupSources;
+    private final int group;
+    private volatile Snapshot snapshot;
+    private int rank = -1;
     private long expireTime = 1500;
+    private long holdTime = 5000;
+    private long dedupWindow;
     private int count;
     private int backupCount;
     private String expression;
+    private final RateMeter rate;
 
     Route() // for test
     {
         super(Route.class);
         this.targetList = null;
+        this.group = 0;
+        this.rate = new RateMeter();
     }
     
+    /**
+     * Creates route
+     * @param expression
+     * @param routeType
+     * @param defaultDedupWindow Endpoint default duplicate window or null
+     * @param rate Counts routed sentences. Can be shared by routes.
+     */
     @SuppressWarnings("empty-statement")
-    public Route(String expression, RouteType routeType)
+    public Route(String expression, RouteType routeType, Long defaultDedupWindow, RateMeter rate)
     {
         super(Route.class);
         this.expression = expression;
+        this.rate = rate;
         List<String> target = routeType.getTarget();
         targetList = target != null ? target : Collections.EMPTY_LIST;
+        group = FailoverArbiter.getInstance().getGroup(targetList);
         Boolean b = routeType.isBackup();
-        if (b != null)
+        if (b != null && b)
         {
-            backup = b;
+            rank = 1;
+        }
+        Integer r = routeType.getRank();
+        if (r != null)
+        {
+            rank = r;
         }
         Long expire = routeType.getExpire();
         if (expire != null)
         {
             expireTime = expire;
         }
+        Long hold = routeType.getHoldTime();
+        if (hold != null)
+        {
+            holdTime = hold;
+        }
+        Long dedup = routeType.getDedupWindow();
+        if (dedup != null)
+        {
+            dedupWindow = dedup;
+        }
+        else
+        {
+            if (defaultDedupWindow != null)
+            {
+                dedupWindow = defaultDedupWindow;
+            }
+        }
     }
 
     public String getExpression()
@@ -74,42 +107,96 @@ public final class Route extends JavaLogging
         return expression;
     }
 
-    public final void write(Endpoint src, String prefix, RingByteBuffer ring) throws IOException
+    /**
+     * Writes sentence to running target endpoints. Sentence is copied once to
+     * SharedSentence for targets which hold it after write. If prefix has 
+     * backup routes to same targets, sentence is written only when src is 
+     * active source of prefix and targets. If duplicate window is set, sentences already received from 
+     * another source are dropped.
+     * 
+     * <p>Latency of synchronous ring writes is recorded here. Shared 
+     * sentences carry readNanos and latency is recorded when write completes.
+     * @param src
+     * @param prefixId Prefix id from RoutingTable
+     * @param ring
+     * @param readNanos System.nanoTime() of source read
+     * @throws IOException 
+     * @see org.vesalainen.nmea.router.RoutingTable#getPrefixId(java.lang.CharSequence) 
+     */
+    public final void write(Endpoint src, int prefixId, RingByteBuffer ring, long readNanos) throws IOException
     {
-        if (canWrite(prefix))
+        Snapshot snap = getSnapshot(src);
+        FailoverArbiter.Source source = snap.source;
+        long now = System.currentTimeMillis();
+        if (FailoverArbiter.getInstance().accept(source, prefixId, group, rank, expireTime, holdTime, now))
         {
-            lastWrote = System.currentTimeMillis();
-            for (String target : targetList)
+            if (dedupWindow > 0 && DuplicateSuppressor.getInstance().isDuplicate(ring, source.getId(), dedupWindow, now))
             {
-                Endpoint endpoint = Endpoint.get(target);
-                if (endpoint != null)
+                finest("%s duplicate %s", src.getName(), ring);
+                return;
+            }
+            Endpoint[] endpoints = snap.targets;
+            SharedSentence sentence = null;
+            try
+            {
+                for (int ii=0;ii<endpoints.length;ii++)
                 {
-                    endpoint.write(src, ring);
+                    Endpoint endpoint = endpoints[ii];
+                    if (endpoint.isSharedWriter())
+                    {
+                        if (sentence == null)
+                        {
+                            sentence = SharedSentence.copyOf(ring);
+                            sentence.setReadNanos(readNanos);
+                        }
+                        endpoint.write(src, sentence);
+                    }
+                    else
+                    {
+                        if (endpoint.write(src, ring) > 0)
+                        {
+                            endpoint.recordLatency(readNanos);
+                        }
+                    }
                     if (isLoggable(FINEST))
                     {
                         StringBuilder sb = new StringBuilder();
                         sb.append(ring);
-                        finest("%s->%s %s", src.getName(), target, sb.substring(0, sb.length()-2));
+                        finest("%s->%s %s", src.getName(), endpoint.getName(), sb.substring(0, sb.length()-2));
                     }
                 }
             }
+            finally
+            {
+                if (sentence != null)
+                {
+                    sentence.release();
+                }
+            }
             count++;
-            PREFIX_MAP.put(prefix, lastWrote);
+            rate.mark();
         }
     }
-
-    private boolean canWrite(String prefix)
+    /**
+     * Returns failover source and running target endpoints. Targets are 
+     * resolved again when endpoints start or stop. Route can be written by 
+     * several threads so snapshot is immutable and replaced as a whole. 
+     * Snapshot stored by a late thread has old version and is resolved again
+     * at next write.
+     * @param src
+     * @return 
+     */
+    private Snapshot getSnapshot(Endpoint src)
     {
-        if (!backup)
+        Snapshot snap = snapshot;
+        int ver = RoutingTable.getVersion();
+        if (snap == null || snap.version != ver)
         {
-            return true;
+            FailoverArbiter.Source source = snap != null ? snap.source : FailoverArbiter.getInstance().getSource(src.getName(), src::getMatchErrorPercent);
+            snap = new Snapshot(ver, RoutingTable.resolve(targetList), source);
+            snapshot = snap;
         }
-        LongReference ref = PREFIX_MAP.get(prefix);
-        if (ref == null)
-        {
-            return true;
-        }
-        return ref.getValue()+expireTime < System.currentTimeMillis();
+        return snap;
     }
 
     @Override
@@ -118,4 +205,17 @@ public final class Route extends JavaLogging
         return targetList.toString();
     }
     
+    private static final class Snapshot
+    {
+        private final int version;
+        private final Endpoint[] targets;
+        private final FailoverArbiter.Source source;
+
+        private Snapshot(int version, Endpoint[] targets, FailoverArbiter.Source source)
+        {
+            this.version = version;
+            this.targets = targets;
+            this.source = source;
+        }
+    }
 }
@@ -26,17 +26,23 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
 import static java.util.logging.Level.*;
 import org.vesalainen.comm.channel.SerialChannel;
 import org.vesalainen.math.SymmetricDifferenceMatcher;
 import org.vesalainen.nmea.jaxb.router.BoatDataType;
 import org.vesalainen.nmea.jaxb.router.EndpointType;
+import org.vesalainen.nmea.jaxb.router.NmeaType;
 import org.vesalainen.nmea.jaxb.router.RouteType;
 import org.vesalainen.nmea.jaxb.router.SerialType;
+import static org.vesalainen.nmea.router.RouterManager.LOOPS;
 import static org.vesalainen.nmea.router.RouterManager.POOL;
 import org.vesalainen.nmea.router.endpoint.EndpointFactory;
 import org.vesalainen.nmea.router.scanner.PortScanner;
@@ -52,6 +58,7 @@ import org.vesalainen.util.logging.JavaLogging;
 public class Router extends JavaLogging implements RouterEngine
 {
     private static final long MAX_RESTART_DELAY = 100000;
+    private static final long STOP_TIMEOUT = 10000;
     private final RouterConfig config;
     private final Map<String,EndpointType> endpointTypeMap = new HashMap<>();
     private final Map<Future,Endpoint> futureMap = new ConcurrentHashMap<>();
@@ -61,7 +68,9 @@ public class Router extends JavaLogging implements RouterEngine
     private PortScanner portScanner;
     private final long monitorDelay;
     private final long closeDelay;
-    private final ExecutorCompletionService starter = new ExecutorCompletionService(POOL);
+    private final BlockingQueue<Future> completed = new LinkedBlockingQueue<>();
+    private final ExecutorCompletionService starter = new ExecutorCompletionService(LOOPS, completed);
+    private final ExecutorCompletionService nativeStarter = new ExecutorCompletionService(POOL, completed);
     private final LongMap<EndpointType> startTimeMap = new LongMap<>();
     private final Map<EndpointType,Endpoint> endpointMap = new HashMap<>();
     private List<String> portsNow;
@@ -86,22 +95,17 @@ public class Router extends JavaLogging implements RouterEngine
         portsNow = SerialChannel.getAllPorts();
         populateEndpoints();
         populatePortMatcher();
-        portScanner = new PortScanner(POOL, config.getDontScan(), lastPortType);
-        portScanner.setCheckDelay(monitorDelay);
-        portScanner.setCloseDelay(closeDelay);
-        portScanner.setFingerPrintDelay(Long.MAX_VALUE);
         List<String> configDevices = config.getAllDevices();
         config("last ports %s", configDevices);
         config("ports now  %s", portsNow);
-        portScanner.scan(this::resolvedPort, portMatcher);
-        config("started scanner");
+        startScanner();
         startNonSerial();
         while (true)
         {
             try
             {
                 BoatDataType boatData = config.getBoatData();
-                Future future = starter.take();
+                Future future = completed.take();
                 if (portsNow.equals(SerialChannel.getAllPorts()))
                 {
                     Endpoint endpoint = futureMap.get(future);
@@ -132,6 +136,15 @@ public class Router extends JavaLogging implements RouterEngine
             }
         }
     }
+    private void startScanner() throws IOException
+    {
+        portScanner = new PortScanner(POOL, config.getDontScan(), lastPortType);
+        portScanner.setCheckDelay(monitorDelay);
+        portScanner.setCloseDelay(closeDelay);
+        portScanner.setFingerPrintDelay(Long.MAX_VALUE);
+        portScanner.scan(this::resolvedPort, portMatcher);
+        config("started scanner");
+    }
     private void resolvedPort(ScanResult scanResult)
     {
         config("resolved port %s", scanResult);
@@ -163,21 +176,37 @@ public class Router extends JavaLogging implements RouterEngine
     {
         for (SerialType serialType : serialSet)
         {
-            for (PortType portType : PortType.getPortType(serialType))
+            mapPorts(serialType);
+        }
+    }
+    private void mapPorts(SerialType serialType)
+    {
+        for (PortType portType : PortType.getPortType(serialType))
+        {
+            SymmetricDifferenceMatcher<String, SerialType> sdm = portMatcher.get(portType);
+            if (sdm == null)
             {
-                SymmetricDifferenceMatcher<String, SerialType> sdm = portMatcher.get(portType);
-                if (sdm == null)
-                {
-                    sdm = new SymmetricDifferenceMatcher<>();
-                    portMatcher.put(portType, sdm);
-                }
-                for (RouteType route : serialType.getRoute())
-                {
-                    String prefix = route.getPrefix();
-                    sdm.map(prefix, serialType);
-                    config("add finger print %s -> %s", portType, prefix);
-                }
-                lastPortType.put(serialType.getDevice(), portType);
+                sdm = new SymmetricDifferenceMatcher<>();
+                portMatcher.put(portType, sdm);
+            }
+            for (RouteType route : serialType.getRoute())
+            {
+                String prefix = route.getPrefix();
+                sdm.map(prefix, serialType);
+                config("add finger print %s -> %s", portType, prefix);
+            }
+            lastPortType.put(serialType.getDevice(), portType);
+        }
+    }
+    private void unmapPorts(SerialType serialType)
+    {
+        for (PortType portType : PortType.getPortType(serialType))
+        {
+            SymmetricDifferenceMatcher<String, SerialType> sdm = portMatcher.get(portType);
+            if (sdm != null)
+            {
+                sdm.unmap(serialType);
+                config("removed %s from portMatcher", serialType.getName());
             }
         }
     }
@@ -197,7 +226,8 @@ public class Router extends JavaLogging implements RouterEngine
     {
         Endpoint endpoint = EndpointFactory.getInstance(boatType, endpointType, this);
         endpointMap.put(endpointType, endpoint);
-        Future<?> future = starter.submit(endpoint, null);
+        ExecutorCompletionService ecs = endpoint.isNativeChannel() ? nativeStarter : starter;
+        Future<?> future = ecs.submit(endpoint, null);
         startTimeMap.put(endpointType, System.currentTimeMillis());
         futureMap.put(future, endpoint);
         config("started %s", endpoint);
@@ -306,5 +336,161 @@ public class Router extends JavaLogging implements RouterEngine
     {
         return config;
     }
+    /**
+     * Reloads configuration file and applies changes to running router. 
+     * Endpoints with changed settings are restarted and endpoints with only
+     * changed routes, filters or decimation are reconfigured while running.
+     * Other endpoints are not touched.
+     * <p>New configuration is read aside and replaces current one only after
+     * changes are applied. If changes cannot be applied current configuration 
+     * is kept. New serial endpoints and restarted ones without device get 
+     * their ports from port scanner as in start.
+     * @return false if changes cannot be applied without restarting router.
+     * @throws IOException 
+     * @see org.vesalainen.nmea.router.ConfigDiff
+     */
+    public synchronized boolean reload() throws IOException
+    {
+        if (portScanner != null)
+        {
+            warning("cannot reload while scanning ports");
+            return false;
+        }
+        JAXBElement<NmeaType> element;
+        ConfigDiff diff;
+        try
+        {
+            element = config.read();
+            diff = new ConfigDiff(config.getNmeaType(), element.getValue());
+        }
+        catch (JAXBException ex)
+        {
+            throw new IOException(ex);
+        }
+        config("reload %s", diff);
+        if (diff.isGlobalChanged())
+        {
+            warning("global settings changed, configuration not reloaded");
+            return false;
+        }
+        try
+        {   // stopping is the only step that can fail
+            for (EndpointType endpointType : diff.getRemoved())
+            {
+                if (!stopEndpoint(endpointType.getName()))
+                {
+                    return false;
+                }
+            }
+            for (EndpointType endpointType : diff.getRestarted())
+            {
+                if (!stopEndpoint(endpointType.getName()))
+                {
+                    return false;
+                }
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            throw new IOException(ex);
+        }
+        boolean scan = false;
+        BoatDataType boatData = element.getValue().getBoat();
+        for (EndpointType endpointType : diff.getRemoved())
+        {
+            removeEndpointType(endpointType.getName());
+        }
+        for (EndpointType endpointType : diff.getRestarted())
+        {
+            removeEndpointType(endpointType.getName());
+            if (endpointType instanceof SerialType && ((SerialType) endpointType).getDevice() == null)
+            {
+                addSerial((SerialType) endpointType);
+                scan = true;
+            }
+            else
+            {
+                endpointTypeMap.put(endpointType.getName(), endpointType);
+                startEndpoint(boatData, endpointType);
+            }
+        }
+        for (EndpointType endpointType : diff.getAdded())
+        {
+            if (endpointType instanceof SerialType)
+            {
+                addSerial((SerialType) endpointType);
+                scan = true;
+            }
+            else
+            {
+                endpointTypeMap.put(endpointType.getName(), endpointType);
+                startEndpoint(boatData, endpointType);
+            }
+        }
+        for (EndpointType endpointType : diff.getRerouted())
+        {
+            endpointTypeMap.put(endpointType.getName(), endpointType);
+            Endpoint endpoint = getEndpoint(endpointType.getName());
+            if (endpoint != null)
+            {
+                endpoint.reconfigure(endpointType);
+            }
+        }
+        config.commit(element);
+        if (scan)
+        {   // resolved ports are stored in committed configuration
+            startScanner();
+        }
+        return true;
+    }
+    private void removeEndpointType(String name)
+    {
+        EndpointType endpointType = endpointTypeMap.remove(name);
+        if (endpointType instanceof SerialType)
+        {
+            SerialType serialType = (SerialType) endpointType;
+            serialSet.remove(serialType);
+            unmapPorts(serialType);
+        }
+    }
+    private void addSerial(SerialType serialType)
+    {
+        endpointTypeMap.put(serialType.getName(), serialType);
+        serialSet.add(serialType);
+        mapPorts(serialType);
+    }
+    private Endpoint getEndpoint(String name)
+    {
+        for (Endpoint endpoint : futureMap.values())
+        {
+            if (name.equals(endpoint.getEndpointType().getName()))
+            {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+    private boolean stopEndpoint(String name) throws InterruptedException
+    {
+        for (Entry<Future,Endpoint> e : futureMap.entrySet())
+        {
+            Endpoint endpoint = e.getValue();
+            if (name.equals(endpoint.getEndpointType().getName()))
+            {
+                futureMap.remove(e.getKey());
+                endpointMap.remove(endpoint.getEndpointType());
+                e.getKey().cancel(true);
+                if (!endpoint.awaitStop(STOP_TIMEOUT, TimeUnit.MILLISECONDS))
+                {
+                    warning("%s didn't stop in %d millis", name, STOP_TIMEOUT);
+                    return false;
+                }
+                config("stopped %s", name);
+                return true;
+            }
+        }
+        fine("%s not running", name);
+        return true;
+    }
 
 }
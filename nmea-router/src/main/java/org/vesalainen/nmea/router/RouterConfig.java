@@ -49,6 +49,7 @@ import org.vesalainen.nmea.jaxb.router.ScriptType;
 import org.vesalainen.nmea.jaxb.router.SeatalkType;
 import org.vesalainen.nmea.jaxb.router.SerialType;
 import org.vesalainen.nmea.jaxb.router.TcpEndpointType;
+import org.vesalainen.nmea.jaxb.router.ThreadModeType;
 import org.vesalainen.nmea.script.ScriptParser;
 import org.vesalainen.util.logging.JavaLogging;
 
@@ -88,14 +89,41 @@ public class RouterConfig extends JavaLogging
     }
     
     public void load() throws IOException, JAXBException
+    {
+        commit(read());
+    }
+    /**
+     * Reads configuration file without replacing current configuration.
+     * @return
+     * @throws IOException
+     * @throws JAXBException 
+     * @see #commit(javax.xml.bind.JAXBElement) 
+     */
+    public JAXBElement<NmeaType> read() throws IOException, JAXBException
     {
         Unmarshaller unmarshaller = jaxbCtx.createUnmarshaller();
         unmarshaller.setListener(new Lst());
-        nmea = (JAXBElement<NmeaType>) unmarshaller.unmarshal(path.toFile());
-        checkScriptSyntax();
+        JAXBElement<NmeaType> element = (JAXBElement<NmeaType>) unmarshaller.unmarshal(path.toFile());
+        checkScriptSyntax(element.getValue());
+        return element;
+    }
+    /**
+     * Replaces current configuration with one returned from read.
+     * @param element
+     * @throws IOException 
+     * @see #read() 
+     */
+    public synchronized void commit(JAXBElement<NmeaType> element) throws IOException
+    {
+        nmea = element;
         this.lastModified = Files.getLastModifiedTime(path);
     }
 
+    static JAXBContext getContext()
+    {
+        return jaxbCtx;
+    }
+
     public MessageDigest getDigest()
     {
         return digest;
@@ -107,8 +135,11 @@ public class RouterConfig extends JavaLogging
     }
     public Stream<EndpointType> getRouterEndpoints()
     {
-        return nmea
-                .getValue()
+        return getRouterEndpoints(nmea.getValue());
+    }
+    private Stream<EndpointType> getRouterEndpoints(NmeaType nmeaType)
+    {
+        return nmeaType
                 .getEndPoints().getN2KGatewayOrConsumerEndpointOrLogEndpoint()
                 .stream()
                 .filter(this::checkEnabled);
@@ -261,9 +292,9 @@ public class RouterConfig extends JavaLogging
         }
     }
 
-    private void checkScriptSyntax()
+    private void checkScriptSyntax(NmeaType nmeaType)
     {
-        getRouterEndpoints().forEach((et)->
+        getRouterEndpoints(nmeaType).forEach((et)->
         {
             ScriptType scriptType = et.getScript();
             if (scriptType != null)
@@ -294,6 +325,24 @@ public class RouterConfig extends JavaLogging
         Boolean nativeDebug = nmea.getValue().isNativeDebug();
         return nativeDebug != null ? nativeDebug : false;
     }
+    /**
+     * Returns metrics port or 0 if metrics are not served.
+     * @return 
+     */
+    public int getMetricsPort()
+    {
+        Integer port = nmea.getValue().getMetricsPort();
+        return port != null ? port : 0;
+    }
+    /**
+     * Returns thread mode of endpoint loops. Default is PLATFORM.
+     * @return 
+     */
+    public ThreadModeType getThreadMode()
+    {
+        ThreadModeType threadMode = nmea.getValue().getThreadMode();
+        return threadMode != null ? threadMode : ThreadModeType.PLATFORM;
+    }
 
     private class Lst extends Listener
     {
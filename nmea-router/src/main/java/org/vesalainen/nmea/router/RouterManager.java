@@ -18,6 +18,7 @@ package org.vesalainen.nmea.router;
 
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -29,6 +30,7 @@ import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
 import javax.xml.bind.JAXBException;
+import org.vesalainen.nmea.jaxb.router.ThreadModeType;
 import org.vesalainen.nmea.router.endpoint.Endpoint;
 import org.vesalainen.parsers.nmea.NMEASentence;
 import org.vesalainen.util.concurrent.CachedScheduledThreadPool;
@@ -42,10 +44,20 @@ public class RouterManager extends JavaLogging implements RouterManagerMXBean, R
 {
     public static final int MAX_POOL_SIZE = 256;
     public static CachedScheduledThreadPool POOL = createPool();
+    /**
+     * Runs blocking endpoint loops. Same as POOL in PLATFORM thread mode. In
+     * VIRTUAL mode each loop gets own virtual thread and POOL is left for
+     * scheduled and short tasks. Endpoints with native channels use POOL in
+     * both modes.
+     * @see org.vesalainen.nmea.router.endpoint.Endpoint#getLoopExecutor() 
+     */
+    public static ExecutorService LOOPS = POOL;
     private final ObjectName objectName;
     private CommandLine cmdArgs;
     private RouterConfig config;
     private JmxRouterConfig jmx;
+    private MetricsServer metrics;
+    private volatile Router router;
 
     public RouterManager()
     {
@@ -54,6 +66,8 @@ public class RouterManager extends JavaLogging implements RouterManagerMXBean, R
         {
             this.objectName = new ObjectName("org.vesalainen.nmea.router:type=manager");
             ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(FailoverArbiter.getInstance(), new ObjectName("org.vesalainen.nmea.router:type=failover"));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(DuplicateSuppressor.getInstance(), new ObjectName("org.vesalainen.nmea.router:type=dedup"));
         }
         catch (MalformedObjectNameException | InstanceAlreadyExistsException | MBeanRegistrationException | NotCompliantMBeanException ex)
         {
@@ -85,9 +99,17 @@ public class RouterManager extends JavaLogging implements RouterManagerMXBean, R
         try
         {
             jmx.start();
-            Router router = new Router(config);
-            cmdArgs.attachInstant(router);
-            if (router.start())
+            LOOPS = createLoops(config.getThreadMode());
+            int metricsPort = config.getMetricsPort();
+            if (metricsPort > 0)
+            {
+                metrics = new MetricsServer(metricsPort);
+                metrics.start();
+            }
+            Router r = new Router(config);
+            router = r;
+            cmdArgs.attachInstant(r);
+            if (r.start())
             {
                 restart("port config changed");
             }
@@ -102,10 +124,18 @@ public class RouterManager extends JavaLogging implements RouterManagerMXBean, R
     public void restart(String reason) throws IOException
     {
         severe("restarting because %s", reason);
+        router = null;
         ScheduledExecutorService oldPool = POOL;
+        ExecutorService oldLoops = LOOPS;
         POOL = createPool();
+        LOOPS = POOL;
         config("created new thread pool");
         jmx.stop();
+        if (metrics != null)
+        {
+            metrics.stop();
+            metrics = null;
+        }
         POOL.schedule(()->start(), 2, TimeUnit.MINUTES);
         config("scheduled router start");
         try
@@ -118,6 +148,21 @@ public class RouterManager extends JavaLogging implements RouterManagerMXBean, R
         }
         cmdArgs.attachInstant(this);
         oldPool.shutdownNow();
+        oldLoops.shutdownNow();
+    }
+
+    @Override
+    public void reload() throws IOException
+    {
+        Router r = router;
+        if (r == null)
+        {
+            throw new IOException("router is not running");
+        }
+        if (!r.reload())
+        {
+            restart("configuration change needs restart");
+        }
     }
 
     @Override
@@ -142,6 +187,12 @@ public class RouterManager extends JavaLogging implements RouterManagerMXBean, R
         }
     }
     
+    @Override
+    public String getMetrics()
+    {
+        return MetricsServer.getMetrics();
+    }
+    
     @Override
     public void run()
     {
@@ -151,6 +202,7 @@ public class RouterManager extends JavaLogging implements RouterManagerMXBean, R
             ScheduledExecutorService oldPool = POOL;
             POOL = null;
             oldPool.shutdownNow();
+            LOOPS.shutdownNow();
             config.store();
             config("stored configuration");
         }
@@ -160,6 +212,31 @@ public class RouterManager extends JavaLogging implements RouterManagerMXBean, R
         }
     }
 
+    private ExecutorService createLoops(ThreadModeType threadMode)
+    {
+        if (threadMode == ThreadModeType.VIRTUAL)
+        {
+            if (VirtualThreads.isSupported())
+            {
+                try
+                {
+                    ExecutorService executor = VirtualThreads.newExecutor();
+                    config("thread mode VIRTUAL: endpoint loops run in virtual threads");
+                    return executor;
+                }
+                catch (UnsupportedOperationException ex)
+                {
+                    warning("creating virtual thread executor failed: %s", ex);
+                }
+            }
+            else
+            {
+                warning("virtual threads need Java 21");
+            }
+        }
+        config("thread mode PLATFORM: endpoint loops run in platform threads (configured %s)", threadMode);
+        return POOL;
+    }
     private static CachedScheduledThreadPool createPool()
     {
         CachedScheduledThreadPool pool = new CachedScheduledThreadPool(MAX_POOL_SIZE);
@@ -25,5 +25,18 @@ import java.io.IOException;
 public interface RouterManagerMXBean
 {
     void restart(String reason) throws IOException;
+    /**
+     * Reloads configuration and restarts only changed endpoints. Falls back
+     * to restart if changes cannot be applied to running router.
+     * @throws IOException 
+     * @see org.vesalainen.nmea.router.Router#reload() 
+     */
+    void reload() throws IOException;
     void send(String msg, String to);
+    /**
+     * Returns metrics of running endpoints as plain text.
+     * @return 
+     * @see org.vesalainen.nmea.router.MetricsServer
+     */
+    String getMetrics();
 }
@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.vesalainen.nmea.router.endpoint.Endpoint;
+
+/**
+ * RoutingTable holds running endpoints and interned sentence prefixes.
+ * 
+ * <p>Endpoints are kept in copy-on-write map which is replaced when endpoint
+ * starts or stops. Each replace increments version. Routes resolve their 
+ * targets to Endpoint array once per version so that routing a sentence 
+ * needs only a volatile read and array loads.
+ * 
+ * <p>Prefixes like $GPRMC are interned as small integers. Id 0 means no 
+ * prefix. Ids index arrays, e.g. arbitrations in FailoverArbiter. Packed 
+ * prefixes are looked up in open-addressing table whose keys and ids are 
+ * published together in one immutable holder.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public final class RoutingTable
+{
+    private static final int MAX_PACKED = 8;
+    private static volatile Map<String,Endpoint> endpoints = Collections.EMPTY_MAP;
+    private static volatile int version;
+    private static final Object lock = new Object();
+    private static volatile Table table = new Table(new long[256], new int[256]);
+    private static volatile String[] prefixes = new String[]{null};
+    private static final Map<String,Integer> longPrefixes = new HashMap<>();
+
+    private RoutingTable()
+    {
+    }
+    /**
+     * Registers running endpoint.
+     * @param name
+     * @param endpoint 
+     */
+    public static void put(String name, Endpoint endpoint)
+    {
+        synchronized(lock)
+        {
+            Map<String,Endpoint> map = new HashMap<>(endpoints);
+            map.put(name, endpoint);
+            endpoints = map;
+            version++;
+        }
+    }
+    /**
+     * Removes stopped endpoint.
+     * @param name 
+     */
+    public static void remove(String name)
+    {
+        synchronized(lock)
+        {
+            if (endpoints.containsKey(name))
+            {
+                Map<String,Endpoint> map = new HashMap<>(endpoints);
+                map.remove(name);
+                endpoints = map;
+                version++;
+            }
+        }
+    }
+    /**
+     * Returns running endpoint or null.
+     * @param name
+     * @return 
+     */
+    public static Endpoint get(String name)
+    {
+        return endpoints.get(name);
+    }
+    /**
+     * Returns running endpoints.
+     * @return 
+     */
+    public static Collection<Endpoint> getEndpoints()
+    {
+        return endpoints.values();
+    }
+    /**
+     * Returns version which changes when endpoints change.
+     * @return 
+     */
+    public static int getVersion()
+    {
+        return version;
+    }
+    /**
+     * Returns running endpoints of targets. Missing endpoints are left out.
+     * @param targets
+     * @return 
+     */
+    public static Endpoint[] resolve(List<String> targets)
+    {
+        Map<String,Endpoint> map = endpoints;
+        List<Endpoint> list = new ArrayList<>();
+        for (String target : targets)
+        {
+            Endpoint endpoint = map.get(target);
+            if (endpoint != null)
+            {
+                list.add(endpoint);
+            }
+        }
+        return list.toArray(new Endpoint[list.size()]);
+    }
+    /**
+     * Returns interned id of sentence prefix. Prefix is characters before
+     * first comma of NMEA or AIS sentence.
+     * @param seq
+     * @return Prefix id or 0 if sequence doesn't have prefix.
+     * @see org.vesalainen.parsers.nmea.NMEA#getPrefix(java.lang.CharSequence) 
+     */
+    public static int getPrefixId(CharSequence seq)
+    {
+        int length = seq.length();
+        if (length == 0)
+        {
+            return 0;
+        }
+        char first = seq.charAt(0);
+        if (first != '$' && first != '!')
+        {
+            return 0;
+        }
+        long key = 0;
+        for (int ii=0;ii<length;ii++)
+        {
+            char cc = seq.charAt(ii);
+            if (cc == ',')
+            {
+                return intern(key, seq, ii);
+            }
+            if (ii < MAX_PACKED)
+            {
+                key = (key<<8) | (cc & 0xff);
+            }
+        }
+        return 0;
+    }
+    /**
+     * Returns prefix for id.
+     * @param id
+     * @return 
+     */
+    public static String getPrefix(int id)
+    {
+        return prefixes[id];
+    }
+    private static int intern(long key, CharSequence seq, int length)
+    {
+        if (length > MAX_PACKED)
+        {
+            return internLong(seq.subSequence(0, length).toString());
+        }
+        Table t = table;
+        long[] k = t.keys;
+        int[] v = t.ids;
+        int mask = k.length - 1;
+        int index = hash(key) & mask;
+        while (true)
+        {
+            if (k[index] == key)
+            {
+                return v[index];
+            }
+            if (k[index] == 0)
+            {
+                break;
+            }
+            index = (index + 1) & mask;
+        }
+        synchronized(lock)
+        {
+            if (t != table)
+            {
+                return intern(key, seq, length);
+            }
+            int id = addPrefix(seq.subSequence(0, length).toString());
+            long[] nk = k;
+            int[] nv = v;
+            if (2*prefixes.length > k.length)
+            {
+                nk = new long[2*k.length];
+                nv = new int[2*k.length];
+                for (int ii=0;ii<k.length;ii++)
+                {
+                    if (k[ii] != 0)
+                    {
+                        put(nk, nv, k[ii], v[ii]);
+                    }
+                }
+            }
+            else
+            {
+                nk = Arrays.copyOf(k, k.length);
+                nv = Arrays.copyOf(v, v.length);
+            }
+            put(nk, nv, key, id);
+            table = new Table(nk, nv);
+            return id;
+        }
+    }
+    private static int internLong(String prefix)
+    {
+        synchronized(lock)
+        {
+            Integer id = longPrefixes.get(prefix);
+            if (id == null)
+            {
+                id = addPrefix(prefix);
+                longPrefixes.put(prefix, id);
+            }
+            return id;
+        }
+    }
+    private static int addPrefix(String prefix)
+    {
+        String[] arr = Arrays.copyOf(prefixes, prefixes.length+1);
+        arr[arr.length-1] = prefix;
+        prefixes = arr;
+        return arr.length-1;
+    }
+    private static void put(long[] k, int[] v, long key, int id)
+    {
+        int mask = k.length - 1;
+        int index = hash(key) & mask;
+        while (k[index] != 0)
+        {
+            index = (index + 1) & mask;
+        }
+        k[index] = key;
+        v[index] = id;
+    }
+    private static int hash(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h>>>32));
+    }
+    private static final class Table
+    {
+        private final long[] keys;
+        private final int[] ids;
+
+        private Table(long[] keys, int[] ids)
+        {
+            this.keys = keys;
+            this.ids = ids;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.vesalainen.nmea.router.filter.FilterChain;
+
+/**
+ * SharedSentence is an immutable copy of routed sentence which is shared by 
+ * reference between targets and their queues. Sentence is copied once from
+ * source ring. Every holder calls retain and later release. When the last
+ * reference is released the slab is returned to pool.
+ * 
+ * <p>Sentences longer than slab size are not pooled.
+ * 
+ * <p>Sentence caches verdicts of filter chains while it is routed. Verdicts
+ * are set only by routing thread.
+ * 
+ * <p>Sentence is written through view buffer owned by writer. Bytes are 
+ * copied into the view so writing doesn't allocate. View is direct so the 
+ * copy replaces the one channel would make to its temporary direct buffer.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public final class SharedSentence implements CharSequence
+{
+    public static final int SLAB_SIZE = 128;
+    private static final int MAX_POOL_SIZE = 4096;
+    private static final ConcurrentLinkedQueue<SharedSentence> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOL_SIZE = new AtomicInteger();
+    private static final ThreadLocal<ByteBuffer> VIEW = ThreadLocal.withInitial(SharedSentence::newView);
+    private final byte[] slab;
+    private final AtomicInteger refCount = new AtomicInteger();
+    private int length;
+    private long evaluated;
+    private long accepted;
+    private long readNanos;
+
+    private SharedSentence(int size)
+    {
+        this.slab = new byte[size];
+    }
+    /**
+     * Returns sentence with copy of seq. Caller owns one reference.
+     * @param seq
+     * @return 
+     */
+    public static SharedSentence copyOf(CharSequence seq)
+    {
+        int len = seq.length();
+        SharedSentence ss = allocate(len);
+        byte[] arr = ss.slab;
+        for (int ii=0;ii<len;ii++)
+        {
+            arr[ii] = (byte) seq.charAt(ii);
+        }
+        return ss;
+    }
+    /**
+     * Returns sentence with copy of bb remaining bytes. Caller owns one 
+     * reference.
+     * @param bb
+     * @return 
+     */
+    public static SharedSentence copyOf(ByteBuffer bb)
+    {
+        SharedSentence ss = allocate(bb.remaining());
+        bb.get(ss.slab, 0, ss.length);
+        return ss;
+    }
+    private static SharedSentence allocate(int len)
+    {
+        SharedSentence ss = null;
+        if (len <= SLAB_SIZE)
+        {
+            ss = POOL.poll();
+            if (ss != null)
+            {
+                POOL_SIZE.decrementAndGet();
+            }
+            else
+            {
+                ss = new SharedSentence(SLAB_SIZE);
+            }
+        }
+        else
+        {
+            ss = new SharedSentence(len);
+        }
+        ss.length = len;
+        ss.evaluated = 0;
+        ss.accepted = 0;
+        ss.readNanos = 0;
+        ss.refCount.set(1);
+        return ss;
+    }
+    /**
+     * Returns verdict of chain for this sentence. Chain is evaluated only once
+     * for each sentence.
+     * @param chain
+     * @return 
+     */
+    public boolean accept(FilterChain chain)
+    {
+        int id = chain.getId();
+        if (id >= 64)
+        {
+            return chain.accept(this);
+        }
+        long bit = 1L<<id;
+        if ((evaluated & bit) == 0)
+        {
+            if (chain.accept(this))
+            {
+                accepted |= bit;
+            }
+            evaluated |= bit;
+        }
+        return (accepted & bit) != 0;
+    }
+    /**
+     * Sets System.nanoTime() of source read. Set by routing thread before
+     * sentence is handed to targets.
+     * @param readNanos 
+     */
+    public void setReadNanos(long readNanos)
+    {
+        this.readNanos = readNanos;
+    }
+    /**
+     * Returns System.nanoTime() of source read or 0 if unknown.
+     * @return 
+     */
+    public long getReadNanos()
+    {
+        return readNanos;
+    }
+    /**
+     * Adds reference.
+     * @return this
+     */
+    public SharedSentence retain()
+    {
+        if (refCount.getAndIncrement() <= 0)
+        {
+            throw new IllegalStateException("retain of released sentence");
+        }
+        return this;
+    }
+    /**
+     * Releases reference. Last release returns slab to pool.
+     */
+    public void release()
+    {
+        int rc = refCount.decrementAndGet();
+        if (rc == 0)
+        {
+            if (slab.length == SLAB_SIZE && POOL_SIZE.incrementAndGet() <= MAX_POOL_SIZE)
+            {
+                POOL.add(this);
+            }
+            else if (slab.length == SLAB_SIZE)
+            {
+                POOL_SIZE.decrementAndGet();
+            }
+        }
+        else
+        {
+            if (rc < 0)
+            {
+                throw new IllegalStateException("release of released sentence");
+            }
+        }
+    }
+    /**
+     * Returns current number of references.
+     * @return 
+     */
+    public int getRefCount()
+    {
+        return refCount.get();
+    }
+    /**
+     * Returns new view buffer for writer.
+     * @return 
+     */
+    public static ByteBuffer newView()
+    {
+        return ByteBuffer.allocateDirect(SLAB_SIZE);
+    }
+    /**
+     * Returns sentence starting at offset in view buffer of calling thread. 
+     * Returned buffer is valid until next call from same thread.
+     * @param offset
+     * @return 
+     */
+    public ByteBuffer asByteBuffer(int offset)
+    {
+        return asByteBuffer(offset, VIEW.get());
+    }
+    /**
+     * Returns sentence starting at offset in view. Sentences longer than 
+     * view are wrapped instead.
+     * @param offset
+     * @param view Writer owned buffer. Created with newView.
+     * @return 
+     */
+    public ByteBuffer asByteBuffer(int offset, ByteBuffer view)
+    {
+        int len = length-offset;
+        if (len > view.capacity())
+        {
+            return ByteBuffer.wrap(slab, offset, len);
+        }
+        view.clear();
+        view.put(slab, offset, len);
+        view.flip();
+        return view;
+    }
+    /**
+     * Writes sentence starting at offset to channel.
+     * @param channel
+     * @param offset
+     * @return Number of bytes written.
+     * @throws IOException 
+     */
+    public int writeTo(WritableByteChannel channel, int offset) throws IOException
+    {
+        return channel.write(asByteBuffer(offset));
+    }
+    /**
+     * Copies sentence to array
+     * @param arr
+     * @param off 
+     */
+    public void copyTo(byte[] arr, int off)
+    {
+        System.arraycopy(slab, 0, arr, off, length);
+    }
+    
+    @Override
+    public int length()
+    {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index)
+    {
+        if (index < 0 || index >= length)
+        {
+            throw new IndexOutOfBoundsException(index+" not in [0,"+length+")");
+        }
+        return (char) (slab[index] & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString()
+    {
+        return new String(slab, 0, length, US_ASCII);
+    }
+
+}
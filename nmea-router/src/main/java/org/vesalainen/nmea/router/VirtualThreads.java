@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.vesalainen.util.logging.JavaLogging;
+
+/**
+ * VirtualThreads gives access to virtual threads when running on Java 21 or
+ * later. Source level is kept at Java 8 so that methods are looked up by
+ * reflection.
+ * 
+ * <p>Blocking JDK I/O in virtual thread releases the carrier thread unless
+ * the thread holds a monitor or blocks in native code. Code run in virtual
+ * threads should therefore use java.util.concurrent locks instead of 
+ * synchronized around blocking calls. Native code called through JNI, like 
+ * SerialChannel of serial and SeaTalk endpoints, pins the carrier for the 
+ * whole call. Such endpoints are run in platform threads.
+ * Thread priority is ignored for virtual threads.
+ * 
+ * <p>Virtual thread mode is a reflection based opt-in. Its effect on 
+ * startup time and memory is unmeasured: ThreadModeBenchmark has only been
+ * run with platform threads.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public final class VirtualThreads
+{
+    private static final JavaLogging log = JavaLogging.getLogger(VirtualThreads.class);
+    private static final Method NEW_EXECUTOR = getMethod(Executors.class, "newVirtualThreadPerTaskExecutor");
+    private static final Method IS_VIRTUAL = getMethod(Thread.class, "isVirtual");
+
+    private VirtualThreads()
+    {
+    }
+    /**
+     * Returns true if runtime supports virtual threads.
+     * @return 
+     */
+    public static boolean isSupported()
+    {
+        return NEW_EXECUTOR != null && IS_VIRTUAL != null;
+    }
+    /**
+     * Returns executor which starts new virtual thread for each task.
+     * @return 
+     * @throws UnsupportedOperationException If runtime doesn't support
+     * virtual threads.
+     */
+    public static ExecutorService newExecutor()
+    {
+        if (!isSupported())
+        {
+            throw new UnsupportedOperationException("virtual threads need Java 21");
+        }
+        try
+        {
+            return (ExecutorService) NEW_EXECUTOR.invoke(null);
+        }
+        catch (IllegalAccessException | InvocationTargetException ex)
+        {
+            throw new UnsupportedOperationException(ex);
+        }
+    }
+    /**
+     * Returns true if thread is virtual.
+     * @param thread
+     * @return 
+     */
+    public static boolean isVirtual(Thread thread)
+    {
+        if (IS_VIRTUAL == null)
+        {
+            return false;
+        }
+        try
+        {
+            return (Boolean) IS_VIRTUAL.invoke(thread);
+        }
+        catch (IllegalAccessException | InvocationTargetException ex)
+        {
+            log.warning("Thread.isVirtual failed: %s", ex);
+            return false;
+        }
+    }
+    private static Method getMethod(Class<?> cls, String name)
+    {
+        try
+        {
+            return cls.getMethod(name);
+        }
+        catch (NoSuchMethodException | SecurityException ex)
+        {
+            log.config("%s.%s not available: %s", cls.getSimpleName(), name, ex);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.vesalainen.nmea.router.capture.CaptureWriter.*;
+
+/**
+ * CaptureReader reads records written by CaptureWriter in time order. Reader
+ * can seek by time using segment start times and segment time index. Segment 
+ * which is still written can be read up to last completed record.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.router.capture.CaptureWriter
+ */
+public class CaptureReader implements Closeable
+{
+    private final Path directory;
+    private List<Path> segments;
+    private List<String> sources;
+    private int segmentIndex = -1;
+    private MappedByteBuffer segment;
+    private int next;
+    private int position;
+    private int length;
+    private int source;
+    private long time;
+
+    public CaptureReader(Path directory) throws IOException
+    {
+        this.directory = directory;
+        this.segments = listSegments(directory);
+        this.sources = readSources(directory);
+    }
+    /**
+     * Positions reader so that next returns first record received at or 
+     * after time.
+     * @param epochMillis 
+     * @throws IOException 
+     */
+    public void seek(long epochMillis) throws IOException
+    {
+        segments = listSegments(directory);
+        long target = TimeUnit.MILLISECONDS.toNanos(epochMillis);
+        int idx = 0;
+        for (int ii=0;ii<segments.size();ii++)
+        {
+            if (getStartMillis(segments.get(ii)) <= epochMillis)
+            {
+                idx = ii;
+            }
+        }
+        if (!open(idx))
+        {
+            return;
+        }
+        Index index = readIndex(idx);
+        int i = Arrays.binarySearch(index.times, 0, index.count, target);
+        if (i < 0)
+        {
+            i = -i - 2;
+        }
+        else
+        {
+            while (i > 0 && index.times[i-1] == target)
+            {
+                i--;
+            }
+        }
+        if (i >= 0)
+        {
+            next = index.offsets[i];
+        }
+        while (peek() && peekTime() < target)
+        {
+            next += RECORD_HEADER_SIZE + segment.getShort(next);
+        }
+    }
+    /**
+     * Moves to next record.
+     * @return false if there are no more records.
+     * @throws IOException 
+     */
+    public boolean next() throws IOException
+    {
+        if (segment == null && !open(0))
+        {
+            return false;
+        }
+        while (!peek())
+        {
+            if (segmentIndex + 1 >= segments.size())
+            {
+                segments = listSegments(directory);
+                if (segmentIndex + 1 >= segments.size())
+                {
+                    return false;
+                }
+            }
+            open(segmentIndex + 1);
+        }
+        length = segment.getShort(next);
+        source = segment.getShort(next+2);
+        time = segment.getLong(next+4);
+        position = next + RECORD_HEADER_SIZE;
+        next = position + length;
+        return true;
+    }
+    /**
+     * Returns receive time of current record as epoch nanos.
+     * @return 
+     */
+    public long getTime()
+    {
+        return time;
+    }
+    /**
+     * Returns source endpoint name of current record.
+     * @return 
+     * @throws IOException 
+     */
+    public String getSource() throws IOException
+    {
+        if (source >= sources.size())
+        {
+            sources = readSources(directory);
+        }
+        return source < sources.size() ? sources.get(source) : String.valueOf(source);
+    }
+    /**
+     * Returns read-only view of current sentence.
+     * @return 
+     */
+    public ByteBuffer getSentence()
+    {
+        ByteBuffer bb = segment.asReadOnlyBuffer();
+        bb.limit(position+length);
+        bb.position(position);
+        return bb;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        segment = null;
+        segmentIndex = -1;
+    }
+    
+    private boolean peek()
+    {
+        return next + RECORD_HEADER_SIZE <= segment.limit() && segment.getShort(next) > 0;
+    }
+    private long peekTime()
+    {
+        return segment.getLong(next+4);
+    }
+    private boolean open(int idx) throws IOException
+    {
+        if (idx >= segments.size())
+        {
+            return false;
+        }
+        Path path = segments.get(idx);
+        try (FileChannel fc = FileChannel.open(path))
+        {
+            segment = fc.map(READ_ONLY, 0, fc.size());
+        }
+        if (segment.limit() < HEADER_SIZE || segment.getInt(0) != MAGIC)
+        {
+            throw new IOException(path+" is not capture segment");
+        }
+        if (segment.getInt(4) != VERSION)
+        {
+            throw new IOException(path+" version "+segment.getInt(4)+" not supported");
+        }
+        segmentIndex = idx;
+        next = HEADER_SIZE;
+        return true;
+    }
+    private Index readIndex(int idx) throws IOException
+    {
+        Index index = new Index();
+        Path path = indexPath(segments.get(idx));
+        if (Files.exists(path))
+        {
+            ByteBuffer bb = ByteBuffer.wrap(Files.readAllBytes(path));
+            while (bb.remaining() >= INDEX_ENTRY_SIZE)
+            {
+                index.add(bb.getLong(), bb.getInt());
+            }
+        }
+        else
+        {
+            // segment is being written or writer crashed
+            int off = HEADER_SIZE;
+            while (off + RECORD_HEADER_SIZE <= segment.limit() && segment.getShort(off) > 0)
+            {
+                index.add(segment.getLong(off+4), off);
+                off += RECORD_HEADER_SIZE + segment.getShort(off);
+            }
+        }
+        return index;
+    }
+    /**
+     * Returns segment files in time order.
+     * @param directory
+     * @return
+     * @throws IOException 
+     */
+    public static List<Path> listSegments(Path directory) throws IOException
+    {
+        List<Path> list = new ArrayList<>();
+        if (Files.isDirectory(directory))
+        {
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory, SEGMENT_PREFIX+"*"+SEGMENT_SUFFIX))
+            {
+                ds.forEach(list::add);
+            }
+        }
+        Collections.sort(list);
+        return list;
+    }
+    /**
+     * Returns start time of segment from file name.
+     * @param segment
+     * @return 
+     */
+    public static long getStartMillis(Path segment)
+    {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length()-SEGMENT_SUFFIX.length()));
+    }
+    /**
+     * Returns source names. Index is source id.
+     * @param directory
+     * @return
+     * @throws IOException 
+     */
+    public static List<String> readSources(Path directory) throws IOException
+    {
+        Path path = directory.resolve(SOURCES);
+        if (Files.exists(path))
+        {
+            return Files.readAllLines(path, UTF_8);
+        }
+        return Collections.EMPTY_LIST;
+    }
+    private static class Index
+    {
+        private long[] times = new long[256];
+        private int[] offsets = new int[256];
+        private int count;
+        
+        private void add(long time, int offset)
+        {
+            if (count == times.length)
+            {
+                times = Arrays.copyOf(times, 2*count);
+                offsets = Arrays.copyOf(offsets, 2*count);
+            }
+            times[count] = time;
+            offsets[count] = offset;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.vesalainen.util.logging.JavaLogging;
+
+/**
+ * CaptureWriter appends raw sentences to fixed size memory-mapped segment
+ * files in capture directory. Writer is used by one thread.
+ * 
+ * <p>Segment file starts with header
+ * <pre>
+ * int magic
+ * int version
+ * long creation time millis
+ * </pre>
+ * followed by records
+ * <pre>
+ * short length of sentence
+ * short source id
+ * long receive time as epoch nanos
+ * byte[length] sentence
+ * </pre>
+ * Zero length ends the records. Source names are in sources file. Line 
+ * number is source id.
+ * 
+ * <p>Time index of segment is written in index file when segment is closed.
+ * Index has entry of time and record offset at most every index interval.
+ * 
+ * <p>Segment is unmapped explicitly when it is closed. Mapping would 
+ * otherwise stay until buffer is garbage collected and retired or deleted 
+ * segments would hold segmentSize bytes of address space and keep deleted 
+ * files on disk. If unmapping is not possible in running JVM a warning is 
+ * logged and mapping is released by garbage collector.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.router.capture.CaptureReader
+ */
+public class CaptureWriter extends JavaLogging implements Closeable
+{
+    public static final int MAGIC = 0x4e4d4341;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_HEADER_SIZE = 12;
+    public static final int INDEX_ENTRY_SIZE = 12;
+    public static final String SEGMENT_PREFIX = "capture-";
+    public static final String SEGMENT_SUFFIX = ".cap";
+    public static final String INDEX_SUFFIX = ".idx";
+    public static final String SOURCES = "sources.txt";
+    public static final int DEFAULT_SEGMENT_SIZE = 64*1024*1024;
+    public static final long DEFAULT_INDEX_INTERVAL = 1000;
+    private final Path directory;
+    private final int segmentSize;
+    private final long indexInterval;
+    private final int maxSegments;
+    private final Map<String,Integer> sourceIds = new HashMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private Path segmentPath;
+    private long[] indexTimes = new long[256];
+    private int[] indexOffsets = new int[256];
+    private int indexCount;
+    private long nextIndexTime;
+    /**
+     * Creates CaptureWriter with default settings
+     * @param directory
+     * @throws IOException 
+     */
+    public CaptureWriter(Path directory) throws IOException
+    {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_INDEX_INTERVAL, 0);
+    }
+    /**
+     * Creates CaptureWriter. Existing sources are loaded so that source ids
+     * stay same.
+     * @param directory Capture directory. Created if missing.
+     * @param segmentSize Size of segment file in bytes.
+     * @param indexInterval Millis between index entries.
+     * @param maxSegments Oldest segments are deleted when there are more. 0
+     * means no limit.
+     * @throws IOException 
+     */
+    public CaptureWriter(Path directory, int segmentSize, long indexInterval, int maxSegments) throws IOException
+    {
+        super(CaptureWriter.class);
+        if (segmentSize < HEADER_SIZE + RECORD_HEADER_SIZE + Short.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("segmentSize="+segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.indexInterval = TimeUnit.MILLISECONDS.toNanos(indexInterval);
+        this.maxSegments = maxSegments;
+        Files.createDirectories(directory);
+        for (String source : CaptureReader.readSources(directory))
+        {
+            sourceIds.put(source, sourceIds.size());
+        }
+    }
+    /**
+     * Appends sentence.
+     * @param source Source endpoint name
+     * @param epochNanos Receive time
+     * @param buf
+     * @param off
+     * @param len
+     * @throws IOException 
+     */
+    public void append(String source, long epochNanos, byte[] buf, int off, int len) throws IOException
+    {
+        if (len < 1 || len > Short.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("len="+len);
+        }
+        int id = getSourceId(source);
+        int size = RECORD_HEADER_SIZE + len;
+        if (segment == null || segment.remaining() < size)
+        {
+            roll(epochNanos);
+        }
+        int position = segment.position();
+        if (epochNanos >= nextIndexTime)
+        {
+            addIndex(epochNanos, position);
+            nextIndexTime = epochNanos + indexInterval;
+        }
+        // length is written last so that concurrent reader never sees 
+        // partial record
+        segment.position(position+2);
+        segment.putShort((short) id);
+        segment.putLong(epochNanos);
+        segment.put(buf, off, len);
+        segment.putShort(position, (short) len);
+    }
+    /**
+     * Forces segment content to storage.
+     */
+    public void force()
+    {
+        if (segment != null)
+        {
+            segment.force();
+        }
+    }
+    /**
+     * Returns current segment file or null.
+     * @return 
+     */
+    public Path getSegment()
+    {
+        return segmentPath;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        closeSegment();
+    }
+    
+    private int getSourceId(String source) throws IOException
+    {
+        Integer id = sourceIds.get(source);
+        if (id == null)
+        {
+            id = sourceIds.size();
+            if (id > Short.MAX_VALUE)
+            {
+                throw new IOException("too many sources");
+            }
+            Files.write(directory.resolve(SOURCES), (source+"\n").getBytes(UTF_8), CREATE, APPEND);
+            sourceIds.put(source, id);
+        }
+        return id;
+    }
+    private void roll(long epochNanos) throws IOException
+    {
+        closeSegment();
+        long millis = TimeUnit.NANOSECONDS.toMillis(epochNanos);
+        Path path = directory.resolve(segmentName(millis));
+        while (Files.exists(path))
+        {
+            millis++;
+            path = directory.resolve(segmentName(millis));
+        }
+        channel = FileChannel.open(path, CREATE_NEW, READ, WRITE);
+        segment = channel.map(READ_WRITE, 0, segmentSize);
+        segment.order(ByteOrder.BIG_ENDIAN);
+        segment.putInt(MAGIC);
+        segment.putInt(VERSION);
+        segment.putLong(System.currentTimeMillis());
+        segmentPath = path;
+        indexCount = 0;
+        nextIndexTime = 0;
+        fine("opened segment %s", path);
+        removeOldSegments();
+    }
+    private void closeSegment() throws IOException
+    {
+        if (segment != null)
+        {
+            segment.force();
+            unmap(segment);
+            segment = null;
+            channel.close();
+            channel = null;
+            writeIndex();
+            fine("closed segment %s", segmentPath);
+        }
+    }
+    private void addIndex(long time, int offset)
+    {
+        if (indexCount == indexTimes.length)
+        {
+            indexTimes = Arrays.copyOf(indexTimes, 2*indexCount);
+            indexOffsets = Arrays.copyOf(indexOffsets, 2*indexCount);
+        }
+        indexTimes[indexCount] = time;
+        indexOffsets[indexCount] = offset;
+        indexCount++;
+    }
+    private void writeIndex() throws IOException
+    {
+        ByteBuffer bb = ByteBuffer.allocate(indexCount*INDEX_ENTRY_SIZE);
+        for (int ii=0;ii<indexCount;ii++)
+        {
+            bb.putLong(indexTimes[ii]);
+            bb.putInt(indexOffsets[ii]);
+        }
+        bb.flip();
+        Path index = indexPath(segmentPath);
+        Path tmp = index.resolveSibling(index.getFileName()+".tmp");
+        try (FileChannel fc = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING))
+        {
+            while (bb.hasRemaining())
+            {
+                fc.write(bb);
+            }
+        }
+        Files.move(tmp, index, REPLACE_EXISTING);
+    }
+    private void removeOldSegments() throws IOException
+    {
+        if (maxSegments > 0)
+        {
+            List<Path> segments = new ArrayList<>(CaptureReader.listSegments(directory));
+            for (int ii=0;ii<segments.size()-maxSegments;ii++)
+            {
+                Path path = segments.get(ii);
+                Files.deleteIfExists(path);
+                Files.deleteIfExists(indexPath(path));
+                fine("removed segment %s", path);
+            }
+        }
+    }
+    /**
+     * Releases mapping of buffer. Buffer must not be used after this.
+     * @param buffer 
+     */
+    private void unmap(MappedByteBuffer buffer)
+    {
+        try
+        {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        }
+        catch (ReflectiveOperationException | RuntimeException ex)
+        {
+            // java 8 has no invokeCleaner
+        }
+        try
+        {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null)
+            {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        }
+        catch (ReflectiveOperationException | RuntimeException ex)
+        {
+            warning("unmapping %s failed: %s", segmentPath, ex);
+        }
+    }
+    static String segmentName(long millis)
+    {
+        return String.format("%s%013d%s", SEGMENT_PREFIX, millis, SEGMENT_SUFFIX);
+    }
+    static Path indexPath(Path segment)
+    {
+        String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length()-SEGMENT_SUFFIX.length())+INDEX_SUFFIX);
+    }
+}
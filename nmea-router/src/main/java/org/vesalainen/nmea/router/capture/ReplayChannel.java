@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.capture;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReplayChannel reads captured sentences in receive time order. Sentences 
+ * are paced by their receive times. Speed 1 replays in real time, 2 twice as
+ * fast and so on. Speed 0 replays as fast as channel is read.
+ * 
+ * <p>Read blocks until at least one byte is due. Read returns -1 at the end
+ * of capture. Writes are discarded.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class ReplayChannel implements ScatteringByteChannel, GatheringByteChannel
+{
+    private final CaptureReader reader;
+    private final double speed;
+    private final Set<String> sources;
+    private ByteBuffer pending;
+    private boolean loaded;
+    private boolean eof;
+    private boolean started;
+    private long firstTime;
+    private long startNanos;
+    private volatile boolean open = true;
+    /**
+     * Creates ReplayChannel
+     * @param reader Positioned reader.
+     * @param speed 0 or greater.
+     * @param sources Replayed sources or null for all.
+     */
+    public ReplayChannel(CaptureReader reader, double speed, Set<String> sources)
+    {
+        if (speed < 0)
+        {
+            throw new IllegalArgumentException("speed="+speed);
+        }
+        this.reader = reader;
+        this.speed = speed;
+        this.sources = sources;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException
+    {
+        if (!open)
+        {
+            throw new ClosedChannelException();
+        }
+        int count = 0;
+        while (dst.hasRemaining())
+        {
+            if (pending == null || !pending.hasRemaining())
+            {
+                if (!fill(count == 0))
+                {
+                    break;
+                }
+            }
+            int n = Math.min(dst.remaining(), pending.remaining());
+            int limit = pending.limit();
+            pending.limit(pending.position()+n);
+            dst.put(pending);
+            pending.limit(limit);
+            count += n;
+        }
+        return count == 0 && eof ? -1 : count;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException
+    {
+        long count = 0;
+        for (int ii=0;ii<length;ii++)
+        {
+            ByteBuffer dst = dsts[offset+ii];
+            if (dst.hasRemaining())
+            {
+                int rc = read(dst);
+                if (rc == -1)
+                {
+                    return count == 0 ? -1 : count;
+                }
+                count += rc;
+                if (dst.hasRemaining())
+                {
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException
+    {
+        return read(dsts, 0, dsts.length);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException
+    {
+        int n = src.remaining();
+        src.position(src.limit());
+        return n;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException
+    {
+        long count = 0;
+        for (int ii=0;ii<length;ii++)
+        {
+            count += write(srcs[offset+ii]);
+        }
+        return count;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException
+    {
+        return write(srcs, 0, srcs.length);
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        open = false;
+        reader.close();
+    }
+    /**
+     * Loads next due sentence to pending.
+     * @param block If true waits until next sentence is due.
+     * @return false if no sentence is due or at the end.
+     * @throws IOException 
+     */
+    private boolean fill(boolean block) throws IOException
+    {
+        while (!loaded)
+        {
+            if (!reader.next())
+            {
+                eof = true;
+                return false;
+            }
+            loaded = sources == null || sources.contains(reader.getSource());
+        }
+        if (speed > 0)
+        {
+            long now = System.nanoTime();
+            if (!started)
+            {
+                firstTime = reader.getTime();
+                startNanos = now;
+                started = true;
+            }
+            long due = startNanos + (long) ((reader.getTime() - firstTime)/speed);
+            if (due > now)
+            {
+                if (!block)
+                {
+                    return false;
+                }
+                try
+                {
+                    TimeUnit.NANOSECONDS.sleep(due - now);
+                }
+                catch (InterruptedException ex)
+                {
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+        pending = reader.getSentence();
+        loaded = false;
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ReplayChannel{speed=" + speed + ", sources=" + sources + '}';
+    }
+    
+}
@@ -25,7 +25,7 @@ import org.vesalainen.nmea.router.Router;
  *
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
  */
-class BroadcastEndpoint extends Endpoint<BroadcastType,UnconnectedDatagramChannel>
+class BroadcastEndpoint extends UDPEndpoint<BroadcastType>
 {
 
     public BroadcastEndpoint(BroadcastType broadcastType, Router router)
@@ -25,7 +25,7 @@ import org.vesalainen.nmea.router.Router;
  *
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
  */
-public class BroadcastNMEAEndpoint extends Endpoint<BroadcastNMEAType,UnconnectedDatagramChannel>
+public class BroadcastNMEAEndpoint extends UDPEndpoint<BroadcastNMEAType>
 {
 
     public BroadcastNMEAEndpoint(BroadcastNMEAType broadcastNMEAType, Router router)
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.endpoint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import static java.util.logging.Level.SEVERE;
+import org.vesalainen.nio.RingByteBuffer;
+import org.vesalainen.nio.channels.NullChannel;
+import org.vesalainen.nmea.jaxb.router.CaptureEndpointType;
+import org.vesalainen.nmea.router.Router;
+import static org.vesalainen.nmea.router.RouterManager.LOOPS;
+import org.vesalainen.nmea.router.SharedSentence;
+import org.vesalainen.nmea.router.capture.CaptureWriter;
+
+/**
+ * CaptureEndpoint records all sentences routed to it with source endpoint 
+ * name and receive time to memory-mapped segment files.
+ * 
+ * <p>Routing thread only puts reference of shared sentence to bounded 
+ * lock-free ring. Capture writer thread drains the ring and appends to 
+ * segment. If ring is full sentence is dropped.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.router.capture.CaptureWriter
+ * @see org.vesalainen.nmea.router.endpoint.ReplayEndpoint
+ */
+public class CaptureEndpoint extends Endpoint<CaptureEndpointType,NullChannel>
+{
+    private static final int DEFAULT_CAPACITY = 65536;
+    private static final long IDLE_PARK = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long CLOCK_SYNC = TimeUnit.MINUTES.toNanos(1);
+    private final AtomicReferenceArray<SharedSentence> ring;
+    private final String[] sources;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final LongAdder dropCount = new LongAdder();
+    private volatile boolean running;
+    private Future<?> writerFuture;
+    private byte[] buffer = new byte[SharedSentence.SLAB_SIZE];
+    private long baseEpochNanos;
+    private long baseNanos;
+
+    public CaptureEndpoint(CaptureEndpointType endpointType, Router router)
+    {
+        super(endpointType, router);
+        Integer queueSize = endpointType.getQueueSize();
+        int capacity = queueSize != null ? Integer.highestOneBit(queueSize-1)<<1 : DEFAULT_CAPACITY;
+        capacity = Math.max(capacity, 2);
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.sources = new String[capacity];
+        this.mask = capacity - 1;
+    }
+
+    @Override
+    public NullChannel createChannel() throws IOException
+    {
+        return new NullChannel();
+    }
+    /**
+     * Capture has its own ring instead of outbound queue.
+     * @return 
+     */
+    @Override
+    protected int getQueueSize()
+    {
+        return 0;
+    }
+
+    @Override
+    public boolean isSharedWriter()
+    {
+        return true;
+    }
+
+    @Override
+    public int write(Endpoint src, SharedSentence sentence) throws IOException
+    {
+        lastWrite = System.currentTimeMillis();
+        if (!accept(sentence))
+        {
+            return 0;
+        }
+        return offer(src.getName(), sentence) ? sentence.length() : 0;
+    }
+
+    @Override
+    public int write(Endpoint src, RingByteBuffer ring) throws IOException
+    {
+        SharedSentence sentence = SharedSentence.copyOf(ring);
+        try
+        {
+            return write(src, sentence);
+        }
+        finally
+        {
+            sentence.release();
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer bb) throws IOException
+    {
+        SharedSentence sentence = SharedSentence.copyOf(bb);
+        try
+        {
+            return offer(name, sentence) ? sentence.length() : 0;
+        }
+        finally
+        {
+            sentence.release();
+        }
+    }
+    
+    private boolean offer(String source, SharedSentence sentence)
+    {
+        if (!running)
+        {
+            return false;
+        }
+        long t = tail.get();
+        while (true)
+        {
+            if (t - head >= ring.length())
+            {
+                dropCount.increment();
+                return false;
+            }
+            if (tail.compareAndSet(t, t+1))
+            {
+                break;
+            }
+            t = tail.get();
+        }
+        int index = (int) (t & mask);
+        sources[index] = source;
+        ring.lazySet(index, sentence.retain());
+        return true;
+    }
+
+    @Override
+    protected void onStart() throws IOException
+    {
+        CaptureWriter writer = new CaptureWriter(
+                Paths.get(endpointType.getDirectory()), 
+                endpointType.getSegmentSize() != null ? endpointType.getSegmentSize() : CaptureWriter.DEFAULT_SEGMENT_SIZE, 
+                endpointType.getIndexInterval() != null ? endpointType.getIndexInterval() : CaptureWriter.DEFAULT_INDEX_INTERVAL, 
+                endpointType.getMaxSegments() != null ? endpointType.getMaxSegments() : 0
+        );
+        running = true;
+        writerFuture = LOOPS.submit(()->writeLoop(writer));
+        config("%s capturing to %s", name, endpointType.getDirectory());
+        super.onStart();
+    }
+
+    @Override
+    protected void onStop() throws IOException
+    {
+        super.onStop();
+        running = false;
+        if (writerFuture != null)
+        {
+            try
+            {
+                writerFuture.get(5, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException | ExecutionException | TimeoutException ex)
+            {
+                warning("%s capture writer stop %s", name, ex);
+                writerFuture.cancel(true);
+            }
+            writerFuture = null;
+        }
+    }
+    
+    private void writeLoop(CaptureWriter writer)
+    {
+        try
+        {
+            syncClock();
+            while (running)
+            {
+                if (drain(writer) == 0)
+                {
+                    LockSupport.parkNanos(IDLE_PARK);
+                }
+                if (System.nanoTime() - baseNanos > CLOCK_SYNC)
+                {
+                    syncClock();
+                }
+            }
+            drain(writer);
+        }
+        catch (Throwable ex)
+        {
+            running = false;
+            log(SEVERE, ex, "%s capture stopped %s", name, ex.getMessage());
+        }
+        finally
+        {
+            try
+            {
+                writer.close();
+            }
+            catch (IOException ex)
+            {
+                warning("%s capture close %s", name, ex);
+            }
+            release();
+        }
+    }
+    /**
+     * Appends queued sentences. Called by capture writer thread.
+     * @param writer
+     * @return Number of appended sentences.
+     * @throws IOException 
+     */
+    private int drain(CaptureWriter writer) throws IOException
+    {
+        int count = 0;
+        long h = head;
+        while (true)
+        {
+            int index = (int) (h & mask);
+            SharedSentence sentence = ring.get(index);
+            if (sentence == null)
+            {
+                break;
+            }
+            String source = sources[index];
+            sources[index] = null;
+            ring.lazySet(index, null);
+            h++;
+            head = h;
+            try
+            {
+                long readNanos = sentence.getReadNanos();
+                long nanos = readNanos != 0 ? readNanos : System.nanoTime();
+                int len = sentence.length();
+                if (buffer.length < len)
+                {
+                    buffer = new byte[len];
+                }
+                sentence.copyTo(buffer, 0);
+                writer.append(source, baseEpochNanos + nanos - baseNanos, buffer, 0, len);
+                countWrite(len);
+                recordLatency(readNanos);
+            }
+            finally
+            {
+                sentence.release();
+            }
+            count++;
+        }
+        return count;
+    }
+    private void release()
+    {
+        for (int ii=0;ii<ring.length();ii++)
+        {
+            SharedSentence sentence = ring.getAndSet(ii, null);
+            if (sentence != null)
+            {
+                sentence.release();
+            }
+        }
+    }
+    private void syncClock()
+    {
+        baseNanos = System.nanoTime();
+        baseEpochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    }
+
+    @Override
+    public int getQueueDepth()
+    {
+        return (int) (tail.get() - head);
+    }
+
+    @Override
+    public long getDropCount()
+    {
+        return dropCount.sum();
+    }
+
+}
@@ -18,39 +18,41 @@ package org.vesalainen.nmea.router.endpoint;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.function.LongSupplier;
-import java.util.function.Supplier;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Logger;
 import javax.management.ListenerNotFoundException;
-import javax.management.MBeanNotificationInfo;
 import javax.management.MalformedObjectNameException;
-import javax.management.Notification;
 import javax.management.NotificationEmitter;
 import javax.management.NotificationFilter;
 import javax.management.NotificationListener;
 import javax.management.ObjectName;
-import org.vesalainen.management.SimpleNotificationEmitter;
 import org.vesalainen.nio.RingByteBuffer;
 import org.vesalainen.nmea.router.DataSourceMXBean;
-import static org.vesalainen.nmea.router.RouterManager.POOL;
+import org.vesalainen.nmea.router.LatencyHistogram;
+import org.vesalainen.nmea.router.MetricsServer;
+import org.vesalainen.nmea.router.RateMeter;
 import org.vesalainen.util.logging.JavaLogging;
 
 /**
- *
+ * DataSource keeps counters, rates and read-to-write latency histogram of
+ * endpoint. Counters are updated from several reader and writer threads.
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
  */
 public abstract class DataSource extends JavaLogging implements Runnable, DataSourceMXBean, NotificationEmitter
 {
     protected final String name;
-    protected long readCount;
-    protected long readBytes;
-    protected long writeCount;
-    protected long writeBytes;
-    protected long errorBytes;
+    private final RateMeter readRate = new RateMeter();
+    private final LongAdder readBytes = new LongAdder();
+    private final RateMeter writeRate = new RateMeter();
+    private final LongAdder writeBytes = new LongAdder();
+    private final LongAdder errorBytes = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
     protected long lastRead;
     protected long lastWrite;
-    protected SimpleNotificationEmitter emitter;
+    protected final NotificationPublisher publisher;
     protected ObjectName objectName;
 
     public DataSource(String name)
@@ -64,15 +66,7 @@ public abstract class DataSource extends JavaLogging implements Runnable, DataSo
         {
             throw new RuntimeException(ex);
         }
-        this.emitter = new SimpleNotificationEmitter(
-                POOL, 
-                "org.vesalainen.nmea.router.endpoint.notification", 
-                objectName, 
-                new MBeanNotificationInfo(
-                        new String[]{"org.vesalainen.nmea.router.endpoint.notification"},
-                        Notification.class.getName(),
-                        "NMEA router message/error")
-                );
+        this.publisher = new NotificationPublisher(objectName);
         setLogger(Logger.getLogger(this.getClass().getName().replace('$', '.') + "." + name));
     }
 
@@ -83,28 +77,63 @@ public abstract class DataSource extends JavaLogging implements Runnable, DataSo
     public abstract int write(ByteBuffer readBuffer) throws IOException;
 
     public abstract int write(Endpoint src, RingByteBuffer ring) throws IOException;
+    /**
+     * Counts read sentence
+     * @param bytes 
+     */
+    protected void countRead(int bytes)
+    {
+        readRate.mark();
+        readBytes.add(bytes);
+    }
+    /**
+     * Counts written sentence
+     * @param bytes 
+     */
+    protected void countWrite(int bytes)
+    {
+        writeRate.mark();
+        writeBytes.add(bytes);
+    }
+    /**
+     * Counts rejected input
+     * @param bytes 
+     */
+    protected void countError(int bytes)
+    {
+        errorBytes.add(bytes);
+    }
+    /**
+     * Records latency from source read to completion of write.
+     * @param readNanos System.nanoTime() of source read or 0 if unknown.
+     */
+    public void recordLatency(long readNanos)
+    {
+        latency.recordSince(readNanos);
+    }
 
-    public synchronized void sendNotification(Supplier<String> typeSupplier, Supplier<String> textSupplier, Supplier<?> userDataSupplier, LongSupplier timestampSupplier)
+    @Override
+    public void removeNotificationListener(NotificationListener listener, NotificationFilter filter, Object handback) throws ListenerNotFoundException
     {
-        emitter.sendNotification(typeSupplier, textSupplier, userDataSupplier, timestampSupplier);
+        publisher.removeNotificationListener(listener, filter, handback);
     }
 
     @Override
-    public synchronized void removeNotificationListener(NotificationListener listener, NotificationFilter filter, Object handback) throws ListenerNotFoundException
+    public void addNotificationListener(NotificationListener listener, NotificationFilter filter, Object handback) throws IllegalArgumentException
     {
-        emitter.removeNotificationListener(listener, filter, handback);
+        publisher.addNotificationListener(listener, filter, handback);
     }
 
     @Override
-    public synchronized void addNotificationListener(NotificationListener listener, NotificationFilter filter, Object handback) throws IllegalArgumentException
+    public void removeNotificationListener(NotificationListener listener) throws ListenerNotFoundException
     {
-        emitter.addNotificationListener(listener, filter, handback);
+        publisher.removeNotificationListener(listener);
     }
 
     @Override
-    public synchronized void removeNotificationListener(NotificationListener listener) throws ListenerNotFoundException
+    public long getNotificationDropCount()
     {
-        emitter.removeNotificationListener(listener);
+        return publisher.getDropCount();
     }
 
     @Override
@@ -116,31 +145,66 @@ public abstract class DataSource extends JavaLogging implements Runnable, DataSo
     @Override
     public long getReadCount()
     {
-        return readCount;
+        return readRate.getCount();
     }
 
     @Override
     public long getReadBytes()
     {
-        return readBytes;
+        return readBytes.sum();
     }
 
     @Override
     public long getWriteCount()
     {
-        return writeCount;
+        return writeRate.getCount();
     }
 
     @Override
     public long getWriteBytes()
     {
-        return writeBytes;
+        return writeBytes.sum();
     }
 
     @Override
     public long getErrorBytes()
     {
-        return errorBytes;
+        return errorBytes.sum();
+    }
+
+    @Override
+    public float getReadRate()
+    {
+        return readRate.getRate();
+    }
+
+    @Override
+    public float getWriteRate()
+    {
+        return writeRate.getRate();
+    }
+
+    @Override
+    public List<Float> getLatencyPercentiles()
+    {
+        List<Float> list = new ArrayList<>();
+        for (double q : MetricsServer.getQuantiles())
+        {
+            list.add(latency.getValueAtPercentile(100*q)/1000F);
+        }
+        return list;
+    }
+
+    @Override
+    public float getLatencyMax()
+    {
+        return latency.getMax()/1000F;
+    }
+
+    @Override
+    public long getLatencyCount()
+    {
+        return latency.getCount();
     }
 
     @Override
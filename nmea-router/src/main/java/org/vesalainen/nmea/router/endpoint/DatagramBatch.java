@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.endpoint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import org.vesalainen.util.logging.JavaLogging;
+
+/**
+ * DatagramBatch packs consecutive sentences into one datagram. Datagram is 
+ * sent when next sentence doesn't fit, when delay has passed since the first
+ * sentence of datagram or immediately after sentence matching flush prefix.
+ * 
+ * <p>Flush prefix matches the start of sentence. '?' matches any character.
+ * 
+ * <p>Datagram is sent while holding ReentrantLock, not monitor, so that 
+ * virtual thread sender doesn't pin its carrier.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class DatagramBatch extends JavaLogging
+{
+    private final String name;
+    private final ByteBuffer buffer;
+    private final long delay;
+    private final String[] flushPrefixes;
+    private final ScheduledExecutorService executor;
+    private final ReentrantLock lock = new ReentrantLock();
+    private WritableByteChannel channel;
+    private int sentences;
+    private long batchId;
+    private long packetCount;
+    private long packetsSaved;
+    /**
+     * Creates DatagramBatch
+     * @param name Endpoint name
+     * @param size Max datagram size
+     * @param delay Max time in milliseconds sentence is held. 0 means no 
+     * time limit.
+     * @param flushPrefixes Prefixes which are sent immediately. Can be null.
+     * @param executor Executor for delayed flush.
+     */
+    public DatagramBatch(String name, int size, long delay, List<String> flushPrefixes, ScheduledExecutorService executor)
+    {
+        super(DatagramBatch.class);
+        this.name = name;
+        this.buffer = ByteBuffer.allocate(size);
+        this.delay = delay;
+        this.flushPrefixes = flushPrefixes != null ? flushPrefixes.toArray(new String[flushPrefixes.size()]) : new String[0];
+        this.executor = executor;
+    }
+    /**
+     * Adds sentence to datagram.
+     * @param seq
+     * @param channel
+     * @return
+     * @throws IOException 
+     */
+    public int add(CharSequence seq, WritableByteChannel channel) throws IOException
+    {
+        lock.lock();
+        try
+        {
+            this.channel = channel;
+            int len = seq.length();
+            if (buffer.remaining() < len)
+            {
+                flush();
+                if (buffer.remaining() < len)
+                {
+                    warning("%s sentence length %d > datagram size %d", name, len, buffer.capacity());
+                    return 0;
+                }
+            }
+            for (int ii=0;ii<len;ii++)
+            {
+                buffer.put((byte) seq.charAt(ii));
+            }
+            sentences++;
+            if (buffer.remaining() == 0 || isFlushPrefix(seq))
+            {
+                flush();
+            }
+            else
+            {
+                if (sentences == 1 && delay > 0)
+                {
+                    long id = batchId;
+                    executor.schedule(()->timeout(id), delay, MILLISECONDS);
+                }
+            }
+            return len;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    /**
+     * Sends datagram if it contains sentences.
+     * @throws IOException 
+     */
+    public void flush() throws IOException
+    {
+        lock.lock();
+        try
+        {
+            if (sentences > 0)
+            {
+                buffer.flip();
+                try
+                {
+                    channel.write(buffer);
+                }
+                finally
+                {
+                    buffer.clear();
+                    packetCount++;
+                    packetsSaved += sentences - 1;
+                    sentences = 0;
+                    batchId++;
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    private void timeout(long id)
+    {
+        lock.lock();
+        try
+        {
+            if (id == batchId)
+            {
+                try
+                {
+                    flush();
+                }
+                catch (IOException ex)
+                {
+                    warning("%s flush %s", name, ex.getMessage());
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    private boolean isFlushPrefix(CharSequence seq)
+    {
+        for (String prefix : flushPrefixes)
+        {
+            if (startsWith(seq, prefix))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+    private static boolean startsWith(CharSequence seq, String prefix)
+    {
+        int len = prefix.length();
+        if (seq.length() < len)
+        {
+            return false;
+        }
+        for (int ii=0;ii<len;ii++)
+        {
+            char cc = prefix.charAt(ii);
+            if (cc != '?' && cc != seq.charAt(ii))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Returns number of sent datagrams.
+     * @return 
+     */
+    public long getPacketCount()
+    {
+        lock.lock();
+        try
+        {
+            return packetCount;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    /**
+     * Returns number of datagrams saved by packing.
+     * @return 
+     */
+    public long getPacketsSaved()
+    {
+        lock.lock();
+        try
+        {
+            return packetsSaved;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    
+}
@@ -25,7 +25,7 @@ import org.vesalainen.nmea.router.Router;
  *
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
  */
-class DatagramEndpoint extends Endpoint<DatagramType,UnconnectedDatagramChannel>
+class DatagramEndpoint extends UDPEndpoint<DatagramType>
 {
 
     public DatagramEndpoint(DatagramType datagramType, Router router)
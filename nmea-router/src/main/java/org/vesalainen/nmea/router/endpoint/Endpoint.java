@@ -25,6 +25,9 @@ import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ScatteringByteChannel;
 import static java.nio.charset.StandardCharsets.US_ASCII;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -32,21 +35,32 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import static java.util.logging.Level.*;
 import javax.management.MBeanNotificationInfo;
 import javax.management.Notification;
 import org.vesalainen.nio.RingByteBuffer;
+import org.vesalainen.nmea.jaxb.router.DecimateType;
 import org.vesalainen.nmea.jaxb.router.EndpointType;
 import org.vesalainen.nmea.jaxb.router.FilterType;
 import org.vesalainen.nmea.jaxb.router.RouteType;
 import org.vesalainen.nmea.jaxb.router.ScriptType;
 import org.vesalainen.nmea.router.NMEAMatcher;
 import org.vesalainen.nmea.router.NMEAReader;
+import org.vesalainen.nmea.router.RateMeter;
 import org.vesalainen.nmea.router.Route;
 import org.vesalainen.nmea.router.Router;
+import static org.vesalainen.nmea.router.RouterManager.LOOPS;
+import static org.vesalainen.nmea.router.RouterManager.POOL;
+import org.vesalainen.nmea.router.RoutingTable;
+import org.vesalainen.nmea.router.SharedSentence;
+import org.vesalainen.nmea.router.VirtualThreads;
+import org.vesalainen.nmea.router.filter.DecimationFilter;
+import org.vesalainen.nmea.router.filter.FilterChain;
 import org.vesalainen.nmea.router.filter.MessageFilter;
-import org.vesalainen.parsers.nmea.NMEA;
 import org.vesalainen.util.HexDump;
 
 /**
@@ -57,21 +71,28 @@ import org.vesalainen.util.HexDump;
  */
 public abstract class Endpoint<E extends EndpointType, T extends ScatteringByteChannel & GatheringByteChannel> extends DataSource
 {
-    protected static final Map<String,Endpoint> endpointMap = new ConcurrentHashMap<>();
     protected static final String NOTIF_TYPE = "org.vesalainen.nmea.router.";
     protected static final String NOTIF_ERROR_TYPE = NOTIF_TYPE+"ERR";
     protected final Router router;
-    protected final E endpointType;
+    protected volatile E endpointType;
     protected int bufferSize = 128;
     protected T channel;
-    protected NMEAMatcher<Route> matcher;
+    protected volatile NMEAMatcher<Route> matcher;
     protected RingByteBuffer ring;
     protected EndpointScriptEngine scriptEngine;
-    protected List<MessageFilter> filterList;
+    private volatile Filters filters;
+    private volatile int routingVersion;
     protected Set<String> fingerPrint = new HashSet<>();
-    private NMEAReader reader;
+    private final BitSet fingerPrintIds = new BitSet();
+    private volatile NMEAReader reader;
     protected CountDownLatch started = new CountDownLatch(1);
+    protected final CountDownLatch stopped = new CountDownLatch(1);
     private MBeanNotificationInfo[] mBeanNotificationInfo;
+    private final Map<String,NotificationPublisher.Type> notificationTypes = new ConcurrentHashMap<>();
+    private NotificationPublisher.Type errorType;
+    private final Map<String,RateMeter> routeRates = new ConcurrentHashMap<>();
+    private volatile OutboundQueue outboundQueue;
+    private Future<?> writerFuture;
 
     public Endpoint(E endpointType, Router router)
     {
@@ -94,17 +115,64 @@ public abstract class Endpoint<E extends EndpointType, T extends ScatteringByteC
 
     private void init()
     {
+        errorType = publisher.getType(NOTIF_ERROR_TYPE);
+        Long notificationInterval = endpointType.getNotificationInterval();
+        if (notificationInterval != null)
+        {
+            publisher.setInterval(notificationInterval);
+        }
         ScriptType scriptType = endpointType.getScript();
         if (scriptType != null)
         {
             scriptEngine = new EndpointScriptEngine(router, this, scriptType.getValue());
         }
-        List<FilterType> filters = endpointType.getFilter();
-        if (filters != null && !filters.isEmpty())
+        filters = createFilters(endpointType);
+        matcher = createMatcher(endpointType);
+    }
+    /**
+     * Replaces routes, filters and decimation of running endpoint. Channel 
+     * is not touched. Input matcher is replaced at next sentence boundary.
+     * @param newType Endpoint type with same name and channel settings.
+     * @see org.vesalainen.nmea.router.ConfigDiff
+     */
+    public synchronized void reconfigure(E newType)
+    {
+        if (!endpointType.getName().equals(newType.getName()))
+        {
+            throw new IllegalArgumentException(newType.getName()+" cannot reconfigure "+endpointType.getName());
+        }
+        Filters newFilters = createFilters(newType);
+        NMEAMatcher<Route> newMatcher = createMatcher(newType);
+        filters = newFilters;
+        matcher = newMatcher;
+        endpointType = newType;
+        routingVersion++;
+        NMEAReader r = reader;
+        if (r != null)
+        {
+            r.setMatcher(newMatcher);
+        }
+        config("%s reconfigured", name);
+    }
+    /**
+     * Returns version which is incremented when endpoint is reconfigured.
+     * @return 
+     */
+    protected int getRoutingVersion()
+    {
+        return routingVersion;
+    }
+    private Filters createFilters(EndpointType endpointType)
+    {
+        List<MessageFilter> filterList = null;
+        FilterChain filterChain = null;
+        DecimationFilter decimationFilter = null;
+        List<FilterType> filterTypes = endpointType.getFilter();
+        if (filterTypes != null && !filterTypes.isEmpty())
         {
             config("add filters for %s", name);
             filterList = new ArrayList<>();
-            for (FilterType filterType : filters)
+            for (FilterType filterType : filterTypes)
             {
                 String classname = filterType.getClassname();
                 config("creating filter %s", classname);
@@ -126,8 +194,37 @@ public abstract class Endpoint<E extends EndpointType, T extends ScatteringByteC
                     throw new IllegalArgumentException(ex);
                 }
             }
+            filterChain = FilterChain.canonicalize(filterList);
+            if (filterChain != null)
+            {
+                config("shared %s", filterChain);
+                filterList.subList(0, filterChain.getLength()).clear();
+                if (filterList.isEmpty())
+                {
+                    filterList = null;
+                }
+            }
         }
-        matcher = createMatcher(endpointType);
+        List<DecimateType> decimates = endpointType.getDecimate();
+        if (decimates != null && !decimates.isEmpty())
+        {
+            decimationFilter = new DecimationFilter();
+            for (DecimateType decimateType : decimates)
+            {
+                config("decimate %s to %s Hz", decimateType.getPrefix(), decimateType.getMaxRate());
+                decimationFilter.add(decimateType.getPrefix(), decimateType.getMaxRate().doubleValue());
+            }
+            if (filterList == null)
+            {
+                filterList = new ArrayList<>();
+            }
+            filterList.add(decimationFilter);
+        }
+        if (filterChain == null && filterList == null)
+        {
+            return null;
+        }
+        return new Filters(filterChain, filterList, decimationFilter);
     }
 
     protected NMEAMatcher<Route> createMatcher(EndpointType endpointType)
@@ -144,8 +241,9 @@ public abstract class Endpoint<E extends EndpointType, T extends ScatteringByteC
             String prefix = rt.getPrefix();
             if (prefix != null && !prefix.isEmpty())
             {
-                wm.addExpression(prefix, new Route(prefix, rt));
+                wm.addExpression(prefix, new Route(prefix, rt, endpointType.getDedupWindow(), routeRates.computeIfAbsent(prefix, (p)->new RateMeter())));
                 notifs.add(NOTIF_TYPE+prefix);
+                notificationTypes.put(prefix, publisher.getType(NOTIF_TYPE+prefix));
             }
         }
         mBeanNotificationInfo = new MBeanNotificationInfo[] {new MBeanNotificationInfo(
@@ -169,20 +267,127 @@ public abstract class Endpoint<E extends EndpointType, T extends ScatteringByteC
         int cnt = 0;
         if (channel != null)
         {
-            if (filterList != null)
+            if (!accept(ring))
             {
-                for (MessageFilter filter : filterList)
-                {
-                    if (!filter.accept(ring))
-                    {
-                        return 0;
-                    }
-                }
+                return 0;
+            }
+            OutboundQueue queue = outboundQueue;
+            if (queue != null)
+            {
+                return queue.offer(ring) ? ring.length() : 0;
             }
             cnt = ring.writeTo(channel);
             finer("write %s = %d", ring, cnt);
-            writeCount++;
-            writeBytes += cnt;
+            countWrite(cnt);
+        }
+        return cnt;
+    }
+
+    /**
+     * Returns true if all filters accept sentence. Verdict of shared filter 
+     * chain is cached in shared sentence.
+     * @param seq
+     * @return 
+     * @see org.vesalainen.nmea.router.filter.FilterChain
+     */
+    protected boolean accept(CharSequence seq)
+    {
+        Filters f = filters;
+        if (f == null)
+        {
+            return true;
+        }
+        FilterChain filterChain = f.chain;
+        if (filterChain != null)
+        {
+            if (seq instanceof SharedSentence)
+            {
+                if (!((SharedSentence)seq).accept(filterChain))
+                {
+                    return false;
+                }
+            }
+            else
+            {
+                if (!filterChain.accept(seq))
+                {
+                    return false;
+                }
+            }
+        }
+        List<MessageFilter> filterList = f.list;
+        if (filterList != null)
+        {
+            for (MessageFilter filter : filterList)
+            {
+                if (!filter.accept(seq))
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    /**
+     * Returns true if this endpoint holds written sentences after write 
+     * returns. Such endpoints are written with shared sentences instead of
+     * ring.
+     * @return 
+     * @see #write(org.vesalainen.nmea.router.endpoint.Endpoint, org.vesalainen.nmea.router.SharedSentence) 
+     */
+    public boolean isSharedWriter()
+    {
+        return outboundQueue != null;
+    }
+    /**
+     * Returns true if channel of this endpoint blocks in native code. Virtual
+     * thread blocked in native code pins its carrier thread, so such 
+     * endpoints are run in platform threads also in VIRTUAL thread mode.
+     * @return 
+     */
+    public boolean isNativeChannel()
+    {
+        return false;
+    }
+    /**
+     * Returns executor for blocking loops of this endpoint. POOL for native
+     * channels, otherwise LOOPS.
+     * @return 
+     * @see #isNativeChannel() 
+     */
+    public ExecutorService getLoopExecutor()
+    {
+        return isNativeChannel() ? POOL : LOOPS;
+    }
+    /**
+     * Writes shared sentence. Sentence is retained if it is queued.
+     * @param src
+     * @param sentence
+     * @return
+     * @throws IOException 
+     */
+    public int write(Endpoint src, SharedSentence sentence) throws IOException
+    {
+        lastWrite = System.currentTimeMillis();
+        int cnt = 0;
+        if (channel != null)
+        {
+            if (!accept(sentence))
+            {
+                return 0;
+            }
+            OutboundQueue queue = outboundQueue;
+            if (queue != null)
+            {
+                return queue.offer(sentence) ? sentence.length() : 0;
+            }
+            cnt = sentence.writeTo(channel, 0);
+            if (isLoggable(FINER))
+            {
+                finer("write %s = %d", sentence, cnt);
+            }
+            countWrite(cnt);
+            recordLatency(sentence.getReadNanos());
         }
         return cnt;
     }
@@ -196,15 +401,14 @@ public abstract class Endpoint<E extends EndpointType, T extends ScatteringByteC
         {
             cnt = channel.write(bb);
             finest("write %s = %d", bb, cnt);
-            writeCount++;
-            writeBytes += cnt;
+            countWrite(cnt);
         }
         return cnt;
     }
     protected abstract T createChannel() throws IOException;
     protected void onStart() throws IOException
     {
-        endpointMap.put(name, this);
+        RoutingTable.put(name, this);
         if (scriptEngine != null)
         {
             scriptEngine.start();
@@ -213,7 +417,7 @@ public abstract class Endpoint<E extends EndpointType, T extends ScatteringByteC
     }
     protected void onStop() throws IOException
     {
-        endpointMap.remove(name);
+        RoutingTable.remove(name);
         if (scriptEngine != null)
         {
             scriptEngine.stop();
@@ -226,6 +430,11 @@ public abstract class Endpoint<E extends EndpointType, T extends ScatteringByteC
         try
         {
             Integer priority = endpointType.getPriority();
+            if (priority != null && VirtualThreads.isVirtual(Thread.currentThread()))
+            {
+                config("%s priority %d ignored in virtual thread", name, priority);
+                priority = null;
+            }
             if (priority != null)
             {
                 Thread.currentThread().setPriority(priority);
@@ -235,14 +444,17 @@ public abstract class Endpoint<E extends EndpointType, T extends ScatteringByteC
             onStart();
             try (T ch = createChannel())
             {
+                startOutboundQueue(ch);
                 channel = ch;
                 started.countDown();
                 config("started %s", channel);
                 reader = new NMEAReader(name, matcher, channel, bufferSize, this::onOk, this::onError);
+                reader.setBulk(true);
                 reader.read();
             }
             finally
             {
+                stopOutboundQueue();
                 onStop();
                 if (priority != null)
                 {
@@ -256,44 +468,118 @@ public abstract class Endpoint<E extends EndpointType, T extends ScatteringByteC
         {
             warnBrokenConnection(ex, "%s stopped because of %s", name, ex);
         }
+        finally
+        {
+            stopped.countDown();
+        }
+    }
+    /**
+     * Waits until run has returned.
+     * @param timeout
+     * @param unit
+     * @return false if timeout elapsed before run returned.
+     * @throws InterruptedException 
+     */
+    public boolean awaitStop(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return stopped.await(timeout, unit);
+    }
+
+    /**
+     * Returns outbound queue size or 0 if writes are synchronous.
+     * @return 
+     */
+    protected int getQueueSize()
+    {
+        Integer queueSize = endpointType.getQueueSize();
+        return queueSize != null ? queueSize : 0;
+    }
+    private void startOutboundQueue(T ch)
+    {
+        int queueSize = getQueueSize();
+        if (queueSize > 0)
+        {
+            outboundQueue = new OutboundQueue(name, ch, queueSize, endpointType.getDropPolicy(), this::wrote);
+            writerFuture = getLoopExecutor().submit(outboundQueue);
+            config("%s started %s", name, outboundQueue);
+        }
+    }
+    private void stopOutboundQueue()
+    {
+        if (outboundQueue != null)
+        {
+            outboundQueue.stop();
+            writerFuture.cancel(true);
+            outboundQueue = null;
+        }
+    }
+    private void wrote(int cnt, long readNanos)
+    {
+        countWrite(cnt);
+        recordLatency(readNanos);
     }
 
     protected void onOk(RingByteBuffer ring, long timestamp) throws IOException
     {
-        readBytes += ring.length();
-        readCount++;
+        NMEAReader r = reader;
+        onMatch((Route) r.getMatcher().getMatched(), ring, timestamp, r.getReadNanos());
+    }
+    /**
+     * Routes matched input
+     * @param route
+     * @param ring
+     * @param timestamp
+     * @param readNanos System.nanoTime() of read
+     * @throws IOException 
+     */
+    protected void onMatch(Route route, RingByteBuffer ring, long timestamp, long readNanos) throws IOException
+    {
+        countRead(ring.length());
         lastRead = System.currentTimeMillis();
         finer("read: %s", ring);
-        String prefix = getPrefix(ring);
-        Route route = matcher.getMatched();
-        route.write(this, prefix, ring);
+        int prefixId = RoutingTable.getPrefixId(ring);
+        route.write(this, prefixId, ring, readNanos);
         if (scriptEngine != null)
         {
             scriptEngine.write(ring);
         }
-        sendNotification(()->NOTIF_TYPE+route.getExpression(), ()->ring.getString(), ()->route.toString(), ()->timestamp);
-        if (prefix != null && !prefix.isEmpty())
+        if (publisher.hasListeners())
         {
-            fingerPrint.add(prefix);
+            publisher.publish(notificationTypes.get(route.getExpression()), ring, route.toString(), timestamp);
         }
-    }
-    private String getPrefix(RingByteBuffer ring)
-    {
-        CharSequence seqPrefix = NMEA.getPrefix(ring);
-        if (seqPrefix != null)
+        if (prefixId != 0 && !fingerPrintIds.get(prefixId))
         {
-            return seqPrefix.toString();
+            synchronized (fingerPrintIds)
+            {
+                fingerPrintIds.set(prefixId);
+                fingerPrint.add(RoutingTable.getPrefix(prefixId));
+            }
         }
-        return null;
     }
     protected void onError(Supplier<byte[]> errInput) throws IOException
     {
         lastRead = System.currentTimeMillis();
         byte[] error = errInput.get();
-        errorBytes += error.length;
-        fine("%s: rejected %s", name, new String(error, US_ASCII));
-        finest(()->HexDump.toHex(errInput));
-        sendNotification(()->NOTIF_ERROR_TYPE, ()->new String(error, US_ASCII), ()->error, ()->lastRead);
+        countError(error.length);
+        if (isLoggable(FINE))
+        {
+            fine("%s: rejected %s", name, new String(error, US_ASCII));
+            finest(()->HexDump.toHex(errInput));
+        }
+        if (publisher.hasListeners())
+        {
+            publisher.publish(errorType, new String(error, US_ASCII), error, lastRead);
+        }
+    }
+
+    /**
+     * Returns checksum error percent of input matcher.
+     * @return 
+     * @see org.vesalainen.nmea.router.NMEAMatcher#getErrorPrecent() 
+     */
+    public float getMatchErrorPercent()
+    {
+        return matcher.getErrorPrecent();
     }
 
     @Override
@@ -308,6 +594,56 @@ public abstract class Endpoint<E extends EndpointType, T extends ScatteringByteC
         return fingerPrint;
     }
 
+    @Override
+    public Map<String, Long> getDecimationPassCounts()
+    {
+        Filters f = filters;
+        return f != null && f.decimation != null ? f.decimation.getPassCounts() : Collections.EMPTY_MAP;
+    }
+
+    @Override
+    public Map<String, Long> getDecimationDropCounts()
+    {
+        Filters f = filters;
+        return f != null && f.decimation != null ? f.decimation.getDropCounts() : Collections.EMPTY_MAP;
+    }
+
+    @Override
+    public Map<String, Float> getRouteRates()
+    {
+        Map<String,Float> map = new HashMap<>();
+        routeRates.forEach((p, r)->map.put(p, r.getRate()));
+        return map;
+    }
+
+    @Override
+    public int getQueueDepth()
+    {
+        OutboundQueue q = outboundQueue;
+        return q != null ? q.getDepth() : 0;
+    }
+
+    @Override
+    public long getDropCount()
+    {
+        OutboundQueue q = outboundQueue;
+        return q != null ? q.getDropCount() : 0;
+    }
+
+    @Override
+    public float getAverageWriteLatency()
+    {
+        OutboundQueue q = outboundQueue;
+        return q != null ? q.getAverageWriteLatency() : 0;
+    }
+
+    @Override
+    public float getMaxWriteLatency()
+    {
+        OutboundQueue q = outboundQueue;
+        return q != null ? q.getMaxWriteLatency() : 0;
+    }
+
     public E getEndpointType()
     {
         return endpointType;
@@ -315,12 +651,29 @@ public abstract class Endpoint<E extends EndpointType, T extends ScatteringByteC
 
     public static Endpoint get(String name)
     {
-        return endpointMap.get(name);
+        return RoutingTable.get(name);
     }
     @Override
     public String toString()
     {
         return "Endpoint{" + "name=" + name + '}';
     }
+    /**
+     * Filters are replaced as a whole when endpoint is reconfigured.
+     */
+    private static class Filters
+    {
+        private final FilterChain chain;
+        private final List<MessageFilter> list;
+        private final DecimationFilter decimation;
+
+        public Filters(FilterChain chain, List<MessageFilter> list, DecimationFilter decimation)
+        {
+            this.chain = chain;
+            this.list = list;
+            this.decimation = decimation;
+        }
+        
+    }
 
 }
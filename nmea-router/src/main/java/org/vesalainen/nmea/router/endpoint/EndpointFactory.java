@@ -19,6 +19,7 @@ package org.vesalainen.nmea.router.endpoint;
 import org.vesalainen.nmea.jaxb.router.BoatDataType;
 import org.vesalainen.nmea.jaxb.router.BroadcastNMEAType;
 import org.vesalainen.nmea.jaxb.router.BroadcastType;
+import org.vesalainen.nmea.jaxb.router.CaptureEndpointType;
 import org.vesalainen.nmea.jaxb.router.ConsumerEndpointType;
 import org.vesalainen.nmea.jaxb.router.DatagramType;
 import org.vesalainen.nmea.jaxb.router.EndpointType;
@@ -30,8 +31,10 @@ import org.vesalainen.nmea.jaxb.router.Nmea0183AnyType;
 import org.vesalainen.nmea.jaxb.router.Nmea0183HsType;
 import org.vesalainen.nmea.jaxb.router.Nmea0183Type;
 import org.vesalainen.nmea.jaxb.router.ProcessorType;
+import org.vesalainen.nmea.jaxb.router.ReplayEndpointType;
 import org.vesalainen.nmea.jaxb.router.SeatalkType;
 import org.vesalainen.nmea.jaxb.router.SerialType;
+import org.vesalainen.nmea.jaxb.router.SharedMemoryEndpointType;
 import org.vesalainen.nmea.jaxb.router.TcpEndpointType;
 import org.vesalainen.nmea.router.Router;
 
@@ -55,9 +58,26 @@ public final class EndpointFactory
         {
             return new LogEndpoint((LogEndpointType) endpointType, router);
         }
+        if (endpointType instanceof CaptureEndpointType)
+        {
+            return new CaptureEndpoint((CaptureEndpointType) endpointType, router);
+        }
+        if (endpointType instanceof ReplayEndpointType)
+        {
+            return new ReplayEndpoint((ReplayEndpointType) endpointType, router);
+        }
+        if (endpointType instanceof SharedMemoryEndpointType)
+        {
+            return new SharedMemoryEndpoint((SharedMemoryEndpointType) endpointType, router);
+        }
         if (endpointType instanceof TcpEndpointType)
         {
-            return new TCPListenerEndpoint((TcpEndpointType) endpointType, router);
+            TcpEndpointType tcpEndpointType = (TcpEndpointType) endpointType;
+            if (tcpEndpointType.getSelectorLoops() != null)
+            {
+                return new TCPSelectorEndpoint(tcpEndpointType, router);
+            }
+            return new TCPListenerEndpoint(tcpEndpointType, router);
         }
         if (endpointType instanceof ProcessorType)
         {
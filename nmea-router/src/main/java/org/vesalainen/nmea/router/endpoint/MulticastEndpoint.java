@@ -25,7 +25,7 @@ import org.vesalainen.nmea.router.Router;
  *
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
  */
-class MulticastEndpoint extends Endpoint<MulticastType,UnconnectedDatagramChannel>
+class MulticastEndpoint extends UDPEndpoint<MulticastType>
 {
 
     public MulticastEndpoint(MulticastType multicastType, Router router)
@@ -34,7 +34,7 @@ import org.vesalainen.nmea.router.Router;
  *
  * @author Timo Vesalainen <timo.vesalainen@iki.fi>
  */
-public class MulticastNMEAEndpoint extends Endpoint<MulticastNMEAType,UnconnectedDatagramChannel>
+public class MulticastNMEAEndpoint extends UDPEndpoint<MulticastNMEAType>
 {
 
     private boolean loop;
@@ -82,6 +82,7 @@ public class MulticastNMEAEndpoint extends Endpoint<MulticastNMEAType,Unconnecte
                 {
                     log(Level.SEVERE, null, ex);
                 }
+                stopped.countDown();
             }
         }
         else
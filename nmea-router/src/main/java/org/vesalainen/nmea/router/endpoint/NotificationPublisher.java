@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.endpoint;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import static java.util.logging.Level.SEVERE;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+import static org.vesalainen.nmea.router.RouterManager.POOL;
+import org.vesalainen.util.logging.JavaLogging;
+
+/**
+ * NotificationPublisher sends JMX notifications from background thread.
+ * 
+ * <p>Without listeners hasListeners returns false after a volatile read and
+ * caller can skip creating notification content. With listeners 
+ * notifications are put in bounded lock-free ring and published in batches
+ * by a task running in thread pool. If ring is full notification is dropped.
+ * 
+ * <p>If interval is set, only one notification of each type is published in
+ * interval.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class NotificationPublisher extends JavaLogging
+{
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final long BATCH_DELAY = 100;
+    private final Object source;
+    private final CopyOnWriteArrayList<ListenerInfo> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean active;
+    private final AtomicReferenceArray<Notification> ring;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder dropCount = new LongAdder();
+    private final LongAdder publishCount = new LongAdder();
+    private final ConcurrentHashMap<String,Type> types = new ConcurrentHashMap<>();
+    private final boolean scheduled;
+    private long interval;
+    private ScheduledFuture<?> future;
+
+    public NotificationPublisher(Object source)
+    {
+        this(source, DEFAULT_CAPACITY);
+    }
+    /**
+     * Creates publisher
+     * @param source Notification source. Usually ObjectName.
+     * @param capacity Ring capacity. Power of 2.
+     */
+    public NotificationPublisher(Object source, int capacity)
+    {
+        this(source, capacity, true);
+    }
+    NotificationPublisher(Object source, int capacity, boolean scheduled) // scheduled=false for test
+    {
+        super(NotificationPublisher.class);
+        if (Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("capacity="+capacity+" not power of 2");
+        }
+        this.source = source;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.scheduled = scheduled;
+    }
+    /**
+     * Sets minimum interval between notifications of same type.
+     * @param interval Millis. 0 means all notifications are published.
+     */
+    public void setInterval(long interval)
+    {
+        this.interval = interval;
+    }
+    /**
+     * Returns type for notification type string.
+     * @param type
+     * @return 
+     */
+    public Type getType(String type)
+    {
+        return types.computeIfAbsent(type, Type::new);
+    }
+    /**
+     * Returns true if there are listeners. 
+     * @return 
+     */
+    public boolean hasListeners()
+    {
+        return active;
+    }
+    /**
+     * Queues notification if there are listeners and type interval has passed.
+     * @param type
+     * @param text Message. Converted to string only if queued.
+     * @param userData
+     * @param timestamp 
+     * @return true if queued
+     */
+    public boolean publish(Type type, CharSequence text, Object userData, long timestamp)
+    {
+        if (!active)
+        {
+            return false;
+        }
+        if (interval > 0)
+        {
+            long last = type.last;
+            if (last != 0 && timestamp - last < interval)
+            {
+                return false;
+            }
+            type.last = timestamp;
+        }
+        long t = tail.get();
+        while (true)
+        {
+            if (t - head >= ring.length())
+            {
+                dropCount.increment();
+                return false;
+            }
+            if (tail.compareAndSet(t, t+1))
+            {
+                break;
+            }
+            t = tail.get();
+        }
+        Notification notification = new Notification(type.name, source, sequence.incrementAndGet(), timestamp, text.toString());
+        notification.setUserData(userData);
+        ring.lazySet((int) (t & mask), notification);
+        return true;
+    }
+    /**
+     * Publishes queued notifications. Called by publisher task.
+     * @return Number of published notifications.
+     */
+    synchronized int drain()
+    {
+        int count = 0;
+        long h = head;
+        while (true)
+        {
+            int index = (int) (h & mask);
+            Notification notification = ring.get(index);
+            if (notification == null)
+            {
+                break;
+            }
+            ring.lazySet(index, null);
+            h++;
+            head = h;
+            for (ListenerInfo li : listeners)
+            {
+                li.handle(notification);
+            }
+            count++;
+        }
+        publishCount.add(count);
+        return count;
+    }
+    /**
+     * Returns number of notifications dropped because ring was full.
+     * @return 
+     */
+    public long getDropCount()
+    {
+        return dropCount.sum();
+    }
+    /**
+     * Returns number of published notifications.
+     * @return 
+     */
+    public long getPublishCount()
+    {
+        return publishCount.sum();
+    }
+    
+    public synchronized void addNotificationListener(NotificationListener listener, NotificationFilter filter, Object handback)
+    {
+        if (listener == null)
+        {
+            throw new IllegalArgumentException("null listener");
+        }
+        listeners.add(new ListenerInfo(listener, filter, handback));
+        if (scheduled && future == null && POOL != null)
+        {
+            future = POOL.scheduleWithFixedDelay(this::run, BATCH_DELAY, BATCH_DELAY, TimeUnit.MILLISECONDS);
+        }
+        active = true;
+    }
+
+    public synchronized void removeNotificationListener(NotificationListener listener) throws ListenerNotFoundException
+    {
+        if (!listeners.removeIf((li)->li.listener == listener))
+        {
+            throw new ListenerNotFoundException(listener.toString());
+        }
+        stopIfEmpty();
+    }
+
+    public synchronized void removeNotificationListener(NotificationListener listener, NotificationFilter filter, Object handback) throws ListenerNotFoundException
+    {
+        for (ListenerInfo li : listeners)
+        {
+            if (li.listener == listener && li.filter == filter && li.handback == handback)
+            {
+                listeners.remove(li);
+                stopIfEmpty();
+                return;
+            }
+        }
+        throw new ListenerNotFoundException(listener.toString());
+    }
+    
+    private void stopIfEmpty()
+    {
+        if (listeners.isEmpty())
+        {
+            active = false;
+            if (future != null)
+            {
+                future.cancel(false);
+                future = null;
+            }
+        }
+    }
+    
+    private void run()
+    {
+        try
+        {
+            drain();
+        }
+        catch (Throwable ex)
+        {
+            log(SEVERE, ex, "notification publisher %s", ex.getMessage());
+        }
+    }
+    /**
+     * Notification type.
+     */
+    public static final class Type
+    {
+        private final String name;
+        private volatile long last;
+
+        private Type(String name)
+        {
+            this.name = name;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+        
+    }
+    private class ListenerInfo
+    {
+        private final NotificationListener listener;
+        private final NotificationFilter filter;
+        private final Object handback;
+
+        public ListenerInfo(NotificationListener listener, NotificationFilter filter, Object handback)
+        {
+            this.listener = listener;
+            this.filter = filter;
+            this.handback = handback;
+        }
+        
+        private void handle(Notification notification)
+        {
+            try
+            {
+                if (filter == null || filter.isNotificationEnabled(notification))
+                {
+                    listener.handleNotification(notification, handback);
+                }
+            }
+            catch (Exception ex)
+            {
+                log(SEVERE, ex, "listener %s failed %s", listener, ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.endpoint;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.WritableByteChannel;
+import static java.util.logging.Level.FINER;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.vesalainen.nmea.jaxb.router.DropPolicyType;
+import static org.vesalainen.nmea.jaxb.router.DropPolicyType.*;
+import org.vesalainen.nmea.router.SharedSentence;
+import org.vesalainen.util.logging.JavaLogging;
+
+/**
+ * OutboundQueue decouples source endpoint reader thread from target channel.
+ * Queue holds references to shared sentences in bounded ring of slots and 
+ * they are written to channel by dedicated writer. When queue is full the drop policy decides
+ * whether oldest message is replaced, new message is dropped or source waits.
+ * 
+ * <p>Waiting uses ReentrantLock instead of monitor so that sources and writer
+ * running in virtual threads don't pin their carrier threads.
+ * 
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class OutboundQueue extends JavaLogging implements Runnable
+{
+    private final String name;
+    private final WritableByteChannel channel;
+    private final DropPolicyType dropPolicy;
+    private final WriteListener onWrite;
+    private final SharedSentence[] slots;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private int head;
+    private int count;
+    private boolean running = true;
+    private long dropCount;
+    private long latencyCount;
+    private long latencySum;
+    private long latencyMax;
+    /**
+     * Creates OutboundQueue
+     * @param name Endpoint name
+     * @param channel Target channel
+     * @param capacity Max number of queued messages
+     * @param dropPolicy Policy when queue is full. Null means DROP_OLDEST.
+     * @param onWrite Called by writer after each write or null.
+     */
+    public OutboundQueue(String name, WritableByteChannel channel, int capacity, DropPolicyType dropPolicy, WriteListener onWrite)
+    {
+        super(OutboundQueue.class);
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("capacity="+capacity);
+        }
+        this.name = name;
+        this.channel = channel;
+        this.dropPolicy = dropPolicy != null ? dropPolicy : DROP_OLDEST;
+        this.onWrite = onWrite;
+        this.slots = new SharedSentence[capacity];
+    }
+    /**
+     * Copies message to queue.
+     * @param seq
+     * @return false if message was dropped.
+     * @throws InterruptedIOException If BLOCK policy wait is interrupted.
+     */
+    public boolean offer(CharSequence seq) throws InterruptedIOException
+    {
+        SharedSentence sentence = SharedSentence.copyOf(seq);
+        try
+        {
+            return offer(sentence);
+        }
+        finally
+        {
+            sentence.release();
+        }
+    }
+    /**
+     * Adds reference of sentence to queue. Queue retains sentence until it is
+     * written or dropped.
+     * @param sentence
+     * @return false if message was dropped.
+     * @throws InterruptedIOException If BLOCK policy wait is interrupted.
+     */
+    public boolean offer(SharedSentence sentence) throws InterruptedIOException
+    {
+        lock.lock();
+        try
+        {
+            if (!running)
+            {
+                return false;
+            }
+            if (count == slots.length)
+            {
+                switch (dropPolicy)
+                {
+                    case DROP_NEWEST:
+                        dropCount++;
+                        return false;
+                    case DROP_OLDEST:
+                        slots[head].release();
+                        slots[head] = null;
+                        head = next(head);
+                        count--;
+                        dropCount++;
+                        break;
+                    case BLOCK:
+                        try
+                        {
+                            while (running && count == slots.length)
+                            {
+                                changed.await();
+                            }
+                        }
+                        catch (InterruptedException ex)
+                        {
+                            throw new InterruptedIOException(name);
+                        }
+                        if (!running)
+                        {
+                            return false;
+                        }
+                        break;
+                    default:
+                        throw new AssertionError(dropPolicy);
+                }
+            }
+            int tail = (head + count) % slots.length;
+            slots[tail] = sentence.retain();
+            count++;
+            changed.signalAll();
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    /**
+     * Writer loop. Runs until stop is called or channel write fails.
+     */
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (true)
+            {
+                SharedSentence sentence;
+                lock.lockInterruptibly();
+                try
+                {
+                    while (running && count == 0)
+                    {
+                        changed.await();
+                    }
+                    if (!running)
+                    {
+                        return;
+                    }
+                    sentence = slots[head];
+                    slots[head] = null;
+                    head = next(head);
+                    count--;
+                    changed.signalAll();
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+                long start = System.nanoTime();
+                long readNanos = sentence.getReadNanos();
+                int cnt;
+                try
+                {
+                    cnt = sentence.writeTo(channel, 0);
+                    if (isLoggable(FINER))
+                    {
+                        finer("write %s = %d", sentence, cnt);
+                    }
+                }
+                finally
+                {
+                    sentence.release();
+                }
+                long latency = System.nanoTime() - start;
+                lock.lock();
+                try
+                {
+                    latencyCount++;
+                    latencySum += latency;
+                    latencyMax = Math.max(latencyMax, latency);
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+                if (onWrite != null)
+                {
+                    onWrite.wrote(cnt, readNanos);
+                }
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            fine("%s writer interrupted", name);
+        }
+        catch (IOException ex)
+        {
+            warning("%s writer stopped %s", name, ex.getMessage());
+        }
+        finally
+        {
+            stop();
+        }
+    }
+    /**
+     * Stops writer and releases blocked sources.
+     */
+    public void stop()
+    {
+        lock.lock();
+        try
+        {
+            running = false;
+            while (count > 0)
+            {
+                slots[head].release();
+                slots[head] = null;
+                head = next(head);
+                count--;
+            }
+            changed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    
+    public boolean isRunning()
+    {
+        lock.lock();
+        try
+        {
+            return running;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    
+    public int getDepth()
+    {
+        lock.lock();
+        try
+        {
+            return count;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity()
+    {
+        return slots.length;
+    }
+
+    public DropPolicyType getDropPolicy()
+    {
+        return dropPolicy;
+    }
+
+    public long getDropCount()
+    {
+        lock.lock();
+        try
+        {
+            return dropCount;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    /**
+     * Returns average channel write latency in milliseconds.
+     * @return 
+     */
+    public float getAverageWriteLatency()
+    {
+        lock.lock();
+        try
+        {
+            if (latencyCount == 0)
+            {
+                return 0;
+            }
+            return (float) latencySum / latencyCount / 1000000F;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    /**
+     * Returns max channel write latency in milliseconds.
+     * @return 
+     */
+    public float getMaxWriteLatency()
+    {
+        lock.lock();
+        try
+        {
+            return latencyMax / 1000000F;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    
+    private int next(int index)
+    {
+        return (index + 1) % slots.length;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "OutboundQueue{" + name + ", " + dropPolicy + ", depth=" + getDepth() + '}';
+    }
+
+    /**
+     * Listener of completed writes.
+     */
+    @FunctionalInterface
+    public interface WriteListener
+    {
+        /**
+         * Called by writer after sentence is written.
+         * @param bytes Number of bytes written
+         * @param readNanos Source read time of sentence or 0 if unknown.
+         */
+        void wrote(int bytes, long readNanos);
+    }
+}
@@ -26,6 +26,7 @@ import org.vesalainen.nmea.jaxb.router.BoatDataType;
 import org.vesalainen.nmea.jaxb.router.ProcessorType;
 import org.vesalainen.nmea.processor.Processor;
 import org.vesalainen.nmea.router.Router;
+import static org.vesalainen.nmea.router.RouterManager.LOOPS;
 import static org.vesalainen.nmea.router.RouterManager.POOL;
 
 /**
@@ -50,6 +51,7 @@ class ProcessorEndpoint extends Endpoint<ProcessorType,ByteBufferChannel>
         ByteBufferChannel pc1 = peers[0];
         ByteBufferChannel pc2 = peers[1];
         processor = new Processor(boatType, endpointType, pc2, POOL);
+        processor.setLoopExecutor(LOOPS);
         processor.start();
         pc1.setWriteTimeout(0, TimeUnit.MILLISECONDS);
         return pc1;
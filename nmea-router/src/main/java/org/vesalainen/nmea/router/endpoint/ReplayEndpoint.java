@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.endpoint;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.vesalainen.nmea.jaxb.router.ReplayEndpointType;
+import org.vesalainen.nmea.router.Router;
+import org.vesalainen.nmea.router.capture.CaptureReader;
+import org.vesalainen.nmea.router.capture.ReplayChannel;
+
+/**
+ * ReplayEndpoint reads sentences captured by CaptureEndpoint and routes them
+ * as if they were read from this endpoint. Replay starts from start time or 
+ * from the beginning of capture and is paced by speed. Endpoint stops at the
+ * end of capture.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.router.endpoint.CaptureEndpoint
+ */
+public class ReplayEndpoint extends Endpoint<ReplayEndpointType,ReplayChannel>
+{
+
+    public ReplayEndpoint(ReplayEndpointType endpointType, Router router)
+    {
+        super(endpointType, router);
+    }
+
+    @Override
+    protected ReplayChannel createChannel() throws IOException
+    {
+        CaptureReader reader = new CaptureReader(Paths.get(endpointType.getDirectory()));
+        XMLGregorianCalendar start = endpointType.getStart();
+        if (start != null)
+        {
+            reader.seek(start.toGregorianCalendar().getTimeInMillis());
+        }
+        BigDecimal speed = endpointType.getSpeed();
+        List<String> source = endpointType.getSource();
+        ReplayChannel replayChannel = new ReplayChannel(
+                reader, 
+                speed != null ? speed.doubleValue() : 1, 
+                source != null && !source.isEmpty() ? new HashSet<>(source) : null
+        );
+        config("%s replaying %s from %s", name, endpointType.getDirectory(), start);
+        return replayChannel;
+    }
+
+}
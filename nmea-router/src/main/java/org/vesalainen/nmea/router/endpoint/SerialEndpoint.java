@@ -22,6 +22,7 @@ import java.nio.channels.ScatteringByteChannel;
 import org.vesalainen.nio.RingByteBuffer;
 import org.vesalainen.nmea.jaxb.router.SerialType;
 import org.vesalainen.nmea.router.Router;
+import org.vesalainen.nmea.router.RoutingTable;
 
 /**
  *
@@ -46,6 +47,15 @@ public abstract class SerialEndpoint<E extends SerialType, T extends ScatteringB
     protected void onStart() throws IOException
     {
     }
+    /**
+     * Serial channels read and write in native code.
+     * @return 
+     */
+    @Override
+    public boolean isNativeChannel()
+    {
+        return true;
+    }
     
     @Override
     protected void onOk(RingByteBuffer ring, long timestamp) throws IOException
@@ -54,7 +64,7 @@ public abstract class SerialEndpoint<E extends SerialType, T extends ScatteringB
         if (!routing)
         {
             routing = true;
-            endpointMap.put(name, this);
+            RoutingTable.put(name, this);
             if (scriptEngine != null)
             {
                 scriptEngine.start();
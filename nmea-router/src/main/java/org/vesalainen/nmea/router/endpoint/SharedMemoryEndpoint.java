@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.endpoint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.LongAdder;
+import org.vesalainen.nio.RingByteBuffer;
+import org.vesalainen.nio.channels.NullChannel;
+import org.vesalainen.nmea.jaxb.router.SharedMemoryEndpointType;
+import org.vesalainen.nmea.router.Router;
+import org.vesalainen.nmea.router.SharedSentence;
+import org.vesalainen.nmea.util.SharedRingWriter;
+
+/**
+ * SharedMemoryEndpoint publishes sentences routed to it to memory-mapped ring
+ * file. Co-located NMEAService or Processor reads them with 
+ * SharedRingChannel without sockets. Ring file is typically in /dev/shm.
+ * 
+ * <p>Sentence is copied to ring in routing thread. Slow reader doesn't slow
+ * router. It is overrun and detects lost sentences from sequence numbers.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.util.SharedRingWriter
+ * @see org.vesalainen.nmea.util.SharedRingChannel
+ */
+public class SharedMemoryEndpoint extends Endpoint<SharedMemoryEndpointType,NullChannel>
+{
+    private final int capacity;
+    private volatile SharedRingWriter writer;
+    private final LongAdder dropCount = new LongAdder();
+
+    public SharedMemoryEndpoint(SharedMemoryEndpointType endpointType, Router router)
+    {
+        super(endpointType, router);
+        Integer size = endpointType.getCapacity();
+        this.capacity = size != null ? Integer.highestOneBit(size-1)<<1 : SharedRingWriter.DEFAULT_CAPACITY;
+    }
+
+    @Override
+    public NullChannel createChannel() throws IOException
+    {
+        return new NullChannel();
+    }
+    /**
+     * Ring is written directly.
+     * @return 
+     */
+    @Override
+    protected int getQueueSize()
+    {
+        return 0;
+    }
+
+    @Override
+    public boolean isSharedWriter()
+    {
+        return true;
+    }
+
+    @Override
+    public int write(Endpoint src, SharedSentence sentence) throws IOException
+    {
+        lastWrite = System.currentTimeMillis();
+        if (!accept(sentence))
+        {
+            return 0;
+        }
+        int cnt = publish(sentence.asByteBuffer(0));
+        recordLatency(sentence.getReadNanos());
+        return cnt;
+    }
+
+    @Override
+    public int write(Endpoint src, RingByteBuffer ring) throws IOException
+    {
+        SharedSentence sentence = SharedSentence.copyOf(ring);
+        try
+        {
+            return write(src, sentence);
+        }
+        finally
+        {
+            sentence.release();
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer bb) throws IOException
+    {
+        lastWrite = System.currentTimeMillis();
+        return publish(bb);
+    }
+    
+    private int publish(ByteBuffer bb)
+    {
+        SharedRingWriter w = writer;
+        int cnt = w != null ? w.write(bb) : 0;
+        if (cnt > 0)
+        {
+            countWrite(cnt);
+        }
+        else
+        {
+            dropCount.increment();
+        }
+        return cnt;
+    }
+
+    @Override
+    protected void onStart() throws IOException
+    {
+        writer = new SharedRingWriter(Paths.get(endpointType.getPath()), capacity);
+        config("%s publishing to %s capacity=%d", name, endpointType.getPath(), capacity);
+        super.onStart();
+    }
+
+    @Override
+    protected void onStop() throws IOException
+    {
+        super.onStop();
+        SharedRingWriter w = writer;
+        writer = null;
+        if (w != null)
+        {
+            w.close();
+        }
+    }
+
+    @Override
+    public long getDropCount()
+    {
+        return dropCount.sum();
+    }
+
+}
@@ -27,17 +27,13 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.vesalainen.nio.RingByteBuffer;
-import org.vesalainen.nio.channels.ByteBufferPipe;
-import org.vesalainen.nio.channels.ByteBufferPipe.Sink;
-import org.vesalainen.nio.channels.ByteBufferPipe.Source;
 import org.vesalainen.nmea.jaxb.router.TcpEndpointType;
 import org.vesalainen.nmea.router.Router;
-import static org.vesalainen.nmea.router.RouterManager.POOL;
-import org.vesalainen.nmea.router.filter.MessageFilter;
+import org.vesalainen.nmea.router.RoutingTable;
+import static org.vesalainen.nmea.router.RouterManager.LOOPS;
+import org.vesalainen.nmea.router.SharedSentence;
 import org.vesalainen.parsers.nmea.ais.AISService;
 
 /**
@@ -46,6 +42,7 @@ import org.vesalainen.parsers.nmea.ais.AISService;
  */
 public class TCPListenerEndpoint extends Endpoint<TcpEndpointType,SocketChannel>
 {
+    private static final int CLIENT_QUEUE_SIZE = 64;
     private List<TCPEndpoint> clients = Collections.synchronizedList(new ArrayList<>());
     private AtomicInteger seq = new AtomicInteger();
     
@@ -65,7 +62,7 @@ public class TCPListenerEndpoint extends Endpoint<TcpEndpointType,SocketChannel>
     {
         try
         {
-            Endpoint.endpointMap.put(name, this);
+            RoutingTable.put(name, this);
             int port = endpointType.getPort();
             InetSocketAddress socketAddress = new InetSocketAddress(port);
             try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open())
@@ -76,7 +73,7 @@ public class TCPListenerEndpoint extends Endpoint<TcpEndpointType,SocketChannel>
                 {
                     SocketChannel socketChannel = serverSocketChannel.accept();
                     TCPEndpoint tcpEndpoint = new TCPEndpoint(socketChannel, endpointType, router);
-                    POOL.submit(tcpEndpoint);
+                    LOOPS.submit(tcpEndpoint);
                     if (endpointType.isAisFastBoot() != null && endpointType.isAisFastBoot())
                     {
                         if (!AISService.fastBoot(socketChannel))
@@ -93,7 +90,8 @@ public class TCPListenerEndpoint extends Endpoint<TcpEndpointType,SocketChannel>
         }
         finally
         {
-            Endpoint.endpointMap.remove(name);
+            RoutingTable.remove(name);
+            stopped.countDown();
         }
     }
 
@@ -118,7 +116,7 @@ public class TCPListenerEndpoint extends Endpoint<TcpEndpointType,SocketChannel>
         {
             TCPEndpoint tcpEndPoint = iterator.next();
             int cnt = tcpEndPoint.write(src, ring);
-            if (cnt == 0)
+            if (cnt == 0 && !tcpEndPoint.socketChannel.isOpen())
             {
                 iterator.remove();
                 warning("listener removed");
@@ -128,22 +126,41 @@ public class TCPListenerEndpoint extends Endpoint<TcpEndpointType,SocketChannel>
         return count;
     }
 
+    @Override
+    public boolean isSharedWriter()
+    {
+        return true;
+    }
+
+    @Override
+    public int write(Endpoint src, SharedSentence sentence) throws IOException
+    {
+        int count = 0;
+        Iterator<TCPEndpoint> iterator = clients.iterator();
+        while (iterator.hasNext())
+        {
+            TCPEndpoint tcpEndPoint = iterator.next();
+            int cnt = tcpEndPoint.write(src, sentence);
+            if (cnt == 0 && !tcpEndPoint.socketChannel.isOpen())
+            {
+                iterator.remove();
+                warning("listener removed");
+            }
+            count += cnt;
+        }
+        return count;
+    }
+    /**
+     * Client endpoint. Output is written by outbound queue writer.
+     */
     private class TCPEndpoint extends Endpoint<TcpEndpointType,SocketChannel>
     {
-        private final ByteBufferPipe pipe;
-        private final Sink sink;
-        private final Source source;
-        private Future<?> proxyFuture;
         private final SocketChannel socketChannel;
 
         public TCPEndpoint(SocketChannel socketChannel, TcpEndpointType endpointType, Router router)
         {
             super(endpointType, router, "-"+seq.incrementAndGet());
             this.socketChannel = socketChannel;
-            pipe = new ByteBufferPipe(1024, true);
-            sink = pipe.sink();
-            source = pipe.source();
-            sink.setTimeout(0, TimeUnit.MILLISECONDS);
         }
         
         @Override
@@ -153,58 +170,18 @@ public class TCPListenerEndpoint extends Endpoint<TcpEndpointType,SocketChannel>
         }
 
         @Override
-        public int write(Endpoint src, RingByteBuffer ring) throws IOException
+        protected int getQueueSize()
         {
-            lastWrite = System.currentTimeMillis();
-            int cnt = 0;
-            if (channel != null)
-            {
-                if (filterList != null)
-                {
-                    for (MessageFilter filter : filterList)
-                    {
-                        if (!filter.accept(ring))
-                        {
-                            return 0;
-                        }
-                    }
-                }
-                cnt = ring.writeTo(sink);
-                if (cnt == 0)
-                {
-                    warning("%s writeTo()=0", name);
-                    proxyFuture.cancel(true);
-                }
-                finest("wrote rc=%d %s", cnt, pipe);
-                writeCount++;
-                writeBytes += cnt;
-            }
-            return cnt;
+            int queueSize = super.getQueueSize();
+            return queueSize > 0 ? queueSize : CLIENT_QUEUE_SIZE;
         }
 
-        private void proxy()
-        {
-            try
-            {
-                started.await();
-                while (true)
-                {
-                    source.writeTo(channel);
-                }
-            }
-            catch (Throwable ex)
-            {
-                warning("Stopping proxy %s %s", name, ex.getMessage());
-                warnBrokenConnection(ex, "Stopping proxy %s %s", name, ex.getMessage());
-            }
-        }
         @Override
         public void run()
         {
             try
             {
                 config("starting socket connection %s", socketChannel);
-                proxyFuture = POOL.submit(this::proxy);
                 clients.add(this);
                 super.run();
             }
@@ -215,7 +192,6 @@ public class TCPListenerEndpoint extends Endpoint<TcpEndpointType,SocketChannel>
             finally
             {
                 clients.remove(this);
-                proxyFuture.cancel(true);
             }
         }
         
@@ -0,0 +1,698 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.endpoint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import static java.net.StandardSocketOptions.SO_REUSEADDR;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import static java.nio.channels.SelectionKey.*;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.vesalainen.nio.RingByteBuffer;
+import org.vesalainen.nio.channels.NullChannel;
+import org.vesalainen.nmea.jaxb.router.TcpEndpointType;
+import org.vesalainen.nmea.router.NMEAMatcher;
+import org.vesalainen.nmea.router.Route;
+import org.vesalainen.nmea.router.Router;
+import static org.vesalainen.nmea.router.RouterManager.LOOPS;
+import org.vesalainen.nmea.router.RoutingTable;
+import org.vesalainen.nmea.router.SharedSentence;
+import org.vesalainen.parsers.nmea.ais.AISService;
+import org.vesalainen.util.Matcher;
+
+/**
+ * TCPSelectorEndpoint serves TCP clients with fixed number of Selector loops
+ * instead of threads per client. Each client has one outbound queue of shared
+ * sentences limited by outboundSize bytes. When outbound queue is full the 
+ * sentence is dropped for that client only.
+ * 
+ * <p>Routing thread only queues sentence references and schedules client to
+ * its loop. Loop writes to socket and flushes the rest with OP_WRITE 
+ * interest. So source endpoint doesn't make socket writes for clients. Cost 
+ * is a loop wakeup per routed sentence when loop is idle.
+ * 
+ * <p>Inbound client traffic is parsed in loop with client specific matcher
+ * which is created when client sends first bytes. Parsed sentences are routed
+ * as if read by this endpoint.
+ * 
+ * <p>Filters are evaluated once per sentence for all clients.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class TCPSelectorEndpoint extends Endpoint<TcpEndpointType,NullChannel>
+{
+    public static final int DEFAULT_OUTBOUND_SIZE = 4096;
+    private static final int GATHER_SIZE = 16;
+    private final SelectorLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final LongAdder dropCount = new LongAdder();
+    private final boolean aisFastBoot;
+    private final int outboundSize;
+    private volatile InetSocketAddress localAddress;
+    
+    public TCPSelectorEndpoint(TcpEndpointType tcpEndpointType, Router router)
+    {
+        super(tcpEndpointType, router);
+        this.loops = new SelectorLoop[tcpEndpointType.getSelectorLoops()];
+        this.aisFastBoot = tcpEndpointType.isAisFastBoot() != null && tcpEndpointType.isAisFastBoot();
+        Integer size = tcpEndpointType.getOutboundSize();
+        this.outboundSize = size != null ? size : DEFAULT_OUTBOUND_SIZE;
+    }
+    /**
+     * Clients have their own sockets.
+     * @return
+     * @throws IOException 
+     */
+    @Override
+    public NullChannel createChannel() throws IOException
+    {
+        return new NullChannel();
+    }
+
+    @Override
+    public void run()
+    {
+        Future<?>[] futures = new Future<?>[loops.length];
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            RoutingTable.put(name, this);
+            int port = endpointType.getPort();
+            InetSocketAddress socketAddress = new InetSocketAddress(port);
+            try (NullChannel ch = createChannel();
+                ServerSocketChannel serverSocketChannel = ServerSocketChannel.open())
+            {
+                channel = ch;
+                serverSocketChannel.setOption(SO_REUSEADDR, true);
+                serverSocketChannel.bind(socketAddress);
+                serverSocketChannel.configureBlocking(false);
+                localAddress = (InetSocketAddress) serverSocketChannel.getLocalAddress();
+                for (int ii=0;ii<loops.length;ii++)
+                {
+                    loops[ii] = new SelectorLoop(ii);
+                }
+                serverSocketChannel.register(loops[0].selector, OP_ACCEPT);
+                for (int ii=1;ii<loops.length;ii++)
+                {
+                    futures[ii] = LOOPS.submit(loops[ii]);
+                }
+                config("%s listening %s with %d loops", name, localAddress, loops.length);
+                started.countDown();
+                loops[0].run();
+            }
+        }
+        catch (Throwable ex)
+        {
+            warnBrokenConnection(ex, "%s stopped because of %s", name, ex);
+        }
+        finally
+        {
+            RoutingTable.remove(name);
+            for (int ii=0;ii<loops.length;ii++)
+            {
+                if (futures[ii] != null)
+                {
+                    futures[ii].cancel(true);
+                }
+                if (loops[ii] != null)
+                {
+                    loops[ii].close();
+                }
+            }
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            }
+            catch (Exception ex)
+            {
+                warning("unregisterMBean %s %s", objectName, ex);
+            }
+            stopped.countDown();
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer bb) throws IOException
+    {
+        SharedSentence sentence = SharedSentence.copyOf(bb);
+        try
+        {
+            broadcast(sentence);
+            return sentence.length();
+        }
+        finally
+        {
+            sentence.release();
+        }
+    }
+
+    @Override
+    public int write(Endpoint src, RingByteBuffer ring) throws IOException
+    {
+        SharedSentence sentence = SharedSentence.copyOf(ring);
+        try
+        {
+            return write(src, sentence);
+        }
+        finally
+        {
+            sentence.release();
+        }
+    }
+
+    @Override
+    public boolean isSharedWriter()
+    {
+        return true;
+    }
+
+    @Override
+    public int write(Endpoint src, SharedSentence sentence) throws IOException
+    {
+        lastWrite = System.currentTimeMillis();
+        if (!accept(sentence))
+        {
+            return 0;
+        }
+        broadcast(sentence);
+        return sentence.length();
+    }
+    private void broadcast(SharedSentence sentence)
+    {
+        for (SelectorLoop loop : loops)
+        {
+            if (loop != null)
+            {
+                for (Client client : loop.clients)
+                {
+                    client.send(sentence, false);
+                }
+            }
+        }
+        countWrite(sentence.length());
+    }
+
+    @Override
+    public long getDropCount()
+    {
+        return dropCount.sum();
+    }
+
+    @Override
+    public int getQueueDepth()
+    {
+        int depth = 0;
+        for (SelectorLoop loop : loops)
+        {
+            if (loop != null)
+            {
+                for (Client client : loop.clients)
+                {
+                    depth += client.getDepth();
+                }
+            }
+        }
+        return depth;
+    }
+
+    @Override
+    public String getChannel()
+    {
+        return "TCPSelector{port="+endpointType.getPort()+", loops="+loops.length+", clients="+getClientCount()+"}";
+    }
+    /**
+     * Returns number of connected clients.
+     * @return 
+     */
+    public int getClientCount()
+    {
+        int count = 0;
+        for (SelectorLoop loop : loops)
+        {
+            if (loop != null)
+            {
+                count += loop.clients.size();
+            }
+        }
+        return count;
+    }
+    /**
+     * Returns bound address or null if not listening.
+     * @return 
+     */
+    InetSocketAddress getLocalAddress()
+    {
+        return localAddress;
+    }
+    /**
+     * Writes AIS targets to new client.
+     * @param client
+     * @return false if AISService is not running.
+     * @throws IOException 
+     */
+    boolean fastBoot(WritableByteChannel client) throws IOException
+    {
+        return AISService.fastBoot(client);
+    }
+    
+    private class SelectorLoop implements Runnable
+    {
+        private final int index;
+        private final Selector selector;
+        private final List<Client> clients = new CopyOnWriteArrayList<>();
+        private final ConcurrentLinkedQueue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<Client> ready = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean awake = new AtomicBoolean();
+
+        public SelectorLoop(int index) throws IOException
+        {
+            this.index = index;
+            this.selector = Selector.open();
+        }
+        
+        private void add(SocketChannel socketChannel)
+        {
+            pending.add(socketChannel);
+            selector.wakeup();
+        }
+        /**
+         * Schedules client to be flushed by this loop. Selector is woken up
+         * once until loop has run.
+         * @param client 
+         */
+        private void schedule(Client client)
+        {
+            ready.add(client);
+            if (awake.compareAndSet(false, true))
+            {
+                selector.wakeup();
+            }
+        }
+        
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (selector.isOpen() && !Thread.currentThread().isInterrupted())
+                {
+                    selector.select();
+                    awake.set(false);
+                    SocketChannel sc = pending.poll();
+                    while (sc != null)
+                    {
+                        register(sc);
+                        sc = pending.poll();
+                    }
+                    Client next = ready.poll();
+                    while (next != null)
+                    {
+                        try
+                        {
+                            next.flush();
+                        }
+                        catch (IOException | CancelledKeyException ex)
+                        {
+                            next.close(ex);
+                        }
+                        next = ready.poll();
+                    }
+                    Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                    while (iterator.hasNext())
+                    {
+                        SelectionKey key = iterator.next();
+                        iterator.remove();
+                        if (key.isValid() && key.isAcceptable())
+                        {
+                            accept((ServerSocketChannel) key.channel());
+                        }
+                        else
+                        {
+                            Client client = (Client) key.attachment();
+                            try
+                            {
+                                if (key.isValid() && key.isReadable())
+                                {
+                                    client.read();
+                                }
+                                if (key.isValid() && key.isWritable())
+                                {
+                                    client.flush();
+                                }
+                            }
+                            catch (IOException | CancelledKeyException ex)
+                            {
+                                client.close(ex);
+                            }
+                        }
+                    }
+                }
+            }
+            catch (Throwable ex)
+            {
+                warnBrokenConnection(ex, "%s loop %d stopped because of %s", name, index, ex);
+            }
+            finally
+            {
+                close();
+            }
+        }
+        private void accept(ServerSocketChannel server) throws IOException
+        {
+            SocketChannel sc = server.accept();
+            while (sc != null)
+            {
+                sc.configureBlocking(false);
+                int idx = Math.floorMod(nextLoop.getAndIncrement(), loops.length);
+                config("%s accepted %s to loop %d", name, sc, idx);
+                if (idx == index)
+                {
+                    register(sc);
+                }
+                else
+                {
+                    loops[idx].add(sc);
+                }
+                sc = server.accept();
+            }
+        }
+        private void register(SocketChannel sc)
+        {
+            try
+            {
+                Client client = new Client(this, sc);
+                client.key = sc.register(selector, OP_READ, client);
+                clients.add(client);
+                if (aisFastBoot)
+                {
+                    if (!fastBoot(client))
+                    {
+                        warning("AISService.fastBoot not called");
+                    }
+                }
+            }
+            catch (IOException ex)
+            {
+                warning("%s register %s failed %s", name, sc, ex);
+                try
+                {
+                    sc.close();
+                }
+                catch (IOException ex1)
+                {
+                }
+            }
+        }
+        private void close()
+        {
+            for (Client client : clients)
+            {
+                client.close(null);
+            }
+            try
+            {
+                selector.close();
+            }
+            catch (IOException ex)
+            {
+                warning("%s close selector %s", name, ex);
+            }
+        }
+    }
+    /**
+     * Client state. Outbound queue holds references to shared sentences and 
+     * is guarded by client monitor. Offset is the number of bytes already 
+     * written from first sentence. Client is scheduled to loop when queue
+     * becomes non-empty and is not waiting for OP_WRITE. WritableByteChannel 
+     * is used by AIS fast boot.
+     */
+    private class Client implements WritableByteChannel
+    {
+        private final SelectorLoop loop;
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private final ArrayDeque<SharedSentence> outbound = new ArrayDeque<>();
+        private final ByteBuffer[] gather = new ByteBuffer[GATHER_SIZE];
+        private final ByteBuffer[] views = new ByteBuffer[GATHER_SIZE];
+        private int outboundBytes;
+        private int offset;
+        private boolean writePending;
+        private boolean scheduled;
+        private NMEAMatcher<Route> clientMatcher;
+        private int clientRoutingVersion;
+        private RingByteBuffer inbound;
+        private ByteArrayOutputStream errInput;
+        private boolean mark = true;
+
+        public Client(SelectorLoop loop, SocketChannel channel)
+        {
+            this.loop = loop;
+            this.channel = channel;
+        }
+        /**
+         * Adds sentence to outbound queue and schedules client to loop.
+         * @param sentence
+         * @param grow If true queue size limit is not applied.
+         * @return false if dropped
+         */
+        private synchronized boolean send(SharedSentence sentence, boolean grow)
+        {
+            if (!channel.isOpen())
+            {
+                return false;
+            }
+            int len = sentence.length();
+            if (!grow && outboundBytes + len > outboundSize)
+            {
+                dropCount.increment();
+                finest("%s dropped %d bytes to %s", name, len, channel);
+                return false;
+            }
+            outbound.add(sentence.retain());
+            outboundBytes += len;
+            if (!scheduled && !writePending)
+            {
+                scheduled = true;
+                loop.schedule(this);
+            }
+            return true;
+        }
+        /**
+         * Writes as much as socket accepts. Called by loop.
+         * @throws IOException 
+         */
+        private synchronized void flush() throws IOException
+        {
+            scheduled = false;
+            if (!channel.isOpen())
+            {
+                return;
+            }
+            while (!outbound.isEmpty())
+            {
+                int count = 0;
+                long total = 0;
+                for (SharedSentence sentence : outbound)
+                {
+                    if (views[count] == null)
+                    {
+                        views[count] = SharedSentence.newView();
+                    }
+                    ByteBuffer bb = sentence.asByteBuffer(count == 0 ? offset : 0, views[count]);
+                    gather[count++] = bb;
+                    total += bb.remaining();
+                    if (count == GATHER_SIZE)
+                    {
+                        break;
+                    }
+                }
+                long rc = channel.write(gather, 0, count);
+                for (int ii=0;ii<count;ii++)
+                {
+                    gather[ii] = null;
+                }
+                consume(rc);
+                if (rc < total)
+                {
+                    break;
+                }
+            }
+            boolean pending = !outbound.isEmpty();
+            if (pending != writePending)
+            {
+                writePending = pending;
+                key.interestOps(pending ? OP_READ|OP_WRITE : OP_READ);
+            }
+        }
+        private synchronized int getDepth()
+        {
+            return outbound.size();
+        }
+        private void consume(long bytes)
+        {
+            outboundBytes -= bytes;
+            while (bytes > 0)
+            {
+                SharedSentence head = outbound.peek();
+                int rem = head.length() - offset;
+                if (rem <= bytes)
+                {
+                    bytes -= rem;
+                    recordLatency(head.getReadNanos());
+                    outbound.poll().release();
+                    offset = 0;
+                }
+                else
+                {
+                    offset += bytes;
+                    bytes = 0;
+                }
+            }
+        }
+        private void read() throws IOException
+        {
+            if (inbound == null)
+            {
+                inbound = new RingByteBuffer(bufferSize, true);
+                clientRoutingVersion = getRoutingVersion();
+                clientMatcher = createMatcher(endpointType);
+                errInput = new ByteArrayOutputStream();
+            }
+            if (inbound.isFull())
+            {
+                throw new IOException(name+" buffer is too small "+bufferSize);
+            }
+            int count = inbound.fill(channel);
+            if (count == -1)
+            {
+                throw new EOFException(name+" "+channel);
+            }
+            long timestamp = System.currentTimeMillis();
+            long readNanos = System.nanoTime();
+            while (inbound.hasRemaining())
+            {
+                byte b = inbound.get(mark);
+                Matcher.Status match = clientMatcher.match(b);
+                switch (match)
+                {
+                    case Error:
+                        if (inbound.length() > 1)
+                        {
+                            inbound.chars().forEach(errInput::write);
+                        }
+                        else
+                        {
+                            errInput.write(b);
+                        }
+                        mark = true;
+                        break;
+                    case Ok:
+                    case WillMatch:
+                        if (mark && errInput.size()> 0)
+                        {
+                            onError(errInput::toByteArray);
+                            errInput.reset();
+                        }
+                        mark = false;
+                        break;
+                    case Match:
+                        onMatch(clientMatcher.getMatched(), inbound, timestamp, readNanos);
+                        mark = true;
+                        inbound.discard();
+                        if (clientRoutingVersion != getRoutingVersion())
+                        {
+                            clientRoutingVersion = getRoutingVersion();
+                            clientMatcher = createMatcher(endpointType);
+                        }
+                        break;
+                }
+            }
+        }
+        private void close(Exception ex)
+        {
+            if (ex != null)
+            {
+                fine("%s client %s closed %s", name, channel, ex);
+            }
+            loop.clients.remove(this);
+            if (key != null)
+            {
+                key.cancel();
+            }
+            try
+            {
+                channel.close();
+            }
+            catch (IOException ex1)
+            {
+            }
+            synchronized (this)
+            {
+                while (!outbound.isEmpty())
+                {
+                    outbound.poll().release();
+                }
+                outboundBytes = 0;
+                offset = 0;
+            }
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException
+        {
+            SharedSentence sentence = SharedSentence.copyOf(src);
+            try
+            {
+                send(sentence, true);
+                return sentence.length();
+            }
+            finally
+            {
+                sentence.release();
+            }
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            close(null);
+        }
+        
+    }
+}
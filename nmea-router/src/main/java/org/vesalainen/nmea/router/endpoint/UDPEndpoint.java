@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.endpoint;
+
+import java.io.IOException;
+import org.vesalainen.nio.RingByteBuffer;
+import org.vesalainen.nio.channels.UnconnectedDatagramChannel;
+import org.vesalainen.nmea.jaxb.router.UdpEndpointType;
+import org.vesalainen.nmea.router.Router;
+import static org.vesalainen.nmea.router.RouterManager.POOL;
+import org.vesalainen.nmea.router.SharedSentence;
+
+/**
+ * Base class for UDP endpoints. If batchSize is set consecutive sentences are
+ * packed into one datagram. Batch is written synchronously and queueSize is 
+ * ignored with batchSize.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @param <E>
+ * @see org.vesalainen.nmea.router.endpoint.DatagramBatch
+ */
+public abstract class UDPEndpoint<E extends UdpEndpointType> extends Endpoint<E,UnconnectedDatagramChannel>
+{
+    private static final long DEFAULT_BATCH_DELAY = 20;
+    protected DatagramBatch batch;
+    
+    public UDPEndpoint(E endpointType, Router router)
+    {
+        super(endpointType, router);
+        Integer batchSize = endpointType.getBatchSize();
+        if (batchSize != null)
+        {
+            Long delay = endpointType.getBatchDelay();
+            batch = new DatagramBatch(name, batchSize, delay != null ? delay : DEFAULT_BATCH_DELAY, endpointType.getFlushPrefix(), POOL);
+            bufferSize = Math.max(bufferSize, batchSize);
+            config("%s batch size=%d", name, batchSize);
+            if (endpointType.getQueueSize() != null)
+            {
+                warning("%s queueSize=%d ignored because batchSize is set", name, endpointType.getQueueSize());
+            }
+        }
+    }
+    /**
+     * Returns 0 if batch is used.
+     * @return 
+     */
+    @Override
+    protected int getQueueSize()
+    {
+        return batch == null ? super.getQueueSize() : 0;
+    }
+
+    @Override
+    public int write(Endpoint src, RingByteBuffer ring) throws IOException
+    {
+        if (batch == null)
+        {
+            return super.write(src, ring);
+        }
+        return add(ring);
+    }
+
+    @Override
+    public int write(Endpoint src, SharedSentence sentence) throws IOException
+    {
+        if (batch == null)
+        {
+            return super.write(src, sentence);
+        }
+        return add(sentence);
+    }
+    
+    private int add(CharSequence seq) throws IOException
+    {
+        lastWrite = System.currentTimeMillis();
+        int cnt = 0;
+        if (channel != null)
+        {
+            if (!accept(seq))
+            {
+                return 0;
+            }
+            cnt = batch.add(seq, channel);
+            countWrite(cnt);
+        }
+        return cnt;
+    }
+
+    @Override
+    public boolean isSharedWriter()
+    {
+        return batch == null && super.isSharedWriter();
+    }
+
+    @Override
+    public long getPacketsSaved()
+    {
+        return batch != null ? batch.getPacketsSaved() : 0;
+    }
+
+}
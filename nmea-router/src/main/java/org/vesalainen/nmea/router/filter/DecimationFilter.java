@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.vesalainen.nmea.router.RoutingTable;
+
+/**
+ * DecimationFilter limits rate of sentences per prefix. Sentences with 
+ * prefixes not matching any rule pass.
+ * 
+ * <p>Rule prefix is compared to the start of sentence prefix. '?' matches any
+ * character. First matching rule is used. Rule is resolved once per prefix id 
+ * so that accepting a sentence needs only prefix id lookup and array loads.
+ * 
+ * <p>Accepted sentences are scheduled at fixed intervals so that jitter of
+ * source doesn't lower the output rate.
+ * 
+ * <p>Filter can be called concurrently by several source threads. Each prefix 
+ * id has own counter and next time is advanced with compare-and-set. Counter 
+ * array is replaced when it grows but counters are shared by old and new 
+ * array so that no update is lost.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.router.RoutingTable#getPrefixId(java.lang.CharSequence) 
+ */
+public class DecimationFilter implements MessageFilter
+{
+    private static final long PASS = -1;
+    private final List<String> rulePrefixes = new ArrayList<>();
+    private final List<Long> ruleIntervals = new ArrayList<>();
+    private volatile Counter[] counters = new Counter[64];
+    /**
+     * Adds rule
+     * @param prefix Sentence prefix e.g. $??RMC
+     * @param maxRate Max rate in Hz
+     */
+    public synchronized void add(String prefix, double maxRate)
+    {
+        if (maxRate <= 0)
+        {
+            throw new IllegalArgumentException("maxRate="+maxRate);
+        }
+        rulePrefixes.add(prefix);
+        ruleIntervals.add((long) (TimeUnit.SECONDS.toNanos(1) / maxRate));
+        counters = new Counter[counters.length];
+    }
+
+    @Override
+    public boolean accept(CharSequence cs)
+    {
+        return accept(cs, System.nanoTime());
+    }
+    /**
+     * Returns true if sentence is accepted at time.
+     * @param cs
+     * @param nanos Time as in System.nanoTime
+     * @return 
+     */
+    public boolean accept(CharSequence cs, long nanos)
+    {
+        int id = RoutingTable.getPrefixId(cs);
+        if (id == 0)
+        {
+            return true;
+        }
+        Counter[] arr = counters;
+        Counter counter = id < arr.length ? arr[id] : null;
+        if (counter == null)
+        {
+            counter = resolve(id);
+        }
+        return counter.accept(nanos);
+    }
+    /**
+     * Returns number of passed sentences for each seen prefix.
+     * @return 
+     */
+    public Map<String,Long> getPassCounts()
+    {
+        return counts(true);
+    }
+    /**
+     * Returns number of dropped sentences for each seen prefix.
+     * @return 
+     */
+    public Map<String,Long> getDropCounts()
+    {
+        return counts(false);
+    }
+    private Map<String,Long> counts(boolean pass)
+    {
+        Map<String,Long> map = new LinkedHashMap<>();
+        Counter[] arr = counters;
+        for (int ii=1;ii<arr.length;ii++)
+        {
+            Counter counter = arr[ii];
+            if (counter != null)
+            {
+                map.put(RoutingTable.getPrefix(ii), pass ? counter.passed.sum() : counter.dropped.sum());
+            }
+        }
+        return map;
+    }
+    /**
+     * Creates counter for prefix id. Array is copied so that readers see
+     * either old or new array.
+     * @param id
+     * @return 
+     */
+    private synchronized Counter resolve(int id)
+    {
+        Counter[] arr = counters;
+        if (id < arr.length && arr[id] != null)
+        {
+            return arr[id];
+        }
+        arr = Arrays.copyOf(arr, Math.max(id+1, id < arr.length ? arr.length : 2*arr.length));
+        Counter counter = new Counter(interval(RoutingTable.getPrefix(id)));
+        arr[id] = counter;
+        counters = arr;
+        return counter;
+    }
+    private long interval(String prefix)
+    {
+        int len = rulePrefixes.size();
+        for (int ii=0;ii<len;ii++)
+        {
+            if (matches(rulePrefixes.get(ii), prefix))
+            {
+                return ruleIntervals.get(ii);
+            }
+        }
+        return PASS;
+    }
+    private static boolean matches(String rule, String prefix)
+    {
+        int len = rule.length();
+        if (len > prefix.length())
+        {
+            return false;
+        }
+        for (int ii=0;ii<len;ii++)
+        {
+            char cc = rule.charAt(ii);
+            if (cc != '?' && cc != prefix.charAt(ii))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    private static final class Counter
+    {
+        private final long interval;
+        private final AtomicLong next = new AtomicLong();
+        private final LongAdder passed = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+
+        private Counter(long interval)
+        {
+            this.interval = interval;
+        }
+        
+        private boolean accept(long nanos)
+        {
+            if (interval == PASS)
+            {
+                passed.increment();
+                return true;
+            }
+            while (true)
+            {
+                long nxt = next.get();
+                if (nxt != 0 && nanos - nxt < 0)
+                {
+                    dropped.increment();
+                    return false;
+                }
+                long start = nxt;
+                if (nxt == 0 || nanos - nxt >= interval)
+                {
+                    start = nanos;    // first or after gap
+                }
+                if (next.compareAndSet(nxt, start + interval))
+                {
+                    passed.increment();
+                    return true;
+                }
+            }
+        }
+    }
+}
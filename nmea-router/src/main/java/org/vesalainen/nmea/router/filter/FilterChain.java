@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.filter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FilterChain is a canonical chain of cacheable filters. Endpoints having 
+ * same filter classes share same chain instance and id. Verdict of chain for
+ * routed sentence can therefore be evaluated once and cached by id.
+ * 
+ * <p>Only leading cacheable filters of configured list are included so that
+ * stateful filters see same sentences as before.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.router.filter.MessageFilter#isCacheable() 
+ * @see org.vesalainen.nmea.router.SharedSentence#accept(org.vesalainen.nmea.router.filter.FilterChain) 
+ */
+public final class FilterChain implements MessageFilter
+{
+    private static final Map<String,FilterChain> CHAINS = new HashMap<>();
+    private final int id;
+    private final String key;
+    private final MessageFilter[] filters;
+
+    private FilterChain(int id, String key, MessageFilter[] filters)
+    {
+        this.id = id;
+        this.key = key;
+        this.filters = filters;
+    }
+    /**
+     * Returns canonical chain of leading cacheable filters or null if first 
+     * filter is not cacheable. Caller should use only filters after chain
+     * length.
+     * @param filters
+     * @return 
+     */
+    public static FilterChain canonicalize(List<MessageFilter> filters)
+    {
+        int len = 0;
+        StringBuilder sb = new StringBuilder();
+        for (MessageFilter filter : filters)
+        {
+            if (!filter.isCacheable())
+            {
+                break;
+            }
+            if (len > 0)
+            {
+                sb.append(' ');
+            }
+            sb.append(filter.getClass().getName());
+            len++;
+        }
+        if (len == 0)
+        {
+            return null;
+        }
+        String key = sb.toString();
+        synchronized(CHAINS)
+        {
+            FilterChain chain = CHAINS.get(key);
+            if (chain == null)
+            {
+                MessageFilter[] arr = filters.subList(0, len).toArray(new MessageFilter[len]);
+                chain = new FilterChain(CHAINS.size(), key, arr);
+                CHAINS.put(key, chain);
+            }
+            return chain;
+        }
+    }
+
+    @Override
+    public boolean accept(CharSequence cs)
+    {
+        for (MessageFilter filter : filters)
+        {
+            if (!filter.accept(cs))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isCacheable()
+    {
+        return true;
+    }
+    /**
+     * Returns small unique id of chain.
+     * @return 
+     */
+    public int getId()
+    {
+        return id;
+    }
+    /**
+     * Returns number of filters in chain.
+     * @return 
+     */
+    public int getLength()
+    {
+        return filters.length;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "FilterChain{" + key + '}';
+    }
+    
+}
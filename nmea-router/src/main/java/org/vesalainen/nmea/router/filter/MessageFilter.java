@@ -23,4 +23,15 @@ package org.vesalainen.nmea.router.filter;
 public interface MessageFilter
 {
     boolean accept(CharSequence cs);
+    /**
+     * Returns true if accept result depends only on given sentence. Such 
+     * filters are shared between endpoints and their verdict is evaluated once
+     * per routed sentence.
+     * @return 
+     * @see org.vesalainen.nmea.router.filter.FilterChain
+     */
+    default boolean isCacheable()
+    {
+        return false;
+    }
 }
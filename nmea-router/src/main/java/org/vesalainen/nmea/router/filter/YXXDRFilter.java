@@ -54,5 +54,11 @@ public class YXXDRFilter extends AbstractNMEAFilter
         }
         return Cond.GoOn;
     }
+
+    @Override
+    public boolean isCacheable()
+    {
+        return true;
+    }
     
 }
@@ -23,7 +23,6 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import org.vesalainen.nio.RingByteBuffer;
-import static org.vesalainen.nmea.router.RouterManager.POOL;
 import org.vesalainen.nmea.router.endpoint.Endpoint;
 import org.vesalainen.util.logging.JavaLogging;
 
@@ -55,7 +54,7 @@ public class EndpointScriptEngine extends JavaLogging implements Runnable
 
     public void start()
     {
-        future = POOL.submit(this);
+        future = endpoint.getLoopExecutor().submit(this);
         info("%s started", scriptName);
     }
     public void stop()
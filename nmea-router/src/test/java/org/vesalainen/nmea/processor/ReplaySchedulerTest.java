@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class ReplaySchedulerTest
+{
+    private static final long START = 1658730295000L;
+    
+    public ReplaySchedulerTest()
+    {
+    }
+
+    @Test
+    public void testAsFastAsPossible() throws InterruptedException
+    {
+        VirtualClock clock = new VirtualClock(VirtualClock.AS_FAST_AS_POSSIBLE);
+        List<Long> emits = new ArrayList<>();
+        ReplayScheduler scheduler = new ReplayScheduler(clock, 1000, ()->emits.add(clock.millis()));
+        // one day with records every 100 ms, two records share time
+        for (long t=0;t<86400000;t+=100)
+        {
+            assertTrue(scheduler.advance(START+t));
+            assertTrue(scheduler.advance(START+t));
+            assertEquals(START+t, clock.millis());
+        }
+        assertEquals(86399, emits.size());
+        for (int ii=0;ii<emits.size();ii++)
+        {
+            assertEquals(START+1000*(ii+1), emits.get(ii).longValue());
+        }
+    }
+    @Test
+    public void testSpeed() throws InterruptedException
+    {
+        VirtualClock clock = new VirtualClock(250);
+        List<Long> emits = new ArrayList<>();
+        ReplayScheduler scheduler = new ReplayScheduler(clock, 1000, ()->emits.add(clock.millis()));
+        long start = System.nanoTime();
+        // 50 s of virtual time in 200 ms
+        for (long t=0;t<=50000;t+=10)
+        {
+            scheduler.advance(START+t);
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed >= 199);
+        assertTrue(elapsed < 1000);
+        assertEquals(50, emits.size());
+        for (int ii=0;ii<emits.size();ii++)
+        {
+            long expected = START+1000*(ii+1);
+            assertTrue(emits.get(ii) >= expected);
+            assertTrue(emits.get(ii) < expected + 500);
+        }
+    }
+    @Test
+    public void testSeek() throws InterruptedException
+    {
+        VirtualClock clock = new VirtualClock(VirtualClock.AS_FAST_AS_POSSIBLE);
+        List<Long> emits = new ArrayList<>();
+        ReplayScheduler scheduler = new ReplayScheduler(clock, 1000, ()->emits.add(clock.millis()));
+        scheduler.seek(START+50000);
+        for (long t=0;t<60000;t+=100)
+        {
+            assertTrue(scheduler.advance(START+t));
+        }
+        assertEquals(9, emits.size());
+        assertEquals(START+51000, emits.get(0).longValue());
+        scheduler.seek(START+10000);
+        assertFalse(scheduler.advance(START+60000));
+        scheduler.reset();
+        emits.clear();
+        for (long t=0;t<20000;t+=100)
+        {
+            assertTrue(scheduler.advance(START+t));
+        }
+        assertEquals(9, emits.size());
+        assertEquals(START+11000, emits.get(0).longValue());
+    }
+    @Test
+    public void testPause() throws InterruptedException
+    {
+        VirtualClock clock = new VirtualClock(1);
+        ReplayScheduler scheduler = new ReplayScheduler(clock, 1000, ()->{});
+        scheduler.advance(START);
+        clock.pause();
+        long paused = clock.millis();
+        Thread thread = new Thread(()->
+        {
+            try
+            {
+                Thread.sleep(100);
+                assertEquals(paused, clock.millis());
+                clock.setSpeed(VirtualClock.MAX_SPEED);
+                clock.resume();
+            }
+            catch (InterruptedException ex)
+            {
+            }
+        });
+        thread.start();
+        long start = System.nanoTime();
+        scheduler.advance(START+10000);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed >= 100);
+        assertTrue(elapsed < 1000);
+        assertTrue(clock.millis() >= START+10000);
+    }
+}
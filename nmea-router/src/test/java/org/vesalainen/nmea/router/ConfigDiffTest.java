@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.util.List;
+import javax.xml.bind.JAXBException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.vesalainen.nmea.jaxb.router.EndpointType;
+import org.vesalainen.nmea.jaxb.router.NmeaType;
+import org.vesalainen.nmea.jaxb.router.ObjectFactory;
+import org.vesalainen.nmea.jaxb.router.RouteType;
+import org.vesalainen.nmea.jaxb.router.TcpEndpointType;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class ConfigDiffTest
+{
+    private final ObjectFactory factory = new ObjectFactory();
+    
+    public ConfigDiffTest()
+    {
+    }
+
+    @Test
+    public void testUnchanged() throws JAXBException
+    {
+        ConfigDiff diff = new ConfigDiff(create(), create());
+        assertTrue(diff.isEmpty());
+    }
+    @Test
+    public void testEndpoints() throws JAXBException
+    {
+        NmeaType oldType = create();
+        NmeaType newType = create();
+        List<EndpointType> list = newType.getEndPoints().getN2KGatewayOrConsumerEndpointOrLogEndpoint();
+        list.get(0).getRoute().get(0).setPrefix("$GPGGA");
+        ((TcpEndpointType)list.get(1)).setPort(10200);
+        list.remove(2);
+        list.add(tcp("Tcp4", 10113));
+        ConfigDiff diff = new ConfigDiff(oldType, newType);
+        assertFalse(diff.isEmpty());
+        assertFalse(diff.isGlobalChanged());
+        assertEquals(1, diff.getRerouted().size());
+        assertEquals("Tcp1", diff.getRerouted().get(0).getName());
+        assertEquals(1, diff.getRestarted().size());
+        assertEquals("Tcp2", diff.getRestarted().get(0).getName());
+        assertEquals(1, diff.getRemoved().size());
+        assertEquals("Tcp3", diff.getRemoved().get(0).getName());
+        assertEquals(1, diff.getAdded().size());
+        assertEquals("Tcp4", diff.getAdded().get(0).getName());
+    }
+    @Test
+    public void testDisabled() throws JAXBException
+    {
+        NmeaType newType = create();
+        newType.getEndPoints().getN2KGatewayOrConsumerEndpointOrLogEndpoint().get(2).setEnable(false);
+        ConfigDiff diff = new ConfigDiff(create(), newType);
+        assertEquals(1, diff.getRemoved().size());
+        assertEquals("Tcp3", diff.getRemoved().get(0).getName());
+        assertTrue(diff.getRestarted().isEmpty());
+    }
+    @Test
+    public void testGlobal() throws JAXBException
+    {
+        NmeaType newType = create();
+        newType.getAllDevices().add("/dev/ttyUSB0");
+        assertTrue(new ConfigDiff(create(), newType).isEmpty());
+        newType.setMetricsPort(9100);
+        assertTrue(new ConfigDiff(create(), newType).isGlobalChanged());
+    }
+    private NmeaType create()
+    {
+        NmeaType nmea = factory.createNmeaType();
+        nmea.setBoat(factory.createBoatDataType());
+        nmea.setEndPoints(factory.createEndPointGroupType());
+        List<EndpointType> list = nmea.getEndPoints().getN2KGatewayOrConsumerEndpointOrLogEndpoint();
+        list.add(tcp("Tcp1", 10110));
+        list.add(tcp("Tcp2", 10111));
+        list.add(tcp("Tcp3", 10112));
+        return nmea;
+    }
+    private TcpEndpointType tcp(String name, int port)
+    {
+        TcpEndpointType tcp = factory.createTcpEndpointType();
+        tcp.setName(name);
+        tcp.setEnable(true);
+        tcp.setPort(port);
+        RouteType route = factory.createRouteType();
+        route.setPrefix("$GPRMC");
+        route.getTarget().add("Tcp1");
+        tcp.getRoute().add(route);
+        return tcp;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.vesalainen.nmea.router.filter.DecimationFilter;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class DecimationFilterTest
+{
+    
+    public DecimationFilterTest()
+    {
+    }
+
+    @Test
+    public void testRate()
+    {
+        DecimationFilter filter = new DecimationFilter();
+        filter.add("$??RMC", 1);
+        filter.add("$??XDR", 2);
+        String rmc = "$GPRMC,062455,A,6009.2054,N,02453.6493,E,0.0,0.0,250722,7.0,E,A*38\r\n";
+        String xdr = "$YXXDR,A,-1.1,D,PTCH,A,2.3,D,ROLL*57\r\n";
+        String hdg = "$HCHDG,171,,,06,E*13\r\n";
+        long ms = TimeUnit.MILLISECONDS.toNanos(1);
+        int rmcCount = 0;
+        int xdrCount = 0;
+        int hdgCount = 0;
+        // 10 Hz with jitter for 10 seconds
+        for (int ii=0;ii<100;ii++)
+        {
+            long t = 1000*ms + ii*100*ms + (ii % 3 - 1)*3*ms;
+            if (filter.accept(rmc, t))
+            {
+                rmcCount++;
+            }
+            if (filter.accept(xdr, t))
+            {
+                xdrCount++;
+            }
+            if (filter.accept(hdg, t))
+            {
+                hdgCount++;
+            }
+        }
+        assertEquals(10, rmcCount);
+        assertEquals(20, xdrCount);
+        assertEquals(100, hdgCount);
+        assertEquals(Long.valueOf(10), filter.getPassCounts().get("$GPRMC"));
+        assertEquals(Long.valueOf(90), filter.getDropCounts().get("$GPRMC"));
+        assertEquals(Long.valueOf(0), filter.getDropCounts().get("$HCHDG"));
+        assertTrue(filter.accept("garbage", 0));
+    }
+    @Test
+    public void testGap()
+    {
+        DecimationFilter filter = new DecimationFilter();
+        filter.add("$GP", 1);
+        String gga = "$GPGGA,062455,6009.2054,N,02453.6493,E,1,08,1.0,10.0,M,18.0,M,,*4C\r\n";
+        long s = TimeUnit.SECONDS.toNanos(1);
+        assertTrue(filter.accept(gga, 10*s));
+        assertFalse(filter.accept(gga, 10*s+s/2));
+        assertTrue(filter.accept(gga, 20*s));
+        assertFalse(filter.accept(gga, 20*s+s/2));
+        assertTrue(filter.accept(gga, 21*s));
+    }
+    @Test
+    public void testConcurrent() throws InterruptedException
+    {
+        DecimationFilter filter = new DecimationFilter();
+        filter.add("$D", 1);
+        String[] sentences = new String[20];
+        for (int ii=0;ii<sentences.length;ii++)
+        {
+            sentences[ii] = String.format("$D%05d,1*00\r\n", ii);
+        }
+        long ms = TimeUnit.MILLISECONDS.toNanos(1);
+        int threads = 4;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        int[] passes = new int[threads];
+        Thread[] sources = new Thread[threads];
+        for (int tt=0;tt<threads;tt++)
+        {
+            int k = tt;
+            sources[tt] = new Thread(()->
+            {
+                try
+                {
+                    // same sentences from all sources at same time for 10 seconds
+                    for (int ii=0;ii<1000;ii++)
+                    {
+                        barrier.await();
+                        long t = 1000*ms + ii*10*ms;
+                        for (int jj=0;jj<sentences.length;jj++)
+                        {
+                            if (filter.accept(sentences[jj], t))
+                            {
+                                passes[k]++;
+                            }
+                        }
+                    }
+                }
+                catch (InterruptedException | BrokenBarrierException ex)
+                {
+                    throw new IllegalArgumentException(ex);
+                }
+            });
+            sources[tt].start();
+        }
+        for (Thread source : sources)
+        {
+            source.join();
+        }
+        int total = 0;
+        for (int pass : passes)
+        {
+            total += pass;
+        }
+        assertEquals(10*sentences.length, total);
+        Map<String, Long> passCounts = filter.getPassCounts();
+        Map<String, Long> dropCounts = filter.getDropCounts();
+        for (String sentence : sentences)
+        {
+            String prefix = sentence.substring(0, sentence.indexOf(','));
+            assertEquals(Long.valueOf(10), passCounts.get(prefix));
+            assertEquals(Long.valueOf(threads*1000-10), dropCounts.get(prefix));
+        }
+    }
+}
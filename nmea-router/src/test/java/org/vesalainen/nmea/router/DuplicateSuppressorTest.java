@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class DuplicateSuppressorTest
+{
+    
+    public DuplicateSuppressorTest()
+    {
+    }
+
+    @Test
+    public void testDuplicate()
+    {
+        DuplicateSuppressor ds = new DuplicateSuppressor(64);
+        String rmc = "$GPRMC,062455,A,6009.2054,N,02453.6493,E,0.0,0.0,250722,7.0,E,A*38\r\n";
+        assertFalse(ds.isDuplicate(rmc, 1, 2000, 1000));
+        assertTrue(ds.isDuplicate(rmc, 2, 2000, 1500));
+        assertFalse(ds.isDuplicate(rmc, 1, 2000, 2000));   // repeat
+        assertFalse(ds.isDuplicate(rmc, 2, 2000, 4500));   // expired
+        assertEquals(4, ds.getLookups());
+        assertEquals(1, ds.getDuplicates());
+        assertEquals(0.25F, ds.getHitRatio(), 1e-6);
+        assertEquals(64*20, ds.getMemoryUse());
+    }
+    @Test
+    public void testAIS()
+    {
+        DuplicateSuppressor ds = new DuplicateSuppressor(64);
+        assertFalse(ds.isDuplicate("!AIVDM,1,1,,B,16:@?m001o85tmL<SbP5OlHN25Ip,0*7F\r\n", 1, 2000, 30));
+        assertTrue(ds.isDuplicate("!AIVDM,1,1,,A,16:@?m001o85tmL<SbP5OlHN25Ip,0*7C\r\n", 2, 2000, 40));
+        assertFalse(ds.isDuplicate("!AIVDM,1,1", 2, 2000, 50));
+        assertFalse(ds.isDuplicate("!AIVDM,1,1,7,B,B6:@?m001o85tmL<SbP5OlHN25Ip,0*7F\r\n", 1, 2000, 60));
+        assertTrue(ds.isDuplicate("!ABVDM,1,1,4,A,B6:@?m001o85tmL<SbP5OlHN25Ip,0*7C\r\n", 2, 2000, 70));
+    }
+    @Test
+    public void testFragments()
+    {
+        DuplicateSuppressor ds = new DuplicateSuppressor(64);
+        // fragment 1 from receiver A is lost
+        assertFalse(ds.isDuplicate("!ABVDM,2,1,3,A,53nFBv01SJ<thHp6220H4heHTf2222222222221?50:454o<`9QSlUDp,0*00\r\n", 2, 2000, 10));
+        assertFalse(ds.isDuplicate("!AIVDM,2,2,9,B,888888888888880,2*27\r\n", 1, 2000, 20));
+        // both fragments from receiver B pass
+        assertFalse(ds.isDuplicate("!ABVDM,2,2,3,A,888888888888880,2*2E\r\n", 2, 2000, 30));
+        assertFalse(ds.isDuplicate("!AIVDM,2,1,9,B,53nFBv01SJ<thHp6220H4heHTf2222222222221?50:454o<`9QSlUDp,0*09\r\n", 1, 2000, 40));
+        assertEquals(0, ds.getLookups());
+        assertTrue(DuplicateSuppressor.isFragment("!AIVDM,12,1,9,B,5,0*09\r\n"));
+        assertFalse(DuplicateSuppressor.isFragment("!AIVDM,1,1,,B,1,0*09\r\n"));
+        assertFalse(DuplicateSuppressor.isFragment("$GPRMC,2,1,,B,1,0*09\r\n"));
+    }
+    @Test
+    public void testFull()
+    {
+        DuplicateSuppressor ds = new DuplicateSuppressor(16);
+        for (int ii=0;ii<1000;ii++)
+        {
+            assertFalse(ds.isDuplicate("$IIMTW,"+ii+",C*00\r\n", 1, 2000, ii));
+        }
+        assertEquals(16, ds.getSize());
+        assertTrue(ds.isDuplicate("$IIMTW,999,C*00\r\n", 2, 2000, 1000));
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.vesalainen.nmea.router.FailoverArbiter.Source;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class FailoverArbiterTest
+{
+    
+    public FailoverArbiterTest()
+    {
+    }
+
+    @Test
+    public void testFailover()
+    {
+        FailoverArbiter arbiter = new FailoverArbiter();
+        int nav = arbiter.getGroup(Arrays.asList("nav"));
+        int rmc = RoutingTable.getPrefixId("$GPRMC,");
+        Source gps1 = arbiter.getSource("gps1", ()->0);
+        Source gps2 = arbiter.getSource("gps2", ()->0);
+        assertSame(gps1, arbiter.getSource("gps1", ()->0));
+        for (long t=0;t<10000;t+=1000)
+        {
+            assertTrue(arbiter.accept(gps1, rmc, nav, 0, 1500, 5000, t));
+            assertFalse(arbiter.accept(gps2, rmc, nav, 1, 1500, 5000, t+500));
+        }
+        assertEquals("gps1", arbiter.getActiveSources().get("$GPRMC->[nav]"));
+        // gps1 missing
+        assertFalse(arbiter.accept(gps2, rmc, nav, 1, 1500, 5000, 10500));
+        for (long t=11500;t<20000;t+=1000)
+        {
+            assertTrue(arbiter.accept(gps2, rmc, nav, 1, 1500, 5000, t));
+        }
+        assertEquals("gps2", arbiter.getActiveSources().get("$GPRMC->[nav]"));
+        // gps1 back, must be present for hold time
+        for (long t=20000;t<25000;t+=1000)
+        {
+            assertFalse(arbiter.accept(gps1, rmc, nav, 0, 1500, 5000, t));
+            assertTrue(arbiter.accept(gps2, rmc, nav, 1, 1500, 5000, t+500));
+        }
+        assertTrue(arbiter.accept(gps1, rmc, nav, 0, 1500, 5000, 25000));
+        assertFalse(arbiter.accept(gps2, rmc, nav, 1, 1500, 5000, 25500));
+        assertEquals(3, arbiter.getSwitchCount());
+    }
+    @Test
+    public void testHealth()
+    {
+        FailoverArbiter arbiter = new FailoverArbiter();
+        int nav = arbiter.getGroup(Arrays.asList("nav"));
+        int hdg = RoutingTable.getPrefixId("$HCHDG,");
+        float[] errors = new float[1];
+        Source hdg1 = arbiter.getSource("hdg1", ()->errors[0]);
+        Source hdg2 = arbiter.getSource("hdg2", ()->0);
+        assertTrue(arbiter.accept(hdg1, hdg, nav, 0, 1500, 5000, 0));
+        for (long t=0;t<10000;t+=100)
+        {
+            assertTrue(arbiter.accept(hdg1, hdg, nav, 0, 1500, 5000, t));
+            assertFalse(arbiter.accept(hdg2, hdg, nav, 0, 1500, 5000, t+50));
+        }
+        errors[0] = 50;
+        assertTrue(arbiter.accept(hdg2, hdg, nav, 0, 1500, 5000, 10050));
+        assertFalse(arbiter.accept(hdg1, hdg, nav, 0, 1500, 5000, 10100));
+        assertEquals("hdg2", arbiter.getActiveSources().get("$HCHDG->[nav]"));
+        // hdg1 fixed but equal rank needs better score
+        errors[0] = 0;
+        for (long t=10200;t<20000;t+=100)
+        {
+            assertFalse(arbiter.accept(hdg1, hdg, nav, 0, 1500, 5000, t));
+            assertTrue(arbiter.accept(hdg2, hdg, nav, 0, 1500, 5000, t+50));
+        }
+    }
+    @Test
+    public void testSeveralWriters() throws InterruptedException
+    {
+        FailoverArbiter arbiter = new FailoverArbiter();
+        int nav = arbiter.getGroup(Arrays.asList("nav"));
+        int[] prefixes = new int[200];
+        for (int ii=0;ii<prefixes.length;ii++)
+        {
+            prefixes[ii] = RoutingTable.getPrefixId(String.format("$F%05d,", ii));
+        }
+        Source tcp = arbiter.getSource("tcp", ()->0);
+        Source backup = arbiter.getSource("backup", ()->0);
+        int threads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        Thread[] writers = new Thread[threads];
+        for (int tt=0;tt<threads;tt++)
+        {
+            int k = tt;
+            writers[tt] = new Thread(()->
+            {
+                try
+                {
+                    start.await();
+                }
+                catch (InterruptedException ex)
+                {
+                    return;
+                }
+                for (int ii=0;ii<100;ii++)
+                {
+                    long t = 1000 + ii*40 + k*10;
+                    for (int jj=0;jj<prefixes.length;jj++)
+                    {
+                        int prefix = prefixes[k % 2 == 0 ? jj : prefixes.length-jj-1];
+                        if (!arbiter.accept(tcp, prefix, nav, 0, 1500, 5000, t))
+                        {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            writers[tt].start();
+        }
+        start.countDown();
+        for (Thread writer : writers)
+        {
+            writer.join();
+        }
+        assertEquals(0, rejected.get());
+        long last = 1000 + 99*40 + (threads-1)*10;
+        for (int prefix : prefixes)
+        {
+            assertFalse(arbiter.accept(backup, prefix, nav, 1, 1500, 5000, last+1500));
+            assertTrue(arbiter.accept(backup, prefix, nav, 1, 1500, 5000, last+1501));
+        }
+    }
+    @Test
+    public void testNotArbitrated()
+    {
+        FailoverArbiter arbiter = new FailoverArbiter();
+        int nav = arbiter.getGroup(Arrays.asList("nav"));
+        int vdm = RoutingTable.getPrefixId("!AIVDM,");
+        Source ais1 = arbiter.getSource("ais1", ()->0);
+        Source ais2 = arbiter.getSource("ais2", ()->0);
+        for (long t=0;t<10000;t+=100)
+        {
+            assertTrue(arbiter.accept(ais1, vdm, nav, -1, 1500, 5000, t));
+            assertTrue(arbiter.accept(ais2, vdm, nav, -1, 1500, 5000, t));
+        }
+        assertTrue(arbiter.accept(ais1, 0, nav, 0, 1500, 5000, 0));
+        assertTrue(arbiter.getActiveSources().isEmpty());
+    }
+    @Test
+    public void testUnrelatedTargets()
+    {
+        FailoverArbiter arbiter = new FailoverArbiter();
+        int nav = arbiter.getGroup(Arrays.asList("nav", "plotter"));
+        assertEquals(nav, arbiter.getGroup(Arrays.asList("plotter", "nav")));
+        int log = arbiter.getGroup(Arrays.asList("log"));
+        assertNotEquals(nav, log);
+        int rmc = RoutingTable.getPrefixId("$GPRMC,");
+        Source gps1 = arbiter.getSource("gps1", ()->0);
+        Source gps2 = arbiter.getSource("gps2", ()->0);
+        for (long t=0;t<10000;t+=1000)
+        {
+            assertTrue(arbiter.accept(gps2, rmc, nav, 1, 1500, 5000, t));
+            // primary gps1 routes to log only and is not arbitrated
+            assertTrue(arbiter.accept(gps1, rmc, log, -1, 1500, 5000, t+500));
+        }
+        assertEquals(1, arbiter.getActiveSources().size());
+        assertEquals("gps2", arbiter.getActiveSources().get("$GPRMC->[nav, plotter]"));
+    }
+}
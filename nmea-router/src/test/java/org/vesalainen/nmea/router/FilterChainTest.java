@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.vesalainen.nmea.router.filter.FilterChain;
+import org.vesalainen.nmea.router.filter.MessageFilter;
+import org.vesalainen.nmea.router.filter.RMCFilter;
+import org.vesalainen.nmea.router.filter.YXXDRFilter;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class FilterChainTest
+{
+    private static int evaluations;
+    
+    public FilterChainTest()
+    {
+    }
+
+    @Test
+    public void testCanonicalize()
+    {
+        List<MessageFilter> list1 = new ArrayList<>(Arrays.asList(new YXXDRFilter(), new RMCFilter()));
+        List<MessageFilter> list2 = new ArrayList<>(Arrays.asList(new YXXDRFilter()));
+        FilterChain chain1 = FilterChain.canonicalize(list1);
+        FilterChain chain2 = FilterChain.canonicalize(list2);
+        assertSame(chain1, chain2);
+        assertEquals(1, chain1.getLength());
+        assertNull(FilterChain.canonicalize(Arrays.asList(new RMCFilter(), new YXXDRFilter())));
+        assertNotEquals(chain1.getId(), FilterChain.canonicalize(Arrays.asList(new CountingFilter())).getId());
+    }
+    @Test
+    public void testVerdictCache()
+    {
+        FilterChain chain = FilterChain.canonicalize(Arrays.asList(new YXXDRFilter(), new CountingFilter()));
+        evaluations = 0;
+        SharedSentence xdr = SharedSentence.copyOf("$YXXDR,A,0.1,D,PRAT,A,2.3,D,ROLL*57\r\n");
+        SharedSentence mwv = SharedSentence.copyOf("$IIMWV,214.8,R,0.1,K,A*3F\r\n");
+        for (int ii=0;ii<100;ii++)
+        {
+            assertFalse(xdr.accept(chain));
+            assertTrue(mwv.accept(chain));
+        }
+        assertEquals(1, evaluations);
+        xdr.release();
+        mwv.release();
+        SharedSentence hdg = SharedSentence.copyOf("$HCHDG,171,,,06,E*13\r\n");
+        assertTrue(hdg.accept(chain));
+        assertEquals(2, evaluations);
+        hdg.release();
+    }
+    private static class CountingFilter implements MessageFilter
+    {
+
+        @Override
+        public boolean accept(CharSequence cs)
+        {
+            evaluations++;
+            return true;
+        }
+
+        @Override
+        public boolean isCacheable()
+        {
+            return true;
+        }
+        
+    }
+}
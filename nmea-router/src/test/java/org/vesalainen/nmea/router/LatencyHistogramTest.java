@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class LatencyHistogramTest
+{
+    
+    public LatencyHistogramTest()
+    {
+    }
+
+    @Test
+    public void testIndex()
+    {
+        for (long v=0;v<100000;v++)
+        {
+            int idx = LatencyHistogram.index(v);
+            assertTrue(v+" < "+LatencyHistogram.lowest(idx), LatencyHistogram.lowest(idx) <= v);
+            assertTrue(v+" > "+LatencyHistogram.highest(idx), LatencyHistogram.highest(idx) >= v);
+            assertTrue(LatencyHistogram.highest(idx) - LatencyHistogram.lowest(idx) <= v/16);
+        }
+        int max = LatencyHistogram.index(LatencyHistogram.MAX_VALUE);
+        assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.highest(max));
+    }
+    @Test
+    public void testPercentile()
+    {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getValueAtPercentile(50));
+        for (int ii=1;ii<=1000;ii++)
+        {
+            h.record(ii);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(1000, h.getMax());
+        assertEquals(500.5, h.getMean(), 1e-9);
+        assertEquals(500, h.getValueAtPercentile(50), 500/16);
+        assertEquals(990, h.getValueAtPercentile(99), 990/16);
+        assertEquals(1000, h.getValueAtPercentile(100));
+        assertEquals(1, h.getValueAtPercentile(0));
+        h.record(-5);
+        h.record(Long.MAX_VALUE);
+        assertEquals(LatencyHistogram.MAX_VALUE, h.getMax());
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+    }
+    @Test
+    public void testRate()
+    {
+        long sec = 1000000000L;
+        RateMeter rm = new RateMeter(0);
+        for (int ii=0;ii<10;ii++)
+        {
+            rm.mark();
+        }
+        assertEquals(0, rm.getRate(sec/2), 1e-6);
+        assertEquals(5, rm.getRate(2*sec), 1e-6);
+        for (int ii=0;ii<60;ii++)
+        {
+            for (int jj=0;jj<10;jj++)
+            {
+                rm.mark();
+            }
+            rm.getRate((3+ii)*sec);
+        }
+        // one minute of 10/s moves average from 5 by 1-1/e towards 10
+        assertEquals(10-5*Math.exp(-1), rm.getRate(62*sec), 1e-3);
+        assertEquals(610, rm.getCount());
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class MetricsServerTest
+{
+    
+    public MetricsServerTest()
+    {
+    }
+
+    @Test
+    public void testAppend()
+    {
+        StringBuilder sb = new StringBuilder();
+        MetricsServer.append(sb, Collections.singletonList(new Source("gps \"1\"")));
+        String[] lines = sb.toString().split("\n");
+        List<String> list = Arrays.asList(lines);
+        assertTrue(list.contains("nmea_router_read_total{endpoint=\"gps \\\"1\\\"\"} 100"));
+        assertTrue(list.contains("nmea_router_read_rate{endpoint=\"gps \\\"1\\\"\"} 10.500"));
+        assertTrue(list.contains("nmea_router_drop_total{endpoint=\"gps \\\"1\\\"\"} 3"));
+        assertTrue(list.contains("nmea_router_latency_ms{endpoint=\"gps \\\"1\\\"\",quantile=\"0.99\"} 0.412"));
+        assertTrue(list.contains("nmea_router_route_rate{endpoint=\"gps \\\"1\\\"\",route=\"$GPRMC\"} 1.000"));
+        for (String line : lines)
+        {
+            assertTrue(line, line.matches("nmea_router_[a-z_]+\\{[^}]+\\} -?[0-9.]+"));
+        }
+    }
+    @Test
+    public void testServer() throws IOException
+    {
+        MetricsServer server = new MetricsServer(0);
+        server.start();
+        try
+        {
+            InetSocketAddress address = server.getAddress();
+            assertTrue(address.getAddress().isLoopbackAddress());
+            URL url = new URL("http", address.getHostString(), address.getPort(), MetricsServer.PATH);
+            HttpURLConnection con = (HttpURLConnection) url.openConnection();
+            assertEquals(200, con.getResponseCode());
+            assertEquals("text/plain; version=0.0.4; charset=utf-8", con.getContentType());
+            try (InputStream is = con.getInputStream())
+            {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                byte[] buf = new byte[1024];
+                int rc = is.read(buf);
+                while (rc != -1)
+                {
+                    baos.write(buf, 0, rc);
+                    rc = is.read(buf);
+                }
+                assertEquals(MetricsServer.getMetrics(), new String(baos.toByteArray(), UTF_8));
+            }
+            con = (HttpURLConnection) url.openConnection();
+            con.setRequestMethod("POST");
+            assertEquals(405, con.getResponseCode());
+        }
+        finally
+        {
+            server.stop();
+        }
+        assertNull(server.getAddress());
+    }
+    private static class Source implements DataSourceMXBean
+    {
+        private final String name;
+
+        public Source(String name)
+        {
+            this.name = name;
+        }
+        
+        @Override
+        public String getName()
+        {
+            return name;
+        }
+
+        @Override
+        public long getReadCount()
+        {
+            return 100;
+        }
+
+        @Override
+        public long getWriteCount()
+        {
+            return 50;
+        }
+
+        @Override
+        public long getReadBytes()
+        {
+            return 7000;
+        }
+
+        @Override
+        public long getWriteBytes()
+        {
+            return 3500;
+        }
+
+        @Override
+        public Date getLastRead()
+        {
+            return null;
+        }
+
+        @Override
+        public Date getLastWrite()
+        {
+            return null;
+        }
+
+        @Override
+        public Set<String> getFingerPrint()
+        {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public long getErrorBytes()
+        {
+            return 0;
+        }
+
+        @Override
+        public String getChannel()
+        {
+            return "test";
+        }
+
+        @Override
+        public long getDropCount()
+        {
+            return 3;
+        }
+
+        @Override
+        public float getReadRate()
+        {
+            return 10.5F;
+        }
+
+        @Override
+        public List<Float> getLatencyPercentiles()
+        {
+            return Arrays.asList(0.1F, 0.2F, 0.412F, 1.5F);
+        }
+
+        @Override
+        public Map<String, Float> getRouteRates()
+        {
+            Map<String,Float> map = new LinkedHashMap<>();
+            map.put("$GPRMC", 1F);
+            return map;
+        }
+    }
+}
@@ -16,6 +16,8 @@
  */
 package org.vesalainen.nmea.router;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import org.vesalainen.util.Matcher.Status;
@@ -81,5 +83,27 @@ public class NMEAMatcherTest
         assertEquals(0, nm.getErrors());
         assertEquals(1, nm.getMatches());
     }
+    @Test
+    public void testScan()
+    {
+        String sentence = "$IIHDG,171,,,06,E*23\r\n$IIHDG,171,,,06,E*13\r\n$IIMWV,214.8,R,0.1,K,A*3F\r\n$IIHDG,171,,,06,E*13\r\n";
+        ByteBuffer bb = ByteBuffer.wrap(sentence.getBytes(StandardCharsets.US_ASCII));
+        NMEAMatcher nm = new NMEAMatcher();
+        nm.addExpression("$??HDG", new Route());
+        nm.compile();
+        int matches = 0;
+        int off = 0;
+        while (off < bb.limit())
+        {
+            off = nm.scan(bb, off, bb.limit());
+            if (nm.getScanStatus() == Status.Match)
+            {
+                matches++;
+            }
+        }
+        assertEquals(2, matches);
+        assertEquals(2, nm.getMatches());
+        assertEquals(1, nm.getErrors());
+    }
     
 }
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ScatteringByteChannel;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Bulk and byte mode must produce same onOk/onError sequence.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class NMEAReaderTest
+{
+    private static final String HDG = "$IIHDG,171,,,06,E*13\r\n";
+    private static final String RMC = "$GPRMC,062455,A,6009.2054,N,02453.6493,E,000.0,001.3,171009,,,A*78\r\n";
+    private static final String VDM = "!AIVDM,1,1,,A,13HOI:0P0000VOHLCnHQKwvL05Ip,0*23\r\n";
+    private static final String MWV = "$IIMWV,120.0,R,5.4,N,A*3F\r\n";
+    private static final String[] SENTENCES = new String[] {HDG, RMC, VDM, MWV, "$PVES,1*00\r\n"};
+    private static final String[] PREFIXES = new String[] {"$??HDG", "$GPRMC", "!AIVD?", "$IIMWV"};
+    private static final int BUFFER_SIZE = 128;
+    
+    public NMEAReaderTest()
+    {
+    }
+
+    @Test
+    public void testChunkBoundaries() throws IOException
+    {
+        String input = HDG+RMC+VDM+MWV+HDG;
+        List<String> expected = new ArrayList<>();
+        expected.add("OK $??HDG "+HDG);
+        expected.add("OK $GPRMC "+RMC);
+        expected.add("OK !AIVD? "+VDM);
+        expected.add("OK $IIMWV "+MWV);
+        expected.add("OK $??HDG "+HDG);
+        expected.add("EOF errors=0 matches=5");
+        for (int chunk=1;chunk<=BUFFER_SIZE;chunk++)
+        {
+            assertEquals("chunk="+chunk, expected, run(input, false, new int[]{chunk}));
+            assertEquals("chunk="+chunk, expected, run(input, true, new int[]{chunk}));
+        }
+    }
+    @Test
+    public void testChecksumError() throws IOException
+    {
+        String bad = RMC.replace("*78", "*79");
+        String input = HDG+bad+MWV+VDM.replace("*23", "*2G")+HDG;
+        List<String> bytes = run(input, false, new int[]{7, 1, 30, 3});
+        assertEquals(bytes, run(input, true, new int[]{7, 1, 30, 3}));
+        assertEquals("OK $??HDG "+HDG, bytes.get(0));
+        assertTrue(bytes.get(1), bytes.get(1).startsWith("ERR $GPRMC,062455"));
+        assertEquals("OK $IIMWV "+MWV, bytes.get(2));
+        assertTrue(bytes.get(3), bytes.get(3).startsWith("ERR !AIVDM,1,1"));
+        assertEquals("OK $??HDG "+HDG, bytes.get(4));
+        assertEquals("EOF errors=2 matches=3", bytes.get(5));
+        assertEquals(6, bytes.size());
+    }
+    @Test
+    public void testGarbage() throws IOException
+    {
+        String input = "garbage"+HDG+"\r\n\u00ff\u0000"+RMC+"$GPGGA,1*00\r\n"+MWV+"*\r\n";
+        for (int chunk=1;chunk<=BUFFER_SIZE;chunk+=3)
+        {
+            List<String> bytes = run(input, false, new int[]{chunk});
+            assertEquals("chunk="+chunk, bytes, run(input, true, new int[]{chunk}));
+            assertEquals("ERR garbage", bytes.get(0));
+            assertEquals("OK $??HDG "+HDG, bytes.get(1));
+            assertEquals("OK $GPRMC "+RMC, bytes.get(3));
+            assertEquals("OK $IIMWV "+MWV, bytes.get(5));
+            assertEquals("EOF errors=0 matches=3", bytes.get(6));
+            assertEquals(7, bytes.size());
+        }
+    }
+    @Test
+    public void testTooLongLine() throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(HDG);
+        sb.append("$GPRMC,");
+        for (int ii=0;ii<BUFFER_SIZE;ii++)
+        {
+            sb.append('1');
+        }
+        sb.append("*00\r\n");
+        sb.append(HDG);
+        String input = sb.toString();
+        for (int chunk=1;chunk<=BUFFER_SIZE;chunk+=5)
+        {
+            List<String> bytes = run(input, false, new int[]{chunk});
+            assertEquals("chunk="+chunk, bytes, run(input, true, new int[]{chunk}));
+            assertEquals("OK $??HDG "+HDG, bytes.get(0));
+            assertEquals("UNDERFLOW errors=0 matches=1", bytes.get(1));
+            assertEquals(2, bytes.size());
+        }
+    }
+    @Test
+    public void testRandom() throws IOException
+    {
+        Random random = new Random(123456L);
+        for (int test=0;test<200;test++)
+        {
+            StringBuilder sb = new StringBuilder();
+            for (int ii=0;ii<100;ii++)
+            {
+                String s = SENTENCES[random.nextInt(SENTENCES.length)];
+                if (random.nextInt(10) == 0)
+                {
+                    char[] chars = s.toCharArray();
+                    chars[random.nextInt(chars.length)] = random.nextInt(10) == 0 ? '$' : (char) random.nextInt(256);
+                    s = new String(chars);
+                }
+                if (random.nextInt(20) == 0)
+                {
+                    s = s.substring(0, random.nextInt(s.length()));
+                }
+                sb.append(s);
+            }
+            String input = sb.toString();
+            int[] chunks = new int[16];
+            for (int ii=0;ii<chunks.length;ii++)
+            {
+                chunks[ii] = 1+random.nextInt(2*BUFFER_SIZE);
+            }
+            assertEquals("test="+test, run(input, false, chunks), run(input, true, chunks));
+        }
+    }
+    private List<String> run(String input, boolean bulk, int[] chunks) throws IOException
+    {
+        List<String> list = new ArrayList<>();
+        NMEAMatcher<String> matcher = new NMEAMatcher<>();
+        for (String prefix : PREFIXES)
+        {
+            matcher.addExpression(prefix, prefix);
+        }
+        matcher.compile();
+        ChunkChannel channel = new ChunkChannel(input.getBytes(ISO_8859_1), chunks);
+        NMEAReader reader = new NMEAReader("test", matcher, channel, BUFFER_SIZE, 
+                (ring, timestamp)->list.add("OK "+matcher.getMatched()+" "+ring), 
+                (err)->list.add("ERR "+new String(err.get(), ISO_8859_1)));
+        reader.setBulk(bulk);
+        String end = null;
+        try
+        {
+            reader.read();
+        }
+        catch (EOFException ex)
+        {
+            end = "EOF";
+        }
+        catch (BufferUnderflowException ex)
+        {
+            end = "UNDERFLOW";
+        }
+        list.add(end+" errors="+matcher.getErrors()+" matches="+matcher.getMatches());
+        return list;
+    }
+    /**
+     * Returns data in chunks of given sizes repeatedly.
+     */
+    private static class ChunkChannel implements ScatteringByteChannel
+    {
+        private final byte[] data;
+        private final int[] chunks;
+        private int position;
+        private int index;
+
+        public ChunkChannel(byte[] data, int[] chunks)
+        {
+            this.data = data;
+            this.chunks = chunks;
+        }
+        
+        @Override
+        public int read(ByteBuffer dst) throws IOException
+        {
+            if (position == data.length)
+            {
+                return -1;
+            }
+            int count = Math.min(Math.min(dst.remaining(), chunks[index++ % chunks.length]), data.length-position);
+            dst.put(data, position, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException
+        {
+            long count = 0;
+            for (int ii=0;ii<length;ii++)
+            {
+                ByteBuffer dst = dsts[offset+ii];
+                if (dst.hasRemaining())
+                {
+                    int rc = read(dst);
+                    if (rc == -1)
+                    {
+                        return count == 0 ? -1 : count;
+                    }
+                    count += rc;
+                    if (dst.hasRemaining())
+                    {
+                        break;
+                    }
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts) throws IOException
+        {
+            return read(dsts, 0, dsts.length);
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class RateMeterTest
+{
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    
+    public RateMeterTest()
+    {
+    }
+
+    @Test
+    public void testFirstInterval()
+    {
+        long now = 1000*SECOND;
+        RateMeter meter = new RateMeter(now);
+        for (int ii=0;ii<10;ii++)
+        {
+            meter.mark();
+        }
+        assertEquals(0, meter.getRate(now+SECOND/2), 1e-6);
+        assertEquals(10, meter.getRate(now+SECOND), 1e-6);
+        meter.mark();
+        // not updated more than once in a second
+        assertEquals(10, meter.getRate(now+SECOND+SECOND/2), 1e-6);
+        assertEquals(11, meter.getCount());
+    }
+    @Test
+    public void testSteadyRate()
+    {
+        long now = 0;
+        RateMeter meter = new RateMeter(now);
+        for (int ss=0;ss<300;ss++)
+        {
+            for (int ii=0;ii<20;ii++)
+            {
+                meter.mark();
+            }
+            now += SECOND;
+            meter.getRate(now);
+        }
+        assertEquals(20, meter.getRate(now), 1e-3);
+        // rate drops to 5 Hz
+        for (int ss=0;ss<60;ss++)
+        {
+            for (int ii=0;ii<5;ii++)
+            {
+                meter.mark();
+            }
+            now += SECOND;
+            meter.getRate(now);
+        }
+        // one minute window is about 63% of the change
+        float expected = (float) (5 + 15*Math.exp(-1));
+        assertEquals(expected, meter.getRate(now), 0.1);
+    }
+    @Test
+    public void testUnread()
+    {
+        long now = 0;
+        RateMeter meter = new RateMeter(now);
+        for (int ii=0;ii<10;ii++)
+        {
+            meter.mark();
+        }
+        now += SECOND;
+        assertEquals(10, meter.getRate(now), 1e-6);
+        // 2 Hz for 10 minutes without reading
+        for (int ii=0;ii<1200;ii++)
+        {
+            meter.mark();
+        }
+        now += 600*SECOND;
+        assertEquals(2, meter.getRate(now), 1e-3);
+    }
+}
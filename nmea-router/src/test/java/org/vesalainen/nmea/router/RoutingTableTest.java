@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class RoutingTableTest
+{
+    
+    public RoutingTableTest()
+    {
+    }
+
+    @Test
+    public void testPrefixId()
+    {
+        int rmc = RoutingTable.getPrefixId("$GPRMC,062455,A,6009.2054,N*78\r\n");
+        assertTrue(rmc > 0);
+        assertEquals(rmc, RoutingTable.getPrefixId(new StringBuilder("$GPRMC,")));
+        assertEquals("$GPRMC", RoutingTable.getPrefix(rmc));
+        int vdm = RoutingTable.getPrefixId("!AIVDM,1,1,,A,13HOI:0P0000VOHLCnHQKwvL05Ip,0*23\r\n");
+        assertNotEquals(rmc, vdm);
+        assertEquals("!AIVDM", RoutingTable.getPrefix(vdm));
+        int prop = RoutingTable.getPrefixId("$PVESALAINEN,1*00\r\n");
+        assertEquals("$PVESALAINEN", RoutingTable.getPrefix(prop));
+        assertEquals(prop, RoutingTable.getPrefixId("$PVESALAINEN,2*00\r\n"));
+        assertEquals(0, RoutingTable.getPrefixId("garbage,"));
+        assertEquals(0, RoutingTable.getPrefixId("$GPRMC"));
+        assertEquals(0, RoutingTable.getPrefixId(""));
+        for (int ii=0;ii<1000;ii++)
+        {
+            String prefix = String.format("$%06d", ii);
+            int id = RoutingTable.getPrefixId(prefix+",");
+            assertEquals(prefix, RoutingTable.getPrefix(id));
+        }
+        assertEquals(rmc, RoutingTable.getPrefixId("$GPRMC,"));
+    }
+    @Test
+    public void testConcurrentResize() throws InterruptedException
+    {
+        String[] known = new String[50];
+        int[] ids = new int[known.length];
+        for (int ii=0;ii<known.length;ii++)
+        {
+            known[ii] = String.format("$K%05d", ii);
+            ids[ii] = RoutingTable.getPrefixId(known[ii]+",");
+        }
+        AtomicInteger wrong = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread[] readers = new Thread[3];
+        for (int tt=0;tt<readers.length;tt++)
+        {
+            readers[tt] = new Thread(()->
+            {
+                while (running.get())
+                {
+                    for (int ii=0;ii<known.length;ii++)
+                    {
+                        if (RoutingTable.getPrefixId(known[ii]+",") != ids[ii])
+                        {
+                            wrong.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            readers[tt].start();
+        }
+        for (int ii=0;ii<5000;ii++)
+        {
+            RoutingTable.getPrefixId(String.format("$R%05d,", ii));
+        }
+        running.set(false);
+        for (Thread reader : readers)
+        {
+            reader.join();
+        }
+        assertEquals(0, wrong.get());
+    }
+    @Test
+    public void testVersion()
+    {
+        int version = RoutingTable.getVersion();
+        RoutingTable.remove("not-running");
+        assertEquals(version, RoutingTable.getVersion());
+        assertNull(RoutingTable.get("not-running"));
+        assertEquals(0, RoutingTable.resolve(Arrays.asList("not-running")).length);
+    }
+}
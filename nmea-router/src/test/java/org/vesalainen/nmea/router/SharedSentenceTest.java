@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class SharedSentenceTest
+{
+    
+    public SharedSentenceTest()
+    {
+    }
+
+    @Test
+    public void testRefCount() throws Exception
+    {
+        String rmc = "$GPRMC,062455,A,6009.2054,N*78\r\n";
+        SharedSentence ss = SharedSentence.copyOf(rmc);
+        assertEquals(1, ss.getRefCount());
+        assertEquals(rmc, ss.toString());
+        assertEquals(rmc.length(), ss.length());
+        assertEquals('$', ss.charAt(0));
+        ss.retain();
+        assertEquals(2, ss.getRefCount());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel ch = Channels.newChannel(out);
+        assertEquals(rmc.length()-7, ss.writeTo(ch, 7));
+        assertEquals(rmc.substring(7), new String(out.toByteArray(), US_ASCII));
+        ss.release();
+        ss.release();
+        assertEquals(0, ss.getRefCount());
+        try
+        {
+            ss.retain();
+            fail("retain of released");
+        }
+        catch (IllegalStateException ex)
+        {
+        }
+    }
+    @Test
+    public void testLong()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int ii=0;ii<SharedSentence.SLAB_SIZE*2;ii++)
+        {
+            sb.append((char)('A'+ii%26));
+        }
+        SharedSentence ss = SharedSentence.copyOf(ByteBuffer.wrap(sb.toString().getBytes(US_ASCII)));
+        assertEquals(sb.toString(), ss.toString());
+        ByteBuffer view = SharedSentence.newView();
+        ByteBuffer bb = ss.asByteBuffer(0, view);
+        assertNotSame(view, bb);
+        assertEquals(ss.length(), bb.remaining());
+        ss.release();
+    }
+    @Test
+    public void testView()
+    {
+        String rmc = "$GPRMC,062455,A,6009.2054,N*78\r\n";
+        SharedSentence ss = SharedSentence.copyOf(rmc);
+        ByteBuffer view = SharedSentence.newView();
+        assertSame(view, ss.asByteBuffer(7, view));
+        byte[] arr = new byte[view.remaining()];
+        view.get(arr);
+        assertEquals(rmc.substring(7), new String(arr, US_ASCII));
+        assertSame(ss.asByteBuffer(0), ss.asByteBuffer(0));
+        ss.release();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class CaptureTest
+{
+    private static final String RMC = "$GPRMC,062455,A,6009.2054,N,02453.6493,E,0.0,0.0,250722,7.0,E,A*38\r\n";
+    private static final String HDG = "$HCHDG,171,,,06,E*13\r\n";
+    private static final long START = 1658730295000L;
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+    
+    public CaptureTest()
+    {
+    }
+
+    @Test
+    public void testSeek() throws IOException
+    {
+        Path dir = Files.createTempDirectory("capture");
+        try
+        {
+            try (CaptureWriter writer = new CaptureWriter(dir, 65536, 100, 0))
+            {
+                for (int ii=0;ii<10000;ii++)
+                {
+                    byte[] bytes = (ii % 2 == 0 ? RMC : HDG).getBytes(US_ASCII);
+                    writer.append(ii % 2 == 0 ? "gps" : "compass", (START+ii)*MS, bytes, 0, bytes.length);
+                }
+            }
+            assertTrue(CaptureReader.listSegments(dir).size() > 1);
+            try (CaptureReader reader = new CaptureReader(dir))
+            {
+                int count = 0;
+                while (reader.next())
+                {
+                    assertEquals((START+count)*MS, reader.getTime());
+                    assertEquals(count % 2 == 0 ? "gps" : "compass", reader.getSource());
+                    assertEquals(count % 2 == 0 ? RMC : HDG, string(reader.getSentence()));
+                    count++;
+                }
+                assertEquals(10000, count);
+            }
+            for (int t : new int[] {-5, 0, 1, 2345, 7001, 9999})
+            {
+                try (CaptureReader reader = new CaptureReader(dir))
+                {
+                    reader.seek(START+t);
+                    assertTrue(reader.next());
+                    assertEquals((START+Math.max(t, 0))*MS, reader.getTime());
+                }
+            }
+            try (CaptureReader reader = new CaptureReader(dir))
+            {
+                reader.seek(START+10000);
+                assertFalse(reader.next());
+            }
+        }
+        finally
+        {
+            delete(dir);
+        }
+    }
+    @Test
+    public void testMaxSegments() throws IOException
+    {
+        Path dir = Files.createTempDirectory("capture");
+        try
+        {
+            try (CaptureWriter writer = new CaptureWriter(dir, 65536, 1000, 2))
+            {
+                for (int ii=0;ii<10000;ii++)
+                {
+                    byte[] bytes = RMC.getBytes(US_ASCII);
+                    writer.append("gps", (START+ii)*MS, bytes, 0, bytes.length);
+                }
+            }
+            assertEquals(2, CaptureReader.listSegments(dir).size());
+            try (CaptureReader reader = new CaptureReader(dir))
+            {
+                assertTrue(reader.next());
+                assertTrue(reader.getTime() > START*MS);
+            }
+        }
+        finally
+        {
+            delete(dir);
+        }
+    }
+    @Test
+    public void testReplay() throws IOException
+    {
+        Path dir = Files.createTempDirectory("capture");
+        try
+        {
+            try (CaptureWriter writer = new CaptureWriter(dir))
+            {
+                for (int ii=0;ii<100;ii++)
+                {
+                    byte[] bytes = (ii % 2 == 0 ? RMC : HDG).getBytes(US_ASCII);
+                    writer.append(ii % 2 == 0 ? "gps" : "compass", (START+ii)*MS, bytes, 0, bytes.length);
+                }
+            }
+            StringBuilder sb = new StringBuilder();
+            try (ReplayChannel ch = new ReplayChannel(new CaptureReader(dir), 0, Collections.singleton("compass")))
+            {
+                ByteBuffer bb = ByteBuffer.allocate(30);
+                while (ch.read(bb) != -1)
+                {
+                    bb.flip();
+                    sb.append(string(bb));
+                    bb.clear();
+                }
+            }
+            assertEquals(50*HDG.length(), sb.length());
+            assertTrue(sb.toString().startsWith(HDG+HDG));
+            sb.setLength(0);
+            long start = System.nanoTime();
+            try (ReplayChannel ch = new ReplayChannel(new CaptureReader(dir), 2, null))
+            {
+                ByteBuffer bb = ByteBuffer.allocate(1024);
+                while (ch.read(bb) != -1)
+                {
+                    bb.flip();
+                    sb.append(string(bb));
+                    bb.clear();
+                }
+            }
+            // 99 ms of capture at speed 2
+            assertTrue(System.nanoTime() - start >= 49*MS);
+            assertEquals(50*(RMC.length()+HDG.length()), sb.length());
+        }
+        finally
+        {
+            delete(dir);
+        }
+    }
+    private static String string(ByteBuffer bb)
+    {
+        byte[] arr = new byte[bb.remaining()];
+        bb.get(arr);
+        return new String(arr, US_ASCII);
+    }
+    private static void delete(Path dir) throws IOException
+    {
+        try (Stream<Path> stream = Files.walk(dir))
+        {
+            stream.sorted(Comparator.reverseOrder()).forEach((p)->p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.endpoint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class DatagramBatchTest
+{
+    private static final String RMC = "$GPRMC,062455,A,6009.2054,N,02453.6493,E,000.0,001.3,171009,,,A*78\r\n";
+    private static final String MWV = "$IIMWV,120.0,R,5.4,N,A*3B\r\n";
+    private static final String HDT = "$IIHDT,123.4,T*2A\r\n";
+    
+    public DatagramBatchTest()
+    {
+    }
+
+    @Test
+    public void testSize() throws IOException
+    {
+        Datagrams ch = new Datagrams();
+        DatagramBatch batch = new DatagramBatch("test", 128, 0, null, null);
+        batch.add(MWV, ch);
+        batch.add(MWV, ch);
+        batch.add(MWV, ch);
+        assertEquals(0, ch.datagrams.size());
+        batch.add(RMC, ch);
+        assertEquals(1, ch.datagrams.size());
+        assertEquals(MWV+MWV+MWV, ch.datagrams.get(0));
+        batch.flush();
+        assertEquals(RMC, ch.datagrams.get(1));
+        assertEquals(2, batch.getPacketCount());
+        assertEquals(2, batch.getPacketsSaved());
+    }
+    @Test
+    public void testFlushPrefix() throws IOException
+    {
+        Datagrams ch = new Datagrams();
+        DatagramBatch batch = new DatagramBatch("test", 1400, 0, Arrays.asList("$??HDT"), null);
+        batch.add(MWV, ch);
+        batch.add(HDT, ch);
+        assertEquals(1, ch.datagrams.size());
+        assertEquals(MWV+HDT, ch.datagrams.get(0));
+    }
+    @Test
+    public void testDelay() throws Exception
+    {
+        ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1);
+        try
+        {
+            Datagrams ch = new Datagrams();
+            DatagramBatch batch = new DatagramBatch("test", 1400, 20, null, executor);
+            batch.add(MWV, ch);
+            batch.add(RMC, ch);
+            synchronized (ch)
+            {
+                long end = System.currentTimeMillis()+1000;
+                while (ch.datagrams.isEmpty() && System.currentTimeMillis() < end)
+                {
+                    ch.wait(100);
+                }
+            }
+            assertEquals(1, ch.datagrams.size());
+            assertEquals(MWV+RMC, ch.datagrams.get(0));
+            assertEquals(1, batch.getPacketsSaved());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+    private static class Datagrams implements WritableByteChannel
+    {
+        private final List<String> datagrams = new ArrayList<>();
+        
+        @Override
+        public synchronized int write(ByteBuffer src) throws IOException
+        {
+            int len = src.remaining();
+            byte[] arr = new byte[len];
+            src.get(arr);
+            datagrams.add(new String(arr, US_ASCII));
+            notifyAll();
+            return len;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+        }
+        
+    }
+}
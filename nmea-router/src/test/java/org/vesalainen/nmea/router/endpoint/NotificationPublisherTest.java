@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.endpoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.vesalainen.nmea.router.endpoint.NotificationPublisher.Type;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class NotificationPublisherTest
+{
+    
+    public NotificationPublisherTest()
+    {
+    }
+
+    @Test
+    public void testPublish() throws ListenerNotFoundException
+    {
+        NotificationPublisher publisher = new NotificationPublisher("test", 4, false);
+        Type rmc = publisher.getType("RMC");
+        assertSame(rmc, publisher.getType("RMC"));
+        assertFalse(publisher.hasListeners());
+        assertFalse(publisher.publish(rmc, "$GPRMC", null, 1));
+        List<Notification> list = new ArrayList<>();
+        NotificationListener listener = (n, h)->list.add(n);
+        publisher.addNotificationListener(listener, null, null);
+        assertTrue(publisher.hasListeners());
+        for (int ii=0;ii<5;ii++)
+        {
+            publisher.publish(rmc, "$GPRMC,"+ii, ii, ii);
+        }
+        assertEquals(1, publisher.getDropCount());
+        assertEquals(4, publisher.drain());
+        assertEquals(4, list.size());
+        for (int ii=0;ii<4;ii++)
+        {
+            Notification n = list.get(ii);
+            assertEquals("RMC", n.getType());
+            assertEquals("$GPRMC,"+ii, n.getMessage());
+            assertEquals(ii, n.getUserData());
+            assertEquals(ii, n.getTimeStamp());
+        }
+        assertTrue(publisher.publish(rmc, "$GPRMC,5", null, 5));
+        assertEquals(1, publisher.drain());
+        assertEquals(5, publisher.getPublishCount());
+        publisher.removeNotificationListener(listener);
+        assertFalse(publisher.hasListeners());
+        try
+        {
+            publisher.removeNotificationListener(listener);
+            fail("ListenerNotFoundException expected");
+        }
+        catch (ListenerNotFoundException ex)
+        {
+        }
+    }
+    @Test
+    public void testInterval()
+    {
+        NotificationPublisher publisher = new NotificationPublisher("test", 16, false);
+        publisher.setInterval(1000);
+        Type rmc = publisher.getType("RMC");
+        Type hdg = publisher.getType("HDG");
+        List<Notification> list = new ArrayList<>();
+        publisher.addNotificationListener((n, h)->list.add(n), (n)->n.getType().equals("RMC"), null);
+        assertTrue(publisher.publish(rmc, "1", null, 1000));
+        assertFalse(publisher.publish(rmc, "2", null, 1500));
+        assertTrue(publisher.publish(hdg, "3", null, 1500));
+        assertTrue(publisher.publish(rmc, "4", null, 2000));
+        assertEquals(3, publisher.drain());
+        assertEquals(2, list.size());
+        assertEquals("4", list.get(1).getMessage());
+    }
+}
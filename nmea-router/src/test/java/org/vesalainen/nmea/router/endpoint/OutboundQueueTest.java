@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.endpoint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import static org.vesalainen.nmea.jaxb.router.DropPolicyType.*;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class OutboundQueueTest
+{
+    
+    public OutboundQueueTest()
+    {
+    }
+
+    @Test
+    public void testDropOldest() throws Exception
+    {
+        GateChannel ch = new GateChannel();
+        OutboundQueue q = new OutboundQueue("test", ch, 2, DROP_OLDEST, null);
+        assertTrue(q.offer("1"));
+        assertTrue(q.offer("2"));
+        assertTrue(q.offer("3"));
+        assertEquals(2, q.getDepth());
+        assertEquals(1, q.getDropCount());
+        assertEquals("23", drain(q, ch, 2));
+    }
+    @Test
+    public void testDropNewest() throws Exception
+    {
+        GateChannel ch = new GateChannel();
+        OutboundQueue q = new OutboundQueue("test", ch, 2, DROP_NEWEST, null);
+        assertTrue(q.offer("1"));
+        assertTrue(q.offer("2"));
+        assertFalse(q.offer("3"));
+        assertEquals(1, q.getDropCount());
+        assertEquals("12", drain(q, ch, 2));
+    }
+    @Test
+    public void testBlock() throws Exception
+    {
+        GateChannel ch = new GateChannel();
+        OutboundQueue q = new OutboundQueue("test", ch, 1, BLOCK, null);
+        ExecutorService exec = Executors.newFixedThreadPool(2);
+        try
+        {
+            assertTrue(q.offer("1"));
+            Future<Boolean> blocked = exec.submit(()->q.offer("2"));
+            Thread.sleep(50);
+            assertFalse(blocked.isDone());
+            exec.submit(q);
+            ch.open.countDown();
+            assertTrue(blocked.get(1, TimeUnit.SECONDS));
+            ch.await(2);
+            assertEquals("12", ch.toString());
+            assertEquals(0, q.getDropCount());
+        }
+        finally
+        {
+            q.stop();
+            exec.shutdownNow();
+        }
+    }
+    @Test
+    public void testStop() throws Exception
+    {
+        GateChannel ch = new GateChannel();
+        OutboundQueue q = new OutboundQueue("test", ch, 1, BLOCK, null);
+        q.stop();
+        assertFalse(q.offer("1"));
+        q.run();
+        assertEquals(0, q.getDepth());
+    }
+    private String drain(OutboundQueue q, GateChannel ch, int count) throws Exception
+    {
+        Thread writer = new Thread(q);
+        writer.start();
+        ch.open.countDown();
+        ch.await(count);
+        q.stop();
+        writer.join(1000);
+        assertFalse(writer.isAlive());
+        return ch.toString();
+    }
+    private static class GateChannel implements WritableByteChannel
+    {
+        private final CountDownLatch open = new CountDownLatch(1);
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int writes;
+        
+        @Override
+        public int write(ByteBuffer src) throws IOException
+        {
+            try
+            {
+                open.await();
+            }
+            catch (InterruptedException ex)
+            {
+                throw new IOException(ex);
+            }
+            int len = src.remaining();
+            synchronized (this)
+            {
+                while (src.hasRemaining())
+                {
+                    out.write(src.get());
+                }
+                writes++;
+                notifyAll();
+            }
+            return len;
+        }
+        
+        private synchronized void await(int count) throws InterruptedException
+        {
+            long end = System.currentTimeMillis()+1000;
+            while (writes < count && System.currentTimeMillis() < end)
+            {
+                wait(100);
+            }
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+        }
+
+        @Override
+        public synchronized String toString()
+        {
+            return new String(out.toByteArray(), US_ASCII);
+        }
+        
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.router.endpoint;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.vesalainen.nmea.jaxb.router.ObjectFactory;
+import org.vesalainen.nmea.jaxb.router.RouteType;
+import org.vesalainen.nmea.jaxb.router.TcpEndpointType;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class TCPSelectorEndpointTest
+{
+    private static final String RMC = "$GPRMC,062455,A,6009.2054,N,02453.6493,E,0.0,0.0,250722,7.0,E,A*18\r\n";
+    private final ObjectFactory factory = new ObjectFactory();
+    
+    public TCPSelectorEndpointTest()
+    {
+    }
+
+    @Test
+    public void testAccept() throws Exception
+    {
+        TCPSelectorEndpoint endpoint = new TCPSelectorEndpoint(create("accept", 2, null, false), null);
+        Thread thread = start(endpoint);
+        try (Socket s1 = connect(endpoint);
+            Socket s2 = connect(endpoint))
+        {
+            waitClients(endpoint, 2);
+            endpoint.write(ByteBuffer.wrap(RMC.getBytes(US_ASCII)));
+            assertEquals(RMC, readLine(s1)+"\r\n");
+            assertEquals(RMC, readLine(s2)+"\r\n");
+            assertEquals(0, endpoint.getDropCount());
+        }
+        waitClients(endpoint, 0);
+        stop(thread, endpoint);
+    }
+    @Test
+    public void testPartialWrite() throws Exception
+    {
+        int count = 100000;
+        TCPSelectorEndpoint endpoint = new TCPSelectorEndpoint(create("partial", 1, 16777216, false), null);
+        Thread thread = start(endpoint);
+        try (Socket socket = new Socket())
+        {
+            socket.setReceiveBufferSize(4096);
+            socket.connect(endpoint.getLocalAddress());
+            waitClients(endpoint, 1);
+            for (int ii=0;ii<count;ii++)
+            {
+                endpoint.write(ByteBuffer.wrap(sentence(ii).getBytes(US_ASCII)));
+            }
+            Thread.sleep(200);
+            assertTrue(endpoint.getQueueDepth() > 0);
+            BufferedReader reader = reader(socket);
+            for (int ii=0;ii<count;ii++)
+            {
+                assertEquals(sentence(ii), reader.readLine()+"\r\n");
+            }
+            assertEquals(0, endpoint.getDropCount());
+            for (int ii=0;ii<100 && endpoint.getQueueDepth() > 0;ii++)
+            {
+                Thread.sleep(50);
+            }
+            assertEquals(0, endpoint.getQueueDepth());
+        }
+        stop(thread, endpoint);
+    }
+    @Test
+    public void testSlowClient() throws Exception
+    {
+        int count = 100000;
+        TCPSelectorEndpoint endpoint = new TCPSelectorEndpoint(create("slow", 2, 256, false), null);
+        Thread thread = start(endpoint);
+        try (Socket slow = new Socket();
+            Socket fast = connect(endpoint))
+        {
+            slow.setReceiveBufferSize(4096);
+            slow.connect(endpoint.getLocalAddress());
+            waitClients(endpoint, 2);
+            List<Integer> received = new ArrayList<>();
+            Thread reader = new Thread(()->
+            {
+                try
+                {
+                    BufferedReader br = reader(fast);
+                    String line = br.readLine();
+                    while (line != null)
+                    {
+                        received.add(Integer.valueOf(line.substring(7, line.indexOf(',', 7))));
+                        line = br.readLine();
+                    }
+                }
+                catch (SocketTimeoutException ex)
+                {
+                }
+                catch (IOException ex)
+                {
+                    throw new IllegalArgumentException(ex);
+                }
+            });
+            reader.start();
+            for (int ii=0;ii<count;ii++)
+            {
+                endpoint.write(ByteBuffer.wrap(sentence(ii).getBytes(US_ASCII)));
+            }
+            reader.join();
+            assertTrue(endpoint.getDropCount() > 0);
+            assertFalse(received.isEmpty());
+            for (int ii=1;ii<received.size();ii++)
+            {
+                assertTrue(received.get(ii-1) < received.get(ii));
+            }
+            assertEquals(2, endpoint.getClientCount());
+        }
+        stop(thread, endpoint);
+    }
+    @Test
+    public void testRouting() throws Exception
+    {
+        TCPSelectorEndpoint out = new TCPSelectorEndpoint(create("out", 1, null, false), null);
+        TCPSelectorEndpoint in = new TCPSelectorEndpoint(create("in", 1, null, false, "$GPRMC", "out"), null);
+        Thread outThread = start(out);
+        Thread inThread = start(in);
+        try (Socket receiver = connect(out);
+            Socket sender = connect(in))
+        {
+            waitClients(out, 1);
+            waitClients(in, 1);
+            sender.getOutputStream().write(("garbage\r\n"+RMC).getBytes(US_ASCII));
+            sender.getOutputStream().flush();
+            assertEquals(RMC, readLine(receiver)+"\r\n");
+        }
+        stop(inThread, in);
+        stop(outThread, out);
+    }
+    @Test
+    public void testAisFastBoot() throws Exception
+    {
+        String vdm1 = "!AIVDM,1,1,,B,16:@?m001o85tmL<SbP5OlHN25Ip,0*7F\r\n";
+        String vdm2 = "!AIVDM,2,1,9,B,53nFBv01SJ<thHp6220H4heHTf2222222222221?50:454o<`9QSlUDp,0*09\r\n";
+        TCPSelectorEndpoint endpoint = new TCPSelectorEndpoint(create("ais", 1, 256, true), null)
+        {
+            @Override
+            boolean fastBoot(WritableByteChannel client) throws IOException
+            {
+                client.write(ByteBuffer.wrap(vdm1.getBytes(US_ASCII)));
+                for (int ii=0;ii<10;ii++)
+                {
+                    client.write(ByteBuffer.wrap(vdm2.getBytes(US_ASCII)));
+                }
+                return true;
+            }
+        };
+        Thread thread = start(endpoint);
+        try (Socket socket = connect(endpoint))
+        {
+            BufferedReader reader = reader(socket);
+            assertEquals(vdm1, reader.readLine()+"\r\n");
+            for (int ii=0;ii<10;ii++)
+            {
+                assertEquals(vdm2, reader.readLine()+"\r\n");
+            }
+            assertEquals(0, endpoint.getDropCount());
+        }
+        stop(thread, endpoint);
+    }
+    private String sentence(int index)
+    {
+        return String.format("$PTEST,%d,%060d*00\r\n", index, 0);
+    }
+    private Thread start(TCPSelectorEndpoint endpoint) throws InterruptedException
+    {
+        Thread thread = new Thread(endpoint, endpoint.getName());
+        thread.start();
+        assertTrue(endpoint.started.await(10, TimeUnit.SECONDS));
+        return thread;
+    }
+    private void stop(Thread thread, TCPSelectorEndpoint endpoint) throws InterruptedException
+    {
+        thread.interrupt();
+        assertTrue(endpoint.stopped.await(10, TimeUnit.SECONDS));
+    }
+    private Socket connect(TCPSelectorEndpoint endpoint) throws IOException
+    {
+        Socket socket = new Socket();
+        socket.connect(endpoint.getLocalAddress());
+        return socket;
+    }
+    private BufferedReader reader(Socket socket) throws IOException
+    {
+        socket.setSoTimeout(2000);
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), US_ASCII));
+    }
+    private String readLine(Socket socket) throws IOException
+    {
+        return reader(socket).readLine();
+    }
+    private void waitClients(TCPSelectorEndpoint endpoint, int count) throws InterruptedException
+    {
+        for (int ii=0;ii<100 && endpoint.getClientCount() != count;ii++)
+        {
+            Thread.sleep(50);
+        }
+        assertEquals(count, endpoint.getClientCount());
+    }
+    private TcpEndpointType create(String name, int loops, Integer outboundSize, boolean aisFastBoot, String... routes)
+    {
+        TcpEndpointType tcp = factory.createTcpEndpointType();
+        tcp.setName(name);
+        tcp.setPort(0);
+        tcp.setSelectorLoops(loops);
+        tcp.setOutboundSize(outboundSize);
+        tcp.setAisFastBoot(aisFastBoot);
+        for (int ii=0;ii<routes.length;ii+=2)
+        {
+            RouteType route = factory.createRouteType();
+            route.setPrefix(routes[ii]);
+            route.getTarget().add(routes[ii+1]);
+            tcp.getRoute().add(route);
+        }
+        return tcp;
+    }
+}
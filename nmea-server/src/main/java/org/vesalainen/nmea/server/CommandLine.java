@@ -19,6 +19,7 @@ package org.vesalainen.nmea.server;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Clock;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -34,6 +35,7 @@ import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.util.log.JavaUtilLog;
 import org.eclipse.jetty.util.log.Log;
 import org.vesalainen.nmea.server.anchor.AnchorManager;
+import org.vesalainen.nmea.util.SharedRingChannel;
 import org.vesalainen.parsers.nmea.NMEAService;
 import org.vesalainen.parsers.nmea.ais.AISService;
 import org.vesalainen.util.LoggingCommandLine;
@@ -65,19 +67,29 @@ public class CommandLine extends LoggingCommandLine
         Config config = new Config(configfile);
         String address = config.getNmeaMulticastAddress();
         int nmeaPort = config.getNmeaMulticastPort();
+        String sharedMemory = config.getSharedMemory();
         int httpPort = config.getHttpPort();
         URI aisDirectory = config.getAisDirectory();
         long aisMaxLogSize = config.getAisMaxLogSize();
         long aisTtl = config.getAisTtl();
         config("NMEA Multicast Address=%s", address);
         config("NMEA Multicast Port=%s", nmeaPort);
+        config("NMEA Shared Memory=%s", sharedMemory);
         config("HTTP Port=%s", httpPort);
         config("AIS Directory =%s", aisDirectory);
         config("AIS Max Log Size =%d", aisMaxLogSize);
         config("AIS TTL =%d ms", aisTtl);
         CachedScheduledThreadPool executor = new CachedScheduledThreadPool(64);
         config("ThreadPool started %s", executor);
-        NMEAService nmeaService = new NMEAService(address, nmeaPort, executor);
+        NMEAService nmeaService;
+        if (sharedMemory != null)
+        {
+            nmeaService = new NMEAService(new SharedRingChannel(Paths.get(sharedMemory)), executor);
+        }
+        else
+        {
+            nmeaService = new NMEAService(address, nmeaPort, executor);
+        }
         AISService aisService = AISService.getInstance(nmeaService, aisDirectory, aisTtl, aisMaxLogSize, executor);
         PropertyServer propertyServer = new PropertyServer(Clock.systemDefaultZone(), config, executor);
         aisService.addObserver(propertyServer);
@@ -181,6 +181,15 @@ public class Config extends JavaLogging
     {
         return Primitives.getInt(server.getNmeaMulticastPort());
     }
+    /**
+     * Returns path of router's shared memory ring or null if NMEA is read
+     * from multicast.
+     * @return 
+     */
+    public String getSharedMemory()
+    {
+        return server.getSharedMemory();
+    }
 
     public int getHttpPort()
     {
@@ -16,6 +16,7 @@
  */
 package org.vesalainen.nmea.util;
 
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.Stream;
@@ -47,9 +48,19 @@ public abstract class AbstractSampleConsumer extends JavaLogging implements Runn
      * @param service 
      */
     public void start(NMEAService service)
+    {
+        start(service, executor);
+    }
+    /**
+     * Starts consumer loop in given executor. Scheduled tasks still use 
+     * executor given in constructor.
+     * @param service 
+     * @param loopExecutor 
+     */
+    public void start(NMEAService service, ExecutorService loopExecutor)
     {
         init(service.stream(getProperties()));
-        future = executor.submit(this);
+        future = loopExecutor.submit(this);
     }
     /**
      * Stops consumer.
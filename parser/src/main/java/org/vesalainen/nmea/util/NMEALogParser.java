@@ -0,0 +1,480 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import static java.nio.file.StandardOpenOption.READ;
+import org.vesalainen.code.AbstractPropertySetter;
+import org.vesalainen.parsers.nmea.MessageType;
+import org.vesalainen.parsers.nmea.NMEADispatcher;
+import org.vesalainen.parsers.nmea.NMEAParser;
+import org.vesalainen.parsers.nmea.TalkerId;
+import org.vesalainen.parsers.nmea.time.GPSClock;
+
+/**
+ * NMEALogParser parses large NMEA log files in parallel. File is memory mapped
+ * and split into chunks at line boundaries. Each chunk is parsed in 
+ * ForkJoinPool with its own parser, dispatcher and clock.
+ * 
+ * <p>Clock of each chunk is primed by parsing warm-up bytes preceding the 
+ * chunk without collecting samples.
+ * 
+ * <p>Samples are delivered in file order or, if ordered is false, chunk by
+ * chunk in completion order. At most window chunks are parsed or waiting
+ * at the same time.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.util.NMEAStream#parse(java.nio.file.Path, boolean, java.lang.String...) 
+ */
+public class NMEALogParser
+{
+    private final Path path;
+    private final ForkJoinPool pool;
+    private int chunkSize = 4*1024*1024;
+    private int warmUp = 4096;
+    private int window;
+    private boolean ordered = true;
+
+    public NMEALogParser(Path path)
+    {
+        this(path, ForkJoinPool.commonPool());
+    }
+
+    public NMEALogParser(Path path, ForkJoinPool pool)
+    {
+        this.path = path;
+        this.pool = pool;
+        this.window = 2*pool.getParallelism();
+    }
+    /**
+     * Set chunk size. Default is 4MB.
+     * @param chunkSize 
+     * @return 
+     */
+    public NMEALogParser setChunkSize(int chunkSize)
+    {
+        if (chunkSize <= 0)
+        {
+            throw new IllegalArgumentException("chunkSize="+chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+    /**
+     * Set number of bytes parsed before chunk to initialize clock. Default is
+     * 4096.
+     * @param warmUp 
+     * @return 
+     */
+    public NMEALogParser setWarmUp(int warmUp)
+    {
+        this.warmUp = warmUp;
+        return this;
+    }
+    /**
+     * Set maximum number of chunks in progress. Default is 2 x pool 
+     * parallelism.
+     * @param window 
+     * @return 
+     */
+    public NMEALogParser setWindow(int window)
+    {
+        if (window <= 0)
+        {
+            throw new IllegalArgumentException("window="+window);
+        }
+        this.window = window;
+        return this;
+    }
+    /**
+     * If true (default) samples are delivered in file order. Otherwise in 
+     * chunk completion order.
+     * @param ordered
+     * @return 
+     */
+    public NMEALogParser setOrdered(boolean ordered)
+    {
+        this.ordered = ordered;
+        return this;
+    }
+    /**
+     * Returns stream of samples. Stream should be closed after use.
+     * @param properties Observed properties. Properties 'clock', 'messageType'
+     * and 'talkerId' are always included.
+     * @return
+     * @throws IOException 
+     */
+    public Stream<NMEASample> stream(String... properties) throws IOException
+    {
+        ChunkIterator iterator = iterator(properties);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close)
+                .flatMap(List::stream);
+    }
+    /**
+     * Returns iterator of chunk sample lists. Iterator should be closed after
+     * use.
+     * @param properties
+     * @return
+     * @throws IOException 
+     */
+    ChunkIterator iterator(String... properties) throws IOException
+    {
+        FileChannel fc = FileChannel.open(path, READ);
+        try
+        {
+            return new ChunkIterator(fc, split(fc), properties);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            fc.close();
+            throw ex;
+        }
+    }
+    /**
+     * Returns start, end and warm-up start of each chunk. Chunk ends after
+     * line feed.
+     */
+    private List<long[]> split(FileChannel fc) throws IOException
+    {
+        long size = fc.size();
+        List<long[]> list = new ArrayList<>();
+        long start = 0;
+        while (start < size)
+        {
+            long end = lineEnd(fc, Math.min(start + chunkSize, size) - 1, size);
+            long warm = start > warmUp ? lineEnd(fc, start - warmUp, start) : 0;
+            list.add(new long[]{start, end, warm});
+            start = end;
+        }
+        return list;
+    }
+    /**
+     * Returns position after first line feed at or after position or limit.
+     */
+    private static long lineEnd(FileChannel fc, long position, long limit) throws IOException
+    {
+        ByteBuffer bb = ByteBuffer.allocate(256);
+        while (position < limit)
+        {
+            bb.clear();
+            int rc = fc.read(bb, position);
+            if (rc <= 0)
+            {
+                break;
+            }
+            for (int ii=0;ii<rc;ii++)
+            {
+                if (bb.get(ii) == '\n')
+                {
+                    return Math.min(position + ii + 1, limit);
+                }
+            }
+            position += rc;
+        }
+        return limit;
+    }
+    class ChunkIterator implements Iterator<List<NMEASample>>, AutoCloseable
+    {
+        private final FileChannel fc;
+        private final Iterator<long[]> chunks;
+        private final String[] properties;
+        private final ArrayDeque<ChunkTask> inProgress = new ArrayDeque<>();
+        private final LinkedBlockingQueue<ChunkTask> completed = new LinkedBlockingQueue<>();
+
+        public ChunkIterator(FileChannel fc, List<long[]> chunks, String[] properties)
+        {
+            this.fc = fc;
+            this.chunks = chunks.iterator();
+            this.properties = properties;
+        }
+        
+        @Override
+        public boolean hasNext()
+        {
+            fill();
+            return !inProgress.isEmpty();
+        }
+
+        @Override
+        public List<NMEASample> next()
+        {
+            fill();
+            if (inProgress.isEmpty())
+            {
+                throw new NoSuchElementException();
+            }
+            ChunkTask task;
+            if (ordered)
+            {
+                task = inProgress.pollFirst();
+            }
+            else
+            {
+                try
+                {
+                    task = completed.take();
+                    inProgress.remove(task);
+                }
+                catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(ex);
+                }
+            }
+            return task.join();
+        }
+        /**
+         * Returns number of chunks referenced by iterator.
+         * @return 
+         */
+        int retained()
+        {
+            return inProgress.size() + completed.size();
+        }
+        private void fill()
+        {
+            while (inProgress.size() < window && chunks.hasNext())
+            {
+                ChunkTask task = new ChunkTask(chunks.next());
+                inProgress.add(task);
+                pool.execute(task);
+            }
+            if (!chunks.hasNext() && inProgress.isEmpty())
+            {
+                close();
+            }
+        }
+        @Override
+        public void close()
+        {
+            inProgress.forEach((t)->t.cancel(false));
+            inProgress.clear();
+            try
+            {
+                fc.close();
+            }
+            catch (IOException ex)
+            {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        private class ChunkTask extends RecursiveTask<List<NMEASample>>
+        {
+            private final long[] chunk;
+
+            public ChunkTask(long[] chunk)
+            {
+                this.chunk = chunk;
+            }
+
+            @Override
+            protected List<NMEASample> compute()
+            {
+                try
+                {
+                    return parse(fc, chunk[0], chunk[1], chunk[2], properties);
+                }
+                catch (IOException ex)
+                {
+                    throw new UncheckedIOException(ex);
+                }
+                finally
+                {
+                    if (!ordered)
+                    {
+                        completed.add(this);
+                    }
+                }
+            }
+        }
+    }
+    
+    private List<NMEASample> parse(FileChannel fc, long start, long end, long warm, String[] properties) throws IOException
+    {
+        NMEAParser parser = NMEAParser.newInstance();
+        GPSClock clock = GPSClock.getInstance(false);
+        if (warm < start)
+        {
+            ByteBuffer bb = fc.map(FileChannel.MapMode.READ_ONLY, warm, start - warm);
+            parser.parse(new ByteBufferChannel(bb), clock, null, null, null, pool);
+        }
+        NMEADispatcher dispatcher = NMEADispatcher.newInstance();
+        ChunkSampler sampler = new ChunkSampler(properties);
+        dispatcher.addObserver(sampler);
+        ByteBuffer bb = fc.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        parser.parse(new ByteBufferChannel(bb), clock, null, dispatcher, null, pool);
+        return sampler.list;
+    }
+    private static class ByteBufferChannel implements ReadableByteChannel
+    {
+        private final ByteBuffer bb;
+
+        public ByteBufferChannel(ByteBuffer bb)
+        {
+            this.bb = bb;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException
+        {
+            if (!bb.hasRemaining())
+            {
+                return -1;
+            }
+            int count = Math.min(bb.remaining(), dst.remaining());
+            ByteBuffer slice = bb.slice();
+            slice.limit(count);
+            dst.put(slice);
+            bb.position(bb.position() + count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+        }
+    }
+    /**
+     * Collects samples as NMEASampler does.
+     */
+    private static class ChunkSampler extends AbstractPropertySetter
+    {
+        private final List<NMEASample> list = new ArrayList<>();
+        private final Set<String> properties = new HashSet<>();
+        private NMEASample sample;
+        private Clock clock;
+
+        public ChunkSampler(String... properties)
+        {
+            this.properties.addAll(Arrays.asList(properties));
+            this.properties.add("clock");
+            this.properties.add("messageType");
+            this.properties.add("talkerId");
+            this.properties.add("origin");
+        }
+
+        @Override
+        public void start(String reason)
+        {
+            if (clock != null && sample == null)
+            {
+                sample = new NMEASample();
+            }
+        }
+
+        @Override
+        public void commit(String reason)
+        {
+            if (sample != null && sample.hasProperties())
+            {
+                sample.setTime(clock.millis());
+                list.add(sample);
+                sample = null;
+            }
+        }
+
+        @Override
+        public void rollback(String reason)
+        {
+            if (sample != null && sample.hasProperties())
+            {
+                sample = null;
+            }
+        }
+
+        @Override
+        public void set(String property, Object arg)
+        {
+            switch (property)
+            {
+                case "clock":
+                    clock = (Clock) arg;
+                    break;
+                case "talkerId":
+                    if (sample != null)
+                    {
+                        sample.setTalkerId((TalkerId) arg);
+                    }
+                    break;
+                case "messageType":
+                    if (sample != null)
+                    {
+                        sample.setMessageType((MessageType) arg);
+                    }
+                    break;
+                case "origin":
+                    if (sample != null)
+                    {
+                        sample.setOrigin(arg);
+                    }
+                    break;
+            }
+        }
+
+        @Override
+        public void set(String property, float arg)
+        {
+            if (sample != null)
+            {
+                sample.setProperty(property, arg);
+            }
+        }
+
+        @Override
+        public void set(String property, double arg)
+        {
+            if (sample != null)
+            {
+                sample.setProperty(property, arg);
+            }
+        }
+
+        @Override
+        public final String[] getProperties()
+        {
+            return properties.toArray(new String[properties.size()]);
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package org.vesalainen.nmea.util;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
@@ -41,6 +42,19 @@ public class NMEAStream
         NMEASampler sampler = new NMEASampler(nmeaDispatcher, offerTimeout, takeTimeout, timeUnit, (s)->init(input, nmeaDispatcher, origin), properties);
         return sampler.stream();
     }
+    /**
+     * Parses log file in parallel using common ForkJoinPool.
+     * @param path
+     * @param ordered If true samples are in file order.
+     * @param properties
+     * @return
+     * @throws IOException 
+     * @see org.vesalainen.nmea.util.NMEALogParser
+     */
+    public static final Stream<NMEASample> parse(Path path, boolean ordered, String... properties) throws IOException
+    {
+        return new NMEALogParser(path).setOrdered(ordered).stream(properties);
+    }
     private static <I> void init(I input, NMEADispatcher nmeaDispatcher, Supplier origin)
     {
         Runner runner = new Runner(input, nmeaDispatcher, origin);
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * RingMemory orders accesses to memory-mapped ring shared between processes.
+ * 
+ * <p>Plain ByteBuffer gets and puts of mapped memory are not ordered by Java
+ * memory model and volatile fields of producer or reader object don't order
+ * them either. On weakly ordered hardware like ARM reader could see new tail
+ * with stale sentence bytes. Tail is therefore stored with release and loaded
+ * with acquire semantics through sun.misc.Unsafe at absolute address of 
+ * mapping, and reader uses load fence before verifying a copied record.
+ * 
+ * <p>Build targets Java 8 so Unsafe is used instead of VarHandles. Unsafe
+ * methods are looked up by reflection and called through constant method
+ * handles so that compiling doesn't depend on internal API.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+final class RingMemory
+{
+    private static final MethodHandle GET_LONG;
+    private static final MethodHandle PUT_ORDERED_LONG;
+    private static final MethodHandle GET_LONG_VOLATILE;
+    private static final MethodHandle STORE_FENCE;
+    private static final MethodHandle LOAD_FENCE;
+    private static final long ADDRESS;
+    static
+    {
+        try
+        {
+            Class<?> cls = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = cls.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            GET_LONG = lookup.unreflect(cls.getMethod("getLong", Object.class, long.class)).bindTo(unsafe);
+            PUT_ORDERED_LONG = lookup.unreflect(cls.getMethod("putOrderedLong", Object.class, long.class, long.class)).bindTo(unsafe);
+            GET_LONG_VOLATILE = lookup.unreflect(cls.getMethod("getLongVolatile", Object.class, long.class)).bindTo(unsafe);
+            STORE_FENCE = lookup.unreflect(cls.getMethod("storeFence")).bindTo(unsafe);
+            LOAD_FENCE = lookup.unreflect(cls.getMethod("loadFence")).bindTo(unsafe);
+            MethodHandle objectFieldOffset = lookup.unreflect(cls.getMethod("objectFieldOffset", Field.class)).bindTo(unsafe);
+            ADDRESS = (long) objectFieldOffset.invokeExact(Buffer.class.getDeclaredField("address"));
+        }
+        catch (Throwable ex)
+        {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private RingMemory()
+    {
+    }
+    /**
+     * Returns absolute address of mapping.
+     * @param buffer
+     * @return 
+     */
+    static long address(MappedByteBuffer buffer)
+    {
+        try
+        {
+            return (long) GET_LONG.invokeExact((Object)buffer, ADDRESS);
+        }
+        catch (Throwable ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+    /**
+     * Stores value so that preceding stores are visible before it.
+     * @param address
+     * @param value 
+     */
+    static void putOrderedLong(long address, long value)
+    {
+        try
+        {
+            PUT_ORDERED_LONG.invokeExact((Object)null, address, value);
+        }
+        catch (Throwable ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+    /**
+     * Loads value so that following loads are not done before it.
+     * @param address
+     * @return 
+     */
+    static long getLongVolatile(long address)
+    {
+        try
+        {
+            return (long) GET_LONG_VOLATILE.invokeExact((Object)null, address);
+        }
+        catch (Throwable ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+    /**
+     * Preceding stores are not reordered with following stores.
+     */
+    static void storeFence()
+    {
+        try
+        {
+            STORE_FENCE.invokeExact();
+        }
+        catch (Throwable ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+    /**
+     * Preceding loads are not reordered with following loads and stores.
+     */
+    static void loadFence()
+    {
+        try
+        {
+            LOAD_FENCE.invokeExact();
+        }
+        catch (Throwable ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
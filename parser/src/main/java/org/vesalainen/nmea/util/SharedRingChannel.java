@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.READ;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import static org.vesalainen.nmea.util.SharedRingWriter.*;
+
+/**
+ * SharedRingChannel reads sentences from ring file written by 
+ * SharedRingWriter. Sentences are copied directly from mapped file to read 
+ * buffer. No system calls are made while sentences are available. Channel 
+ * can be used with NMEAService and Processor.
+ * 
+ * <p>Reading starts from the newest sentence. Read blocks polling the ring
+ * until at least one sentence is available. Whole sentences are read if they
+ * fit in buffer.
+ * 
+ * <p>If producer overruns reader, reading continues from the last sentence.
+ * Overrun is detected from tail position and record is verified after copy. 
+ * Tail is loaded with acquire semantics before record is read and load fence
+ * separates copy from verification. See SharedRingWriter for the protocol.
+ * Number of lost sentences is calculated from sequence numbers.
+ * 
+ * <p>Channel is used by one thread. Writes are discarded because there is 
+ * only one producer.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.util.SharedRingWriter
+ */
+public class SharedRingChannel implements ByteChannel, ScatteringByteChannel, GatheringByteChannel
+{
+    public static final long DEFAULT_POLL_INTERVAL = 1;
+    private final MappedByteBuffer buffer;
+    private final long address;
+    private final int capacity;
+    private final int mask;
+    private final int maxLength;
+    private final long slack;
+    private final ByteBuffer pending;
+    private long position;
+    private long sequence;
+    private long lastSequence;
+    private volatile long lostCount;
+    private long pollNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_POLL_INTERVAL);
+    private volatile boolean open = true;
+    /**
+     * Creates SharedRingChannel
+     * @param path Ring file
+     * @throws IOException If file is missing or not a ring file.
+     */
+    public SharedRingChannel(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, READ))
+        {
+            long size = channel.size();
+            if (size < HEADER_SIZE + MIN_CAPACITY)
+            {
+                throw new IOException(path+" is not a shared ring");
+            }
+            buffer = channel.map(READ_ONLY, 0, size);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        this.address = RingMemory.address(buffer);
+        this.capacity = buffer.getInt(CAPACITY_OFFSET);
+        if (buffer.getInt(0) != MAGIC || 
+                buffer.getInt(4) != VERSION || 
+                HEADER_SIZE + capacity != buffer.capacity())
+        {
+            throw new IOException(path+" is not a shared ring");
+        }
+        this.mask = capacity - 1;
+        this.maxLength = buffer.getInt(MAX_LENGTH_OFFSET);
+        this.slack = 2*recordSize(maxLength);
+        this.pending = ByteBuffer.allocate(maxLength);
+        pending.flip();
+        this.position = buffer.getLong(TAIL_OFFSET);
+        this.sequence = buffer.getLong(SEQUENCE_OFFSET) + 1;
+    }
+    /**
+     * Sets interval for polling empty ring.
+     * @param time
+     * @param unit 
+     */
+    public void setPollInterval(long time, TimeUnit unit)
+    {
+        this.pollNanos = unit.toNanos(time);
+    }
+    /**
+     * Returns number of sentences lost because of overrun.
+     * @return 
+     */
+    public long getLostCount()
+    {
+        return lostCount;
+    }
+    /**
+     * Returns sequence number of last read sentence.
+     * @return 
+     */
+    public long getSequence()
+    {
+        return lastSequence;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException
+    {
+        if (!open)
+        {
+            throw new ClosedChannelException();
+        }
+        int count = 0;
+        if (pending.hasRemaining())
+        {
+            count += move(pending, dst);
+            if (pending.hasRemaining())
+            {
+                return count;
+            }
+        }
+        while (dst.hasRemaining())
+        {
+            long t = RingMemory.getLongVolatile(address + TAIL_OFFSET);   // acquire record
+            if (t == position)
+            {
+                if (count > 0)
+                {
+                    break;
+                }
+                idle();
+                continue;
+            }
+            if (overrun(t))
+            {
+                resync(t);
+                continue;
+            }
+            int off = (int) (position & mask);
+            int index = HEADER_SIZE + off;
+            long header = buffer.getLong(index);
+            int len = (int) (header & PAD);
+            if (len == PAD)
+            {
+                position += capacity - off;
+                continue;
+            }
+            if (len == 0 || len > maxLength)
+            {
+                resync(t);
+                continue;
+            }
+            ByteBuffer target;
+            if (dst.remaining() >= len)
+            {
+                target = dst;
+            }
+            else
+            {
+                if (count > 0)
+                {
+                    break;
+                }
+                target = pending;
+                target.clear();
+            }
+            int start = target.position();
+            buffer.limit(index + RECORD_HEADER_SIZE + len);
+            buffer.position(index + RECORD_HEADER_SIZE);
+            target.put(buffer);
+            buffer.limit(buffer.capacity());
+            RingMemory.loadFence();     // copy is done before verifying
+            t = RingMemory.getLongVolatile(address + TAIL_OFFSET);
+            if (overrun(t) || buffer.getLong(index) != header)
+            {
+                target.position(start);
+                resync(t);
+                continue;
+            }
+            long seq = header>>>16;
+            if (seq > sequence)
+            {
+                lostCount += seq - sequence;
+            }
+            sequence = seq + 1;
+            lastSequence = seq;
+            position += recordSize(len);
+            if (target == pending)
+            {
+                pending.flip();
+                count += move(pending, dst);
+                break;
+            }
+            count += len;
+        }
+        return count;
+    }
+    /**
+     * Returns true if record at position may have been overwritten or
+     * producer has been reinitialized.
+     * @param t
+     * @return 
+     */
+    private boolean overrun(long t)
+    {
+        return t < position || t - position > capacity - slack;
+    }
+    /**
+     * Moves to last record published before tail t or to t if last record
+     * is not safe to read.
+     * @param t 
+     */
+    private void resync(long t)
+    {
+        long last = buffer.getLong(LAST_OFFSET);
+        if (last <= t && t - last <= capacity - slack)
+        {
+            position = last;
+        }
+        else
+        {
+            position = t;
+        }
+    }
+    private void idle() throws IOException
+    {
+        if (Thread.interrupted())
+        {
+            open = false;
+            throw new ClosedByInterruptException();
+        }
+        LockSupport.parkNanos(pollNanos);
+        if (!open)
+        {
+            throw new AsynchronousCloseException();
+        }
+    }
+    private int move(ByteBuffer src, ByteBuffer dst)
+    {
+        int n = Math.min(src.remaining(), dst.remaining());
+        int limit = src.limit();
+        src.limit(src.position()+n);
+        dst.put(src);
+        src.limit(limit);
+        return n;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException
+    {
+        long count = 0;
+        for (int ii=0;ii<length;ii++)
+        {
+            ByteBuffer dst = dsts[offset+ii];
+            if (dst.hasRemaining())
+            {
+                count += read(dst);
+                if (dst.hasRemaining())
+                {
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException
+    {
+        return read(dsts, 0, dsts.length);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException
+    {
+        int n = src.remaining();
+        src.position(src.limit());
+        return n;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException
+    {
+        long count = 0;
+        for (int ii=0;ii<length;ii++)
+        {
+            count += write(srcs[offset+ii]);
+        }
+        return count;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException
+    {
+        return write(srcs, 0, srcs.length);
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return open;
+    }
+    /**
+     * Closes channel. Mapping is released by garbage collector.
+     * @throws IOException 
+     */
+    @Override
+    public void close() throws IOException
+    {
+        open = false;
+    }
+
+}
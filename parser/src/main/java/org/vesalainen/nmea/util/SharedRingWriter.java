@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * SharedRingWriter publishes sentences to memory-mapped ring file. File is 
+ * meant to be in /dev/shm so that co-located processes can read sentences
+ * with SharedRingChannel without system calls.
+ * 
+ * <p>Ring has one producer. Threads of producing process are serialized by
+ * lock. File starts with header
+ * <pre>
+ * int magic
+ * int version
+ * int capacity of data area
+ * int max length of sentence
+ * long tail position
+ * long sequence number of last record
+ * long position of last record
+ * </pre>
+ * padded to HEADER_SIZE. Data area contains 8 byte aligned records
+ * <pre>
+ * long sequence number &lt;&lt; 16 | length
+ * byte[length] sentence
+ * </pre>
+ * Record never wraps. If it doesn't fit at the end of data area, pad record
+ * is written and record starts at beginning.
+ * 
+ * <p>Sentence, record header, sequence and last position are stored with 
+ * plain puts. Tail is then stored with release semantics so that all of them 
+ * are visible to reader which loads tail with acquire semantics. Reader 
+ * copies record, issues load fence and verifies that tail hasn't overrun the
+ * record and header is unchanged.
+ * 
+ * <p>Existing ring with same capacity is continued so that readers survive
+ * restart of producer.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.nmea.util.SharedRingChannel
+ */
+public class SharedRingWriter implements AutoCloseable
+{
+    public static final int MAGIC = 0x4e4d5352;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int MIN_CAPACITY = 4096;
+    public static final int DEFAULT_CAPACITY = 1024*1024;
+    static final int CAPACITY_OFFSET = 8;
+    static final int MAX_LENGTH_OFFSET = 12;
+    static final int TAIL_OFFSET = 16;
+    static final int SEQUENCE_OFFSET = 24;
+    static final int LAST_OFFSET = 32;
+    static final int RECORD_HEADER_SIZE = 8;
+    static final int PAD = 0xffff;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    private final int maxLength;
+    private final long address;
+    private long tail;
+    private long sequence;
+    private boolean open = true;
+    /**
+     * Creates SharedRingWriter with default capacity.
+     * @param path
+     * @throws IOException 
+     */
+    public SharedRingWriter(Path path) throws IOException
+    {
+        this(path, DEFAULT_CAPACITY);
+    }
+    /**
+     * Creates SharedRingWriter. 
+     * @param path Ring file. Created if missing.
+     * @param capacity Size of data area. Power of 2 and at least MIN_CAPACITY.
+     * @throws IOException 
+     */
+    public SharedRingWriter(Path path, int capacity) throws IOException
+    {
+        if (capacity < MIN_CAPACITY || Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("capacity="+capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.maxLength = maxLength(capacity);
+        boolean resume;
+        try (FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE))
+        {
+            resume = channel.size() == HEADER_SIZE + capacity;
+            if (!resume)
+            {
+                channel.truncate(0);
+            }
+            buffer = channel.map(READ_WRITE, 0, HEADER_SIZE + capacity);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        address = RingMemory.address(buffer);
+        if (resume &&
+                buffer.getInt(0) == MAGIC && 
+                buffer.getInt(4) == VERSION && 
+                buffer.getInt(CAPACITY_OFFSET) == capacity)
+        {
+            tail = buffer.getLong(TAIL_OFFSET);
+            sequence = buffer.getLong(SEQUENCE_OFFSET);
+        }
+        else
+        {
+            buffer.putInt(0, 0);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            buffer.putInt(MAX_LENGTH_OFFSET, maxLength);
+            buffer.putLong(TAIL_OFFSET, 0);
+            buffer.putLong(SEQUENCE_OFFSET, 0);
+            buffer.putLong(LAST_OFFSET, 0);
+            RingMemory.storeFence();    // header is stored before magic
+            buffer.putInt(0, MAGIC);
+        }
+    }
+    /**
+     * Publishes remaining bytes of src as one record.
+     * @param src
+     * @return Number of bytes written. 0 if src is empty, too long or writer
+     * is closed.
+     */
+    public int write(ByteBuffer src)
+    {
+        int len = src.remaining();
+        if (len == 0 || len > maxLength)
+        {
+            return 0;
+        }
+        lock.lock();
+        try
+        {
+            if (!open)
+            {
+                return 0;
+            }
+            int size = recordSize(len);
+            long pos = tail;
+            int off = (int) (pos & mask);
+            if (off + size > capacity)
+            {
+                buffer.putLong(HEADER_SIZE + off, PAD);
+                pos += capacity - off;
+                off = 0;
+            }
+            int index = HEADER_SIZE + off;
+            buffer.position(index + RECORD_HEADER_SIZE);
+            buffer.put(src);
+            sequence++;
+            buffer.putLong(index, sequence<<16 | len);
+            buffer.putLong(SEQUENCE_OFFSET, sequence);
+            buffer.putLong(LAST_OFFSET, pos);
+            tail = pos + size;
+            RingMemory.putOrderedLong(address + TAIL_OFFSET, tail);  // release record
+            return len;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    /**
+     * Returns sequence number of last record.
+     * @return 
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+    /**
+     * Returns max length of sentence.
+     * @return 
+     */
+    public int getMaxLength()
+    {
+        return maxLength;
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+    /**
+     * Stops writing. Mapping is released by garbage collector.
+     */
+    @Override
+    public void close()
+    {
+        lock.lock();
+        try
+        {
+            open = false;
+            buffer.force();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+    
+    static int maxLength(int capacity)
+    {
+        return Math.min(PAD - 1, capacity/8 - RECORD_HEADER_SIZE);
+    }
+    static int recordSize(int len)
+    {
+        return (RECORD_HEADER_SIZE + len + 7) & ~7;
+    }
+}
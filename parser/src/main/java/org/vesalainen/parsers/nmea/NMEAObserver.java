@@ -60,6 +60,7 @@ public interface NMEAObserver extends Transactional
      * Set millis seconds from epoch using NMEA Clock.
      * @param millis 
      */
+    @NMEA0183({BEC, BWC, BWR, GGA, GLL, RMC, ZDA})
     @NMEACat(TIME)
     void setEpochMillis(long millis);
     /**
@@ -68,26 +69,26 @@ public interface NMEAObserver extends Transactional
      */
     void setTalkerId(TalkerId talkerId);
     /**
-     * Latitude in degrees. BWC, BWR, GGA, GLL, RMA, RMC 
+     * Latitude in degrees. BEC, BWC, BWR, GGA, GLL, RMA, RMC 
      * @param latitude Latitude. South is negative.
      */
-    @NMEA0183({BWC, BWR, GGA, GLL, RMA, RMC})
+    @NMEA0183({BEC, BWC, BWR, GGA, GLL, RMA, RMC})
     @NMEACat(COORDINATE)
     @Unit(value=COORDINATE_DEGREES_AND_MINUTES_LATITUDE, min=-90, max=90)
     void setLatitude(double latitude);
     /**
-     * Longitude in degrees. BWC, BWR, GGA, GLL, RMA, RMC 
+     * Longitude in degrees. BEC, BWC, BWR, GGA, GLL, RMA, RMC 
      * @param longitude Longitude West is negative.
      */
-    @NMEA0183({BWC, BWR, GGA, GLL, RMA, RMC})
+    @NMEA0183({BEC, BWC, BWR, GGA, GLL, RMA, RMC})
     @NMEACat(COORDINATE)
     @Unit(value=COORDINATE_DEGREES_AND_MINUTES_LONGITUDE, min=-180, max=180)
     void setLongitude(double longitude);
     /**
-     * RMA, RMC
+     * RMA, RMC, VTG
      * @param knots 
      */
-    @NMEA0183({RMA, RMC})
+    @NMEA0183({RMA, RMC, VTG})
     @NMEACat(SPEED)
     @Unit(value=KNOT, min=0, max=50)
     void setSpeedOverGround(float knots);
@@ -109,10 +110,10 @@ public interface NMEAObserver extends Transactional
     void setMagneticVariation(float degrees);
     /**
      * DirectionToSteer - = left + = right
-     * APA, APB, XTR
+     * APA, APB, RMB, XTE, XTR
      * @param nm
      */
-    @NMEA0183({APA, APB, XTR})
+    @NMEA0183({APA, APB, RMB, XTE, XTR})
     @NMEACat(BEARING)
     @Unit(value=NAUTICAL_MILE, min=-10, max=10)
     void setCrossTrackError(float nm);
@@ -131,18 +132,18 @@ public interface NMEAObserver extends Transactional
     @NMEACat(WAYPOINT)
     void setFromWaypoint(String fromWaypoint);
     /**
-     * RMB, WPL
+     * RMB, TLL, WPL
      * @param latitude 
      */
-    @NMEA0183({RMB, WPL})
+    @NMEA0183({RMB, TLL, WPL})
     @NMEACat(WAYPOINT)
     @Unit(value=COORDINATE_DEGREES_AND_MINUTES_LATITUDE, min=-90, max=90)
     void setDestinationWaypointLatitude(double latitude);
     /**
-     * RMB, WPL
+     * RMB, TLL, WPL
      * @param longitude 
      */
-    @NMEA0183({RMB, WPL})
+    @NMEA0183({RMB, TLL, WPL})
     @NMEACat(WAYPOINT)
     @Unit(value=COORDINATE_DEGREES_AND_MINUTES_LONGITUDE, min=-180, max=180)
     void setDestinationWaypointLongitude(double longitude);
@@ -223,17 +224,17 @@ public interface NMEAObserver extends Transactional
     @NMEACat(GPS)
     void setDifferentialReferenceStationID(int differentialReferenceStationID);
     /**
-     * APA, APB, GLL, MWV, RMA, RMB, RMC, ROT, RSA, XTE
+     * APA, APB, GLL, MWV, RMA, RMB, RMC, ROT, RPM, RSA, THS, XTE
      * @param status 
      */
-    @NMEA0183({APA, APB, GLL, MWV, RMA, RMB, RMC, ROT, RSA, XTE})
+    @NMEA0183({APA, APB, GLL, MWV, RMA, RMB, RMC, ROT, MessageType.RPM, RSA, THS, XTE})
     @NMEACat(GPS)
     void setStatus(char status);
     /**
-     * AAM, APA, APB
+     * AAM, APA, APB, RMB
      * @param arrivalStatus 
      */
-    @NMEA0183({AAM, APA, APB})
+    @NMEA0183({AAM, APA, APB, RMB})
     @NMEACat(WAYPOINT)
     void setArrivalStatus(char arrivalStatus);
     /**
@@ -266,22 +267,22 @@ public interface NMEAObserver extends Transactional
     @Unit(NAUTICAL_MILE)
     void setArrivalCircleRadius(float nm);
     /**
-     * AAM, APA, APB, BWC, BWR, R00, WCV, WPL
+     * AAM, APA, APB, BEC, BWC, BWR, R00, WCV, WPL
      * @param waypoint 
      */
-    @NMEA0183({AAM, APA, APB, BWC, BWR, R00, WCV, WPL})
+    @NMEA0183({AAM, APA, APB, BEC, BWC, BWR, R00, WCV, WPL})
     void setWaypoint(String waypoint);
     /**
-     * ALM, RTE
+     * ALM, GSV, RTE
      * @param totalNumberOfMessages 
      */
-    @NMEA0183({ALM, RTE})
+    @NMEA0183({ALM, GSV, RTE})
     void setTotalNumberOfMessages(int totalNumberOfMessages);
     /**
-     * ALM, RTE
+     * ALM, GSV, RTE
      * @param messageNumber 
      */
-    @NMEA0183({ALM, RTE})
+    @NMEA0183({ALM, GSV, RTE})
     void setMessageNumber(int messageNumber);
     /**
      * ALM
@@ -429,10 +430,10 @@ public interface NMEAObserver extends Transactional
     @Unit(value=DEGREE, min=0, max=360)
     void setTrueHeadingToSteerToDestination(float headingToSteerToDestination);
     /**
-     * BWC, GLL, XTE
+     * BWC, GLL, RMB, RMC, VTG, XTE
      * @param faaModeIndicator 
      */
-    @NMEA0183({BWC, GLL, XTE})
+    @NMEA0183({BWC, GLL, RMB, RMC, VTG, XTE})
     void setFaaModeIndicator(char faaModeIndicator);
     /**
      * RTE
@@ -447,18 +448,18 @@ public interface NMEAObserver extends Transactional
     @NMEA0183({R00, RTE})
     void setWaypoints(List<String> list);
     /**
-     * BWC, BWR, WNC
+     * BEC, BWC, BWR, WNC
      * @param nm
      */
-    @NMEA0183({BWC, BWR, WNC})
+    @NMEA0183({BEC, BWC, BWR, WNC})
     @NMEACat(WAYPOINT)
     @Unit(value=NAUTICAL_MILE, min=0, max=500)
     void setDistanceToWaypoint(float nm);
     /**
-     * DBK
+     * DBK, DPT
      * @param meters
      */
-    @NMEA0183({DBK})
+    @NMEA0183({DBK, DPT})
     @NMEACat(DEPTH)
     @Unit(value=METER, min=0, max=100)
     void setDepthBelowKeel(float meters);
@@ -471,26 +472,26 @@ public interface NMEAObserver extends Transactional
     @Unit(value=METER, min=0, max=100)
     void setDepthBelowSurface(float meters);
     /**
-     * DBT
+     * DBT, DPT
      * @param meters
      */
-    @NMEA0183({DBT})
+    @NMEA0183({DBT, DPT})
     @NMEACat(DEPTH)
     @Unit(value=METER, min=0, max=100)
     void setDepthBelowTransducer(float meters);
     /**
-     * BOD, BWC, BWR, BWW
+     * BEC, BOD, BWC, BWR, BWW
      * @param degrees
      */
-    @NMEA0183({BOD, BWC, BWR, BWW})
+    @NMEA0183({BEC, BOD, BWC, BWR, BWW})
     @NMEACat(BEARING)
     @Unit(value=DEGREE, min=0, max=360)
     void setTrueBearing(float degrees);
     /**
-     * BOD, BWC, BWR, BWW
+     * BEC, BOD, BWC, BWR, BWW
      * @param degrees
      */
-    @NMEA0183({BOD, BWC, BWR, BWW})
+    @NMEA0183({BEC, BOD, BWC, BWR, BWW})
     @NMEACat(BEARING)
     @Unit(value=DEGREE, min=0, max=360)
     void setMagneticBearing(float degrees);
@@ -498,7 +499,7 @@ public interface NMEAObserver extends Transactional
      * DPT
      * @param meters
      */
-    @NMEA0183({DBT})
+    @NMEA0183({DBT, DPT})
     @NMEACat(DEPTH)
     @Unit(value=METER, min=0, max=100)
     void setDepthOfWater(float meters);
@@ -506,7 +507,7 @@ public interface NMEAObserver extends Transactional
      * DPT
      * @param meters
      */
-    @NMEA0183({DBT})
+    @NMEA0183({DBT, DPT})
     @NMEACat(DEPTH)
     @Unit(value=METER, min=0, max=10)
     void setDepthOffsetOfWater(float meters);
@@ -514,7 +515,7 @@ public interface NMEAObserver extends Transactional
      * DPT
      * @param meters 
      */
-    @NMEA0183({DBT})
+    @NMEA0183({DBT, DPT})
     @Unit(value=METER, min=0, max=10)
     void setMaximumRangeScale(float meters);
 
@@ -527,10 +528,10 @@ public interface NMEAObserver extends Transactional
     @Unit(value=DEGREE, min=-30, max=30)
     void setMagneticDeviation(float magneticDeviation);
     /**
-     * HDT
+     * HDM, HDT, THS
      * @param degrees
      */
-    @NMEA0183({HDT})
+    @NMEA0183({HDM, HDT, THS})
     @NMEACat(BEARING)
     @Unit(value=DEGREE, min=0, max=360)
     void setTrueHeading(float degrees);
@@ -538,7 +539,7 @@ public interface NMEAObserver extends Transactional
      * HDM, HDG
      * @param degrees
      */
-    @NMEA0183({HDM, HDG})
+    @NMEA0183({HDG, HDM, HDT})
     @NMEACat(BEARING)
     @Unit(value=DEGREE, min=0, max=360)
     void setMagneticHeading(float degrees);
@@ -551,10 +552,10 @@ public interface NMEAObserver extends Transactional
     @Unit(value=CELSIUS, min=0, max=40)
     void setWaterTemperature(float celcius);
     /**
-     * MWV
+     * MWV, VWR
      * @param windAngle WIND Angle, 0 to 360 degrees
      */
-    @NMEA0183({MWV})
+    @NMEA0183({MWV, VWR})
     @NMEACat(WIND)
     @Unit(value=DEGREE, min=0, max=360)
     void setRelativeWindAngle(float windAngle);
@@ -687,10 +688,10 @@ public interface NMEAObserver extends Transactional
     @Unit(value=KNOT, min=0, max=50)
     void setVelocityToWaypoint(float knots);
     /**
-     * TXT
+     * TLL, TTM, TXT
      * @param name Target name
      */
-    @NMEA0183({TXT})
+    @NMEA0183({TLL, TTM, TXT})
     void setTargetName(String name);
     /**
      * TXT
@@ -799,20 +800,21 @@ public interface NMEAObserver extends Transactional
      * Total number of satellites in view
      * @param count 
      */
-    @NMEA0183({GSA})
+    @NMEA0183({GSA, GSV})
     @NMEACat(GPS)
     public void setTotalNumberOfSatellitesInView(int count);
     /**
      * Satellite PRN number
      * @param prn 
      */
-    @NMEA0183({GSA})
+    @NMEA0183({GSA, GSV})
     @NMEACat(GPS)
     public void setPrn(int prn);
     /**
      * Elevation in degrees
      * @param elevation 
      */
+    @NMEA0183({GSV})
     @NMEACat(GPS)
     @Unit(DEGREE)
     public void setElevation(int elevation);
@@ -820,6 +822,7 @@ public interface NMEAObserver extends Transactional
      * Azimuth in degrees to true north
      * @param azimuth 
      */
+    @NMEA0183({GSV})
     @NMEACat(GPS)
     @Unit(DEGREE)
     public void setAzimuth(int azimuth);
@@ -827,91 +830,120 @@ public interface NMEAObserver extends Transactional
      * SNR in dB
      * @param snr 
      */
+    @NMEA0183({GSV})
     @NMEACat(GPS)
     public void setSnr(int snr);
 
+    @NMEA0183({VTG})
     public void setTrueTrackMadeGood(float track);
 
+    @NMEA0183({VTG})
     public void setMagneticTrackMadeGood(float track);
     /**
      * Route id
      * @param route 
      */
+    @NMEA0183({RTE})
     public void setRoute(String route);
 
+    @NMEA0183({TLL, TTM})
     public void setTargetNumber(int target);
 
+    @NMEA0183({TLL})
     public void setTargetHour(int hour);
+    @NMEA0183({TLL})
     public void setTargetMinute(int minute);
+    @NMEA0183({TLL})
     public void setTargetSecond(float second);
     /**
      * S = SOS
      * @param status 
      */
+    @NMEA0183({TLL, TTM})
     public void setTargetStatus(char status);
 
+    @NMEA0183({TLL, TTM})
     public void setReferenceTarget(String referenceTarget);
 
     public void setMessageType(MessageType messageType);
+    @NMEA0183({TTM})
     @NMEACat(DISTANCE)
     public void setTargetDistance(float distance);
 
+    @NMEA0183({TTM})
     @NMEACat(BEARING)
     public void setBearingFromOwnShip(float bearing);
 
+    @NMEA0183({TTM})
     public void setBearingUnit(char units);
 
+    @NMEA0183({TTM})
     @NMEACat(SPEED)
     public void setTargetSpeed(float speed);
 
+    @NMEA0183({TTM})
     @NMEACat(BEARING)
     public void setTargetCourse(float course);
 
+    @NMEA0183({TTM})
     public void setCourseUnit(char units);
 
+    @NMEA0183({TTM})
     @NMEACat(DISTANCE)
     public void setDistanceOfCPA(float distance);
 
+    @NMEA0183({TTM})
     public void setTimeToCPA(float time);
 
+    @NMEA0183({TTM})
     public void setDistanceUnit(char units);
 
+    @NMEA0183({VLW})
     @NMEACat(DISTANCE)
     @Unit(value=NAUTICAL_MILE, min=0)
     public void setWaterDistance(float distance);
 
+    @NMEA0183({VLW})
     @NMEACat(DISTANCE)
     @Unit(value=NAUTICAL_MILE, min=0)
     public void setWaterDistanceSinceReset(float distance);
 
+    @NMEA0183({BEC, BWC, BWR, GGA, GLL, RMC, ZDA})
     @NMEACat(GPS)
     @Unit(value=DURATION_HOURS, min=0, max=23)
     public void setHour(int hour);
 
+    @NMEA0183({BEC, BWC, BWR, GGA, GLL, RMC, ZDA})
     @NMEACat(GPS)
     @Unit(value=DURATION_MINUTES, min=0, max=59)
     public void setMinute(int minute);
 
+    @NMEA0183({BEC, BWC, BWR, GGA, GLL, RMC, ZDA})
     @NMEACat(GPS)
     @Unit(value=DURATION_SECONDS, min=0, max=60)
     public void setSecond(float second);
 
+    @NMEA0183({RMC, ZDA})
     @NMEACat(GPS)
     @Unit(value=DURATION_DAYS, min=1, max=31)
     public void setDay(int day);
 
+    @NMEA0183({RMC, ZDA})
     @NMEACat(GPS)
     @Unit(value=UNITLESS, min=1, max=12)
     public void setMonth(int month);
 
+    @NMEA0183({RMC, ZDA})
     @NMEACat(GPS)
     @Unit(value=UNITLESS)
     public void setYear(int year);
 
+    @NMEA0183({ZDA})
     @NMEACat(GPS)
     @Unit(value=UNITLESS, min=-24, max=24)
     public void setLocalZoneHours(int localZoneHours);
 
+    @NMEA0183({ZDA})
     @NMEACat(GPS)
     @Unit(value=UNITLESS, min=0, max=59)
     public void setLocalZoneMinutes(int localZoneMinutes);
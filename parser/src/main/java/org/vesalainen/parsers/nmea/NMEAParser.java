@@ -189,10 +189,41 @@ import org.vesalainen.util.CharSequences;
 })
 public abstract class NMEAParser extends NMEATalkerIds implements ParserInfo, ChecksumProvider
 {
+    private boolean aisPackedDecoding;
+    private boolean aisSynchronous;
+    
     public NMEAParser()
     {
         setLogger(this.getClass());
     }
+    /**
+     * Sets AIS packed decoding mode for following parse calls.
+     * @param aisPackedDecoding 
+     * @see org.vesalainen.parsers.nmea.ais.AISBridge#setPackedDecoding(boolean) 
+     */
+    public void setAISPackedDecoding(boolean aisPackedDecoding)
+    {
+        this.aisPackedDecoding = aisPackedDecoding;
+    }
+
+    public boolean isAISPackedDecoding()
+    {
+        return aisPackedDecoding;
+    }
+    /**
+     * Sets AIS synchronous mode for following parse calls.
+     * @param aisSynchronous 
+     * @see org.vesalainen.parsers.nmea.ais.AISBridge#setSynchronous(boolean) 
+     */
+    public void setAISSynchronous(boolean aisSynchronous)
+    {
+        this.aisSynchronous = aisSynchronous;
+    }
+
+    public boolean isAISSynchronous()
+    {
+        return aisSynchronous;
+    }
     
     @Rule("c letter c decimal c letter c string")
     protected void xdrGroup(
@@ -429,12 +460,14 @@ public abstract class NMEAParser extends NMEATalkerIds implements ParserInfo, Ch
             int padding,
             int checksum,
             @ParserContext(ParserConstants.InputReader) InputReader input,
+            @ParserContext("origin") Supplier origin,
             @ParserContext("aisBridge") AISBridge aisBridge
             ) throws IOException
     {
         if (aisBridge != null)
         {
             aisBridge.newSentence(
+                    origin != null ? origin.get() : null,
                     ownMessage, 
                     numberOfSentences, 
                     sentenceNumber,
@@ -1714,6 +1747,8 @@ public abstract class NMEAParser extends NMEATalkerIds implements ParserInfo, Ch
             aisData.setClock(gpsClock);
             aisData.commit("Set clock");
             aisBridge = new AISBridge(aisData, executor);
+            aisBridge.setPackedDecoding(aisPackedDecoding);
+            aisBridge.setSynchronous(aisSynchronous);
         }
         try
         {
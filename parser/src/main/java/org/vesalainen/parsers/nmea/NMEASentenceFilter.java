@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.parsers.nmea;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.vesalainen.code.PropertySetter;
+
+/**
+ * NMEASentenceFilter drops NMEA sentences nobody is interested in before they
+ * reach the parser. Decision is made after talker and sentence id. Rest of an
+ * unwanted sentence is skipped up to line feed without parsing it.
+ * 
+ * <p>Wanted sentences are derived from observers wantsProperty and
+ * NMEA0183 annotations of NMEAObserver and XdrObserver. Property without
+ * NMEA0183 annotation selects all sentences. Properties origin, clock, 
+ * talkerId, messageType, proprietaryType and proprietaryData don't select
+ * any sentence. Proprietary sentences and sentences with unknown header
+ * are always passed. Sentences needed by clock are passed when there are
+ * observers. AIS sentences are passed if ais is true.
+ * 
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ * @see org.vesalainen.parsers.nmea.NMEA0183
+ */
+public class NMEASentenceFilter implements ScatteringByteChannel
+{
+    private static final int PASS = 0;
+    private static final int HEADER = 1;
+    private static final int FLUSH = 2;
+    private static final int SKIP = 3;
+    private static final int RADIX = 36;
+    private static final int WORDS = (RADIX*RADIX*RADIX+63)/64;
+    private static final Set<String> META = new HashSet<>();
+    private static final Map<String,MessageType[]> PROPERTIES = new HashMap<>();
+    private static final MessageType[] CLOCK;
+    static
+    {
+        META.add("origin");
+        META.add("clock");
+        META.add("talkerId");
+        META.add("messageType");
+        META.add("proprietaryType");
+        META.add("proprietaryData");
+        addProperties(NMEAObserver.class);
+        addProperties(XdrObserver.class);
+        CLOCK = PROPERTIES.get("epochMillis");
+    }
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] header = new byte[6];
+    private int headerLength;
+    private int flushIndex;
+    private int state = PASS;
+    private volatile long[] wanted;
+    private volatile boolean ais = true;
+    private long passed;
+    private long skipped;
+
+    public NMEASentenceFilter(ReadableByteChannel channel)
+    {
+        this(channel, 4096);
+    }
+    /**
+     * Creates filter which passes all sentences until update is called.
+     * @param channel
+     * @param bufferSize 
+     */
+    public NMEASentenceFilter(ReadableByteChannel channel, int bufferSize)
+    {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.buffer.flip();
+        long[] all = new long[WORDS];
+        for (int ii=0;ii<WORDS;ii++)
+        {
+            all[ii] = -1L;
+        }
+        this.wanted = all;
+    }
+    /**
+     * Recalculates wanted sentences. Can be called from any thread.
+     * @param observers NMEA observers
+     * @param ais If true AIS sentences are passed.
+     */
+    public void update(Collection<? extends PropertySetter> observers, boolean ais)
+    {
+        long[] set = new long[WORDS];
+        for (Map.Entry<String, MessageType[]> entry : PROPERTIES.entrySet())
+        {
+            String property = entry.getKey();
+            for (PropertySetter observer : observers)
+            {
+                if (observer.wantsProperty(property))
+                {
+                    MessageType[] types = entry.getValue();
+                    if (types != null)
+                    {
+                        set(set, types);
+                    }
+                    else
+                    {
+                        for (int ii=0;ii<WORDS;ii++)
+                        {
+                            set[ii] = -1L;
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+        if (!observers.isEmpty())
+        {
+            set(set, CLOCK);
+        }
+        this.ais = ais;
+        this.wanted = set;
+    }
+    /**
+     * Returns true if sentence is passed to parser.
+     * @param type
+     * @return 
+     */
+    public boolean isWanted(MessageType type)
+    {
+        int index = index(type.name());
+        return (wanted[index>>6] & (1L<<(index & 63))) != 0;
+    }
+    /**
+     * Returns number of passed sentences.
+     * @return 
+     */
+    public long getPassedCount()
+    {
+        return passed;
+    }
+    /**
+     * Returns number of skipped sentences.
+     * @return 
+     */
+    public long getSkippedCount()
+    {
+        return skipped;
+    }
+    
+    @Override
+    public int read(ByteBuffer dst) throws IOException
+    {
+        int start = dst.position();
+        while (true)
+        {
+            while (dst.hasRemaining())
+            {
+                if (state == FLUSH)
+                {
+                    dst.put(header[flushIndex++]);
+                    if (flushIndex == headerLength)
+                    {
+                        state = PASS;
+                    }
+                    continue;
+                }
+                if (!buffer.hasRemaining())
+                {
+                    break;
+                }
+                byte b = buffer.get();
+                switch (state)
+                {
+                    case PASS:
+                        if (b == '$' || b == '!')
+                        {
+                            startHeader(b);
+                        }
+                        else
+                        {
+                            dst.put(b);
+                        }
+                        break;
+                    case HEADER:
+                        header[headerLength++] = b;
+                        if (headerLength == header.length || !isIdChar(b))
+                        {
+                            if (accept())
+                            {
+                                passed++;
+                                flushIndex = 0;
+                                state = FLUSH;
+                            }
+                            else
+                            {
+                                skipped++;
+                                state = b == '\n' ? PASS : SKIP;
+                            }
+                        }
+                        break;
+                    case SKIP:
+                        if (b == '\n')
+                        {
+                            state = PASS;
+                        }
+                        else
+                        {
+                            if (b == '$' || b == '!')
+                            {
+                                startHeader(b);
+                            }
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException(state+" unexpected");
+                }
+            }
+            int count = dst.position() - start;
+            if (count > 0 || !dst.hasRemaining())
+            {
+                return count;
+            }
+            buffer.compact();
+            int rc = channel.read(buffer);
+            buffer.flip();
+            if (rc == -1)
+            {
+                if (state == HEADER)
+                {
+                    flushIndex = 0;
+                    state = FLUSH;
+                    continue;
+                }
+                return -1;
+            }
+            if (rc == 0)
+            {
+                return 0;
+            }
+        }
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException
+    {
+        long count = 0;
+        for (int ii=0;ii<length;ii++)
+        {
+            ByteBuffer dst = dsts[offset+ii];
+            if (dst.hasRemaining())
+            {
+                int rc = read(dst);
+                if (rc == -1)
+                {
+                    return count > 0 ? count : -1;
+                }
+                count += rc;
+                if (dst.hasRemaining())
+                {
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException
+    {
+        return read(dsts, 0, dsts.length);
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    private void startHeader(byte b)
+    {
+        header[0] = b;
+        headerLength = 1;
+        state = HEADER;
+    }
+    private boolean accept()
+    {
+        if (header[0] == '!')
+        {
+            return ais;
+        }
+        if (headerLength < header.length || header[1] == 'P')
+        {
+            return true;   // proprietary or something unknown
+        }
+        int index = index(header[3], header[4], header[5]);
+        return index < 0 || (wanted[index>>6] & (1L<<(index & 63))) != 0;
+    }
+    private static boolean isIdChar(byte b)
+    {
+        return (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9');
+    }
+    private static int index(String id)
+    {
+        return index(id.charAt(0), id.charAt(1), id.charAt(2));
+    }
+    private static int index(int c1, int c2, int c3)
+    {
+        int i1 = digit(c1);
+        int i2 = digit(c2);
+        int i3 = digit(c3);
+        if (i1 < 0 || i2 < 0 || i3 < 0)
+        {
+            return -1;
+        }
+        return (i1*RADIX+i2)*RADIX+i3;
+    }
+    private static int digit(int cc)
+    {
+        if (cc >= 'A' && cc <= 'Z')
+        {
+            return cc - 'A';
+        }
+        if (cc >= '0' && cc <= '9')
+        {
+            return cc - '0' + 26;
+        }
+        return -1;
+    }
+    private static void set(long[] set, MessageType[] types)
+    {
+        for (MessageType type : types)
+        {
+            int index = index(type.name());
+            set[index>>6] |= 1L<<(index & 63);
+        }
+    }
+    private static void addProperties(Class<?> cls)
+    {
+        for (Method method : cls.getMethods())
+        {
+            String name = method.getName();
+            if (name.startsWith("set") && name.length() > 3 && method.getParameterCount() == 1)
+            {
+                String property = Character.toLowerCase(name.charAt(3))+name.substring(4);
+                if (!META.contains(property))
+                {
+                    NMEA0183 nmea0183 = method.getAnnotation(NMEA0183.class);
+                    PROPERTIES.put(property, nmea0183 != null ? nmea0183.value() : null);
+                }
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ScatteringByteChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 import java.util.function.Supplier;
@@ -54,6 +55,11 @@ public class NMEAService<T extends ByteChannel & ScatteringByteChannel & Gatheri
     private final List<AutoCloseable> autoCloseables = new ArrayList<>();
     private Thread thread;
     private boolean liveClock = true;
+    private boolean aisPackedDecoding;
+    private boolean aisSynchronous;
+    private boolean lazyParsing;
+    private final List<PropertySetter> nmeaObservers = new CopyOnWriteArrayList<>();
+    private volatile NMEASentenceFilter sentenceFilter;
     private Future<?> future;
     protected GPSClock clock;
     protected CountDownLatch running = new CountDownLatch(1);
@@ -93,7 +99,10 @@ public class NMEAService<T extends ByteChannel & ScatteringByteChannel & Gatheri
 
     @Deprecated public NMEASampler sampler(String... properties)
     {
-        return new NMEASampler(nmeaDispatcher, properties);
+        NMEASampler sampler = new NMEASampler(nmeaDispatcher, properties);
+        nmeaObservers.add(sampler);
+        updateSentenceFilter();
+        return sampler;
     }
 
     public boolean isLiveClock()
@@ -105,6 +114,59 @@ public class NMEAService<T extends ByteChannel & ScatteringByteChannel & Gatheri
     {
         this.liveClock = liveClock;
     }
+
+    public boolean isAISPackedDecoding()
+    {
+        return aisPackedDecoding;
+    }
+    /**
+     * Sets AIS packed decoding mode. Must be called before start.
+     * @param aisPackedDecoding 
+     * @see org.vesalainen.parsers.nmea.ais.AISBridge#setPackedDecoding(boolean) 
+     */
+    public void setAISPackedDecoding(boolean aisPackedDecoding)
+    {
+        this.aisPackedDecoding = aisPackedDecoding;
+    }
+
+    public boolean isAISSynchronous()
+    {
+        return aisSynchronous;
+    }
+    /**
+     * Sets AIS synchronous mode. Must be called before start.
+     * @param aisSynchronous 
+     * @see org.vesalainen.parsers.nmea.ais.AISBridge#setSynchronous(boolean) 
+     */
+    public void setAISSynchronous(boolean aisSynchronous)
+    {
+        this.aisSynchronous = aisSynchronous;
+    }
+
+    public boolean isLazyParsing()
+    {
+        return lazyParsing;
+    }
+    /**
+     * Sets lazy parsing mode. In lazy mode sentences which are not needed by
+     * any observer are skipped without parsing. Needed sentences are 
+     * recalculated when observers are added or removed. Must be called before 
+     * start.
+     * @param lazyParsing 
+     * @see org.vesalainen.parsers.nmea.NMEASentenceFilter
+     */
+    public void setLazyParsing(boolean lazyParsing)
+    {
+        this.lazyParsing = lazyParsing;
+    }
+    /**
+     * Returns sentence filter in lazy parsing mode after start or null.
+     * @return 
+     */
+    public NMEASentenceFilter getSentenceFilter()
+    {
+        return sentenceFilter;
+    }
     
     public void addNMEAObserver(PropertySetter propertySetter)
     {
@@ -114,6 +176,8 @@ public class NMEAService<T extends ByteChannel & ScatteringByteChannel & Gatheri
     {
         addClock(propertySetter);
         nmeaDispatcher.addObserver(propertySetter, reportMissingProperties);
+        nmeaObservers.add(propertySetter);
+        updateSentenceFilter();
         if (propertySetter instanceof AutoCloseable)
         {
             AutoCloseable ac = (AutoCloseable) propertySetter;
@@ -129,6 +193,7 @@ public class NMEAService<T extends ByteChannel & ScatteringByteChannel & Gatheri
     {
         addClock(propertySetter);
         aisDispatcher.addObserver(propertySetter, reportMissingProperties);
+        updateSentenceFilter();
         if (propertySetter instanceof AutoCloseable)
         {
             AutoCloseable ac = (AutoCloseable) propertySetter;
@@ -144,6 +209,8 @@ public class NMEAService<T extends ByteChannel & ScatteringByteChannel & Gatheri
     {
         addClock(propertyStore);
         nmeaDispatcher.addObserver(propertyStore, reportMissingProperties);
+        nmeaObservers.add(propertyStore);
+        updateSentenceFilter();
         if (propertyStore instanceof AutoCloseable)
         {
             AutoCloseable ac = (AutoCloseable) propertyStore;
@@ -159,6 +226,7 @@ public class NMEAService<T extends ByteChannel & ScatteringByteChannel & Gatheri
     {
         addClock(propertyStore);
         aisDispatcher.addObserver(propertyStore, reportMissingProperties);
+        updateSentenceFilter();
         if (propertyStore instanceof AutoCloseable)
         {
             AutoCloseable ac = (AutoCloseable) propertyStore;
@@ -169,6 +237,8 @@ public class NMEAService<T extends ByteChannel & ScatteringByteChannel & Gatheri
     public void removeNMEAObserver(PropertySetter propertySetter)
     {
         nmeaDispatcher.removeObserver(propertySetter);
+        nmeaObservers.remove(propertySetter);
+        updateSentenceFilter();
         if (propertySetter instanceof AutoCloseable)
         {
             AutoCloseable ac = (AutoCloseable) propertySetter;
@@ -179,12 +249,21 @@ public class NMEAService<T extends ByteChannel & ScatteringByteChannel & Gatheri
     public void removeAISObserver(PropertySetter propertySetter)
     {
         aisDispatcher.removeObserver(propertySetter);
+        updateSentenceFilter();
         if (propertySetter instanceof AutoCloseable)
         {
             AutoCloseable ac = (AutoCloseable) propertySetter;
             removeAutoCloseable(ac);
         }
     }
+    private void updateSentenceFilter()
+    {
+        NMEASentenceFilter filter = sentenceFilter;
+        if (filter != null)
+        {
+            filter.update(nmeaObservers, aisDispatcher != null && aisDispatcher.hasObservers());
+        }
+    }
     private void addClock(PropertySetter propertySetter)
     {
         if (clock != null && propertySetter.wantsProperty("clock"))
@@ -214,6 +293,8 @@ public class NMEAService<T extends ByteChannel & ScatteringByteChannel & Gatheri
         try
         {
             NMEAParser parser = NMEAParser.newInstance();
+            parser.setAISPackedDecoding(aisPackedDecoding);
+            parser.setAISSynchronous(aisSynchronous);
             Supplier<InetSocketAddress> origin = ()->null;
             if (channel instanceof UnconnectedDatagramChannel)
             {
@@ -222,9 +303,16 @@ public class NMEAService<T extends ByteChannel & ScatteringByteChannel & Gatheri
             }
             clock = GPSClock.getInstance(liveClock);
             setClockSupplier(()->clock);
+            ScatteringByteChannel input = channel;
+            if (lazyParsing)
+            {
+                sentenceFilter = new NMEASentenceFilter(channel);
+                updateSentenceFilter();
+                input = sentenceFilter;
+            }
             running.countDown();
             running = null;
-            parser.parse(channel, clock, origin, nmeaDispatcher, aisDispatcher, executor);
+            parser.parse(input, clock, origin, nmeaDispatcher, aisDispatcher, executor);
         }
         catch (Throwable ex)
         {
@@ -103,6 +103,7 @@ public interface XdrObserver
     @NMEACat(ELECTRIC_CURRENT)
     @Unit(value=AMPERE, min=0, max=100)
     void setBatteryCurrent3(float a);
+    @NMEA0183({XDR})
     @NMEACat(POWER)
     @Unit(value=WATT, min=-10000, max=10000)
     void setBatteryPower0(float a);
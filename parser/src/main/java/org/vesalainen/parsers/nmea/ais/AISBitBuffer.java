@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.parsers.nmea.ais;
+
+import java.util.Arrays;
+
+/**
+ * AISBitBuffer holds AIS payload as packed bits. Armored 6-bit characters are
+ * unpacked once into long array and fields are read with shift/mask accessors.
+ *
+ * <p>Bits are stored most significant first. Bit 0 of message is the highest
+ * bit of first long.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class AISBitBuffer
+{
+    private long[] bits = new long[16];
+    private int length;
+    private final StringBuilder sb = new StringBuilder();
+
+    /**
+     * Clears buffer for new message.
+     */
+    public void clear()
+    {
+        length = 0;
+    }
+    /**
+     * Returns number of bits in buffer.
+     * @return
+     */
+    public int length()
+    {
+        return length;
+    }
+    /**
+     * Adds armored payload.
+     * @param data Payload characters
+     * @param padding Number of fill bits at the end of payload
+     */
+    public void add(CharSequence data, int padding)
+    {
+        int len = data.length();
+        ensureCapacity(length + 6*len);
+        for (int ii=0;ii<len;ii++)
+        {
+            int cc = data.charAt(ii);
+            if ((cc >= '0' && cc <= 'W') || (cc >= '`' && cc <= 'w'))
+            {
+                cc -= '0';
+                if (cc > 40)
+                {
+                    cc -= 8;
+                }
+            }
+            else
+            {
+                throw new IllegalArgumentException(data.toString());
+            }
+            put(cc, 6);
+        }
+        if (padding < 0 || padding > 5 || padding > length)
+        {
+            throw new IllegalArgumentException("padding="+padding);
+        }
+        length -= padding;
+        int rem = length & 63;
+        if (rem != 0)
+        {
+            bits[length>>>6] &= -1L<<(64-rem);
+        }
+    }
+    /**
+     * Returns bit at offset as boolean.
+     * @param offset
+     * @return
+     */
+    public boolean getBoolean(int offset)
+    {
+        checkRange(offset, 1);
+        return (bits[offset>>>6] & (1L<<(63-(offset & 63)))) != 0;
+    }
+    /**
+     * Returns unsigned value.
+     * @param offset
+     * @param len 1 - 32
+     * @return
+     */
+    public int getUInt(int offset, int len)
+    {
+        checkRange(offset, len);
+        return (int) get(offset, len);
+    }
+    /**
+     * Returns two's complement signed value.
+     * @param offset
+     * @param len 1 - 32
+     * @return
+     */
+    public int getInt(int offset, int len)
+    {
+        checkRange(offset, len);
+        return (int) (get(offset, len)<<(64-len)>>(64-len));
+    }
+    /**
+     * Returns 6-bit ASCII string. Decoding ends at first '@' and result is
+     * trimmed as in AISUtil.makeString.
+     * @param offset
+     * @param len Number of bits. Forced to multiple of 6.
+     * @return
+     * @see org.vesalainen.parsers.nmea.ais.AISUtil#makeString(java.lang.CharSequence)
+     */
+    public String getString(int offset, int len)
+    {
+        checkRange(offset, len);
+        sb.setLength(0);
+        int end = offset + 6*(len / 6);
+        for (int ii=offset;ii<end;ii+=6)
+        {
+            int cc = (int) get(ii, 6);
+            if (cc == 0)    // terminating '@'
+            {
+                break;
+            }
+            if (cc < 32)
+            {
+                sb.append((char) (cc + '@'));
+            }
+            else
+            {
+                sb.append((char) cc);
+            }
+        }
+        return sb.toString().trim();
+    }
+    private long get(int offset, int len)
+    {
+        int word = offset>>>6;
+        int bit = offset & 63;
+        long value = bits[word]<<bit;
+        if (bit + len > 64)
+        {
+            value |= bits[word+1]>>>(64-bit);
+        }
+        return value>>>(64-len);
+    }
+    private void put(int value, int len)
+    {
+        int word = length>>>6;
+        int bit = length & 63;
+        if (bit == 0)
+        {
+            bits[word] = 0;
+        }
+        int shift = 64 - bit - len;
+        if (shift >= 0)
+        {
+            bits[word] |= ((long)value)<<shift;
+        }
+        else
+        {
+            bits[word] |= ((long)value)>>>-shift;
+            bits[word+1] = ((long)value)<<(64+shift);
+        }
+        length += len;
+    }
+    private void ensureCapacity(int size)
+    {
+        int words = (size>>>6)+1;
+        if (words > bits.length)
+        {
+            bits = Arrays.copyOf(bits, Math.max(words, 2*bits.length));
+        }
+    }
+    private void checkRange(int offset, int len)
+    {
+        if (offset < 0 || len < 1 || offset + len > length)
+        {
+            throw new IndexOutOfBoundsException("offset="+offset+" len="+len+" length="+length);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder s = new StringBuilder();
+        for (int ii=0;ii<length;ii++)
+        {
+            s.append(getBoolean(ii) ? '1' : '0');
+        }
+        return s.toString();
+    }
+
+}
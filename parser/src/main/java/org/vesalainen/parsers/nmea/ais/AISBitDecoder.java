@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.parsers.nmea.ais;
+
+import org.vesalainen.parsers.mmsi.MMSIType;
+import static org.vesalainen.parsers.mmsi.MMSIType.CraftAssociatedWithParentShip;
+import org.vesalainen.util.logging.JavaLogging;
+
+/**
+ * AISBitDecoder decodes complete AIS message from AISBitBuffer. Field values
+ * are passed to the same AISParser reducer methods as in grammar parsing, so
+ * AISObserver receives identical calls.
+ *
+ * <p>Only the most common message types are decoded. Use isSupported to check
+ * before decoding. Other types should be parsed with AISParser.
+ *
+ * <p>Unlike grammar, trailing spare bits are not checked. Message which is
+ * shorter than its mandatory fields is rolled back.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class AISBitDecoder extends JavaLogging
+{
+    private static final MessageTypes[] MESSAGE_TYPES = MessageTypes.values();
+    private final AISParser parser;
+
+    public AISBitDecoder(AISParser parser)
+    {
+        super(AISBitDecoder.class);
+        this.parser = parser;
+    }
+    /**
+     * Returns true if message type can be decoded with this decoder.
+     * @param messageType
+     * @return
+     */
+    public static boolean isSupported(int messageType)
+    {
+        switch (messageType)
+        {
+            case 1:
+            case 2:
+            case 3:
+            case 4:
+            case 5:
+            case 9:
+            case 11:
+            case 18:
+            case 19:
+            case 21:
+            case 24:
+            case 27:
+                return true;
+            default:
+                return false;
+        }
+    }
+    /**
+     * Decodes message and calls aisData methods. Message is either committed
+     * or rolled back.
+     * @param bits
+     * @param ownMessage
+     * @param channel
+     * @param aisData
+     * @return True if message was committed.
+     */
+    public boolean decode(AISBitBuffer bits, boolean ownMessage, char channel, AISObserver aisData)
+    {
+        int length = bits.length();
+        if (length < 38)
+        {
+            aisData.start("Start from AISBitDecoder");
+            aisData.rollback("AIS message too short "+length);
+            return false;
+        }
+        int messageType = bits.getUInt(0, 6);
+        if (!isSupported(messageType))
+        {
+            throw new IllegalArgumentException("message "+messageType+" not supported");
+        }
+        aisData.start("Start from AISBitDecoder");
+        aisData.setOwnMessage(ownMessage);
+        aisData.setChannel(channel);
+        aisData.setMessageType(MESSAGE_TYPES[messageType]);
+        parser.repeat(bits.getUInt(6, 2), aisData);
+        int mmsi = bits.getUInt(8, 30);
+        parser.mmsi(mmsi, aisData);
+        boolean ok;
+        switch (messageType)
+        {
+            case 1:
+            case 2:
+            case 3:
+                ok = commonNavigationBlock(bits, aisData);
+                break;
+            case 4:
+            case 11:
+                ok = baseStationReport(bits, aisData);
+                break;
+            case 5:
+                ok = staticAndVoyageRelatedData(bits, aisData);
+                break;
+            case 9:
+                ok = standardSARAircraftPositionReport(bits, aisData);
+                break;
+            case 18:
+                ok = standardClassBCSPositionReport(bits, aisData);
+                break;
+            case 19:
+                ok = extendedClassBCSPositionReport(bits, aisData);
+                break;
+            case 21:
+                ok = aidToNavigationReport(bits, aisData);
+                break;
+            case 24:
+                ok = staticDataReport(bits, mmsi, aisData);
+                break;
+            case 27:
+                ok = longRangeAISBroadcastMessage(bits, aisData);
+                break;
+            default:
+                throw new AssertionError(messageType);
+        }
+        if (ok)
+        {
+            aisData.commit("Commit from AISBitDecoder");
+        }
+        else
+        {
+            String reason = "AIS message "+messageType+" length "+length+" not valid";
+            warning(reason);
+            aisData.rollback(reason);
+        }
+        return ok;
+    }
+
+    private boolean commonNavigationBlock(AISBitBuffer bits, AISObserver aisData)
+    {
+        if (bits.length() < 168)
+        {
+            return false;
+        }
+        parser.status_4(bits.getUInt(38, 4), aisData);
+        parser.turn_I3(bits.getInt(42, 8), aisData);
+        parser.speed_U1_10(bits.getUInt(50, 10), aisData);
+        parser.accuracy(bits.getBoolean(60), aisData);
+        parser.lon_I4_28(bits.getInt(61, 28), aisData);
+        parser.lat_I4_27(bits.getInt(89, 27), aisData);
+        parser.course_U1_12(bits.getUInt(116, 12), aisData);
+        parser.heading_9(bits.getUInt(128, 9), aisData);
+        parser.second(bits.getUInt(137, 6), aisData);
+        parser.maneuver(bits.getUInt(143, 2), aisData);
+        parser.raim(bits.getBoolean(148), aisData);
+        parser.radio_19(bits.getUInt(149, 19), aisData);
+        return true;
+    }
+
+    private boolean baseStationReport(AISBitBuffer bits, AISObserver aisData)
+    {
+        if (bits.length() < 168)
+        {
+            return false;
+        }
+        parser.year(bits.getUInt(38, 14), aisData);
+        parser.month(bits.getUInt(52, 4), aisData);
+        parser.day_5(bits.getUInt(56, 5), aisData);
+        parser.hour(bits.getUInt(61, 5), aisData);
+        parser.minute_6(bits.getUInt(66, 6), aisData);
+        parser.second(bits.getUInt(72, 6), aisData);
+        parser.accuracy(bits.getBoolean(78), aisData);
+        parser.lon_I4_28(bits.getInt(79, 28), aisData);
+        parser.lat_I4_27(bits.getInt(107, 27), aisData);
+        parser.epfd(bits.getUInt(134, 4), aisData);
+        parser.raim(bits.getBoolean(148), aisData);
+        parser.radio_19(bits.getUInt(149, 19), aisData);
+        return true;
+    }
+
+    private boolean staticAndVoyageRelatedData(AISBitBuffer bits, AISObserver aisData)
+    {
+        if (bits.length() < 423)
+        {
+            return false;
+        }
+        parser.aisVersion(bits.getUInt(38, 2), aisData);
+        parser.imo(bits.getUInt(40, 30), aisData);
+        aisData.setCallSign(bits.getString(70, 42));
+        aisData.setVesselName(bits.getString(112, 120));
+        parser.shiptype(bits.getUInt(232, 8), aisData);
+        parser.toBow(bits.getUInt(240, 9), aisData);
+        parser.toStern(bits.getUInt(249, 9), aisData);
+        parser.toPort(bits.getUInt(258, 6), aisData);
+        parser.toStarboard(bits.getUInt(264, 6), aisData);
+        parser.epfd(bits.getUInt(270, 4), aisData);
+        parser.eta_month(bits.getUInt(274, 4), aisData);
+        parser.eta_day(bits.getUInt(278, 5), aisData);
+        parser.eta_hour(bits.getUInt(283, 5), aisData);
+        parser.eta_minute(bits.getUInt(288, 6), aisData);
+        parser.draught_U1(bits.getUInt(294, 8), aisData);
+        aisData.setDestination(bits.getString(302, 120));
+        parser.dte(bits.getBoolean(422), aisData);
+        return true;
+    }
+
+    private boolean standardSARAircraftPositionReport(AISBitBuffer bits, AISObserver aisData)
+    {
+        if (bits.length() < 168)
+        {
+            return false;
+        }
+        parser.alt_12(bits.getUInt(38, 12), aisData);
+        parser.speed_10(bits.getUInt(50, 10), aisData);
+        parser.accuracy(bits.getBoolean(60), aisData);
+        parser.lon_I4_28(bits.getInt(61, 28), aisData);
+        parser.lat_I4_27(bits.getInt(89, 27), aisData);
+        parser.course_U1_12(bits.getUInt(116, 12), aisData);
+        parser.second(bits.getUInt(128, 6), aisData);
+        parser.regional_8(bits.getUInt(134, 8), aisData);
+        parser.dte(bits.getBoolean(142), aisData);
+        parser.assigned(bits.getBoolean(146), aisData);
+        parser.raim(bits.getBoolean(147), aisData);
+        parser.radio_20(bits.getUInt(148, 20), aisData);
+        return true;
+    }
+
+    private boolean standardClassBCSPositionReport(AISBitBuffer bits, AISObserver aisData)
+    {
+        if (bits.length() < 168)
+        {
+            return false;
+        }
+        parser.reserved(bits.getUInt(38, 8), aisData);
+        parser.speed_U1_10(bits.getUInt(46, 10), aisData);
+        parser.accuracy(bits.getBoolean(56), aisData);
+        parser.lon_I4_28(bits.getInt(57, 28), aisData);
+        parser.lat_I4_27(bits.getInt(85, 27), aisData);
+        parser.course_U1_12(bits.getUInt(112, 12), aisData);
+        parser.heading_9(bits.getUInt(124, 9), aisData);
+        parser.second(bits.getUInt(133, 6), aisData);
+        parser.regional_2(bits.getUInt(139, 2), aisData);
+        parser.cs(bits.getBoolean(141), aisData);
+        parser.display(bits.getBoolean(142), aisData);
+        parser.dsc(bits.getBoolean(143), aisData);
+        parser.band(bits.getBoolean(144), aisData);
+        parser.msg22(bits.getBoolean(145), aisData);
+        parser.assigned(bits.getBoolean(146), aisData);
+        parser.raim(bits.getBoolean(147), aisData);
+        parser.radio_20(bits.getUInt(148, 20), aisData);
+        return true;
+    }
+
+    private boolean extendedClassBCSPositionReport(AISBitBuffer bits, AISObserver aisData)
+    {
+        if (bits.length() < 308)
+        {
+            return false;
+        }
+        parser.reserved(bits.getUInt(38, 8), aisData);
+        parser.speed_U1_10(bits.getUInt(46, 10), aisData);
+        parser.accuracy(bits.getBoolean(56), aisData);
+        parser.lon_I4_28(bits.getInt(57, 28), aisData);
+        parser.lat_I4_27(bits.getInt(85, 27), aisData);
+        parser.course_U1_12(bits.getUInt(112, 12), aisData);
+        parser.heading_9(bits.getUInt(124, 9), aisData);
+        parser.second(bits.getUInt(133, 6), aisData);
+        parser.regional_4(bits.getUInt(139, 4), aisData);
+        aisData.setVesselName(bits.getString(143, 120));
+        parser.shiptype(bits.getUInt(263, 8), aisData);
+        parser.toBow(bits.getUInt(271, 9), aisData);
+        parser.toStern(bits.getUInt(280, 9), aisData);
+        parser.toPort(bits.getUInt(289, 6), aisData);
+        parser.toStarboard(bits.getUInt(295, 6), aisData);
+        parser.epfd(bits.getUInt(301, 4), aisData);
+        parser.raim(bits.getBoolean(305), aisData);
+        parser.dte(bits.getBoolean(306), aisData);
+        parser.assigned(bits.getBoolean(307), aisData);
+        return true;
+    }
+
+    private boolean aidToNavigationReport(AISBitBuffer bits, AISObserver aisData)
+    {
+        int length = bits.length();
+        if (length < 271)
+        {
+            return false;
+        }
+        parser.aidType(bits.getUInt(38, 5), aisData);
+        aisData.setName(bits.getString(43, 120));
+        parser.accuracy(bits.getBoolean(163), aisData);
+        parser.lon_I4_28(bits.getInt(164, 28), aisData);
+        parser.lat_I4_27(bits.getInt(192, 27), aisData);
+        parser.toBow(bits.getUInt(219, 9), aisData);
+        parser.toStern(bits.getUInt(228, 9), aisData);
+        parser.toPort(bits.getUInt(237, 6), aisData);
+        parser.toStarboard(bits.getUInt(243, 6), aisData);
+        parser.epfd(bits.getUInt(249, 4), aisData);
+        parser.second(bits.getUInt(253, 6), aisData);
+        parser.offPosition(bits.getBoolean(259), aisData);
+        parser.regional_8(bits.getUInt(260, 8), aisData);
+        parser.raim(bits.getBoolean(268), aisData);
+        parser.virtualAid(bits.getBoolean(269), aisData);
+        parser.assigned(bits.getBoolean(270), aisData);
+        if (length > 272)
+        {
+            aisData.setNameExtension(bits.getString(272, Math.min(88, length-272)));
+        }
+        return true;
+    }
+
+    private boolean staticDataReport(AISBitBuffer bits, int mmsi, AISObserver aisData)
+    {
+        int length = bits.length();
+        if (length < 40)
+        {
+            return false;
+        }
+        int partno = bits.getUInt(38, 2);
+        switch (partno)
+        {
+            case 0:
+                if (length < 160)
+                {
+                    return false;
+                }
+                parser.partno(partno, aisData);
+                aisData.setVesselName(bits.getString(40, 120));
+                return true;
+            case 1:
+                if (length < 133)
+                {
+                    return false;
+                }
+                parser.partno(partno, aisData);
+                parser.shiptype(bits.getUInt(40, 8), aisData);
+                aisData.setVendorId(bits.getString(48, 18));
+                parser.model(bits.getUInt(66, 4), aisData);
+                parser.serial(bits.getUInt(70, 20), aisData);
+                aisData.setCallSign(bits.getString(90, 42));
+                if (MMSIType.getType(mmsi) == CraftAssociatedWithParentShip)
+                {
+                    if (length >= 162)
+                    {
+                        aisData.setMothershipMMSI(bits.getUInt(132, 30));
+                    }
+                }
+                else
+                {
+                    if (length >= 162)
+                    {
+                        aisData.setDimensionToBow(bits.getUInt(132, 9));
+                        aisData.setDimensionToStern(bits.getUInt(141, 9));
+                        aisData.setDimensionToPort(bits.getUInt(150, 6));
+                        aisData.setDimensionToStarboard(bits.getUInt(156, 6));
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean longRangeAISBroadcastMessage(AISBitBuffer bits, AISObserver aisData)
+    {
+        if (bits.length() < 95)
+        {
+            return false;
+        }
+        parser.accuracy(bits.getBoolean(38), aisData);
+        parser.raim(bits.getBoolean(39), aisData);
+        parser.status_4(bits.getUInt(40, 4), aisData);
+        parser.lon_I4_18(bits.getInt(44, 18), aisData);
+        parser.lat_I4_17(bits.getInt(62, 17), aisData);
+        parser.speed_6(bits.getUInt(79, 6), aisData);
+        parser.course_9(bits.getUInt(85, 9), aisData);
+        parser.gnss(bits.getUInt(94, 1), aisData);
+        return true;
+    }
+}
@@ -17,19 +17,18 @@
 package org.vesalainen.parsers.nmea.ais;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import static java.util.logging.Level.FINE;
 import static java.util.logging.Level.SEVERE;
-import java.util.stream.Collectors;
 import org.vesalainen.util.Transactional;
+import org.vesalainen.util.concurrent.ThreadStoppedException;
 import org.vesalainen.util.logging.JavaLogging;
 
 /**
@@ -42,13 +41,15 @@ public class AISBridge extends JavaLogging implements Transactional
     private final AISObserver aisData;
     private final ExecutorService executor;
     private final MessageHandler[] handlers = new MessageHandler[27];
-    private MessageHandler current;
+    private PackedHandler packedHandler;
+    private SynchronousHandler synchronousHandler;
     private Semaphore semaphore = new Semaphore(1);
-    private boolean ownMessage;
-    private int numberOfSentences;
-    private int nextSentenceNumber;
-    private int sequentialMessageID;
-    private char channel;
+    private Reassembly[] reassemblies;
+    private final Reassembly single = new Reassembly();
+    private long reassemblyTimeout = 5000;
+    private long completedCount;
+    private long evictedCount;
+    private long discardedCount;
 
     public AISBridge(AISObserver aisData) throws IOException
     {
@@ -60,9 +61,124 @@ public class AISBridge extends JavaLogging implements Transactional
         this.parser = AISParser.newInstance();
         this.aisData = aisData;
         this.executor = executor;
+        setMaxReassemblies(16);
+    }
+    /**
+     * Sets packed decoding mode. In packed mode payload of supported message 
+     * types is unpacked once into AISBitBuffer and decoded in calling thread
+     * with AISBitDecoder. Other message types are parsed with AISParser as
+     * before.
+     * @param packed 
+     * @see org.vesalainen.parsers.nmea.ais.AISBitDecoder#isSupported(int) 
+     */
+    public void setPackedDecoding(boolean packed)
+    {
+        if (packed)
+        {
+            if (packedHandler == null)
+            {
+                packedHandler = new PackedHandler();
+            }
+        }
+        else
+        {
+            packedHandler = null;
+        }
+    }
+
+    public boolean isPackedDecoding()
+    {
+        return packedHandler != null;
+    }
+    /**
+     * Sets synchronous mode. In synchronous mode each completed message is
+     * parsed in calling thread. No pipes, handler threads or semaphore are 
+     * used. Must be set before first sentence.
+     * @param synchronous 
+     */
+    public void setSynchronous(boolean synchronous)
+    {
+        if (synchronous)
+        {
+            if (synchronousHandler == null)
+            {
+                synchronousHandler = new SynchronousHandler();
+            }
+        }
+        else
+        {
+            synchronousHandler = null;
+        }
+    }
+
+    public boolean isSynchronous()
+    {
+        return synchronousHandler != null;
+    }
+
+    /**
+     * Sets maximum number of multi-sentence messages under reassembly. When 
+     * table is full the oldest message is evicted. Must be set before first 
+     * sentence.
+     * @param maxReassemblies 
+     */
+    public void setMaxReassemblies(int maxReassemblies)
+    {
+        if (maxReassemblies < 1)
+        {
+            throw new IllegalArgumentException("maxReassemblies="+maxReassemblies);
+        }
+        reassemblies = new Reassembly[maxReassemblies];
+        for (int ii=0;ii<maxReassemblies;ii++)
+        {
+            reassemblies[ii] = new Reassembly();
+        }
+    }
 
+    public int getMaxReassemblies()
+    {
+        return reassemblies.length;
+    }
+    /**
+     * Sets time after which incomplete multi-sentence message is evicted.
+     * @param reassemblyTimeout Milliseconds
+     */
+    public void setReassemblyTimeout(long reassemblyTimeout)
+    {
+        this.reassemblyTimeout = reassemblyTimeout;
     }
 
+    public long getReassemblyTimeout()
+    {
+        return reassemblyTimeout;
+    }
+    /**
+     * Returns number of reassembled multi-sentence messages.
+     * @return 
+     */
+    public long getCompletedCount()
+    {
+        return completedCount;
+    }
+    /**
+     * Returns number of incomplete multi-sentence messages evicted because of
+     * timeout or full reassembly table.
+     * @return 
+     */
+    public long getEvictedCount()
+    {
+        return evictedCount;
+    }
+    /**
+     * Returns number of incomplete multi-sentence messages discarded because
+     * of sequence or checksum errors.
+     * @return 
+     */
+    public long getDiscardedCount()
+    {
+        return discardedCount;
+    }
+    
     public void newSentence(
             boolean ownMessage, 
             int numberOfSentences, 
@@ -75,65 +191,218 @@ public class AISBridge extends JavaLogging implements Transactional
             long value
     ) throws IOException
     {
-        String msg = String.format("!AIVD%c,%d,%d,%s,%s,%s,%d*%02X", 
-                    ownMessage ? 'O' : 'M',
-                    numberOfSentences,
-                    sentenceNumber,
-                    sequentialMessageID == 0 ? "" : String.valueOf(sequentialMessageID),
-                    channel != '-' ? String.valueOf(channel) : "",
-                    payload,
-                    padding,
-                    checksum
-            );
-        fine(msg);
+        newSentence(null, ownMessage, numberOfSentences, sentenceNumber, sequentialMessageID, channel, payload, padding, checksum, value);
+    }
+    /**
+     * Handles one AIVDM/AIVDO sentence. Multi-sentence messages are 
+     * reassembled independently for each origin, channel and sequential 
+     * message id.
+     * @param origin Source of sentence. Can be null.
+     * @param ownMessage
+     * @param numberOfSentences
+     * @param sentenceNumber
+     * @param sequentialMessageID
+     * @param channel
+     * @param payload
+     * @param padding
+     * @param checksum
+     * @param value Calculated checksum
+     * @throws IOException 
+     */
+    public void newSentence(
+            Object origin,
+            boolean ownMessage, 
+            int numberOfSentences, 
+            int sentenceNumber, 
+            int sequentialMessageID, 
+            char channel, 
+            CharSequence payload, 
+            int padding, 
+            int checksum, 
+            long value
+    ) throws IOException
+    {
+        boolean trace = isLoggable(FINE);
+        if (trace)
+        {
+            fine(format(ownMessage, numberOfSentences, sentenceNumber, sequentialMessageID, channel, payload, padding, checksum));
+        }
         if (checksum != value)
         {
             warning("Message parsing was terminated because of checksum fail");
-            if (current != null)
+            if (numberOfSentences > 1)
             {
-                current.pipe.rollback();
-                warning("AIS rollback %s", current.getSentence());
+                Reassembly r = getReassembly(origin, ownMessage, numberOfSentences, sequentialMessageID, channel, false);
+                if (r != null)
+                {
+                    discardedCount++;
+                    warning("AIS rollback %s", r);
+                    r.clear();
+                }
             }
-            current = null;
             return;
         }
-        if (sentenceNumber == 1)    // first
+        if (numberOfSentences == 1)
         {
-            if (current != null)
+            single.start(origin, ownMessage, numberOfSentences, sequentialMessageID, channel, 0);
+            single.add(numberOfSentences, sentenceNumber, payload, padding, checksum);
+            try
+            {
+                complete(single);
+            }
+            finally
             {
-                current.pipe.rollback();
-                warning("rest of message missing. AIS rollback %s", current.getSentence());
+                single.clear();
             }
-            int messageNumber = payload.charAt(0)-'0';
-            if (messageNumber < 0 || messageNumber > 27)
+            if (trace)
+            {
+                fine("AIS commit");
+            }
+            return;
+        }
+        Reassembly r = getReassembly(origin, ownMessage, numberOfSentences, sequentialMessageID, channel, true);
+        if (!r.add(numberOfSentences, sentenceNumber, payload, padding, checksum))
+        {
+            discardedCount++;
+            warning("sequence error. AIS rollback %s", r);
+            r.clear();
+            if (sentenceNumber != 1)
             {
-                warning("message %d unknown %s", messageNumber, payload);
-                warning(msg);
                 return;
             }
-            messageNumber = messageNumber < 4 ? 1 : messageNumber;
-            current = getMessageHandler(messageNumber);
-            current.pipe.start(ownMessage, (byte) channel);
-            current.sentence.clear();
-            fine("AIS sent start");
-            setExpected(ownMessage, numberOfSentences, sequentialMessageID, channel);
+            r = getReassembly(origin, ownMessage, numberOfSentences, sequentialMessageID, channel, true);
+            r.add(numberOfSentences, sentenceNumber, payload, padding, checksum);
         }
-        else
+        if (r.isComplete())
+        {
+            completedCount++;
+            try
+            {
+                complete(r);
+            }
+            finally
+            {
+                r.clear();
+            }
+            if (trace)
+            {
+                fine("AIS commit");
+            }
+        }
+    }
+    private void complete(Reassembly r) throws IOException
+    {
+        AbstractHandler handler = getHandler(r.payloads[0]);
+        if (handler != null)
+        {
+            handler.start(r.ownMessage, r.channel);
+            handler.fragments = r;
+            try
+            {
+                for (int ii=0;ii<r.numberOfSentences;ii++)
+                {
+                    handler.add(r.payloads[ii], r.paddings[ii]);
+                }
+            }
+            catch (IOException | RuntimeException ex)
+            {
+                handler.rollback();
+                throw ex;
+            }
+            handler.commit();
+        }
+    }
+    private AbstractHandler getHandler(CharSequence payload) throws IOException
+    {
+        int messageNumber = payload.charAt(0)-'0';
+        if (messageNumber < 0 || messageNumber > 27)
+        {
+            warning("message %d unknown %s", messageNumber, payload);
+            return null;
+        }
+        if (packedHandler != null && AISBitDecoder.isSupported(messageNumber))
+        {
+            return packedHandler;
+        }
+        if (synchronousHandler != null)
+        {
+            return synchronousHandler;
+        }
+        messageNumber = messageNumber < 4 ? 1 : messageNumber;
+        return getMessageHandler(messageNumber);
+    }
+    /**
+     * Returns matching reassembly. Expired reassemblies are evicted while 
+     * searching.
+     * @param create If true and no match, a new reassembly is started. If 
+     * table is full the oldest one is evicted.
+     * @return Matching reassembly or null if not found and create is false.
+     */
+    private Reassembly getReassembly(
+            Object origin, 
+            boolean ownMessage, 
+            int numberOfSentences, 
+            int sequentialMessageID, 
+            char channel,
+            boolean create
+    )
+    {
+        long now = System.currentTimeMillis();
+        Reassembly free = null;
+        Reassembly oldest = null;
+        for (Reassembly r : reassemblies)
         {
-            if (current != null)
+            if (r.inUse && now - r.time > reassemblyTimeout)
+            {
+                evictedCount++;
+                warning("AIS reassembly timeout. AIS rollback %s", r);
+                r.clear();
+            }
+            if (r.inUse)
+            {
+                if (r.matches(origin, ownMessage, sequentialMessageID, channel))
+                {
+                    return r;
+                }
+                if (oldest == null || r.time < oldest.time)
+                {
+                    oldest = r;
+                }
+            }
+            else
             {
-                if (!expected(ownMessage, numberOfSentences, sentenceNumber, sequentialMessageID, channel))
+                if (free == null)
                 {
-                    current.pipe.rollback();
-                    warning("sequence error. AIS rollback %s", current.getSentence());
-                    current = null;
-                    return;
+                    free = r;
                 }
             }
         }
-        if (current != null)
+        if (!create)
         {
-            current.sentence.add(String.format("!AIVD%c,%d,%d,%s,%s,%s,%d*%02X", 
+            return null;
+        }
+        if (free == null)
+        {
+            evictedCount++;
+            warning("AIS reassembly table full. AIS rollback %s", oldest);
+            oldest.clear();
+            free = oldest;
+        }
+        free.start(origin, ownMessage, numberOfSentences, sequentialMessageID, channel, now);
+        return free;
+    }
+    private static String format(
+            boolean ownMessage, 
+            int numberOfSentences, 
+            int sentenceNumber, 
+            int sequentialMessageID, 
+            char channel, 
+            CharSequence payload, 
+            int padding, 
+            int checksum
+    )
+    {
+        return String.format("!AIVD%c,%d,%d,%s,%s,%s,%d*%02X", 
                     ownMessage ? 'O' : 'M',
                     numberOfSentences,
                     sentenceNumber,
@@ -142,15 +411,82 @@ public class AISBridge extends JavaLogging implements Transactional
                     payload,
                     padding,
                     checksum
-            ));
-            current.pipe.add(payload, padding);
-            fine("AIS sent payload");
-            if (sentenceNumber == numberOfSentences)    // last
-            {
-                current.pipe.commit();
-                current = null;
-                fine("AIS commit");
-            }
+            );
+    }
+    private void parse(int message, ReadableByteChannel channel, AbstractHandler handler) throws IOException, ThreadStoppedException
+    {
+        switch (message)
+        {
+            case 1:
+            case 2:
+            case 3:
+                parser.parse123Messages(channel, aisData, handler, this);
+                break;
+            case 4:
+                parser.parse4Messages(channel, aisData, handler, this);
+                break;
+            case 5:
+                parser.parse5Messages(channel, aisData, handler, this);
+                break;
+            case 6:
+                parser.parse6Messages(channel, aisData, handler, this);
+                break;
+            case 7:
+                parser.parse7Messages(channel, aisData, handler, this);
+                break;
+            case 8:
+                parser.parse8Messages(channel, aisData, handler, this);
+                break;
+            case 9:
+                parser.parse9Messages(channel, aisData, handler, this);
+                break;
+            case 10:
+                parser.parse10Messages(channel, aisData, handler, this);
+                break;
+            case 11:
+                parser.parse11Messages(channel, aisData, handler, this);
+                break;
+            case 12:
+                parser.parse12Messages(channel, aisData, handler, this);
+                break;
+            case 14:
+                parser.parse14Messages(channel, aisData, handler, this);
+                break;
+            case 15:
+                parser.parse15Messages(channel, aisData, handler, this);
+                break;
+            case 16:
+                parser.parse16Messages(channel, aisData, handler, this);
+                break;
+            case 17:
+                parser.parse17Messages(channel, aisData, handler, this);
+                break;
+            case 18:
+                parser.parse18Messages(channel, aisData, handler, this);
+                break;
+            case 19:
+                parser.parse19Messages(channel, aisData, handler, this);
+                break;
+            case 20:
+                parser.parse20Messages(channel, aisData, handler, this);
+                break;
+            case 21:
+                parser.parse21Messages(channel, aisData, handler, this);
+                break;
+            case 22:
+                parser.parse22Messages(channel, aisData, handler, this);
+                break;
+            case 23:
+                parser.parse23Messages(channel, aisData, handler, this);
+                break;
+            case 24:
+                parser.parse24Messages(channel, aisData, handler, this);
+                break;
+            case 27:
+                parser.parse27Messages(channel, aisData, handler, this);
+                break;
+            default:
+                throw new IllegalArgumentException("message "+message+" not supported");
         }
     }
     private MessageHandler getMessageHandler(int messageNumber) throws IOException
@@ -192,6 +528,10 @@ public class AISBridge extends JavaLogging implements Transactional
     @Override
     public void start(String reason)
     {
+        if (synchronousHandler != null)
+        {
+            return;
+        }
         try
         {
             finest("AIS waiting for permit");
@@ -207,6 +547,10 @@ public class AISBridge extends JavaLogging implements Transactional
     @Override
     public void rollback(String reason)
     {
+        if (synchronousHandler != null)
+        {
+            return;
+        }
         semaphore.release();
         finest("AIS released permit (rollback)");
     }
@@ -214,49 +558,160 @@ public class AISBridge extends JavaLogging implements Transactional
     @Override
     public void commit(String reason)
     {
+        if (synchronousHandler != null)
+        {
+            return;
+        }
         semaphore.release();
         finest("AIS released permit (commit)");
     }
 
-    private boolean expected(
-            boolean ownMessage, 
-            int numberOfSentences, 
-            int sentenceNumber, 
-            int sequentialMessageID, 
-            char channel
-    )
+    /**
+     * Reassembly collects sentences of one message. Payloads are copied only 
+     * here. Handlers refer to them for diagnostics.
+     */
+    static class Reassembly
     {
-        if (
-            sentenceNumber != nextSentenceNumber ||
-            ownMessage != this.ownMessage ||
-            numberOfSentences != this.numberOfSentences ||
-            sequentialMessageID != this.sequentialMessageID ||
-            channel != this.channel
-                )
+        private static final int MAX_SENTENCES = 9;
+        private boolean inUse;
+        private Object origin;
+        private boolean ownMessage;
+        private int numberOfSentences;
+        private int sequentialMessageID;
+        private char channel;
+        private long time;
+        private int received;   // bit per sentence
+        private final StringBuilder[] payloads = new StringBuilder[MAX_SENTENCES];
+        private final int[] paddings = new int[MAX_SENTENCES];
+        private final int[] checksums = new int[MAX_SENTENCES];
+
+        Reassembly()
         {
-            return false;
+            for (int ii=0;ii<MAX_SENTENCES;ii++)
+            {
+                payloads[ii] = new StringBuilder(64);
+            }
         }
-        else
+        
+        void start(Object origin, boolean ownMessage, int numberOfSentences, int sequentialMessageID, char channel, long time)
+        {
+            this.inUse = true;
+            this.origin = origin;
+            this.ownMessage = ownMessage;
+            this.numberOfSentences = numberOfSentences;
+            this.sequentialMessageID = sequentialMessageID;
+            this.channel = channel;
+            this.time = time;
+            this.received = 0;
+        }
+        private boolean matches(Object origin, boolean ownMessage, int sequentialMessageID, char channel)
+        {
+            return 
+                    sequentialMessageID == this.sequentialMessageID &&
+                    channel == this.channel &&
+                    ownMessage == this.ownMessage &&
+                    Objects.equals(origin, this.origin);
+        }
+        boolean add(int numberOfSentences, int sentenceNumber, CharSequence payload, int padding, int checksum)
         {
-            nextSentenceNumber++;
+            if (
+                numberOfSentences != this.numberOfSentences ||
+                numberOfSentences > MAX_SENTENCES ||
+                sentenceNumber < 1 ||
+                sentenceNumber > numberOfSentences
+                    )
+            {
+                return false;
+            }
+            int mask = 1<<sentenceNumber;
+            if ((received & mask) != 0)
+            {
+                return false;
+            }
+            received |= mask;
+            int index = sentenceNumber-1;
+            payloads[index].setLength(0);
+            payloads[index].append(payload);
+            paddings[index] = padding;
+            checksums[index] = checksum;
             return true;
         }
-    }
+        private boolean isComplete()
+        {
+            return Integer.bitCount(received) == numberOfSentences;
+        }
+        private void clear()
+        {   // payloads are kept for handler diagnostics until next start
+            inUse = false;
+            origin = null;
+        }
+        /**
+         * Returns received sentences separated with CRLF.
+         * @return 
+         */
+        String getSentence()
+        {
+            StringBuilder sb = new StringBuilder();
+            for (int ii=0;ii<numberOfSentences;ii++)
+            {
+                if ((received & (1<<(ii+1))) != 0)
+                {
+                    if (sb.length() > 0)
+                    {
+                        sb.append("\r\n");
+                    }
+                    sb.append(format(ownMessage, numberOfSentences, ii+1, sequentialMessageID, channel, payloads[ii], paddings[ii], checksums[ii]));
+                }
+            }
+            return sb.toString();
+        }
 
-    private void setExpected(boolean ownMessage, int numberOfSentences, int sequentialMessageID, char channel)
+        @Override
+        public String toString()
+        {
+            if (origin != null)
+            {
+                return getSentence()+" from "+origin;
+            }
+            return getSentence();
+        }
+        
+    }
+    /**
+     * AbstractHandler refers to reassembled fragments of current message. 
+     * Sentence string is created only for diagnostics.
+     */
+    public abstract class AbstractHandler
     {
-        this.nextSentenceNumber = 2;
-        this.ownMessage = ownMessage;
-        this.numberOfSentences = numberOfSentences;
-        this.sequentialMessageID = sequentialMessageID;
-        this.channel = channel;
+        private Reassembly fragments;
+        
+        protected abstract void start(boolean ownMessage, char channel) throws IOException;
+        protected abstract void add(CharSequence payload, int padding) throws IOException;
+        protected abstract void commit() throws IOException;
+        protected abstract void rollback() throws IOException;
+
+        /**
+         * Returns fragments of current message as NMEA sentences separated
+         * with CRLF.
+         * @return 
+         */
+        public String getSentence()
+        {
+            return fragments != null ? fragments.getSentence() : "";
+        }
+
+        @Override
+        public String toString()
+        {
+            return getSentence();
+        }
+        
     }
-    public class MessageHandler implements Runnable
+    public class MessageHandler extends AbstractHandler implements Runnable
     {
         private int message;
         private AISPipe pipe;
         private final Future<?> future;
-        private List<String> sentence = new ArrayList<>();
 
         public MessageHandler(int message) throws IOException
         {
@@ -265,32 +720,37 @@ public class AISBridge extends JavaLogging implements Transactional
             future = executor.submit(this);
         }
 
+        @Override
+        protected void start(boolean ownMessage, char channel) throws IOException
+        {
+            pipe.start(ownMessage, (byte) channel);
+        }
+
+        @Override
+        protected void add(CharSequence payload, int padding) throws IOException
+        {
+            pipe.add(payload, padding);
+        }
+
+        @Override
+        protected void commit() throws IOException
+        {
+            pipe.commit();
+        }
+
+        @Override
+        protected void rollback() throws IOException
+        {
+            pipe.rollback();
+        }
+
         @Override
         public void run()
         {
             try
             {
                 config("AIS created new message handler %d", message);
-                switch (message)
-                {
-                    case 1:
-                    case 2:
-                    case 3:
-                        parser.parse123Messages(pipe, aisData, this, AISBridge.this);
-                        break;
-                    default:
-                        String methodName = "parse"+message+"Messages";
-                        try
-                        {
-                            Method parseMethod = parser.getClass().getMethod(methodName, ReadableByteChannel.class, AISObserver.class, MessageHandler.class, AISBridge.class);
-                            parseMethod.invoke(parser, pipe, aisData, this, AISBridge.this);
-                        }
-                        catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException ex)
-                        {
-                            log(SEVERE, ex, "%s", ex.getMessage());
-                        }
-                        break;
-                }
+                parse(message, pipe, this);
             }
             catch (Throwable ex)
             {
@@ -298,9 +758,151 @@ public class AISBridge extends JavaLogging implements Transactional
             }
         }
 
-        public String getSentence()
+    }
+    /**
+     * SynchronousHandler expands payload into reusable buffer and parses it
+     * with AISParser in calling thread when message is complete.
+     */
+    public class SynchronousHandler extends AbstractHandler implements ReadableByteChannel
+    {
+        private ByteBuffer bb = ByteBuffer.allocate(2048);
+
+        @Override
+        protected void start(boolean ownMessage, char channel)
+        {
+            bb.clear();
+            bb.put((byte) (ownMessage ? 'O' : 'M'));
+            bb.put((byte) channel);
+        }
+
+        @Override
+        protected void add(CharSequence payload, int padding)
+        {
+            int need = 6*payload.length()+2;
+            if (bb.remaining() < need)
+            {
+                ByteBuffer b = ByteBuffer.allocate(2*(bb.capacity()+need));
+                bb.flip();
+                b.put(bb);
+                bb = b;
+            }
+            AISPipe.expand(payload, padding, bb);
+        }
+
+        @Override
+        protected void commit() throws IOException
+        {
+            bb.put((byte)'C');
+            bb.put((byte)'E');  // parser exits at end of message
+            bb.flip();
+            if (bb.remaining() < 10)
+            {
+                warning("AIS message too short %s", this);
+                bb.clear();
+                return;
+            }
+            int message = 0;
+            for (int ii=2;ii<8;ii++)
+            {
+                message = (message<<1) + (bb.get(ii)-'0');
+            }
+            try
+            {
+                parse(message, this, this);
+            }
+            catch (IllegalArgumentException ex)
+            {
+                warning("%s %s", ex.getMessage(), this);
+            }
+            catch (ThreadStoppedException ex)
+            {
+                throw new IOException(ex);
+            }
+            finally
+            {
+                bb.clear();
+            }
+        }
+
+        @Override
+        protected void rollback()
+        {
+            bb.clear();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException
+        {
+            if (!bb.hasRemaining())
+            {
+                return -1;
+            }
+            int count = Math.min(bb.remaining(), dst.remaining());
+            int limit = bb.limit();
+            bb.limit(bb.position()+count);
+            dst.put(bb);
+            bb.limit(limit);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+        }
+        
+    }
+    /**
+     * PackedHandler collects payload into AISBitBuffer and decodes it in 
+     * calling thread when message is complete.
+     */
+    public class PackedHandler extends AbstractHandler
+    {
+        private final AISBitBuffer bits = new AISBitBuffer();
+        private final AISBitDecoder decoder = new AISBitDecoder(parser);
+        private boolean ownMessage;
+        private char channel;
+
+        @Override
+        protected void start(boolean ownMessage, char channel)
+        {
+            this.ownMessage = ownMessage;
+            this.channel = channel;
+            bits.clear();
+        }
+
+        @Override
+        protected void add(CharSequence payload, int padding)
+        {
+            bits.add(payload, padding);
+        }
+
+        @Override
+        protected void commit()
+        {
+            AISBridge.this.start("Start from PackedHandler");
+            try
+            {
+                if (!decoder.decode(bits, ownMessage, channel, aisData))
+                {
+                    warning("AIS packed rollback %s", this);
+                }
+            }
+            finally
+            {
+                AISBridge.this.commit("Commit");
+            }
+        }
+
+        @Override
+        protected void rollback()
         {
-            return sentence.stream().collect(Collectors.joining("\r\n"));
+            bits.clear();
         }
         
     }
@@ -35,7 +35,7 @@ import org.vesalainen.parser.annotation.Terminals;
 import org.vesalainen.parser.util.InputReader;
 import org.vesalainen.parsers.mmsi.MMSIType;
 import static org.vesalainen.parsers.mmsi.MMSIType.*;
-import org.vesalainen.parsers.nmea.ais.AISBridge.MessageHandler;
+import org.vesalainen.parsers.nmea.ais.AISBridge.AbstractHandler;
 import org.vesalainen.regex.SyntaxErrorException;
 import org.vesalainen.util.concurrent.ThreadStoppedException;
 import org.vesalainen.util.logging.JavaLogging;
@@ -581,7 +581,15 @@ import org.vesalainen.util.logging.JavaLogging;
 })
 public abstract class AISParser extends JavaLogging implements ParserInfo
 {
-    private final ThreadLocal<Integer> mmsiStore = new ThreadLocal<>();
+    // values() clones array on each call
+    private static final MessageTypes[] MESSAGE_TYPES = MessageTypes.values();
+    private static final NavigationStatus[] NAVIGATION_STATUS = NavigationStatus.values();
+    private static final ManeuverIndicator[] MANEUVER_INDICATORS = ManeuverIndicator.values();
+    private static final EPFDFixTypes[] EPFD_FIX_TYPES = EPFDFixTypes.values();
+    private static final CodesForShipType[] SHIP_TYPES = CodesForShipType.values();
+    private static final NavaidTypes[] NAVAID_TYPES = NavaidTypes.values();
+    private static final TransceiverModes[] TRANSCEIVER_MODES = TransceiverModes.values();
+    private final ThreadLocal<int[]> mmsiStore = ThreadLocal.withInitial(()->new int[1]);
 
     public AISParser()
     {
@@ -627,7 +635,7 @@ protected void duration_8(int arg, @ParserContext("aisData") AISObserver aisData
         aisData.start("Start from NMEAParser");
         aisData.setOwnMessage(ownMessage=='O');
         aisData.setChannel(aisChannel);
-        aisData.setMessageType(MessageTypes.values()[messageType]);
+        aisData.setMessageType(MESSAGE_TYPES[messageType]);
     }
     @Terminal(expression="[CR]")
     protected void end(char end, @ParserContext("aisData") AISObserver aisData, @ParserContext("aisBridge") AISBridge aisBridge)
@@ -652,139 +660,139 @@ protected void duration_8(int arg, @ParserContext("aisData") AISObserver aisData
     protected abstract void parse123Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "4Messages", size=168, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse4Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "5Messages", size=422, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse5Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "6Messages", size=1008, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse6Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "7Messages", size=168, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse7Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "8Messages", size=1008, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse8Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "9Messages", size=168, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse9Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "10Messages", size=72, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse10Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "11Messages", size=168, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse11Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "12Messages", size=1008, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse12Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "14Messages", size=1008, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse14Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "15Messages", size=160, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse15Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "16Messages", size=144, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse16Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "17Messages", size=816, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse17Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "18Messages", size=168, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse18Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "19Messages", size=312, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse19Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "20Messages", size=160, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse20Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "21Messages", size=360, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse21Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "22Messages", size=168, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse22Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "23Messages", size=160, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse23Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "24Messages", size=168, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse24Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
     @ParseMethod(start = "27Messages", size=168, charSet = "US-ASCII", features={WideIndex}, eof="exit")
     protected abstract void parse27Messages(
             ReadableByteChannel channel,
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge) throws ThreadStoppedException;
 
     @RecoverMethod
     public void recover(
             @ParserContext("aisData") AISObserver aisData,
-            @ParserContext("aisHandler") MessageHandler aisHandler,
+            @ParserContext("aisHandler") AbstractHandler aisHandler,
             @ParserContext("aisBridge") AISBridge aisBridge,
             @ParserContext(ParserConstants.InputReader) InputReader reader,
             @ParserContext(ParserConstants.ExpectedDescription) String expected,
@@ -836,7 +844,7 @@ protected void duration_8(int arg, @ParserContext("aisData") AISObserver aisData
     protected void mmsi(int mmsi, @ParserContext("aisData") AISObserver aisData)
     {
         aisData.setMmsi(mmsi);
-        mmsiStore.set(mmsi);
+        mmsiStore.get()[0] = mmsi;
     }
 
     protected void aisVersion(int arg, @ParserContext("aisData") AISObserver aisData)
@@ -849,7 +857,7 @@ protected void duration_8(int arg, @ParserContext("aisData") AISObserver aisData
     }
     protected void navigationStatus(int status, @ParserContext("aisData") AISObserver aisData)
     {
-        aisData.setNavigationStatus(NavigationStatus.values()[status]);
+        aisData.setNavigationStatus(NAVIGATION_STATUS[status]);
     }
 
     /**
@@ -1057,7 +1065,7 @@ protected void duration_8(int arg, @ParserContext("aisData") AISObserver aisData
     {
         if (maneuver < 3)
         {
-            aisData.setManeuver(ManeuverIndicator.values()[maneuver]);
+            aisData.setManeuver(MANEUVER_INDICATORS[maneuver]);
         }
     }
     /**
@@ -1169,7 +1177,7 @@ protected void duration_8(int arg, @ParserContext("aisData") AISObserver aisData
 
     protected void epfd(int epfd, @ParserContext("aisData") AISObserver aisData)
     {
-        aisData.setEpfd(EPFDFixTypes.values()[epfd]);
+        aisData.setEpfd(EPFD_FIX_TYPES[epfd]);
     }
 
     protected void version(int version, @ParserContext("aisData") AISObserver aisData)
@@ -1194,9 +1202,9 @@ protected void duration_8(int arg, @ParserContext("aisData") AISObserver aisData
 
     protected void shiptype(int shiptype, @ParserContext("aisData") AISObserver aisData)
     {
-        if (shiptype < CodesForShipType.values().length)
+        if (shiptype < SHIP_TYPES.length)
         {
-            aisData.setShipType(CodesForShipType.values()[shiptype]);
+            aisData.setShipType(SHIP_TYPES[shiptype]);
         }
     }
 
@@ -2871,7 +2879,7 @@ protected void duration_8(int arg, @ParserContext("aisData") AISObserver aisData
 // Type21AidToNavigationReport
     protected void aidType(int arg, @ParserContext("aisData") AISObserver aisData)
     {
-        aisData.setNavaidType(NavaidTypes.values()[arg]);
+        aisData.setNavaidType(NAVAID_TYPES[arg]);
     }
 
     protected void offPosition(boolean arg, @ParserContext("aisData") AISObserver aisData)
@@ -2907,11 +2915,11 @@ protected void duration_8(int arg, @ParserContext("aisData") AISObserver aisData
         {
             warning("txrx_4(%d)", arg);
         }
-        aisData.setTransceiverMode(TransceiverModes.values()[arg & 0b11]);
+        aisData.setTransceiverMode(TRANSCEIVER_MODES[arg & 0b11]);
     }
     protected void txrx_2(int arg, @ParserContext("aisData") AISObserver aisData)
     {
-        aisData.setTransceiverMode(TransceiverModes.values()[arg]);
+        aisData.setTransceiverMode(TRANSCEIVER_MODES[arg]);
     }
 
     protected void power(boolean arg, @ParserContext("aisData") AISObserver aisData)
@@ -3093,7 +3101,7 @@ protected void duration_8(int arg, @ParserContext("aisData") AISObserver aisData
     protected void mothershipDim(InputReader arg, @ParserContext("aisData") AISObserver aisData)
     {
         long off = arg.getStart();
-        if (MMSIType.getType(mmsiStore.get()) == CraftAssociatedWithParentShip)
+        if (MMSIType.getType(mmsiStore.get()[0]) == CraftAssociatedWithParentShip)
         {
             aisData.setMothershipMMSI(arg.parseInt(off, 30, 2));
         }
@@ -78,6 +78,21 @@ public class AISPipe implements ScatteringByteChannel
     public void add(CharSequence data, int padding) throws IOException
     {
         bb.clear();
+        expand(data, padding, bb);
+        bb.flip();
+        while (bb.hasRemaining())
+        {
+            sink.write(bb);
+        }
+    }
+    /**
+     * Expands armored payload into '0'/'1' bytes.
+     * @param data
+     * @param padding
+     * @param bb Must have room for 6*data.length() bytes
+     */
+    static void expand(CharSequence data, int padding, ByteBuffer bb)
+    {
         int length = data.length();
         for (int ii=0;ii<length;ii++)
         {
@@ -107,11 +122,6 @@ public class AISPipe implements ScatteringByteChannel
             }
         }
         bb.position(bb.position()-padding);
-        bb.flip();
-        while (bb.hasRemaining())
-        {
-            sink.write(bb);
-        }
     }
     @Override
     public long read(ByteBuffer[] dsts, int offset, int length) throws IOException
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.util;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class NMEALogParserTest
+{
+    
+    public NMEALogParserTest()
+    {
+    }
+
+    @Test
+    public void testOrdered() throws IOException, URISyntaxException
+    {
+        Path path = Paths.get(NMEALogParserTest.class.getResource("/sample.nmea").toURI());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        List<String> whole = collect(new NMEALogParser(path, pool).setChunkSize(Integer.MAX_VALUE));
+        assertFalse(whole.isEmpty());
+        List<String> chunked = collect(new NMEALogParser(path, pool).setChunkSize(64*1024));
+        assertEquals(whole, chunked);
+        List<String> unordered = collect(new NMEALogParser(path, pool).setChunkSize(64*1024).setOrdered(false));
+        assertEquals(whole.size(), unordered.size());
+        assertEquals(whole.stream().sorted().collect(Collectors.toList()), unordered.stream().sorted().collect(Collectors.toList()));
+        pool.shutdown();
+    }
+    @Test
+    public void testRetention() throws IOException, URISyntaxException
+    {
+        Path path = Paths.get(NMEALogParserTest.class.getResource("/sample.nmea").toURI());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (boolean ordered : new boolean[]{true, false})
+        {
+            NMEALogParser parser = new NMEALogParser(path, pool)
+                    .setChunkSize(64*1024)
+                    .setWindow(2)
+                    .setOrdered(ordered);
+            try (NMEALogParser.ChunkIterator iterator = parser.iterator("latitude"))
+            {
+                int chunks = 0;
+                while (iterator.hasNext())
+                {
+                    iterator.next();
+                    chunks++;
+                    pool.awaitQuiescence(1, TimeUnit.SECONDS);
+                    assertTrue(iterator.retained() <= 2);
+                }
+                assertTrue(chunks > 10);
+            }
+        }
+        pool.shutdown();
+    }
+    private List<String> collect(NMEALogParser parser) throws IOException
+    {
+        try (Stream<NMEASample> stream = parser.stream("latitude", "longitude", "depthOfWater"))
+        {
+            return stream
+                    .map((s)->s.getMessageType()+" "+s.getProperties().stream().sorted().map((p)->p+"="+s.getProperty(p)).collect(Collectors.joining(",")))
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.nmea.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class SharedRingChannelTest
+{
+    
+    public SharedRingChannelTest()
+    {
+    }
+
+    @Test
+    public void testReadWrite() throws IOException
+    {
+        Path path = Files.createTempFile("ring", ".shm");
+        try (SharedRingWriter writer = new SharedRingWriter(path, 4096);
+            SharedRingChannel channel = new SharedRingChannel(path))
+        {
+            ByteBuffer bb = ByteBuffer.allocate(1024);
+            for (int ii=0;ii<1000;ii++)
+            {
+                String s1 = sentence(ii);
+                String s2 = sentence(ii+1000);
+                assertEquals(s1.length(), writer.write(US_ASCII.encode(s1)));
+                assertEquals(s2.length(), writer.write(US_ASCII.encode(s2)));
+                bb.clear();
+                assertEquals(s1.length()+s2.length(), channel.read(bb));
+                bb.flip();
+                assertEquals(s1+s2, US_ASCII.decode(bb).toString());
+            }
+            assertEquals(2000, channel.getSequence());
+            assertEquals(0, channel.getLostCount());
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    @Test
+    public void testSmallBuffer() throws IOException
+    {
+        Path path = Files.createTempFile("ring", ".shm");
+        try (SharedRingWriter writer = new SharedRingWriter(path, 4096);
+            SharedRingChannel channel = new SharedRingChannel(path))
+        {
+            String s = sentence(1);
+            writer.write(US_ASCII.encode(s));
+            writer.write(US_ASCII.encode(s));
+            ByteBuffer bb = ByteBuffer.allocate(10);
+            StringBuilder sb = new StringBuilder();
+            while (sb.length() < 2*s.length())
+            {
+                bb.clear();
+                channel.read(bb);
+                bb.flip();
+                sb.append(US_ASCII.decode(bb));
+            }
+            assertEquals(s+s, sb.toString());
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    @Test
+    public void testOverrun() throws IOException
+    {
+        Path path = Files.createTempFile("ring", ".shm");
+        try (SharedRingWriter writer = new SharedRingWriter(path, 4096);
+            SharedRingChannel channel = new SharedRingChannel(path))
+        {
+            for (int ii=0;ii<1000;ii++)
+            {
+                writer.write(US_ASCII.encode(sentence(ii)));
+            }
+            ByteBuffer bb = ByteBuffer.allocate(8192);
+            int rc = channel.read(bb);
+            assertTrue(rc > 0);
+            assertTrue(channel.getLostCount() > 0);
+            assertEquals(1000, channel.getSequence());
+            bb.flip();
+            String[] lines = US_ASCII.decode(bb).toString().split("\r\n");
+            int first = 1000 - lines.length;
+            assertEquals(1000, channel.getLostCount() + lines.length);
+            for (int ii=0;ii<lines.length;ii++)
+            {
+                assertEquals(sentence(first+ii), lines[ii]+"\r\n");
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    @Test
+    public void testResume() throws IOException
+    {
+        Path path = Files.createTempFile("ring", ".shm");
+        try (SharedRingChannel channel = createAndResume(path))
+        {
+            ByteBuffer bb = ByteBuffer.allocate(1024);
+            channel.read(bb);
+            bb.flip();
+            assertEquals(sentence(2), US_ASCII.decode(bb).toString());
+            assertEquals(2, channel.getSequence());
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    private SharedRingChannel createAndResume(Path path) throws IOException
+    {
+        try (SharedRingWriter writer = new SharedRingWriter(path, 4096))
+        {
+            writer.write(US_ASCII.encode(sentence(1)));
+        }
+        SharedRingChannel channel = new SharedRingChannel(path);
+        try (SharedRingWriter writer = new SharedRingWriter(path, 4096))
+        {
+            assertEquals(1, writer.getSequence());
+            writer.write(US_ASCII.encode(sentence(2)));
+        }
+        return channel;
+    }
+    @Test
+    public void testConcurrent() throws Exception
+    {
+        Path path = Files.createTempFile("ring", ".shm");
+        try (SharedRingWriter writer = new SharedRingWriter(path, 65536);
+            SharedRingChannel channel = new SharedRingChannel(path))
+        {
+            channel.setPollInterval(0, java.util.concurrent.TimeUnit.MILLISECONDS);
+            Thread thread = new Thread(()->
+            {
+                for (int ii=0;ii<100000;ii++)
+                {
+                    writer.write(US_ASCII.encode(sentence(ii)));
+                }
+            });
+            thread.start();
+            ByteBuffer bb = ByteBuffer.allocate(4096);
+            StringBuilder sb = new StringBuilder();
+            long last = -1;
+            while (channel.getSequence() < 100000)
+            {
+                bb.clear();
+                channel.read(bb);
+                bb.flip();
+                sb.append(US_ASCII.decode(bb));
+                int idx;
+                while ((idx = sb.indexOf("\r\n")) != -1)
+                {
+                    String line = sb.substring(0, idx+2);
+                    sb.delete(0, idx+2);
+                    int n = Integer.parseInt(line.substring(7, 13));
+                    assertTrue(n > last);
+                    assertEquals(sentence(n), line);
+                    last = n;
+                }
+            }
+            thread.join();
+            assertEquals(99999, last);
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+    private static String sentence(int n)
+    {
+        return String.format("$GPTST,%06d,A*00\r\n", n);
+    }
+}
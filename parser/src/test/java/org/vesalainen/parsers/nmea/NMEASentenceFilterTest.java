@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.parsers.nmea;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.vesalainen.nmea.util.NMEASampler;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class NMEASentenceFilterTest
+{
+    private static final String RMC = "$GPRMC,062455,A,6009.2054,N,02453.6493,E,000.0,001.3,171009,,,A*78\r\n";
+    private static final String DBT = "$IIDBT,015.6,f,04.7,M,02.6,F*12\r\n";
+    private static final String MTW = "$IIMTW,18.5,C*21\r\n";
+    private static final String VHW = "$IIVHW,,,211,M,0.00,N,,K*70\r\n";
+    private static final String PROP = "$PGRME,15.0,M,45.0,M,25.0,M*1C\r\n";
+    private static final String AIS = "!AIVDM,1,1,,A,13HOI:0P0000VOHLCnHQKwvL05Ip,0*23\r\n";
+    private static final String INPUT = RMC+DBT+"garbage\r\n"+MTW+VHW+PROP+AIS+DBT;
+    
+    public NMEASentenceFilterTest()
+    {
+    }
+
+    @Test
+    public void testPassAll() throws IOException
+    {
+        NMEASentenceFilter filter = create(INPUT);
+        assertEquals(INPUT, read(filter, 4096));
+        assertEquals(0, filter.getSkippedCount());
+    }
+    @Test
+    public void testWaterTemperature() throws IOException
+    {
+        NMEASentenceFilter filter = create(INPUT);
+        NMEASampler sampler = new NMEASampler(NMEADispatcher.newInstance(), "waterTemperature");
+        filter.update(Collections.singletonList(sampler), false);
+        assertTrue(filter.isWanted(MessageType.MTW));
+        assertTrue(filter.isWanted(MessageType.RMC));   // clock
+        assertFalse(filter.isWanted(MessageType.DBT));
+        assertEquals(RMC+"garbage\r\n"+MTW+PROP, read(filter, 7));
+        assertEquals(4, filter.getSkippedCount());
+    }
+    @Test
+    public void testDepth() throws IOException
+    {
+        NMEASentenceFilter filter = create(INPUT);
+        NMEASampler sampler = new NMEASampler(NMEADispatcher.newInstance(), "depthBelowTransducer");
+        filter.update(Arrays.asList(sampler), true);
+        assertTrue(filter.isWanted(MessageType.DBT));
+        assertTrue(filter.isWanted(MessageType.DPT));
+        assertFalse(filter.isWanted(MessageType.MTW));
+        assertEquals(RMC+DBT+"garbage\r\n"+PROP+AIS+DBT, read(filter, 1));
+    }
+    @Test
+    public void testUnannotated() throws IOException
+    {
+        NMEASentenceFilter filter = create(INPUT);
+        NMEASampler sampler = new NMEASampler(NMEADispatcher.newInstance(), "windDirection");
+        filter.update(Arrays.asList(sampler), true);
+        assertEquals(INPUT, read(filter, 100));
+    }
+    private NMEASentenceFilter create(String input)
+    {
+        byte[] bytes = input.getBytes(StandardCharsets.US_ASCII);
+        return new NMEASentenceFilter(Channels.newChannel(new ByteArrayInputStream(bytes)), 16);
+    }
+    private String read(NMEASentenceFilter filter, int size) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer bb = ByteBuffer.allocate(size);
+        while (filter.read(bb) != -1)
+        {
+            bb.flip();
+            out.write(bb.array(), 0, bb.limit());
+            bb.clear();
+        }
+        return out.toString("US-ASCII");
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.parsers.nmea.ais;
+
+import java.io.IOException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.vesalainen.nmea.util.SimpleStorage;
+import org.vesalainen.parsers.nmea.NMEAParser;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class AISBitDecoderTest
+{
+    private static final String[] NMEAS = new String[] {
+        "!AIVDM,1,1,,A,13HOI:0P0000VOHLCnHQKwvL05Ip,0*23\r\n",
+        "!AIVDM,1,1,,B,16:@?m001o85tmL<SbP5OlHN25Ip,0*7F\r\n",
+        "!AIVDM,1,1,,B,4020ssAuho;N?PeNwjOAp<70089A,0*09\r\n",
+        "!AIVDM,2,1,9,B,53nFBv01SJ<thHp6220H4heHTf2222222222221?50:454o<`9QSlUDp,0*09\r\n"+
+            "!AIVDM,2,2,9,B,888888888888880,2*2E\r\n",
+        "!AIVDM,2,1,8,A,53Q6SR02=21U`@H?800l4E9<f1HTLt000000001?BhL<@4q30Glm841E,0*7C\r\n"+
+            "!AIVDM,2,2,8,A,1DThUDQh0000000,2*4D\r\n",
+        "!AIVDM,1,1,,B,91b55vRAirOn<94M097lV@@20<6=,0*5D\r\n",
+        "!AIVDM,1,1,,B,;5E8IL1uho;NQ1d4sJEW<Ci00000,0*58\r\n",
+        "!AIVDM,1,1,,B,B6:fOUh0=R1oRQSC=jo9Gwb61P06,0*6F\r\n",
+        "!AIVDM,1,1,,B,B3P<0@P00GtiTD`MfuKAKwbUoP06,0*54\r\n",
+        "!AIVDM,1,1,,A,C6:Vo:00@R;51>TORgH2owc6@b30jb2M111111111110S0hS440P,0*0F\r\n",
+        "!AIVDM,1,1,,A,E04<o5AaWdPnaGaP00000000000DPmHl:aCUp00000Qh20,4*64\r\n",
+        "!AIVDM,1,1,,B,E028ishVa1Qh:2W2a4S2h@@@@@@OJm<:89QcH00003v0100,2*75\r\n",
+        "!AIVDM,1,1,,B,H>DQ@04N6DeihhlPPPPPPP000000,0*0E\r\n",
+        "!AIVDM,1,1,,A,H7P<1>4UB1I0000F=Aqpoo2P2220,0*3A\r\n"
+    };
+
+    public AISBitDecoderTest()
+    {
+    }
+
+    @Test
+    public void testBitBuffer()
+    {
+        String nmea = NMEAS[3];
+        AISContentHelper ach = new AISContentHelper(nmea);
+        AISBitBuffer bits = new AISBitBuffer();
+        bits.add("53nFBv01SJ<thHp6220H4heHTf2222222222221?50:454o<`9QSlUDp", 0);
+        bits.add("888888888888880", 2);
+        assertEquals(ach.getBits(), bits.length());
+        assertEquals(AISContentHelper.getAisData(nmea), bits.toString());
+        assertEquals(ach.getUInt(8, 38), bits.getUInt(8, 30));
+        assertEquals(ach.getString(70, 112), bits.getString(70, 42));
+        assertEquals(ach.getString(112, 232), bits.getString(112, 120));
+        bits.clear();
+        bits.add("13HOI:0P0000VOHLCnHQKwvL05Ip", 0);
+        ach = new AISContentHelper(NMEAS[0]);
+        assertEquals(ach.getInt(61, 89), bits.getInt(61, 28));
+        assertEquals(ach.getInt(89, 116), bits.getInt(89, 27));
+        assertEquals(ach.getBoolean(148), bits.getBoolean(148));
+    }
+    @Test
+    public void testCompare() throws IOException
+    {
+        NMEAParser parser = NMEAParser.newInstance();
+        for (String nmea : NMEAS)
+        {
+            SimpleStorage grammar = parse(parser, nmea, false);
+            SimpleStorage packed = parse(parser, nmea, true);
+            assertNull(nmea, packed.getRollbackReason());
+            assertEquals(nmea, "", grammar.verify(packed));
+            assertEquals(nmea, "", packed.verify(grammar));
+        }
+    }
+    private SimpleStorage parse(NMEAParser parser, String nmea, boolean packed) throws IOException
+    {
+        SimpleStorage ss = new SimpleStorage();
+        AISObserver observer = ss.getStorage(AISObserver.class);
+        parser.setAISPackedDecoding(packed);
+        parser.parse(nmea, null, observer);
+        return ss;
+    }
+}
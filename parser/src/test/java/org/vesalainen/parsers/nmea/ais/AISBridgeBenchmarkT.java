@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.parsers.nmea.ais;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Compares AISBridge modes with recorded AIS log. Threaded mode parses
+ * messages in pipe handler threads, synchronous mode in calling thread and
+ * packed mode decodes supported messages with AISBitDecoder.
+ * 
+ * <p>Throughput is measured by feeding all sentences and waiting for the 
+ * observer to see all messages. Latency is measured per message from last
+ * sentence to commit/rollback.
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class AISBridgeBenchmarkT
+{
+    private static final int WARMUP = 20;
+    private static final int ROUNDS = 200;
+    private final List<Sentence> sentences = new ArrayList<>();
+    private int messages;
+    
+    public AISBridgeBenchmarkT() throws IOException
+    {
+        try (InputStream is = AISBridgeBenchmarkT.class.getResourceAsStream("/aisdataausbeestä");
+                BufferedReader br = new BufferedReader(new InputStreamReader(is, US_ASCII)))
+        {
+            String line = br.readLine();
+            while (line != null)
+            {
+                if (line.startsWith("!AIVDM") || line.startsWith("!AIVDO"))
+                {
+                    Sentence s = Sentence.parse(line);
+                    if (s != null)
+                    {
+                        sentences.add(s);
+                        if (s.sentenceNumber == s.numberOfSentences)
+                        {
+                            messages++;
+                        }
+                    }
+                }
+                line = br.readLine();
+            }
+        }
+    }
+
+    @Test
+    public void benchmark() throws IOException, InterruptedException
+    {
+        System.err.printf("%d sentences %d messages\n", sentences.size(), messages);
+        run("threaded", false, false);
+        run("synchronous", true, false);
+        run("synchronous+packed", true, true);
+    }
+    private void run(String name, boolean synchronous, boolean packed) throws IOException, InterruptedException
+    {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try
+        {
+            CountingObserver observer = new CountingObserver();
+            AISBridge bridge = new AISBridge(observer, executor);
+            bridge.setSynchronous(synchronous);
+            bridge.setPackedDecoding(packed);
+            for (int ii=0;ii<WARMUP;ii++)
+            {
+                throughput(bridge, observer);
+            }
+            long time = 0;
+            for (int ii=0;ii<ROUNDS;ii++)
+            {
+                time += throughput(bridge, observer);
+            }
+            double msgsPerSec = (double)ROUNDS*messages*TimeUnit.SECONDS.toNanos(1)/time;
+            long[] lat = latency(bridge, observer);
+            System.err.printf("%-20s %10.0f msg/s latency p50=%dns p99=%dns max=%dns\n", 
+                    name, 
+                    msgsPerSec,
+                    lat[lat.length/2],
+                    lat[lat.length*99/100],
+                    lat[lat.length-1]
+            );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+    private long throughput(AISBridge bridge, CountingObserver observer) throws IOException
+    {
+        int target = observer.count.get()+messages;
+        long start = System.nanoTime();
+        for (Sentence s : sentences)
+        {
+            s.send(bridge);
+        }
+        observer.await(target);
+        return System.nanoTime()-start;
+    }
+    private long[] latency(AISBridge bridge, CountingObserver observer) throws IOException
+    {
+        long[] lat = new long[messages];
+        int index = 0;
+        for (Sentence s : sentences)
+        {
+            int target = observer.count.get()+1;
+            long start = System.nanoTime();
+            s.send(bridge);
+            if (s.sentenceNumber == s.numberOfSentences)
+            {
+                observer.await(target);
+                lat[index++] = System.nanoTime()-start;
+            }
+        }
+        Arrays.sort(lat);
+        return lat;
+    }
+    private static class CountingObserver extends AbstractAISObserver
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void commit(String reason)
+        {
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void rollback(String reason)
+        {
+            count.incrementAndGet();
+        }
+        
+        private void await(int target)
+        {
+            long timeout = System.nanoTime()+TimeUnit.SECONDS.toNanos(10);
+            while (count.get() < target)
+            {
+                if (System.nanoTime() > timeout)
+                {
+                    throw new IllegalStateException("timeout "+count.get()+" < "+target);
+                }
+                Thread.onSpinWait();
+            }
+        }
+    }
+    private static class Sentence
+    {
+        private boolean ownMessage;
+        private int numberOfSentences;
+        private int sentenceNumber;
+        private int sequentialMessageID;
+        private char channel;
+        private String payload;
+        private int padding;
+        private int checksum;
+        
+        private static Sentence parse(String line)
+        {
+            int star = line.indexOf('*');
+            if (star == -1)
+            {
+                return null;
+            }
+            String[] f = line.substring(0, star).split(",", -1);
+            if (f.length != 7)
+            {
+                return null;
+            }
+            Sentence s = new Sentence();
+            s.ownMessage = f[0].endsWith("O");
+            s.numberOfSentences = Integer.parseInt(f[1]);
+            s.sentenceNumber = Integer.parseInt(f[2]);
+            s.sequentialMessageID = f[3].isEmpty() ? 0 : Integer.parseInt(f[3]);
+            s.channel = f[4].isEmpty() ? '-' : f[4].charAt(0);
+            s.payload = f[5];
+            s.padding = Integer.parseInt(f[6]);
+            s.checksum = Integer.parseInt(line.substring(star+1).trim(), 16);
+            return s;
+        }
+        private void send(AISBridge bridge) throws IOException
+        {
+            bridge.newSentence(ownMessage, numberOfSentences, sentenceNumber, sequentialMessageID, channel, payload, padding, checksum, checksum);
+        }
+    }
+}
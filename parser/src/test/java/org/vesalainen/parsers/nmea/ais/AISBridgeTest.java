@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2022 Timo Vesalainen <timo.vesalainen@iki.fi>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.vesalainen.parsers.nmea.ais;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.vesalainen.parsers.nmea.ais.AISBridge.Reassembly;
+
+/**
+ *
+ * @author Timo Vesalainen <timo.vesalainen@iki.fi>
+ */
+public class AISBridgeTest
+{
+    private static final String PAYLOAD1 = "53nFBv01SJ<thHp6220H4heHTf2222222222221?50:454o<`9QSlUDp";
+    private static final String PAYLOAD2 = "888888888888880";
+    // position report split in two sentences. Message 5 strings are allocated by design.
+    private static final String POSITION1 = "13HOI:0P0000VO";
+    private static final String POSITION2 = "HLCnHQKwvL05Ip";
+    private static final int COUNT = 2000;
+    
+    public AISBridgeTest()
+    {
+    }
+
+    @Test
+    public void testSentence() throws IOException
+    {
+        Reassembly r = new Reassembly();
+        r.start(null, false, 2, 9, 'B', 0);
+        r.add(2, 2, PAYLOAD2, 2, 0x2E);
+        r.add(2, 1, PAYLOAD1, 0, 0x09);
+        assertEquals(
+                "!AIVDM,2,1,9,B,"+PAYLOAD1+",0*09\r\n"+
+                "!AIVDM,2,2,9,B,"+PAYLOAD2+",2*2E", 
+                r.getSentence());
+        r.start("r1", true, 1, 0, '-', 0);
+        r.add(1, 1, "13HOI:0P0000VOHLCnHQKwvL05Ip", 0, 0x23);
+        assertEquals("!AIVDO,1,1,,,13HOI:0P0000VOHLCnHQKwvL05Ip,0*23", r.getSentence());
+        assertEquals("!AIVDO,1,1,,,13HOI:0P0000VOHLCnHQKwvL05Ip,0*23 from r1", r.toString());
+    }
+    @Test
+    public void testInterleaved() throws IOException
+    {
+        CountingObserver observer = new CountingObserver();
+        AISBridge bridge = new AISBridge(observer);
+        bridge.setSynchronous(true);
+        bridge.newSentence("r1", false, 2, 1, 9, 'A', PAYLOAD1, 0, 0x09, 0x09);
+        bridge.newSentence("r1", false, 2, 1, 9, 'B', PAYLOAD1, 0, 0x09, 0x09);
+        bridge.newSentence("r2", false, 2, 1, 9, 'A', PAYLOAD1, 0, 0x09, 0x09);
+        bridge.newSentence("r2", false, 2, 2, 9, 'A', PAYLOAD2, 2, 0x2E, 0x2E);
+        bridge.newSentence("r1", false, 2, 2, 9, 'B', PAYLOAD2, 2, 0x2E, 0x2E);
+        bridge.newSentence("r1", false, 2, 2, 9, 'A', PAYLOAD2, 2, 0x2E, 0x2E);
+        assertEquals(3, bridge.getCompletedCount());
+        assertEquals(0, bridge.getEvictedCount());
+        assertEquals(0, bridge.getDiscardedCount());
+        assertEquals(3, observer.commits);
+        assertEquals(0, observer.rollbacks);
+    }
+    @Test
+    public void testEviction() throws IOException, InterruptedException
+    {
+        CountingObserver observer = new CountingObserver();
+        AISBridge bridge = new AISBridge(observer);
+        bridge.setSynchronous(true);
+        bridge.setMaxReassemblies(1);
+        bridge.newSentence(false, 2, 1, 8, 'A', PAYLOAD1, 0, 0x09, 0x09);
+        bridge.newSentence(false, 2, 1, 9, 'A', PAYLOAD1, 0, 0x09, 0x09);
+        assertEquals(1, bridge.getEvictedCount());
+        bridge.newSentence(false, 2, 2, 8, 'A', PAYLOAD2, 2, 0x2E, 0x2E);
+        assertEquals(2, bridge.getEvictedCount());
+        assertEquals(0, bridge.getCompletedCount());
+        
+        bridge.setMaxReassemblies(1);
+        bridge.setReassemblyTimeout(10);
+        bridge.newSentence(false, 2, 1, 9, 'A', PAYLOAD1, 0, 0x09, 0x09);
+        Thread.sleep(50);
+        bridge.newSentence(false, 2, 2, 9, 'A', PAYLOAD2, 2, 0x2E, 0x2E);
+        assertEquals(3, bridge.getEvictedCount());
+        assertEquals(0, bridge.getCompletedCount());
+        
+        bridge.setMaxReassemblies(1);
+        bridge.setReassemblyTimeout(5000);
+        bridge.newSentence(false, 2, 1, 9, 'A', PAYLOAD1, 0, 0x09, 0x09);
+        bridge.newSentence(false, 2, 1, 9, 'A', PAYLOAD1, 0, 0x09, 0x09);
+        assertEquals(1, bridge.getDiscardedCount());
+        bridge.newSentence(false, 2, 2, 9, 'A', PAYLOAD2, 2, 0x2E, 0x2E);
+        assertEquals(1, bridge.getCompletedCount());
+        assertEquals(1, observer.commits);
+    }
+    @Test
+    public void testAllocationSynchronous() throws IOException
+    {
+        testAllocation(true, false);
+    }
+    @Test
+    public void testAllocationPacked() throws IOException
+    {
+        testAllocation(true, true);
+    }
+    @Test
+    public void testAllocationThreaded() throws IOException
+    {
+        testAllocation(false, false);
+    }
+    /**
+     * Measures calling thread allocation of complete two sentence messages 
+     * including reassembly, handler and parsing.
+     */
+    private void testAllocation(boolean synchronous, boolean packed) throws IOException
+    {
+        com.sun.management.ThreadMXBean mxBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        AISBridge bridge = new AISBridge(new AbstractAISObserver());
+        bridge.setSynchronous(synchronous);
+        bridge.setPackedDecoding(packed);
+        try
+        {
+            for (int ii=0;ii<20000;ii++)
+            {
+                newMessage(bridge);
+            }
+            long start = mxBean.getThreadAllocatedBytes(id);
+            for (int ii=0;ii<COUNT;ii++)
+            {
+                newMessage(bridge);
+            }
+            long allocated = mxBean.getThreadAllocatedBytes(id) - start;
+            // less than COUNT bytes can only come from measuring itself
+            assertEquals("allocated "+allocated, 0, allocated / COUNT);
+        }
+        finally
+        {
+            bridge.waitAndStopThreads();
+        }
+    }
+    private void newMessage(AISBridge bridge) throws IOException
+    {
+        bridge.newSentence(false, 2, 1, 7, 'A', POSITION1, 0, 0x1D, 0x1D);
+        bridge.newSentence(false, 2, 2, 7, 'A', POSITION2, 0, 0x1B, 0x1B);
+    }
+    private static class CountingObserver extends AbstractAISObserver
+    {
+        private int commits;
+        private int rollbacks;
+
+        @Override
+        public void commit(String reason)
+        {
+            commits++;
+        }
+
+        @Override
+        public void rollback(String reason)
+        {
+            rollbacks++;
+        }
+        
+    }
+}